@@ -58,6 +58,25 @@ public interface EventDistributor {
 	 */
 	@Replicated(remoteOnly=true)
 	void dataModification(String vdbName, int vdbVersion, String schema, String... tableNames);
+	
+	/**
+	 * Notify that a row of the table has changed.  In addition to the effects of {@link #dataModification(String, int, String, String...)}
+	 * the rows of dependent materialized views affected by the change will be refreshed when possible.
+	 * <br>
+	 * For an insert the oldValues should be null, and for a delete the newValues should be null.  
+	 * The values are expected to be in the order of the columnNames, or in table order if columnNames is null. 
+	 * Only the columns needed to determine the affected view rows, typically the key columns, need to be sent. 
+	 * 
+	 * @param vdbName
+	 * @param vdbVersion
+	 * @param schema
+	 * @param tableName
+	 * @param oldValues
+	 * @param newValues
+	 * @param columnNames
+	 */
+	@Replicated(remoteOnly=true)
+	void dataModification(String vdbName, int vdbVersion, String schema, String tableName, Object[] oldValues, Object[] newValues, String[] columnNames);
 
 	/**
 	 * Set the column stats
@@ -127,6 +127,12 @@ public class ExecutionFactory<F, C> {
 	@SuppressWarnings("unused")
 	public void start() throws TranslatorException {
 	}
+	
+	/**
+	 * Release any resources acquired by {@link #start()} once the translator is no longer used
+	 */
+	public void stop() {
+	}
 	    
 	/**
 	 * Defines if the Connector is read-only connector 
@@ -22,6 +22,8 @@
 
 package org.teiid.client;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
@@ -29,6 +31,7 @@ import java.io.ObjectOutput;
 import java.io.ObjectStreamConstants;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.sql.Array;
 import java.sql.SQLException;
 import java.sql.Time;
@@ -40,6 +43,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import org.teiid.core.TeiidRuntimeException;
 import org.teiid.core.types.ArrayImpl;
@@ -49,6 +55,8 @@ import org.teiid.core.types.ClobType;
 import org.teiid.core.types.DataTypeManager;
 import org.teiid.core.types.XMLType;
 import org.teiid.jdbc.JDBCPlugin;
+import org.teiid.netty.handler.codec.serialization.CompactObjectInputStream;
+import org.teiid.netty.handler.codec.serialization.CompactObjectOutputStream;
 
 
 
@@ -63,11 +71,26 @@ import org.teiid.jdbc.JDBCPlugin;
  *   outside of jdbc allowed values
  * <li>version 2: starts with 8.2 and adds better array serialization and
  *   uses a safer date/time serialization
+ * <li>version 3: starts with 8.6 and adds a string dictionary
+ * <li>version 4: starts with 8.10 and writes int, long, and double columns as
+ *   primitive arrays, run-length encodes strings, and allows the column data
+ *   to be written as a single deflated block
  * </ul>
  */
 public class BatchSerializer {
 
-    static final byte CURRENT_VERSION = (byte)3;
+    static final byte CURRENT_VERSION = (byte)4;
+    
+    static final byte COLUMNAR_VERSION = (byte)4;
+    
+    private static final byte UNCOMPRESSED = 0;
+    private static final byte DEFLATED = 1;
+    private static final byte STORED = 2;
+    
+    /**
+     * Column data smaller than this is not worth deflating
+     */
+    static final int MIN_COMPRESS_BYTES = 1 << 10;
 
 	private BatchSerializer() {} // Uninstantiable
 
@@ -81,14 +104,14 @@ public class BatchSerializer {
         serializers.put(DataTypeManager.DefaultDataTypes.BYTE,          new ColumnSerializer[] {new ByteColumnSerializer()});
         serializers.put(DataTypeManager.DefaultDataTypes.CHAR,          new ColumnSerializer[] {new CharColumnSerializer()});
         serializers.put(DataTypeManager.DefaultDataTypes.DATE,          new ColumnSerializer[] {new DateColumnSerializer(), new DateColumnSerializer1(), new DateColumnSerializer()});
-        serializers.put(DataTypeManager.DefaultDataTypes.DOUBLE,        new ColumnSerializer[] {new DoubleColumnSerializer()});
+        serializers.put(DataTypeManager.DefaultDataTypes.DOUBLE,        new ColumnSerializer[] {new DoubleColumnSerializer(), new DoubleColumnSerializer(), new DoubleColumnSerializer(), new DoubleColumnSerializer(), new DoubleColumnSerializer4()});
         serializers.put(DataTypeManager.DefaultDataTypes.FLOAT,         new ColumnSerializer[] {new FloatColumnSerializer()});
-        serializers.put(DataTypeManager.DefaultDataTypes.INTEGER,       new ColumnSerializer[] {new IntColumnSerializer()});
-        serializers.put(DataTypeManager.DefaultDataTypes.LONG,          new ColumnSerializer[] {new LongColumnSerializer()});
+        serializers.put(DataTypeManager.DefaultDataTypes.INTEGER,       new ColumnSerializer[] {new IntColumnSerializer(), new IntColumnSerializer(), new IntColumnSerializer(), new IntColumnSerializer(), new IntColumnSerializer4()});
+        serializers.put(DataTypeManager.DefaultDataTypes.LONG,          new ColumnSerializer[] {new LongColumnSerializer(), new LongColumnSerializer(), new LongColumnSerializer(), new LongColumnSerializer(), new LongColumnSerializer4()});
         serializers.put(DataTypeManager.DefaultDataTypes.SHORT,         new ColumnSerializer[] {new ShortColumnSerializer()});
         serializers.put(DataTypeManager.DefaultDataTypes.TIME,          new ColumnSerializer[] {new TimeColumnSerializer(), new TimeColumnSerializer1(), new TimeColumnSerializer()});
         serializers.put(DataTypeManager.DefaultDataTypes.TIMESTAMP,     new ColumnSerializer[] {new TimestampColumnSerializer()});
-        serializers.put(DataTypeManager.DefaultDataTypes.STRING,     	new ColumnSerializer[] {defaultSerializer, new StringColumnSerializer1(), new StringColumnSerializer1(), new StringColumnSerializer3()});
+        serializers.put(DataTypeManager.DefaultDataTypes.STRING,     	new ColumnSerializer[] {defaultSerializer, new StringColumnSerializer1(), new StringColumnSerializer1(), new StringColumnSerializer3(), new StringColumnSerializer4()});
         serializers.put(DataTypeManager.DefaultDataTypes.CLOB,  	   	new ColumnSerializer[] {defaultSerializer, new ClobColumnSerializer1()});
         serializers.put(DataTypeManager.DefaultDataTypes.BLOB,     		new ColumnSerializer[] {defaultSerializer, new BlobColumnSerializer1()});
         serializers.put(DataTypeManager.DefaultDataTypes.XML,     		new ColumnSerializer[] {defaultSerializer, new XmlColumnSerializer1()});
@@ -313,7 +336,11 @@ public class BatchSerializer {
     	@Override
     	protected Object readObject(ObjectInput in, List<Object> cache)
     			throws IOException, ClassNotFoundException {
-    		byte b = in.readByte();
+    		return readString(in, cache, in.readByte());
+    	}
+    	
+    	protected String readString(ObjectInput in, List<Object> cache, byte b)
+    			throws IOException, ClassNotFoundException {
     		if (b == ObjectStreamConstants.TC_STRING) {
     			String val = in.readUTF();
     			if (val.length() > MAX_INLINE_STRING_LENGTH) {
@@ -323,7 +350,7 @@ public class BatchSerializer {
     		}
     		if (b == REPEATED_STRING) {
     			Integer val = in.readInt();
-    			return cache.get(val);
+    			return (String) cache.get(val);
     		}
     		String val = (String) in.readObject();
     		if (val.length() > MAX_INLINE_STRING_LENGTH) {
@@ -353,6 +380,69 @@ public class BatchSerializer {
     		return true;
     	}
     }
+    
+    /**
+     * Adds run-length encoding of consecutive equal values to the version 3 dictionary 
+     */
+    private static class StringColumnSerializer4 extends StringColumnSerializer3 {
+    	private static final byte RUN = 1;
+    	
+    	@Override
+    	public void writeColumn(ObjectOutput out, int col,
+    			List<? extends List<?>> batch, Map<Object, Integer> cache)
+    			throws IOException {
+    		writeIsNullData(out, col, batch);
+    		Object last = null;
+    		int run = 0;
+    		for (int i = 0; i < batch.size(); i++) {
+    			Object obj = batch.get(i).get(col);
+    			if (obj == null) {
+    				continue;
+    			}
+    			if (obj.equals(last)) {
+    				run++;
+    				continue;
+    			}
+    			writeRun(out, run);
+    			run = 0;
+    			writeObject(out, obj, cache);
+    			last = obj;
+    		}
+    		writeRun(out, run);
+    	}
+
+		private void writeRun(ObjectOutput out, int run) throws IOException {
+			if (run > 0) {
+				out.writeByte(RUN);
+				out.writeInt(run);
+			}
+		}
+    	
+    	@Override
+    	public void readColumn(ObjectInput in, int col,
+    			List<List<Object>> batch, byte[] isNull, List<Object> cache)
+    			throws IOException, ClassNotFoundException {
+    		readIsNullData(in, isNull);
+    		Object last = null;
+    		int run = 0;
+    		for (int i = 0; i < batch.size(); i++) {
+    			if (isNullObject(isNull, i)) {
+    				continue;
+    			}
+    			if (run > 0) {
+    				run--;
+    			} else {
+    				byte b = in.readByte();
+    				if (b == RUN) {
+    					run = in.readInt() - 1;
+    				} else {
+    					last = DataTypeManager.getCanonicalValue(readString(in, cache, b));
+    				}
+    			}
+    			batch.get(i).set(col, last);
+    		}
+    	}
+    }
 
     private static class NullColumnSerializer1 extends ColumnSerializer {
     	@Override
@@ -540,6 +630,106 @@ public class BatchSerializer {
         }
     }
 
+    /**
+     * Writes the non-null values of a fixed width column as a single array
+     * rather than value by value.
+     */
+    private static abstract class PrimitiveColumnSerializer4 extends ColumnSerializer {
+    	private int width;
+    	
+    	PrimitiveColumnSerializer4(int width) {
+    		this.width = width;
+		}
+    	
+    	@Override
+    	public void writeColumn(ObjectOutput out, int col,
+    			List<? extends List<?>> batch, Map<Object, Integer> cache)
+    			throws IOException {
+    		writeIsNullData(out, col, batch);
+    		int count = 0;
+    		for (int i = 0; i < batch.size(); i++) {
+    			if (batch.get(i).get(col) != null) {
+    				count++;
+    			}
+    		}
+    		ByteBuffer buffer = ByteBuffer.allocate(count * width);
+    		for (int i = 0; i < batch.size(); i++) {
+    			Object obj = batch.get(i).get(col);
+    			if (obj != null) {
+    				put(buffer, obj);
+    			}
+    		}
+    		out.write(buffer.array());
+    	}
+    	
+    	@Override
+    	public void readColumn(ObjectInput in, int col,
+    			List<List<Object>> batch, byte[] isNull, List<Object> cache)
+    			throws IOException, ClassNotFoundException {
+    		readIsNullData(in, isNull);
+    		int count = 0;
+    		for (int i = 0; i < batch.size(); i++) {
+    			if (!isNullObject(isNull, i)) {
+    				count++;
+    			}
+    		}
+    		byte[] bytes = new byte[count * width];
+    		in.readFully(bytes);
+    		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    		for (int i = 0; i < batch.size(); i++) {
+    			if (!isNullObject(isNull, i)) {
+    				batch.get(i).set(col, DataTypeManager.getCanonicalValue(get(buffer)));
+    			}
+    		}
+    	}
+    	
+    	protected abstract void put(ByteBuffer buffer, Object obj);
+    	
+    	protected abstract Object get(ByteBuffer buffer);
+    }
+    
+    private static class IntColumnSerializer4 extends PrimitiveColumnSerializer4 {
+    	IntColumnSerializer4() {
+    		super(4);
+		}
+    	@Override
+    	protected void put(ByteBuffer buffer, Object obj) {
+    		buffer.putInt(((Integer)obj).intValue());
+    	}
+    	@Override
+    	protected Object get(ByteBuffer buffer) {
+    		return Integer.valueOf(buffer.getInt());
+    	}
+    }
+    
+    private static class LongColumnSerializer4 extends PrimitiveColumnSerializer4 {
+    	LongColumnSerializer4() {
+    		super(8);
+    	}
+    	@Override
+    	protected void put(ByteBuffer buffer, Object obj) {
+    		buffer.putLong(((Long)obj).longValue());
+    	}
+    	@Override
+    	protected Object get(ByteBuffer buffer) {
+    		return Long.valueOf(buffer.getLong());
+    	}
+    }
+    
+    private static class DoubleColumnSerializer4 extends PrimitiveColumnSerializer4 {
+    	DoubleColumnSerializer4() {
+    		super(8);
+    	}
+    	@Override
+    	protected void put(ByteBuffer buffer, Object obj) {
+    		buffer.putDouble(((Double)obj).doubleValue());
+    	}
+    	@Override
+    	protected Object get(ByteBuffer buffer) {
+    		return Double.valueOf(buffer.getDouble());
+    	}
+    }
+
     private static class LongColumnSerializer extends ColumnSerializer {
         @Override
 		protected void writeObject(ObjectOutput out, Object obj, Map<Object, Integer> cache) throws IOException {
@@ -817,6 +1007,15 @@ public class BatchSerializer {
     }
 
     public static void writeBatch(ObjectOutput out, String[] types, List<? extends List<?>> batch, byte version) throws IOException {
+    	writeBatch(out, types, batch, version, false);
+    }
+
+    /**
+     * Write the batch with the given serialization version.
+     * @param compress if true and the version supports it, the column data will be 
+     * deflated as a single block.  Batches with lob, object, or array columns are not compressed.
+     */
+    public static void writeBatch(ObjectOutput out, String[] types, List<? extends List<?>> batch, byte version, boolean compress) throws IOException {
         if (batch == null) {
             out.writeInt(-1);
         } else {
@@ -829,32 +1028,122 @@ public class BatchSerializer {
             if (batch.size() > 0) {
 	            int columns = types.length;
 	            out.writeInt(columns);
-	            Map<Object, Integer> cache = null;
-	            for(int i = 0; i < columns; i++) {
-	            	ColumnSerializer serializer = getSerializer(types[i], version);
-	            	
-	            	if (cache == null && serializer.usesCache(version)) {
-	            		cache = new HashMap<Object, Integer>();
+	            if (version >= COLUMNAR_VERSION) {
+	            	if (compress && isCompressible(types)) {
+	            		writeCompressedColumns(out, types, batch, version);
+	            		return;
 	            	}
-	                try {
-	                    serializer.writeColumn(out, i, batch, cache);
-	                } catch (ClassCastException e) {
-	                    Object obj = null;
-	                    String objectClass = null;
-	                    objectSearch: for (int row = 0; row < batch.size(); row++) {
-	                        obj = batch.get(row).get(i);
-	                        if (obj != null) {
-	                            objectClass = obj.getClass().getName();
-	                            break objectSearch;
-	                        }
-	                    }
-	                     throw new TeiidRuntimeException(JDBCPlugin.Event.TEIID20001, e, JDBCPlugin.Util.gs(JDBCPlugin.Event.TEIID20001, new Object[] {types[i], new Integer(i), objectClass}));
-	                }
+	            	out.writeByte(UNCOMPRESSED);
 	            }
+	            writeColumns(out, types, batch, version);
             }
         }
     }
 
+	private static void writeColumns(ObjectOutput out, String[] types,
+			List<? extends List<?>> batch, byte version) throws IOException {
+		Map<Object, Integer> cache = null;
+		for(int i = 0; i < types.length; i++) {
+			ColumnSerializer serializer = getSerializer(types[i], version);
+			
+			if (cache == null && serializer.usesCache(version)) {
+				cache = new HashMap<Object, Integer>();
+			}
+		    try {
+		        serializer.writeColumn(out, i, batch, cache);
+		    } catch (ClassCastException e) {
+		        Object obj = null;
+		        String objectClass = null;
+		        objectSearch: for (int row = 0; row < batch.size(); row++) {
+		            obj = batch.get(row).get(i);
+		            if (obj != null) {
+		                objectClass = obj.getClass().getName();
+		                break objectSearch;
+		            }
+		        }
+		         throw new TeiidRuntimeException(JDBCPlugin.Event.TEIID20001, e, JDBCPlugin.Util.gs(JDBCPlugin.Event.TEIID20001, new Object[] {types[i], new Integer(i), objectClass}));
+		    }
+		}
+	}
+	
+	/**
+	 * Lob values are written as stream references by the outer stream and 
+	 * objects/arrays may contain them, so they are excluded from compression.
+	 */
+	static boolean isCompressible(String[] types) {
+		for (String type : types) {
+			if (!serializers.containsKey(type) 
+					|| DataTypeManager.DefaultDataTypes.CLOB.equals(type)
+					|| DataTypeManager.DefaultDataTypes.BLOB.equals(type)
+					|| DataTypeManager.DefaultDataTypes.XML.equals(type)
+					|| DataTypeManager.DefaultDataTypes.OBJECT.equals(type)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void writeCompressedColumns(ObjectOutput out, String[] types,
+			List<? extends List<?>> batch, byte version) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(1 << 13);
+		CompactObjectOutputStream oos = new CompactObjectOutputStream(baos);
+		writeColumns(oos, types, batch, version);
+		oos.close();
+		byte[] bytes = baos.toByteArray();
+		if (bytes.length >= MIN_COMPRESS_BYTES) {
+			Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+			try {
+				deflater.setInput(bytes);
+				deflater.finish();
+				byte[] compressed = new byte[bytes.length];
+				int length = 0;
+				while (!deflater.finished() && length < compressed.length) {
+					length += deflater.deflate(compressed, length, compressed.length - length);
+				}
+				if (deflater.finished() && length < bytes.length) {
+					out.writeByte(DEFLATED);
+					out.writeInt(bytes.length);
+					out.writeInt(length);
+					out.write(compressed, 0, length);
+					return;
+				}
+			} finally {
+				deflater.end();
+			}
+		}
+		out.writeByte(STORED);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static ObjectInput readCompressedColumns(ObjectInput in, byte compression) throws IOException {
+		int length = in.readInt();
+		byte[] bytes = new byte[length];
+		if (compression == DEFLATED) {
+			byte[] compressed = new byte[in.readInt()];
+			in.readFully(compressed);
+			Inflater inflater = new Inflater();
+			try {
+				inflater.setInput(compressed);
+				int read = 0;
+				while (read < length) {
+					int count = inflater.inflate(bytes, read, length - read);
+					if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+						throw new IOException("Truncated compressed batch"); //$NON-NLS-1$
+					}
+					read += count;
+				}
+			} catch (DataFormatException e) {
+				throw new IOException(e);
+			} finally {
+				inflater.end();
+			}
+		} else {
+			in.readFully(bytes);
+		}
+		return new CompactObjectInputStream(new ByteArrayInputStream(bytes), BatchSerializer.class.getClassLoader());
+	}
+
     public static List<List<Object>> readBatch(ObjectInput in, String[] types) throws IOException, ClassNotFoundException {
     	int rows = 0;
     	try {
@@ -888,6 +1177,12 @@ public class BatchSerializer {
             batch.add(currentRow, Arrays.asList(new Object[columns]));
         }
         byte[] isNullBuffer = new byte[(extraRows > 0) ? numBytes + 1: numBytes];
+        if (version >= COLUMNAR_VERSION) {
+        	byte compression = in.readByte();
+        	if (compression != UNCOMPRESSED) {
+        		in = readCompressedColumns(in, compression);
+        	}
+        }
         List<Object> cache = null;
         for (int col = 0; col < columns; col++) {
             ColumnSerializer serializer = getSerializer(types[col], version);
@@ -81,6 +81,8 @@ public class ResultsMessage implements Externalizable {
     private String debugLog;
     
     private byte clientSerializationVersion;
+    
+    private boolean compressResults;
         
     /** 
      * Query plan annotations, if OPTION SHOWPLAN or OPTION PLANONLY was used:
@@ -316,7 +318,7 @@ public class ResultsMessage implements Externalizable {
         if (delayDeserialization) {
         	BatchSerializer.writeBatch(out, dataTypes, null, clientSerializationVersion);
     	} else {
-        	BatchSerializer.writeBatch(out, dataTypes, results, clientSerializationVersion);
+        	BatchSerializer.writeBatch(out, dataTypes, results, clientSerializationVersion, compressResults);
     	}
         
         // Plan descriptions
@@ -365,7 +367,7 @@ public class ResultsMessage implements Externalizable {
 		if (serializationBuffer == null) {
 			serializationBuffer = new MultiArrayOutputStream(1 << 13);
 			CompactObjectOutputStream oos = new CompactObjectOutputStream(serializationBuffer);
-			BatchSerializer.writeBatch(oos, dataTypes, results, clientSerializationVersion);
+			BatchSerializer.writeBatch(oos, dataTypes, results, clientSerializationVersion, compressResults);
 			oos.close();
 		}
 		int result = serializationBuffer.getCount();
@@ -431,6 +433,18 @@ public class ResultsMessage implements Externalizable {
 		this.clientSerializationVersion = clientSerializationVersion;
 	}
 	
+	public boolean isCompressResults() {
+		return compressResults;
+	}
+	
+	/**
+	 * If the client serialization version allows, deflate the result data. 
+	 * @param compressResults
+	 */
+	public void setCompressResults(boolean compressResults) {
+		this.compressResults = compressResults;
+	}
+	
 	public void setUpdateCount(int updateCount) {
 		this.updateCount = updateCount;
 	}
@@ -117,6 +117,14 @@ public interface ExecutionProperties {
     
     public static final String JDBC4COLUMNNAMEANDLABELSEMANTICS = "useJDBC4ColumnNameAndLabelSemantics"; //$NON-NLS-1$
     
+    /**
+     * The number of batches a result set will request ahead of the batch being read.
+     * Forward only result sets default to 1, scrollable result sets default to 0.
+     * Set to 0 to disable prefetching.
+     * @since 8.10
+     */
+    public static final String PROP_PREFETCH_BATCHES = "prefetchBatches"; //$NON-NLS-1$
+    
     
 }
     
\ No newline at end of file
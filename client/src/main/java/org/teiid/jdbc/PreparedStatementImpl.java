@@ -256,6 +256,22 @@ public class PreparedStatementImpl extends StatementImpl implements TeiidPrepare
 	   	return this.updateCounts;
     }
 
+    /**
+     * Submit the current batch for non-blocking execution.  The batch is cleared
+     * once submitted and the update counts are available after the future completes.
+     */
+    public ResultsFuture<Boolean> submitExecuteBatch() throws SQLException {
+    	if (batchParameterList == null || batchParameterList.isEmpty()) {
+    		this.updateCounts = new int[0];
+    		return booleanFuture(false);
+    	}
+    	try {
+    		return executeSql(new String[] {this.prepareSql}, true, ResultsMode.UPDATECOUNT, false, null);
+    	} finally {
+    		batchParameterList.clear();
+    	}
+    }
+
 	@Override
     public ResultSetImpl executeQuery() throws SQLException {
         executeSql(new String[] {this.prepareSql}, false, ResultsMode.RESULTSET, true, null, autoGeneratedKeys);
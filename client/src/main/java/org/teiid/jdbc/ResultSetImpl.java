@@ -28,6 +28,7 @@ import java.io.Reader;
 import java.math.BigDecimal;
 import java.net.URL;
 import java.sql.*;
+import java.util.ArrayDeque;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
@@ -99,13 +100,16 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
 	private ResultsFuture<ResultsMessage> asynchResults;
     boolean asynch;
     
-    private ResultsFuture<ResultsMessage> prefetch;
-    private boolean usePrefetch;
+    //pending and completed batch requests ahead of the cursor, the server only allows the last to be outstanding
+    private ArrayDeque<ResultsFuture<ResultsMessage>> prefetch = new ArrayDeque<ResultsFuture<ResultsMessage>>(2);
+    private int prefetchBatches;
 
 	private int skipTo;
 	
 	private static boolean DISABLE_FETCH_SIZE_DEFAULT = PropertiesUtils.getBooleanProperty(System.getProperties(), "org.teiid." + DISABLE_FETCH_SIZE, false); //$NON-NLS-1$
 	
+	private static int PREFETCH_BATCHES_DEFAULT = PropertiesUtils.getIntProperty(System.getProperties(), "org.teiid." + ExecutionProperties.PROP_PREFETCH_BATCHES, 1); //$NON-NLS-1$
+	
 	private Boolean disableFetchSize;
 
 	/**
@@ -146,11 +150,33 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
 		if (logger.isLoggable(Level.FINER)) {
 			logger.finer("Creating ResultSet requestID: " + requestID + " beginRow: " + resultsMsg.getFirstRow() + " resultsColumns: " + resultColumns + " parameters: " + parameters); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
 		}
-		this.usePrefetch = cursorType == ResultSet.TYPE_FORWARD_ONLY && !statement.useCallingThread();
+		if (!statement.useCallingThread()) {
+			this.prefetchBatches = getPrefetchBatches();
+		}
 		this.maxRows = statement.getMaxRows();
 		this.batchResults = new BatchResults(this, getCurrentBatch(resultsMsg), this.cursorType == ResultSet.TYPE_FORWARD_ONLY ? 1 : BatchResults.DEFAULT_SAVED_BATCHES);
 	}
 	
+	/**
+	 * Forward only results prefetch by default.  Scrollable results only prefetch
+	 * if requested, since positioning away from the prefetched rows must first wait
+	 * for the outstanding request.
+	 */
+	private int getPrefetchBatches() throws SQLException {
+		String value = statement.getExecutionProperty(ExecutionProperties.PROP_PREFETCH_BATCHES);
+		if (value == null) {
+			if (this.cursorType == ResultSet.TYPE_FORWARD_ONLY) {
+				return Math.max(0, PREFETCH_BATCHES_DEFAULT);
+			}
+			return 0;
+		}
+		try {
+			return Math.max(0, Integer.parseInt(value.trim()));
+		} catch (NumberFormatException e) {
+			throw TeiidSQLException.create(e);
+		}
+	}
+	
 	public void setMaxFieldSize(int maxFieldSize) {
 		this.maxFieldSize = maxFieldSize;
 	}
@@ -251,6 +277,9 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
 
     public boolean next() throws SQLException {
         checkClosed();
+        if (prefetch.size() < prefetchBatches && !prefetch.isEmpty()) {
+        	prefetch(null);
+        }
         if (hasNext()) {
     		return batchResults.next();
     	}
@@ -366,14 +395,15 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
     public Batch requestBatch(int beginRow) throws SQLException{
     	checkClosed();
         try {
-        	if (prefetch != null) {
-    			//TODO: this is not efficient if the user is skipping around the results
-    			//but the server logic at this point basically requires us
-    			//to read what we have requested before requesting more (no queuing)
-    			ResultsMessage result = getResults(prefetch);
-    			prefetch = null;
-    			Batch nextBatch = processBatch(result);
-				return nextBatch;
+        	int requestRow = getRequestRow(beginRow);
+        	while (!prefetch.isEmpty()) {
+    			//the server logic requires us to read what we have requested 
+        		//before requesting more, so positioning away from the prefetched
+        		//rows will wait for the outstanding request
+    			ResultsMessage result = getResults(prefetch.poll());
+    			if (result.getException() != null || containsRow(result, requestRow)) {
+    				return processBatch(result);
+    			}
         	}
         	ResultsFuture<ResultsMessage> results = submitRequestBatch(beginRow);
         	if (asynch && !results.isDone()) {
@@ -393,11 +423,23 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
 		}
     }
 
-	private ResultsFuture<ResultsMessage> submitRequestBatch(int beginRow)
-			throws TeiidSQLException {
+	private static boolean containsRow(ResultsMessage result, int row) {
+		if (row < result.getFirstRow()) {
+			return false;
+		}
+		return row <= result.getLastRow() || (result.getFinalRow() != -1 && result.getLastRow() >= result.getFinalRow()); 
+	}
+	
+	private int getRequestRow(int beginRow) {
 		if (beginRow > maxRows && skipTo > 0) {
-			beginRow = skipTo;
+			return skipTo;
 		}
+		return beginRow;
+	}
+
+	private ResultsFuture<ResultsMessage> submitRequestBatch(int beginRow)
+			throws TeiidSQLException {
+		beginRow = getRequestRow(beginRow);
 		ResultsFuture<ResultsMessage> results;
 		if (asynch) {
 			synchronized (this) {
@@ -442,11 +484,8 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
 
 	private Batch getCurrentBatch(ResultsMessage currentResultMsg) throws TeiidSQLException {
 		this.updatedPlanDescription = currentResultMsg.getPlanDescription();
-		if (usePrefetch && !asynch 
-				&& prefetch == null && currentResultMsg.getLastRow() != currentResultMsg.getFinalRow()) {
-			//fetch before processing the results
-			prefetch = submitRequestBatch(currentResultMsg.getLastRow() + 1);
-		}
+		//fetch before processing the results
+		prefetch(currentResultMsg);
 		currentResultMsg.processResults();
 		List<?> lastTuple = null;
 		List<List<?>> resultsList = (List<List<?>>) currentResultMsg.getResultsList();
@@ -1766,8 +1805,37 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
 		return DataTypeTransformer.transform(getObject(columnLabel), type);
 	}
 	
+	/**
+	 * Request batches following the last prefetched results, or the given results if 
+	 * nothing is prefetched, until there are prefetchBatches requests.  A new request 
+	 * is not made until the previous has completed.
+	 */
+	private void prefetch(ResultsMessage lastResults) throws TeiidSQLException {
+		while (!asynch && prefetch.size() < prefetchBatches) {
+			ResultsFuture<ResultsMessage> last = prefetch.peekLast();
+			if (last != null) {
+				if (!last.isDone()) {
+					return;
+				}
+				try {
+					lastResults = last.get();
+				} catch (InterruptedException e) {
+					throw TeiidSQLException.create(e);
+				} catch (ExecutionException e) {
+					//will be thrown when the batch is requested
+					return;
+				}
+			}
+			if (lastResults == null || lastResults.getException() != null 
+					|| lastResults.getLastRow() == lastResults.getFinalRow()) {
+				return;
+			}
+			prefetch.add(submitRequestBatch(lastResults.getLastRow() + 1));
+		}
+	}
+
 	ResultsFuture<ResultsMessage> getPrefetch() {
-		return prefetch;
+		return prefetch.peekFirst();
 	}
 
 }
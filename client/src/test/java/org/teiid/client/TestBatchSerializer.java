@@ -49,11 +49,15 @@ import org.teiid.query.unittest.TimestampUtil;
 public class TestBatchSerializer {
 
     private static void helpTestSerialization(String[] types, List<?>[] batch, byte version) throws IOException, ClassNotFoundException {
+    	helpTestSerialization(types, batch, version, false);
+    }
+
+    private static int helpTestSerialization(String[] types, List<?>[] batch, byte version, boolean compress) throws IOException, ClassNotFoundException {
         ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
         ObjectOutputStream out = new ObjectOutputStream(byteStream);
         List<List<?>> batchList = Arrays.asList(batch);
         
-        BatchSerializer.writeBatch(out, types, batchList, version);
+        BatchSerializer.writeBatch(out, types, batchList, version, compress);
         out.flush();
         
         byte[] bytes = byteStream.toByteArray();
@@ -65,6 +69,7 @@ public class TestBatchSerializer {
         in.close();
 
         assertTrue(batchList.equals(newBatch));
+        return bytes.length;
     }
     
     private static final String[] sampleBatchTypes = {DataTypeManager.DefaultDataTypes.BIG_DECIMAL,
@@ -131,6 +136,50 @@ public class TestBatchSerializer {
         helpTestSerialization(sampleBatchTypes, sampleBatchWithNulls(4096), BatchSerializer.CURRENT_VERSION); // A bunch of rows. This should also test large strings
     }
     
+    @Test public void testSerializeBasicTypesVersion3() throws Exception {
+        helpTestSerialization(sampleBatchTypes, sampleBatchWithNulls(17), (byte)3);
+        helpTestSerialization(sampleBatchTypes, sampleBatchWithNulls(833), (byte)3);
+    }
+    
+    @Test public void testSerializeBasicTypesCompressed() throws Exception {
+    	//object columns are not compressed
+    	String[] types = sampleBatchTypes.clone();
+    	types[14] = DataTypeManager.DefaultDataTypes.TIMESTAMP;
+    	assertTrue(BatchSerializer.isCompressible(types));
+        helpTestSerialization(types, sampleBatchWithNulls(1), BatchSerializer.CURRENT_VERSION, true);
+        helpTestSerialization(types, sampleBatchWithNulls(17), BatchSerializer.CURRENT_VERSION, true);
+        helpTestSerialization(types, sampleBatchWithNulls(833), BatchSerializer.CURRENT_VERSION, true);
+    }
+    
+    @Test public void testRepeatedStrings() throws Exception {
+    	String[] types = {DataTypeManager.DefaultDataTypes.STRING, DataTypeManager.DefaultDataTypes.INTEGER, DataTypeManager.DefaultDataTypes.STRING};
+    	List<?>[] batch = new List[100];
+    	for (int i = 0; i < batch.length; i++) {
+    		batch[i] = Arrays.asList(i%7==0?null:"region-" + (i/10), i, (i%3==0)?"a":"some longer value");
+    	}
+    	int v3 = helpTestSerialization(types, batch, (byte)3, false);
+    	int v4 = helpTestSerialization(types, batch, BatchSerializer.CURRENT_VERSION, false);
+    	assertTrue(v4 < v3);
+    }
+    
+    @Test public void testCompression() throws Exception {
+    	String[] types = {DataTypeManager.DefaultDataTypes.LONG, DataTypeManager.DefaultDataTypes.DOUBLE, DataTypeManager.DefaultDataTypes.STRING};
+    	List<?>[] batch = new List[2048];
+    	for (int i = 0; i < batch.length; i++) {
+    		batch[i] = Arrays.asList((long)i, i%10 == 0?null:(double)(i%5), "value " + (i%3));
+    	}
+    	int uncompressed = helpTestSerialization(types, batch, BatchSerializer.CURRENT_VERSION, false);
+    	int compressed = helpTestSerialization(types, batch, BatchSerializer.CURRENT_VERSION, true);
+    	assertTrue(compressed < uncompressed/2);
+    }
+    
+    @Test public void testCompressionNotApplicable() throws Exception {
+    	assertFalse(BatchSerializer.isCompressible(new String[] {DataTypeManager.DefaultDataTypes.INTEGER, DataTypeManager.DefaultDataTypes.CLOB}));
+    	assertFalse(BatchSerializer.isCompressible(new String[] {"string[]"}));
+    	assertFalse(BatchSerializer.isCompressible(sampleBatchTypes));
+    	helpTestSerialization(new String[] {DataTypeManager.DefaultDataTypes.LONG,  "string[]"}, new List[] {Arrays.asList(1l, new ArrayImpl(new String[] {"a", "b"}))}, BatchSerializer.CURRENT_VERSION, true);
+    }
+    
     @Test public void testSerializeLargeStrings() throws Exception {
         List<?> row = Arrays.asList(new Object[] {sampleString(66666)});
         helpTestSerialization(new String[] {DataTypeManager.DefaultDataTypes.STRING}, new List[] {row}, BatchSerializer.CURRENT_VERSION);
@@ -703,6 +703,50 @@ public class TestResultSet {
         cs.close();      
     }
     
+    @Test public void testForwardOnlyPrefetchBatches() throws Exception {
+    	StatementImpl statement = createMockStatement(ResultSet.TYPE_FORWARD_ONLY);
+    	stub(statement.getExecutionProperty(ExecutionProperties.PROP_PREFETCH_BATCHES)).toReturn("3");
+    	ResultSetImpl cs = TestAllResultsImpl.helpTestBatching(statement, 100, 100, 1000);
+    	//the mock results are immediately available, so the full depth is requested
+    	Mockito.verify(statement.getDQP(), Mockito.times(1)).processCursorRequest(TestAllResultsImpl.REQUEST_ID, 301, 100);
+    	Mockito.verify(statement.getDQP(), Mockito.never()).processCursorRequest(TestAllResultsImpl.REQUEST_ID, 401, 100);
+    	int i = 0;
+    	while (cs.next()) {
+    		assertEquals(++i, cs.getInt(1));
+    	}
+    	assertEquals(1000, i);
+    	assertNull(cs.getPrefetch());
+    	Mockito.verify(statement.getDQP(), Mockito.times(1)).processCursorRequest(TestAllResultsImpl.REQUEST_ID, 901, 100);
+    	cs.close();
+    }
+    
+    @Test public void testScrollingPrefetchBatches() throws Exception {
+    	StatementImpl statement = createMockStatement(ResultSet.TYPE_SCROLL_INSENSITIVE);
+    	stub(statement.getExecutionProperty(ExecutionProperties.PROP_PREFETCH_BATCHES)).toReturn("2");
+    	ResultSetImpl cs = TestAllResultsImpl.helpTestBatching(statement, 100, 100, 1000);
+    	assertNotNull(cs.getPrefetch());
+    	//positioning past the prefetched rows discards them
+    	assertTrue(cs.absolute(550));
+    	assertEquals(550, cs.getInt(1));
+    	Mockito.verify(statement.getDQP(), Mockito.times(1)).processCursorRequest(TestAllResultsImpl.REQUEST_ID, 550, 100);
+    	assertTrue(cs.absolute(10));
+    	assertEquals(10, cs.getInt(1));
+    	assertTrue(cs.absolute(700));
+    	assertEquals(700, cs.getInt(1));
+    	Mockito.verify(statement.getDQP(), Mockito.never()).processCursorRequest(TestAllResultsImpl.REQUEST_ID, 700, 100);
+    	assertTrue(cs.previous());
+    	assertEquals(699, cs.getInt(1));
+    	assertTrue(cs.last());
+    	assertEquals(1000, cs.getInt(1));
+    	cs.close();
+    }
+    
+    @Test public void testScrollingNoPrefetchByDefault() throws Exception {
+    	ResultSetImpl cs = helpExecuteQuery(100, 1000, ResultSet.TYPE_SCROLL_INSENSITIVE);
+    	assertNull(cs.getPrefetch());
+    	cs.close();
+    }
+    
     @Test public void testOutputParameter() throws Exception {
         StatementImpl statement = createMockStatement(ResultSet.TYPE_FORWARD_ONLY);
         ResultsMessage resultsMsg = new ResultsMessage();
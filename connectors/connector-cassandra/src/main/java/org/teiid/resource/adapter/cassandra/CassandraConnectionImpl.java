@@ -33,7 +33,9 @@ import com.datastax.driver.core.Cluster;
 import com.datastax.driver.core.KeyspaceMetadata;
 import com.datastax.driver.core.Metadata;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
 
 /**
  * Represents a connection to Cassandra database.
@@ -87,6 +89,11 @@ public class CassandraConnectionImpl extends BasicConnection implements Cassandr
 	public ResultSet executeQuery(String query){
 		return session.execute(query);
 	}
+	
+	@Override
+	public ResultSetFuture executeQueryAsync(Statement statement) {
+		return session.executeAsync(statement);
+	}
 
 	@Override
 	public KeyspaceMetadata keyspaceInfo() throws ResourceException {
@@ -27,6 +27,8 @@ import javax.resource.cci.Connection;
 
 import com.datastax.driver.core.KeyspaceMetadata;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Statement;
 
 /**
  * Connection to Cassandra NoSql database.
@@ -38,6 +40,11 @@ public interface CassandraConnection extends Connection{
 	 * */
 	public ResultSet executeQuery(String query);
 	
+	/**
+	 * Executes a CQL statement asynchronously.  Paging is controlled by the statement fetch size.
+	 */
+	public ResultSetFuture executeQueryAsync(Statement statement);
+	
 	/**
 	 * Returns metadata about Cassandra keyspace (column families, columns metadata etc.)
 	 * @throws KeyspaceNotDefinedException 
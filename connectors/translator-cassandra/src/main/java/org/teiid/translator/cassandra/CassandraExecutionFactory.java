@@ -46,6 +46,9 @@ public class CassandraExecutionFactory extends ExecutionFactory<ConnectionFactor
 		TEIID22000
 	}
 	
+	private boolean prefetchPages = true;
+	private int tokenRangeSplits = 1;
+	
 	@Override
 	public void start() throws TranslatorException {
 		super.start();
@@ -56,7 +59,10 @@ public class CassandraExecutionFactory extends ExecutionFactory<ConnectionFactor
 	public ResultSetExecution createResultSetExecution(QueryExpression command,
 			ExecutionContext executionContext, RuntimeMetadata metadata,
 			CassandraConnection connection) throws TranslatorException {
-		return new CassandraQueryExecution(command, connection, executionContext);
+		CassandraQueryExecution execution = new CassandraQueryExecution(command, connection, executionContext);
+		execution.setPrefetchPages(this.prefetchPages);
+		execution.setTokenRangeSplits(this.tokenRangeSplits);
+		return execution;
 	}
 
 	@Override
@@ -72,7 +78,9 @@ public class CassandraExecutionFactory extends ExecutionFactory<ConnectionFactor
 			CassandraConnection connection) throws TranslatorException {
 		String nativeQuery = command.getMetadataObject().getProperty(SQLStringVisitor.TEIID_NATIVE_QUERY, false);
 		if (nativeQuery != null) {
-			return new CassandraDirectQueryExecution(nativeQuery, command.getArguments(), command, connection, executionContext, false);
+			CassandraDirectQueryExecution execution = new CassandraDirectQueryExecution(nativeQuery, command.getArguments(), command, connection, executionContext, false);
+			execution.setPrefetchPages(this.prefetchPages);
+			return execution;
 		}
 		throw new TranslatorException("Missing native-query extension metadata."); //$NON-NLS-1$
 	}
@@ -82,7 +90,9 @@ public class CassandraExecutionFactory extends ExecutionFactory<ConnectionFactor
 			Command command, ExecutionContext executionContext,
 			RuntimeMetadata metadata, CassandraConnection connection)
 			throws TranslatorException {
-		return new CassandraDirectQueryExecution((String) arguments.get(0).getArgumentValue().getValue(), arguments.subList(1, arguments.size()), command, connection, executionContext, true);
+		CassandraDirectQueryExecution execution = new CassandraDirectQueryExecution((String) arguments.get(0).getArgumentValue().getValue(), arguments.subList(1, arguments.size()), command, connection, executionContext, true);
+		execution.setPrefetchPages(this.prefetchPages);
+		return execution;
 	}
 	
 	@Override
@@ -90,6 +100,24 @@ public class CassandraExecutionFactory extends ExecutionFactory<ConnectionFactor
 	    return new CassandraMetadataProcessor();
 	}
 
+	@TranslatorProperty(display="Prefetch Pages", description="Request the next page of results from Cassandra while the current page is being read", advanced=true)
+	public boolean isPrefetchPages() {
+		return prefetchPages;
+	}
+	
+	public void setPrefetchPages(boolean prefetchPages) {
+		this.prefetchPages = prefetchPages;
+	}
+	
+	@TranslatorProperty(display="Token Range Splits", description="The number of token range queries to issue in parallel for an unrestricted table scan.  The ranges assume the default Murmur3Partitioner.  Values less than 2 disable splitting.", advanced=true)
+	public int getTokenRangeSplits() {
+		return tokenRangeSplits;
+	}
+	
+	public void setTokenRangeSplits(int tokenRangeSplits) {
+		this.tokenRangeSplits = tokenRangeSplits;
+	}
+
 	@Override
 	public boolean supportsOrderBy() {
 		// Order by is allowed in very restrictive case when this is used as 
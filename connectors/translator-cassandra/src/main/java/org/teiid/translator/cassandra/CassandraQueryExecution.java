@@ -25,9 +25,22 @@ package org.teiid.translator.cassandra;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
+import javax.resource.ResourceException;
+
+import org.teiid.language.AggregateFunction;
 import org.teiid.language.Command;
+import org.teiid.language.DerivedColumn;
+import org.teiid.language.NamedTable;
+import org.teiid.language.Select;
+import org.teiid.language.visitor.SQLStringVisitor;
 import org.teiid.logging.LogConstants;
 import org.teiid.logging.LogManager;
 import org.teiid.translator.DataNotAvailableException;
@@ -35,8 +48,15 @@ import org.teiid.translator.ExecutionContext;
 import org.teiid.translator.ResultSetExecution;
 import org.teiid.translator.TranslatorException;
 
+import com.datastax.driver.core.ColumnMetadata;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.TableMetadata;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
 public class CassandraQueryExecution implements ResultSetExecution {
 
@@ -45,6 +65,12 @@ public class CassandraQueryExecution implements ResultSetExecution {
 	private ResultSet resultSet = null;
 	private ExecutionContext executionContext;
 	protected boolean returnsArray;
+	private boolean prefetchPages;
+	private int tokenRangeSplits;
+	//queries that have been issued, but not yet read
+	private LinkedList<ResultSetFuture> pending = new LinkedList<ResultSetFuture>();
+	private ListenableFuture<?> fetch;
+	private Set<Future<?>> listening = new HashSet<Future<?>>();
 	
 	public CassandraQueryExecution(Command query, CassandraConnection connection, ExecutionContext context){
 		this.query = query;
@@ -52,16 +78,34 @@ public class CassandraQueryExecution implements ResultSetExecution {
 		this.executionContext = context;
 	}
 
+	public void setPrefetchPages(boolean prefetchPages) {
+		this.prefetchPages = prefetchPages;
+	}
+	
+	public void setTokenRangeSplits(int tokenRangeSplits) {
+		this.tokenRangeSplits = tokenRangeSplits;
+	}
+
 	@Override
 	public void close() {
 		LogManager.logDetail(LogConstants.CTX_CONNECTOR, CassandraExecutionFactory.UTIL.getString("close_query")); //$NON-NLS-1$
-		
+		cancelPending();
 	}
 
 	@Override
 	public void cancel() throws TranslatorException {
 		LogManager.logDetail(LogConstants.CTX_CONNECTOR, CassandraExecutionFactory.UTIL.getString("cancel_query")); //$NON-NLS-1$
-		
+		cancelPending();
+	}
+
+	private void cancelPending() {
+		for (ResultSetFuture future : pending) {
+			future.cancel(true);
+		}
+		pending.clear();
+		listening.clear();
+		resultSet = null;
+		fetch = null;
 	}
 
 	@Override
@@ -69,7 +113,84 @@ public class CassandraQueryExecution implements ResultSetExecution {
 		CassandraSQLVisitor visitor = new CassandraSQLVisitor();
 		visitor.translateSQL(query);
 		String cql = visitor.getTranslatedSQL();
-		execute(cql);
+		List<String> partitionKey = null;
+		if (tokenRangeSplits > 1) {
+			partitionKey = getScanPartitionKey();
+		}
+		if (partitionKey == null) {
+			executeAsync(cql);
+			return;
+		}
+		//issue the full scan as contiguous ranges over the Murmur3 token space (Long.MIN_VALUE, Long.MAX_VALUE]
+		StringBuilder token = new StringBuilder("token("); //$NON-NLS-1$
+		for (int i = 0; i < partitionKey.size(); i++) {
+			if (i > 0) {
+				token.append(", "); //$NON-NLS-1$
+			}
+			token.append(partitionKey.get(i));
+		}
+		token.append(")"); //$NON-NLS-1$
+		long start = Long.MIN_VALUE;
+		long step = (Long.MAX_VALUE / tokenRangeSplits) * 2;
+		for (int i = 0; i < tokenRangeSplits; i++) {
+			long end = (i == tokenRangeSplits - 1)?Long.MAX_VALUE:start + step;
+			executeAsync(cql + " WHERE " + token + " > " + start + " AND " + token + " <= " + end); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			start = end;
+		}
+	}
+	
+	/**
+	 * Get the quoted partition key columns if the query is an unrestricted scan
+	 * of a single table that can be split by token range.
+	 * @return the partition key or null if the query should not be split
+	 */
+	private List<String> getScanPartitionKey() throws TranslatorException {
+		if (!(query instanceof Select)) {
+			return null;
+		}
+		Select select = (Select)query;
+		if (select.getWhere() != null || select.getLimit() != null || select.getOrderBy() != null 
+				|| select.getFrom() == null || select.getFrom().size() != 1 || !(select.getFrom().get(0) instanceof NamedTable)) {
+			return null;
+		}
+		for (DerivedColumn col : select.getDerivedColumns()) {
+			if (col.getExpression() instanceof AggregateFunction) {
+				return null;
+			}
+		}
+		NamedTable table = (NamedTable)select.getFrom().get(0);
+		TableMetadata tableMetadata = null;
+		try {
+			tableMetadata = connection.keyspaceInfo().getTable(quote(SQLStringVisitor.getRecordName(table.getMetadataObject())));
+		} catch (ResourceException e) {
+			throw new TranslatorException(e);
+		}
+		if (tableMetadata == null || tableMetadata.getPartitionKey().isEmpty()) {
+			return null;
+		}
+		List<String> result = new ArrayList<String>(tableMetadata.getPartitionKey().size());
+		for (ColumnMetadata column : tableMetadata.getPartitionKey()) {
+			result.add(quote(column.getName()));
+		}
+		return result;
+	}
+	
+	static String quote(String name) {
+		if (name.matches("[a-z][a-z0-9_]*")) { //$NON-NLS-1$
+			return name;
+		}
+		return '"' + name.replace("\"", "\"\"") + '"'; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private void executeAsync(String cql) throws TranslatorException {
+		LogManager.logDetail(LogConstants.CTX_CONNECTOR, "Source-Query:", cql); //$NON-NLS-1$
+		Statement statement = new SimpleStatement(cql);
+		statement.setFetchSize(executionContext.getBatchSize());
+		try {
+			pending.add(connection.executeQueryAsync(statement));
+		} catch(Throwable t) {
+			throw new TranslatorException(t);
+		}
 	}
 
 	protected void execute(String cql) throws TranslatorException {
@@ -83,7 +204,90 @@ public class CassandraQueryExecution implements ResultSetExecution {
 
 	@Override
 	public List<?> next() throws TranslatorException, DataNotAvailableException {
-		return getRow(resultSet.one());
+		while (true) {
+			if (resultSet == null) {
+				if (pending.isEmpty()) {
+					return null;
+				}
+				resultSet = getCompleted();
+			}
+			int available = resultSet.getAvailableWithoutFetching();
+			if (available == 0) {
+				if (resultSet.isFullyFetched()) {
+					resultSet = null;
+					continue;
+				}
+				if (fetch == null) {
+					fetch = resultSet.fetchMoreResults();
+				}
+				if (fetch != null && !fetch.isDone()) {
+					waitFor(fetch);
+				}
+				clearFetch();
+			} else if (prefetchPages && fetch == null && available <= executionContext.getBatchSize()/2 && !resultSet.isFullyFetched()) {
+				//overlap the retrieval of the next page with the processing of this one
+				fetch = resultSet.fetchMoreResults();
+			} else if (fetch != null && fetch.isDone()) {
+				clearFetch();
+			}
+			Row row = resultSet.one();
+			if (row == null) {
+				//move on to the next range
+				resultSet = null;
+				clearFetch();
+				continue;
+			}
+			return getRow(row);
+		}
+	}
+	
+	/**
+	 * Get the result of a completed query, preferring whichever range has returned first
+	 */
+	private ResultSet getCompleted() throws TranslatorException, DataNotAvailableException {
+		for (Iterator<ResultSetFuture> iter = pending.iterator(); iter.hasNext();) {
+			ResultSetFuture future = iter.next();
+			if (!future.isDone()) {
+				continue;
+			}
+			iter.remove();
+			listening.remove(future);
+			try {
+				return future.get();
+			} catch (InterruptedException e) {
+				throw new TranslatorException(e);
+			} catch (ExecutionException e) {
+				throw new TranslatorException(e.getCause());
+			}
+		}
+		for (ResultSetFuture future : pending) {
+			addListener(future);
+		}
+		throw DataNotAvailableException.NO_POLLING;
+	}
+	
+	private void clearFetch() {
+		if (fetch != null) {
+			listening.remove(fetch);
+			fetch = null;
+		}
+	}
+	
+	private void waitFor(ListenableFuture<?> future) throws DataNotAvailableException {
+		addListener(future);
+		throw DataNotAvailableException.NO_POLLING;
+	}
+
+	private void addListener(ListenableFuture<?> future) {
+		if (!listening.add(future)) {
+			return;
+		}
+		future.addListener(new Runnable() {
+			@Override
+			public void run() {
+				executionContext.dataAvailable();
+			}
+		}, MoreExecutors.sameThreadExecutor());
 	}
 	
 	/**
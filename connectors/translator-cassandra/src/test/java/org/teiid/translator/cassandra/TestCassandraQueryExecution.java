@@ -0,0 +1,173 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.translator.cassandra;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.teiid.cdk.api.TranslationUtility;
+import org.teiid.language.QueryExpression;
+import org.teiid.metadata.RuntimeMetadata;
+import org.teiid.query.metadata.TransformationMetadata;
+import org.teiid.query.unittest.RealMetadataFactory;
+import org.teiid.translator.DataNotAvailableException;
+import org.teiid.translator.ExecutionContext;
+import org.teiid.translator.ResultSetExecution;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.TableMetadata;
+
+@SuppressWarnings("nls")
+public class TestCassandraQueryExecution {
+
+	private CassandraConnection connection = Mockito.mock(CassandraConnection.class);
+	private ExecutionContext ec = Mockito.mock(ExecutionContext.class);
+
+	private ResultSetExecution helpExecute(CassandraExecutionFactory cef, String sql) throws Exception {
+		TransformationMetadata metadata = RealMetadataFactory.fromDDL("create foreign table Person (id integer primary key, name string)", "x", "y");
+		TranslationUtility util = new TranslationUtility(metadata);
+		QueryExpression command = (QueryExpression)util.parseCommand(sql);
+		Mockito.stub(ec.getBatchSize()).toReturn(4);
+		ResultSetExecution execution = cef.createResultSetExecution(command, ec, Mockito.mock(RuntimeMetadata.class), connection);
+		execution.execute();
+		return execution;
+	}
+
+	private ResultSetFuture completed(ResultSet rs) throws Exception {
+		ResultSetFuture future = Mockito.mock(ResultSetFuture.class);
+		Mockito.stub(future.isDone()).toReturn(true);
+		Mockito.stub(future.get()).toReturn(rs);
+		return future;
+	}
+
+	private ResultSet resultSet(int available) {
+		ResultSet rs = Mockito.mock(ResultSet.class);
+		Row row = Mockito.mock(Row.class);
+		Mockito.stub(row.getColumnDefinitions()).toReturn(Mockito.mock(ColumnDefinitions.class));
+		Mockito.stub(rs.getAvailableWithoutFetching()).toReturn(available);
+		Mockito.stub(rs.isFullyFetched()).toReturn(true);
+		Mockito.stub(rs.one()).toReturn(row).toReturn(null);
+		return rs;
+	}
+
+	private List<String> getQueries(int count) {
+		ArgumentCaptor<Statement> captor = ArgumentCaptor.forClass(Statement.class);
+		Mockito.verify(connection, Mockito.times(count)).executeQueryAsync(captor.capture());
+		String[] result = new String[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = ((SimpleStatement)captor.getAllValues().get(i)).getQueryString();
+		}
+		return Arrays.asList(result);
+	}
+
+	@Test public void testFetchSize() throws Exception {
+		ResultSet rs = resultSet(1);
+		ResultSetFuture future = completed(rs);
+		Mockito.stub(connection.executeQueryAsync(Mockito.any(Statement.class))).toReturn(future);
+
+		ResultSetExecution execution = helpExecute(new CassandraExecutionFactory(), "select id, name from Person");
+
+		ArgumentCaptor<Statement> captor = ArgumentCaptor.forClass(Statement.class);
+		Mockito.verify(connection).executeQueryAsync(captor.capture());
+		assertEquals(4, captor.getValue().getFetchSize());
+		assertNotNull(execution.next());
+		assertNull(execution.next());
+	}
+
+	@Test public void testPrefetch() throws Exception {
+		ResultSet rs = resultSet(2);
+		Mockito.stub(rs.isFullyFetched()).toReturn(false);
+		ResultSetFuture future = completed(rs);
+		Mockito.stub(connection.executeQueryAsync(Mockito.any(Statement.class))).toReturn(future);
+
+		ResultSetExecution execution = helpExecute(new CassandraExecutionFactory(), "select id, name from Person");
+
+		assertNotNull(execution.next());
+		Mockito.verify(rs).fetchMoreResults();
+	}
+
+	@Test public void testNotAvailable() throws Exception {
+		ResultSetFuture future = Mockito.mock(ResultSetFuture.class);
+		Mockito.stub(connection.executeQueryAsync(Mockito.any(Statement.class))).toReturn(future);
+
+		ResultSetExecution execution = helpExecute(new CassandraExecutionFactory(), "select id, name from Person");
+
+		try {
+			execution.next();
+			fail();
+		} catch (DataNotAvailableException e) {
+			assertEquals(-1, e.getRetryDelay());
+		}
+		Mockito.verify(future).addListener(Mockito.any(Runnable.class), Mockito.any(Executor.class));
+	}
+
+	@Test public void testTokenRangeSplits() throws Exception {
+		ColumnMetadata id = Mockito.mock(ColumnMetadata.class);
+		Mockito.stub(id.getName()).toReturn("id");
+		TableMetadata table = Mockito.mock(TableMetadata.class);
+		Mockito.stub(table.getPartitionKey()).toReturn(Arrays.asList(id));
+		KeyspaceMetadata keyspace = Mockito.mock(KeyspaceMetadata.class);
+		Mockito.stub(keyspace.getTable("\"Person\"")).toReturn(table);
+		Mockito.stub(connection.keyspaceInfo()).toReturn(keyspace);
+
+		ResultSetFuture future = completed(resultSet(1));
+		ResultSetFuture future1 = completed(resultSet(1));
+		Mockito.stub(connection.executeQueryAsync(Mockito.any(Statement.class))).toReturn(future).toReturn(future1);
+
+		CassandraExecutionFactory cef = new CassandraExecutionFactory();
+		cef.setTokenRangeSplits(2);
+		ResultSetExecution execution = helpExecute(cef, "select id, name from Person");
+
+		assertEquals(Arrays.asList("SELECT id, name FROM Person WHERE token(id) > -9223372036854775808 AND token(id) <= -2",
+				"SELECT id, name FROM Person WHERE token(id) > -2 AND token(id) <= 9223372036854775807"), getQueries(2));
+		assertNotNull(execution.next());
+		assertNotNull(execution.next());
+		assertNull(execution.next());
+	}
+
+	@Test public void testNoTokenRangeSplitsWithCriteria() throws Exception {
+		ResultSetFuture future = completed(resultSet(1));
+		Mockito.stub(connection.executeQueryAsync(Mockito.any(Statement.class))).toReturn(future);
+
+		CassandraExecutionFactory cef = new CassandraExecutionFactory();
+		cef.setTokenRangeSplits(2);
+		helpExecute(cef, "select id, name from Person where id = 1");
+
+		assertEquals(Arrays.asList("SELECT id, name FROM Person WHERE id = 1"), getQueries(1));
+		Mockito.verify(connection, Mockito.never()).keyspaceInfo();
+	}
+
+}
@@ -44,6 +44,7 @@ import javax.resource.ResourceException;
 import org.apache.poi.hssf.usermodel.HSSFSheet;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DateUtil;
 import org.apache.poi.ss.usermodel.FormulaEvaluator;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
@@ -82,11 +83,20 @@ public class ExcelExecution implements ResultSetExecution {
 	private FormulaEvaluator evaluator;
 	private FileInputStream xlsFileStream;
 	private Class<?>[] expectedColumnTypes;
+	private boolean streaming;
+	private ExcelStreamingReader streamingReader;
 
 	public ExcelExecution(Select query, ExecutionContext executionContext,
 			RuntimeMetadata metadata, FileConnection connection)
 			throws TranslatorException {
+		this(query, executionContext, metadata, connection, false);
+	}
+	
+	public ExcelExecution(Select query, ExecutionContext executionContext,
+			RuntimeMetadata metadata, FileConnection connection, boolean streaming)
+			throws TranslatorException {
 
+		this.streaming = streaming;
 		this.executionContext = executionContext;
         this.metadata = metadata;
         this.connection = connection;
@@ -103,6 +113,10 @@ public class ExcelExecution implements ResultSetExecution {
     public void execute() throws TranslatorException {
     	try {
 			this.xlsFiles = FileConnection.Util.getFiles(this.visitor.getXlsPath(), this.connection, true);
+			if (this.streaming) {
+				this.streamingReader = ExcelStreamingReader.create(xlsFiles[fileCount.getAndIncrement()], this.visitor, this.expectedColumnTypes);
+				return;
+			}
 			this.rowIterator = readXLSFile(xlsFiles[fileCount.getAndIncrement()]);
 		} catch (ResourceException e) {
 			throw new TranslatorException(e);
@@ -148,6 +162,9 @@ public class ExcelExecution implements ResultSetExecution {
 
     @Override
     public List<?> next() throws TranslatorException, DataNotAvailableException {
+    	if (this.streaming) {
+    		return nextStreamingRow();
+    	}
         while (hasNext()) {
         	Row row = nextRow();
         	// when the first cell number is -1, then it is empty row, skip it
@@ -163,6 +180,22 @@ public class ExcelExecution implements ResultSetExecution {
         return null;
     }
     
+    private List<Object> nextStreamingRow() throws TranslatorException {
+    	while (this.streamingReader != null) {
+    		List<Object> row = this.streamingReader.nextRow();
+    		if (row != null) {
+    			return row;
+    		}
+    		this.streamingReader.close();
+    		this.streamingReader = null;
+    		File nextXlsFile = getNextXLSFile();
+    		if (nextXlsFile != null) {
+    			this.streamingReader = ExcelStreamingReader.create(nextXlsFile, this.visitor, this.expectedColumnTypes);
+    		}
+    	}
+    	return null;
+    }
+    
     private boolean hasNext() throws TranslatorException {
     	if (this.currentRow != null) {
     		return true;
@@ -186,11 +219,13 @@ public class ExcelExecution implements ResultSetExecution {
     
     private File getNextXLSFile() {
     	if (this.xlsFiles.length > this.fileCount.get()) {
-    		try {
-				this.xlsFileStream.close();
-			} catch (IOException e) {
-				// ignore
-			}
+    		if (this.xlsFileStream != null) {
+	    		try {
+					this.xlsFileStream.close();
+				} catch (IOException e) {
+					// ignore
+				}
+    		}
     		return this.xlsFiles[this.fileCount.getAndIncrement()];
     	}
     	return null;
@@ -262,20 +297,41 @@ public class ExcelExecution implements ResultSetExecution {
 		if (value == null) {
 			return null;
 		}
-
+		return convertFromExcelType(value, cell, false, expectedType);
+    }
+    
+    /**
+     * Convert a numeric value read without the workbook model, where dates 
+     * are determined by the workbook date windowing.
+     */
+    static Object convertFromExcelType(final Double value, boolean date1904, final Class<?> expectedType) throws TranslatorException {
+		if (value == null) {
+			return null;
+		}
+		return convertFromExcelType(value, null, date1904, expectedType);
+    }
+    
+    private static Date getDateValue(Double value, Cell cell, boolean date1904) {
+    	if (cell != null) {
+    		return cell.getDateCellValue();
+    	}
+    	return DateUtil.getJavaDate(value, date1904);
+    }
+    
+    private static Object convertFromExcelType(final Double value, Cell cell, boolean date1904, final Class<?> expectedType) throws TranslatorException {
 		if (expectedType.isAssignableFrom(Double.class)) {
 			return value;
 		}
 		else if (expectedType.isAssignableFrom(Timestamp.class)) {
-			Date date = cell.getDateCellValue();
+			Date date = getDateValue(value, cell, date1904);
 			return new Timestamp(date.getTime());
 		}
 		else if (expectedType.isAssignableFrom(java.sql.Date.class)) {
-			Date date = cell.getDateCellValue();
+			Date date = getDateValue(value, cell, date1904);
 			return new java.sql.Date(date.getTime());
 		}
 		else if (expectedType.isAssignableFrom(java.sql.Time.class)) {
-			Date date = cell.getDateCellValue();
+			Date date = getDateValue(value, cell, date1904);
 			Calendar calendar = Calendar.getInstance();
 			calendar.setTime(date);
 			StringBuilder sb = new StringBuilder();
@@ -343,6 +399,10 @@ public class ExcelExecution implements ResultSetExecution {
     
     @Override
     public void close() {
+    	if (this.streamingReader != null) {
+    		this.streamingReader.close();
+    		this.streamingReader = null;
+    	}
     	if (this.xlsFileStream != null) {
 	    	try {
 				this.xlsFileStream.close();
@@ -31,6 +31,8 @@ import org.teiid.translator.*;
 
 @Translator(name="excel", description="Excel file translator")
 public class ExcelExecutionFactory extends ExecutionFactory<ConnectionFactory, FileConnection> {
+	
+	private boolean streaming;
 
 	public ExcelExecutionFactory() {
 		setSourceRequiredForMetadata(true);
@@ -44,8 +46,17 @@ public class ExcelExecutionFactory extends ExecutionFactory<ConnectionFactory, F
     @Override
     public ResultSetExecution createResultSetExecution(QueryExpression command, ExecutionContext executionContext, RuntimeMetadata metadata, FileConnection connection)
     		throws TranslatorException {
-    	return new ExcelExecution((Select)command, executionContext, metadata, connection);
+    	return new ExcelExecution((Select)command, executionContext, metadata, connection, this.streaming);
     }    
+    
+    @TranslatorProperty(display="Streaming", description="Read rows as the file is parsed rather than loading the whole workbook. Formulas are not evaluated, the value cached in the file is used instead.", advanced=true)
+    public boolean isStreaming() {
+		return streaming;
+	}
+    
+    public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
     	
     @Override
     public MetadataProcessor<FileConnection> getMetadataProcessor(){
@@ -53,6 +53,10 @@ public class ExcelQueryVisitor extends HierarchyVisitor {
 	
 	static interface Filter {
 		public boolean allows (int row);
+		/**
+		 * @return the last row that may be allowed
+		 */
+		public int getLastRow();
 	}
 	
 	static class InFilter implements Filter {
@@ -70,6 +74,15 @@ public class ExcelQueryVisitor extends HierarchyVisitor {
 			}
 			return false;
 		}
+		
+		@Override
+		public int getLastRow() {
+			int last = -1;
+			for (int i = 0; i < values.length; i++) {
+				last = Math.max(last, values[i]);
+			}
+			return last;
+		}
 	}
 	
 	static class CompareFilter implements Filter {
@@ -98,6 +111,18 @@ public class ExcelQueryVisitor extends HierarchyVisitor {
 	        }	
 	    	return false;
 		}
+		
+		@Override
+		public int getLastRow() {
+			switch(op) {
+			case EQ:
+			case LE:
+				return start;
+			case LT:
+				return start - 1;
+			}
+			return Integer.MAX_VALUE;
+		}
 	}
 	
 	private ArrayList<ExcelQueryVisitor.Filter> filters = new ArrayList<ExcelQueryVisitor.Filter>();
@@ -253,6 +278,17 @@ public class ExcelQueryVisitor extends HierarchyVisitor {
 		return false;
 	}
 	
+	/**
+	 * @return the last zero based row number that may be allowed by the filters
+	 */
+	public int getLastRowNumber() {
+		int last = Integer.MAX_VALUE;
+		for (Filter f:this.filters) {
+			last = Math.min(last, f.getLastRow());
+		}
+		return last;
+	}
+	
 	public boolean allows(int row) {
 		if (this.filters.isEmpty()) {
 			return true;
@@ -0,0 +1,174 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.translator.excel;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.teiid.translator.TranslatorException;
+
+/**
+ * Base for readers that produce rows while parsing the sheet rather than
+ * building a workbook model.  Only the projected cells are retained and converted,
+ * and the row number filters from the {@link ExcelQueryVisitor} are applied as
+ * each row is started.  Formulas are not evaluated, the cached result is used instead.
+ */
+abstract class ExcelStreamingReader {
+	
+	static ExcelStreamingReader create(File xlsFile, ExcelQueryVisitor visitor, Class<?>[] expectedColumnTypes) throws TranslatorException {
+		String extension = ExcelMetadataProcessor.getFileExtension(xlsFile);
+		if (extension.equalsIgnoreCase("xls")) { //$NON-NLS-1$
+			return new HSSFStreamingReader(xlsFile, visitor, expectedColumnTypes);
+		}
+		if (extension.equalsIgnoreCase("xlsx")) { //$NON-NLS-1$
+			return new XSSFStreamingReader(xlsFile, visitor, expectedColumnTypes);
+		}
+		throw new TranslatorException(ExcelPlugin.Event.TEIID23000, ExcelPlugin.Util.gs(ExcelPlugin.Event.TEIID23000));
+	}
+	
+	protected ExcelQueryVisitor visitor;
+	protected boolean date1904;
+	private Class<?>[] expectedColumnTypes;
+	private int[] projectedColumns;
+	private boolean[] neededColumns;
+	private int lastRowNumber;
+	
+	//current row state
+	private int rowNumber = -1;
+	private boolean rowAllowed;
+	private boolean rowHasCells;
+	private Object[] values;
+	
+	ExcelStreamingReader(ExcelQueryVisitor visitor, Class<?>[] expectedColumnTypes) {
+		this.visitor = visitor;
+		this.expectedColumnTypes = expectedColumnTypes;
+		List<Integer> projected = visitor.getProjectedColumns();
+		this.projectedColumns = new int[projected.size()];
+		int maxColumn = -1;
+		for (int i = 0; i < this.projectedColumns.length; i++) {
+			int index = projected.get(i);
+			//cell numbers are one based, ROW_ID is -1
+			this.projectedColumns[i] = index == -1 ? -1 : index - 1;
+			maxColumn = Math.max(maxColumn, this.projectedColumns[i]);
+		}
+		this.neededColumns = new boolean[maxColumn + 1];
+		for (int column : this.projectedColumns) {
+			if (column >= 0) {
+				this.neededColumns[column] = true;
+			}
+		}
+		this.values = new Object[this.projectedColumns.length];
+		this.lastRowNumber = visitor.getLastRowNumber();
+	}
+	
+	/**
+	 * Get the next projected row from the sheet
+	 * @return the row or null if there are no more rows
+	 */
+	abstract List<Object> nextRow() throws TranslatorException;
+	
+	abstract void close();
+	
+	/**
+	 * @return true if no row at or after the given row number can satisfy the filters
+	 */
+	protected boolean isAfterLastRow(int row) {
+		return row > this.lastRowNumber;
+	}
+	
+	protected int getRowNumber() {
+		return this.rowNumber;
+	}
+	
+	/**
+	 * Start a new row.  
+	 * @return true if the row will be returned if it has cells
+	 */
+	protected boolean startRow(int row) {
+		this.rowNumber = row;
+		this.rowHasCells = false;
+		this.rowAllowed = row >= this.visitor.getFirstDataRowNumber() && this.visitor.allows(row);
+		if (this.rowAllowed) {
+			Arrays.fill(this.values, null);
+		}
+		return this.rowAllowed;
+	}
+	
+	/**
+	 * @return true if the value of the cell in the given zero based column is needed for the current row
+	 */
+	protected boolean isNeeded(int column) {
+		return this.rowAllowed && column < this.neededColumns.length && this.neededColumns[column];
+	}
+	
+	/**
+	 * Add a cell to the current row.
+	 * @param value a {@link Double}, {@link String}, {@link Boolean}, or null for blank and error cells
+	 */
+	protected void addCell(int column, Object value) throws TranslatorException {
+		this.rowHasCells = true;
+		if (value == null || !isNeeded(column)) {
+			return;
+		}
+		for (int i = 0; i < this.projectedColumns.length; i++) {
+			if (this.projectedColumns[i] != column) {
+				continue;
+			}
+			Class<?> expectedType = this.expectedColumnTypes[i];
+			if (value instanceof Double) {
+				this.values[i] = ExcelExecution.convertFromExcelType((Double)value, this.date1904, expectedType);
+			} else if (value instanceof Boolean) {
+				this.values[i] = ExcelExecution.convertFromExcelType((Boolean)value, expectedType);
+			} else {
+				this.values[i] = ExcelExecution.convertFromExcelType((String)value, expectedType);
+			}
+		}
+	}
+	
+	/**
+	 * End the current row
+	 * @return the projected row or null if the row was filtered or empty
+	 */
+	protected List<Object> endRow() {
+		int row = this.rowNumber;
+		boolean allowed = this.rowAllowed;
+		this.rowNumber = -1;
+		this.rowAllowed = false;
+		// rows without cells are skipped, as with the workbook model
+		if (row == -1 || !allowed || !this.rowHasCells) {
+			return null;
+		}
+		List<Object> output = new ArrayList<Object>(this.values.length);
+		for (int i = 0; i < this.values.length; i++) {
+			if (this.projectedColumns[i] == -1) {
+				output.add(row + 1);
+			} else {
+				output.add(this.values[i]);
+			}
+		}
+		return output;
+	}
+	
+}
@@ -0,0 +1,296 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.translator.excel;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.DateWindow1904Record;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.MulRKRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.RKRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RecordFactoryInputStream;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.poifs.filesystem.DirectoryNode;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.Cell;
+import org.teiid.translator.TranslatorException;
+
+/**
+ * Reads an xls sheet by pulling records from the workbook stream.  Cell records 
+ * are grouped by row in the stream, so a row is complete once a cell for a later 
+ * row or the end of the sheet is seen.
+ */
+class HSSFStreamingReader extends ExcelStreamingReader {
+	
+	private static final String[] WORKBOOK_ENTRY_NAMES = {"Workbook", "WORKBOOK", "BOOK"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	
+	private String fileName;
+	private InputStream fileStream;
+	private InputStream workbookStream;
+	private RecordFactoryInputStream records;
+	private SSTRecord sst;
+	private List<BoundSheetRecord> sheets = new ArrayList<BoundSheetRecord>();
+	private int sheetIndex = -1;
+	private int targetSheetIndex = -1;
+	private int depth;
+	private boolean inSheet;
+	private boolean done;
+	//the pending formula cell waiting on a string result record
+	private int formulaRow = -1;
+	private int formulaColumn;
+	
+	HSSFStreamingReader(File xlsFile, ExcelQueryVisitor visitor, Class<?>[] expectedColumnTypes) throws TranslatorException {
+		super(visitor, expectedColumnTypes);
+		this.fileName = xlsFile.getName();
+		try {
+			this.fileStream = new FileInputStream(xlsFile);
+			POIFSFileSystem fs = new POIFSFileSystem(this.fileStream);
+			DirectoryNode root = fs.getRoot();
+			String entryName = WORKBOOK_ENTRY_NAMES[0];
+			for (String name : WORKBOOK_ENTRY_NAMES) {
+				if (root.hasEntry(name)) {
+					entryName = name;
+					break;
+				}
+			}
+			this.workbookStream = root.createDocumentInputStream(entryName);
+			this.records = new RecordFactoryInputStream(this.workbookStream, false);
+		} catch (IOException e) {
+			close();
+			throw new TranslatorException(e);
+		}
+	}
+
+	@Override
+	List<Object> nextRow() throws TranslatorException {
+		Record record = null;
+		while (!this.done && (record = this.records.nextRecord()) != null) {
+			switch (record.getSid()) {
+			case BOFRecord.sid:
+				this.depth++;
+				if (this.depth == 1 && ((BOFRecord)record).getType() != BOFRecord.TYPE_WORKBOOK) {
+					startSheet();
+				}
+				break;
+			case EOFRecord.sid:
+				this.depth--;
+				if (this.depth == 0 && this.inSheet) {
+					this.done = true;
+					return endRow();
+				}
+				break;
+			case BoundSheetRecord.sid:
+				this.sheets.add((BoundSheetRecord)record);
+				break;
+			case SSTRecord.sid:
+				this.sst = (SSTRecord)record;
+				break;
+			case DateWindow1904Record.sid:
+				this.date1904 = ((DateWindow1904Record)record).getWindowing() == 1;
+				break;
+			default:
+				if (this.inSheet && this.depth == 1) {
+					List<Object> result = processCellRecord(record);
+					if (result != null) {
+						return result;
+					}
+				}
+			}
+		}
+		if (!this.done) {
+			this.done = true;
+			if (this.inSheet) {
+				return endRow();
+			}
+			throw new TranslatorException(ExcelPlugin.Event.TEIID23009, ExcelPlugin.Util.gs(ExcelPlugin.Event.TEIID23009, this.visitor.getSheetName(), this.fileName));
+		}
+		return null;
+	}
+
+	private void startSheet() throws TranslatorException {
+		if (this.targetSheetIndex == -1) {
+			//sheet substreams appear in the order of their offsets
+			Collections.sort(this.sheets, new Comparator<BoundSheetRecord>() {
+				@Override
+				public int compare(BoundSheetRecord o1, BoundSheetRecord o2) {
+					return o1.getPositionOfBof() - o2.getPositionOfBof();
+				}
+			});
+			for (int i = 0; i < this.sheets.size(); i++) {
+				if (this.sheets.get(i).getSheetname().equals(this.visitor.getSheetName())) {
+					this.targetSheetIndex = i;
+					break;
+				}
+			}
+			if (this.targetSheetIndex == -1) {
+				throw new TranslatorException(ExcelPlugin.Event.TEIID23009, ExcelPlugin.Util.gs(ExcelPlugin.Event.TEIID23009, this.visitor.getSheetName(), this.fileName));
+			}
+		}
+		this.sheetIndex++;
+		this.inSheet = this.sheetIndex == this.targetSheetIndex;
+	}
+	
+	/**
+	 * Add the cell(s) of the record to the current row.
+	 * @return the previous row if the record completed it
+	 */
+	private List<Object> processCellRecord(Record record) throws TranslatorException {
+		switch (record.getSid()) {
+		case LabelSSTRecord.sid: {
+			LabelSSTRecord label = (LabelSSTRecord)record;
+			List<Object> result = moveToRow(label.getRow());
+			if (isNeeded(label.getColumn())) {
+				addCell(label.getColumn(), this.sst.getString(label.getSSTIndex()).getString());
+			} else {
+				addCell(label.getColumn(), null);
+			}
+			return result;
+		}
+		case LabelRecord.sid: {
+			LabelRecord label = (LabelRecord)record;
+			List<Object> result = moveToRow(label.getRow());
+			addCell(label.getColumn(), label.getValue());
+			return result;
+		}
+		case NumberRecord.sid: {
+			NumberRecord number = (NumberRecord)record;
+			List<Object> result = moveToRow(number.getRow());
+			addCell(number.getColumn(), number.getValue());
+			return result;
+		}
+		case RKRecord.sid: {
+			RKRecord rk = (RKRecord)record;
+			List<Object> result = moveToRow(rk.getRow());
+			addCell(rk.getColumn(), rk.getRKNumber());
+			return result;
+		}
+		case MulRKRecord.sid: {
+			MulRKRecord mulRk = (MulRKRecord)record;
+			List<Object> result = moveToRow(mulRk.getRow());
+			for (int i = 0; i < mulRk.getNumColumns(); i++) {
+				addCell(mulRk.getFirstColumn() + i, mulRk.getRKNumberAt(i));
+			}
+			return result;
+		}
+		case BoolErrRecord.sid: {
+			BoolErrRecord boolErr = (BoolErrRecord)record;
+			List<Object> result = moveToRow(boolErr.getRow());
+			addCell(boolErr.getColumn(), boolErr.isBoolean()?Boolean.valueOf(boolErr.getBooleanValue()):null);
+			return result;
+		}
+		case FormulaRecord.sid: {
+			FormulaRecord formula = (FormulaRecord)record;
+			List<Object> result = moveToRow(formula.getRow());
+			if (formula.hasCachedResultString()) {
+				//the value follows in a string record
+				this.formulaRow = formula.getRow();
+				this.formulaColumn = formula.getColumn();
+				return result;
+			}
+			Object value = null;
+			switch (formula.getCachedResultType()) {
+			case Cell.CELL_TYPE_NUMERIC:
+				value = formula.getValue();
+				break;
+			case Cell.CELL_TYPE_BOOLEAN:
+				value = formula.getCachedBooleanValue();
+				break;
+			}
+			addCell(formula.getColumn(), value);
+			return result;
+		}
+		case StringRecord.sid: {
+			if (this.formulaRow == getRowNumber()) {
+				addCell(this.formulaColumn, ((StringRecord)record).getString());
+			}
+			this.formulaRow = -1;
+			return null;
+		}
+		case BlankRecord.sid: {
+			BlankRecord blank = (BlankRecord)record;
+			List<Object> result = moveToRow(blank.getRow());
+			addCell(blank.getColumn(), null);
+			return result;
+		}
+		case MulBlankRecord.sid: {
+			MulBlankRecord mulBlank = (MulBlankRecord)record;
+			List<Object> result = moveToRow(mulBlank.getRow());
+			addCell(mulBlank.getFirstColumn(), null);
+			return result;
+		}
+		}
+		return null;
+	}
+	
+	/**
+	 * Make the given row current
+	 * @return the previous row if it should be returned
+	 */
+	private List<Object> moveToRow(int row) {
+		if (row == getRowNumber()) {
+			return null;
+		}
+		List<Object> result = endRow();
+		if (isAfterLastRow(row)) {
+			this.done = true;
+		} else {
+			startRow(row);
+		}
+		return result;
+	}
+	
+	@Override
+	void close() {
+		if (this.workbookStream != null) {
+			try {
+				this.workbookStream.close();
+			} catch (IOException e) {
+			}
+		}
+		if (this.fileStream != null) {
+			try {
+				this.fileStream.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+}
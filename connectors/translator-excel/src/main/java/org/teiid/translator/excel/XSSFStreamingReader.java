@@ -0,0 +1,283 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.translator.excel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.teiid.translator.TranslatorException;
+import org.xml.sax.SAXException;
+
+/**
+ * Reads an xlsx sheet by pulling the sheet xml with StAX.  The shared strings 
+ * table is read up front, but the sheet itself is never fully materialized.
+ */
+class XSSFStreamingReader extends ExcelStreamingReader {
+	
+	private static XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+	static {
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	}
+	
+	private OPCPackage opcPackage;
+	private ReadOnlySharedStringsTable sharedStrings;
+	private InputStream sheetStream;
+	private XMLStreamReader reader;
+	private boolean done;
+	private int lastRow = -1;
+	
+	XSSFStreamingReader(File xlsFile, ExcelQueryVisitor visitor, Class<?>[] expectedColumnTypes) throws TranslatorException {
+		super(visitor, expectedColumnTypes);
+		try {
+			this.opcPackage = OPCPackage.open(xlsFile.getPath(), PackageAccess.READ);
+			XSSFReader xssfReader = new XSSFReader(this.opcPackage);
+			InputStream workbook = xssfReader.getWorkbookData();
+			try {
+				this.date1904 = isDate1904(workbook);
+			} finally {
+				workbook.close();
+			}
+			Iterator<InputStream> sheets = xssfReader.getSheetsData();
+			while (sheets.hasNext()) {
+				InputStream is = sheets.next();
+				if (((XSSFReader.SheetIterator)sheets).getSheetName().equals(visitor.getSheetName())) {
+					this.sheetStream = is;
+					break;
+				}
+				is.close();
+			}
+			if (this.sheetStream == null) {
+				throw new TranslatorException(ExcelPlugin.Event.TEIID23009, ExcelPlugin.Util.gs(ExcelPlugin.Event.TEIID23009, visitor.getSheetName(), xlsFile.getName()));
+			}
+			this.sharedStrings = new ReadOnlySharedStringsTable(this.opcPackage);
+			this.reader = inputFactory.createXMLStreamReader(this.sheetStream);
+		} catch (IOException e) {
+			close();
+			throw new TranslatorException(e);
+		} catch (OpenXML4JException e) {
+			close();
+			throw new TranslatorException(e);
+		} catch (SAXException e) {
+			close();
+			throw new TranslatorException(e);
+		} catch (XMLStreamException e) {
+			close();
+			throw new TranslatorException(e);
+		} catch (TranslatorException e) {
+			close();
+			throw e;
+		}
+	}
+	
+	private static boolean isDate1904(InputStream workbook) throws XMLStreamException {
+		XMLStreamReader workbookReader = inputFactory.createXMLStreamReader(workbook);
+		try {
+			while (workbookReader.hasNext()) {
+				if (workbookReader.next() != XMLStreamConstants.START_ELEMENT) {
+					continue;
+				}
+				String name = workbookReader.getLocalName();
+				if (name.equals("workbookPr")) { //$NON-NLS-1$
+					String value = workbookReader.getAttributeValue(null, "date1904"); //$NON-NLS-1$
+					return "1".equals(value) || "true".equalsIgnoreCase(value); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+				if (name.equals("sheets")) { //$NON-NLS-1$
+					break; //workbookPr would have already been seen
+				}
+			}
+			return false;
+		} finally {
+			workbookReader.close();
+		}
+	}
+	
+	@Override
+	List<Object> nextRow() throws TranslatorException {
+		try {
+			while (!this.done && this.reader.hasNext()) {
+				if (this.reader.next() != XMLStreamConstants.START_ELEMENT || !this.reader.getLocalName().equals("row")) { //$NON-NLS-1$
+					continue;
+				}
+				String ref = this.reader.getAttributeValue(null, "r"); //$NON-NLS-1$
+				int row = ref != null ? Integer.parseInt(ref) - 1 : this.lastRow + 1;
+				this.lastRow = row;
+				if (isAfterLastRow(row)) {
+					break;
+				}
+				if (!startRow(row)) {
+					skipElement();
+					continue;
+				}
+				readCells();
+				List<Object> result = endRow();
+				if (result != null) {
+					return result;
+				}
+			}
+			this.done = true;
+			return null;
+		} catch (XMLStreamException e) {
+			throw new TranslatorException(e);
+		}
+	}
+
+	/**
+	 * Read the cells of the current row up to the row end element
+	 */
+	private void readCells() throws XMLStreamException, TranslatorException {
+		int column = -1;
+		while (this.reader.hasNext()) {
+			int event = this.reader.next();
+			if (event == XMLStreamConstants.END_ELEMENT) {
+				if (this.reader.getLocalName().equals("row")) { //$NON-NLS-1$
+					return;
+				}
+				continue;
+			}
+			if (event != XMLStreamConstants.START_ELEMENT || !this.reader.getLocalName().equals("c")) { //$NON-NLS-1$
+				continue;
+			}
+			String ref = this.reader.getAttributeValue(null, "r"); //$NON-NLS-1$
+			column = ref != null ? getColumnIndex(ref) : column + 1;
+			if (!isNeeded(column)) {
+				addCell(column, null);
+				skipElement();
+				continue;
+			}
+			addCell(column, readCellValue(this.reader.getAttributeValue(null, "t"))); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Read the value of the current cell up to the c end element
+	 * @return the value as a String, Double, Boolean or null 
+	 */
+	private Object readCellValue(String type) throws XMLStreamException {
+		String value = null;
+		StringBuilder inline = null;
+		while (this.reader.hasNext()) {
+			int event = this.reader.next();
+			if (event == XMLStreamConstants.END_ELEMENT) {
+				if (this.reader.getLocalName().equals("c")) { //$NON-NLS-1$
+					break;
+				}
+				continue;
+			}
+			if (event != XMLStreamConstants.START_ELEMENT) {
+				continue;
+			}
+			String name = this.reader.getLocalName();
+			if (name.equals("v")) { //$NON-NLS-1$
+				value = this.reader.getElementText();
+			} else if (name.equals("t")) { //$NON-NLS-1$
+				//inline string text, possibly split into rich text runs
+				if (inline == null) {
+					inline = new StringBuilder();
+				}
+				inline.append(this.reader.getElementText());
+			}
+		}
+		if (inline != null && "inlineStr".equals(type)) { //$NON-NLS-1$
+			return inline.toString();
+		}
+		if (value == null) {
+			return null;
+		}
+		if (type == null || type.equals("n")) { //$NON-NLS-1$
+			return Double.valueOf(value);
+		}
+		if (type.equals("s")) { //$NON-NLS-1$
+			return this.sharedStrings.getEntryAt(Integer.parseInt(value));
+		}
+		if (type.equals("b")) { //$NON-NLS-1$
+			return Boolean.valueOf("1".equals(value) || "true".equalsIgnoreCase(value)); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		if (type.equals("e")) { //$NON-NLS-1$
+			return null;
+		}
+		//str (formula string result), d (ISO 8601 date), or an inline string with a cached value
+		return value;
+	}
+	
+	private void skipElement() throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0 && this.reader.hasNext()) {
+			int event = this.reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+	
+	/**
+	 * Get the zero based column index from a cell reference such as AB12
+	 */
+	static int getColumnIndex(String ref) {
+		int column = 0;
+		for (int i = 0; i < ref.length(); i++) {
+			char c = ref.charAt(i);
+			if (c < 'A' || c > 'Z') {
+				break;
+			}
+			column = column * 26 + (c - 'A' + 1);
+		}
+		return column - 1;
+	}
+	
+	@Override
+	void close() {
+		if (this.reader != null) {
+			try {
+				this.reader.close();
+			} catch (XMLStreamException e) {
+			}
+		}
+		if (this.sheetStream != null) {
+			try {
+				this.sheetStream.close();
+			} catch (IOException e) {
+			}
+		}
+		if (this.opcPackage != null) {
+			//read only packages are reverted rather than closed so that nothing is saved
+			this.opcPackage.revert();
+		}
+	}
+
+}
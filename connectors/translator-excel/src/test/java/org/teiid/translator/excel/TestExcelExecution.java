@@ -44,7 +44,12 @@ import org.teiid.translator.TranslatorException;
 public class TestExcelExecution {
 
 	private ArrayList helpExecute(String ddl, FileConnection connection, String query) throws Exception {
+		return helpExecute(ddl, connection, query, false);
+	}
+	
+	private ArrayList helpExecute(String ddl, FileConnection connection, String query, boolean streaming) throws Exception {
 		ExcelExecutionFactory translator = new ExcelExecutionFactory();
+		translator.setStreaming(streaming);
     	translator.start();
     	
     	TransformationMetadata metadata = RealMetadataFactory.fromDDL(ddl, "vdb", "excel");
@@ -298,4 +303,84 @@ public class TestExcelExecution {
 
     	helpExecute(commonDDL, connection, "select FirstName from Sheet1 WHERE ROW_ID != 16");
 	}	
+	
+	@Test
+	public void testStreamingNoDataNumberXLS() throws Exception {
+		String ddl = "CREATE FOREIGN TABLE Sheet1 (\n" + 
+				"	ROW_ID integer OPTIONS (SEARCHABLE 'All_Except_Like', \"teiid_excel:CELL_NUMBER\" 'ROW_ID'),\n" + 
+				"	column1 string OPTIONS (SEARCHABLE 'Unsearchable', \"teiid_excel:CELL_NUMBER\" '7'),\n" + 
+				"	column2 string OPTIONS (SEARCHABLE 'Unsearchable', \"teiid_excel:CELL_NUMBER\" '8'),\n" + 
+				"	column3 string OPTIONS (SEARCHABLE 'Unsearchable', \"teiid_excel:CELL_NUMBER\" '9'),\n" + 
+				"	CONSTRAINT PK0 PRIMARY KEY(ROW_ID)\n" + 
+				") OPTIONS (\"teiid_excel:FILE\" 'names.xls');";
+
+    	FileConnection connection = Mockito.mock(FileConnection.class);
+    	Mockito.stub(connection.getFile("names.xls")).toReturn(UnitTestUtil.getTestDataFile("names.xls"));
+
+    	ArrayList results = helpExecute(ddl, connection, "select * from Sheet1", true);
+    	assertEquals("[[13, FirstName, LastName, Age], [14, John, Doe, 44.0], [15, Jane, Smith, 40.0], [16, Matt, Liek, 13.0], [17, Sarah, Byne, 10.0], [18, Rocky, Dog, 3.0], [19, Total, null, 110.0]]", results.toString());
+	}
+	
+	@Test
+	public void testStreamingNoDataNumberXLSX() throws Exception {
+		String ddl = "CREATE FOREIGN TABLE Sheet1 (\n" + 
+				"	ROW_ID integer OPTIONS (SEARCHABLE 'All_Except_Like', \"teiid_excel:CELL_NUMBER\" 'ROW_ID'),\n" + 
+				"	column1 string OPTIONS (SEARCHABLE 'Unsearchable', \"teiid_excel:CELL_NUMBER\" '1'),\n" + 
+				"	column2 string OPTIONS (SEARCHABLE 'Unsearchable', \"teiid_excel:CELL_NUMBER\" '2'),\n" + 
+				"	column3 string OPTIONS (SEARCHABLE 'Unsearchable', \"teiid_excel:CELL_NUMBER\" '3'),\n" + 
+				"	CONSTRAINT PK0 PRIMARY KEY(ROW_ID)\n" + 
+				") OPTIONS (\"teiid_excel:FILE\" 'names.xlsx');";
+
+    	FileConnection connection = Mockito.mock(FileConnection.class);
+    	Mockito.stub(connection.getFile("names.xlsx")).toReturn(UnitTestUtil.getTestDataFile("names.xlsx"));
+
+    	ArrayList results = helpExecute(ddl, connection, "select * from Sheet1", true);
+    	assertEquals(helpExecute(ddl, connection, "select * from Sheet1"), results);
+	}
+	
+	@Test
+	public void testStreamingColumnsWithNullCell() throws Exception {
+		String ddl = "CREATE FOREIGN TABLE Sheet1 (\n" + 
+				"	column1 string OPTIONS (SEARCHABLE 'Unsearchable', \"teiid_excel:CELL_NUMBER\" '1'),\n" + 
+				"	column2 string OPTIONS (SEARCHABLE 'Unsearchable', \"teiid_excel:CELL_NUMBER\" '2')\n" + 
+				") OPTIONS (\"teiid_excel:FILE\" '3219.xlsx');";
+
+    	FileConnection connection = Mockito.mock(FileConnection.class);
+    	Mockito.stub(connection.getFile("3219.xlsx")).toReturn(UnitTestUtil.getTestDataFile("3219.xlsx"));
+
+    	ArrayList results = helpExecute(ddl, connection, "select * from Sheet1", true);
+    	assertEquals(helpExecute(ddl, connection, "select * from Sheet1"), results);
+	}
+	
+	@Test
+	public void testStreamingFilters() throws Exception {
+    	FileConnection connection = Mockito.mock(FileConnection.class);
+    	Mockito.stub(connection.getFile("names.xls")).toReturn(UnitTestUtil.getTestDataFile("names.xls"));
+
+    	assertEquals("[[Sarah]]", helpExecute(commonDDL, connection, "select FirstName from Sheet1 LIMIT 3,1", true).toString());
+    	assertEquals("[[John], [Jane], [Matt]]", helpExecute(commonDDL, connection, "select FirstName from Sheet1 WHERE ROW_ID <= 16", true).toString());
+    	assertEquals("[[Sarah]]", helpExecute(commonDDL, connection, "select FirstName from Sheet1 WHERE ROW_ID > 16 and ROW_ID < 18", true).toString());
+    	assertEquals("[[John], [Total]]", helpExecute(commonDDL, connection, "select FirstName from Sheet1 WHERE ROW_ID IN (13, 18)", true).toString());
+	}
+	
+	@Test
+	public void testStreamingTime() throws Exception {
+    	FileConnection connection = Mockito.mock(FileConnection.class);
+    	Mockito.stub(connection.getFile("names.xls")).toReturn(UnitTestUtil.getTestDataFile("names.xlsx"));
+
+    	ArrayList results = helpExecute(commonDDL, connection, "select \"time\" from Sheet1", true);
+    	assertEquals("[[10:12:14]]", results.toString());
+	}
+	
+	@Test(expected=TranslatorException.class)
+	public void testStreamingSheetNotFound() throws Exception {
+		String ddl = "CREATE FOREIGN TABLE Missing (\n" + 
+				"	column1 string OPTIONS (SEARCHABLE 'Unsearchable', \"teiid_excel:CELL_NUMBER\" '1')\n" + 
+				") OPTIONS (\"teiid_excel:FILE\" 'names.xlsx');";
+		
+    	FileConnection connection = Mockito.mock(FileConnection.class);
+    	Mockito.stub(connection.getFile("names.xlsx")).toReturn(UnitTestUtil.getTestDataFile("names.xlsx"));
+
+    	helpExecute(ddl, connection, "select * from Missing", true);
+	}
 }
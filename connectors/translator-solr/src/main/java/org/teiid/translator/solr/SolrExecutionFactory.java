@@ -23,12 +23,15 @@ package org.teiid.translator.solr;
 
 import java.lang.reflect.Array;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 
 import javax.resource.cci.ConnectionFactory;
 
 import org.teiid.core.TeiidRuntimeException;
 import org.teiid.core.types.DataTypeManager;
 import org.teiid.core.types.TransformationException;
+import org.teiid.core.util.ExecutorUtils;
 import org.teiid.language.Command;
 import org.teiid.language.QueryExpression;
 import org.teiid.metadata.RuntimeMetadata;
@@ -39,6 +42,9 @@ import org.teiid.translator.jdbc.FunctionModifier;
 @Translator(name = "solr", description = "A translator for Solr search platform")
 public class SolrExecutionFactory extends ExecutionFactory<ConnectionFactory, SolrConnection> {
 	protected Map<String, FunctionModifier> functionModifiers = new TreeMap<String, FunctionModifier>(String.CASE_INSENSITIVE_ORDER);
+	private boolean useCursorMarkPaging;
+	private boolean prefetchPages;
+	private ExecutorService prefetchExecutor;
 	
 	public SolrExecutionFactory() {
 		super();
@@ -56,6 +62,39 @@ public class SolrExecutionFactory extends ExecutionFactory<ConnectionFactory, So
 	@Override
 	public void start() throws TranslatorException {
 		super.start();
+		if (this.prefetchPages) {
+			this.prefetchExecutor = ExecutorUtils.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), "Solr Prefetch"); //$NON-NLS-1$
+		}
+	}
+	
+	@Override
+	public void stop() {
+		if (this.prefetchExecutor != null) {
+			this.prefetchExecutor.shutdownNow();
+		}
+		super.stop();
+	}
+	
+	@TranslatorProperty(display="Use CursorMark Paging", description="Page through results with a cursorMark sorted by the unique key rather than a start offset. Requires Solr 4.7 or later.", advanced=true)
+	public boolean isUseCursorMarkPaging() {
+		return useCursorMarkPaging;
+	}
+	
+	public void setUseCursorMarkPaging(boolean useCursorMarkPaging) {
+		this.useCursorMarkPaging = useCursorMarkPaging;
+	}
+	
+	@TranslatorProperty(display="Prefetch Pages", description="Request the next page of results in the background while the current page is read", advanced=true)
+	public boolean isPrefetchPages() {
+		return prefetchPages;
+	}
+	
+	public void setPrefetchPages(boolean prefetchPages) {
+		this.prefetchPages = prefetchPages;
+	}
+	
+	Executor getPrefetchExecutor() {
+		return prefetchExecutor;
 	}
 		
 	@Override
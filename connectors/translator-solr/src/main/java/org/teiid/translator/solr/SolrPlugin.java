@@ -42,6 +42,7 @@ public class SolrPlugin {
     	TEIID20006,
     	TEIID20007,
     	TEIID20008,
-    	TEIID20009
+    	TEIID20009,
+    	TEIID20010
     }
 }
@@ -24,13 +24,19 @@ package org.teiid.translator.solr;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrQuery.SortClause;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.teiid.language.Command;
 import org.teiid.language.QueryExpression;
+import org.teiid.logging.LogConstants;
 import org.teiid.logging.LogManager;
 import org.teiid.metadata.RuntimeMetadata;
 import org.teiid.translator.DataNotAvailableException;
@@ -39,14 +45,26 @@ import org.teiid.translator.ResultSetExecution;
 import org.teiid.translator.TranslatorException;
 
 public class SolrQueryExecution implements ResultSetExecution {
+	
+	//cursor parameters, added to solr in 4.7
+	static final String CURSOR_MARK = "cursorMark"; //$NON-NLS-1$
+	static final String NEXT_CURSOR_MARK = "nextCursorMark"; //$NON-NLS-1$
+	static final String CURSOR_MARK_START = "*"; //$NON-NLS-1$
+	
 	private ExecutionContext executionContext;
 	private SolrConnection connection;
 	private SolrSQLHierarchyVistor visitor;
 	private Iterator<SolrDocument> resultsItr;
 	private Class<?>[] expectedTypes;
 	private SolrExecutionFactory executionFactory;
-	private int offset = 0;
 	private Long resultSize;
+	
+	//paging state
+	private int pageSize;
+	private int nextStart;
+	private String cursorMark;
+	private boolean morePages = true;
+	private FutureTask<QueryResponse> nextPage;
 
 	public SolrQueryExecution(SolrExecutionFactory ef, Command command,
 			ExecutionContext executionContext, RuntimeMetadata metadata,
@@ -64,21 +82,133 @@ public class SolrQueryExecution implements ResultSetExecution {
 
 	@Override
 	public void execute() throws TranslatorException {
+		this.pageSize = this.executionContext.getBatchSize();
+		if (!this.visitor.isLimitInUse() && !this.visitor.isCountStarInUse() && this.executionFactory.isUseCursorMarkPaging()) {
+			String uniqueKey = this.visitor.getUniqueKeyField();
+			if (uniqueKey != null) {
+				this.cursorMark = CURSOR_MARK_START;
+				addUniqueKeySort(this.visitor.getSolrQuery(), uniqueKey);
+			} else {
+				LogManager.logDetail(LogConstants.CTX_CONNECTOR, "Solr cursor paging is not possible without a unique key, offset paging will be used"); //$NON-NLS-1$
+			}
+		}
 		LogManager.logDetail("Solr Source Query:", this.visitor.getSolrQuery()); //$NON-NLS-1$
 		nextBatch();
 	}
 	
+	/**
+	 * A cursor requires a total ordering, so the unique key is added as the last sort 
+	 */
+	static void addUniqueKeySort(SolrQuery query, String uniqueKey) {
+		List<SortClause> sorts = query.getSorts();
+		if (sorts != null) {
+			for (SortClause sort : sorts) {
+				if (sort.getItem().equals(uniqueKey)) {
+					return;
+				}
+			}
+		}
+		query.addSort(uniqueKey, SolrQuery.ORDER.asc);
+	}
+	
 	public void nextBatch() throws TranslatorException {
-		SolrQuery query = this.visitor.getSolrQuery();
-		if (!this.visitor.isLimitInUse()) {
-			query.setStart(this.offset);
-			query.setRows(this.executionContext.getBatchSize());
+		loadNextPage(true);
+	}
+	
+	/**
+	 * Load the next page of results, either from the prefetch or by querying 
+	 * @param wait if false a {@link DataNotAvailableException} is thrown rather than waiting on a prefetch
+	 * @return false if there are no more pages
+	 */
+	private boolean loadNextPage(boolean wait) throws TranslatorException {
+		if (!this.morePages) {
+			this.resultsItr = null;
+			return false;
+		}
+		QueryResponse queryResponse = null;
+		if (this.nextPage != null) {
+			if (!wait && !this.nextPage.isDone()) {
+				throw DataNotAvailableException.NO_POLLING;
+			}
+			try {
+				queryResponse = this.nextPage.get();
+			} catch (InterruptedException e) {
+				throw new TranslatorException(e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof TranslatorException) {
+					throw (TranslatorException)e.getCause();
+				}
+				throw new TranslatorException(e.getCause());
+			} finally {
+				this.nextPage = null;
+			}
+		} else {
+			queryResponse = this.connection.query(nextQuery());
 		}
 		
-		QueryResponse queryResponse = connection.query(this.visitor.getSolrQuery());
 		SolrDocumentList docList = queryResponse.getResults();
 		this.resultSize = docList.getNumFound();
 		this.resultsItr = docList.iterator();
+		
+		if (this.visitor.isLimitInUse() || this.visitor.isCountStarInUse()) {
+			this.morePages = false;
+		} else if (this.cursorMark != null) {
+			Object next = queryResponse.getResponse().get(NEXT_CURSOR_MARK);
+			if (next == null) {
+				throw new TranslatorException(SolrPlugin.Event.TEIID20010, SolrPlugin.Util.gs(SolrPlugin.Event.TEIID20010));
+			}
+			//the cursor is exhausted when the mark does not change
+			this.morePages = !next.equals(this.cursorMark) && docList.size() >= this.pageSize;
+			this.cursorMark = next.toString();
+		} else {
+			this.nextStart += docList.size();
+			this.morePages = !docList.isEmpty() && this.nextStart < docList.getNumFound();
+		}
+		
+		if (this.morePages) {
+			prefetch();
+		}
+		return true;
+	}
+	
+	/**
+	 * Get a copy of the query for the next page, so that the page 
+	 * may be requested concurrently with other modifications
+	 */
+	private SolrQuery nextQuery() {
+		SolrQuery query = this.visitor.getSolrQuery();
+		if (!this.visitor.isLimitInUse()) {
+			query.setRows(this.pageSize);
+			if (this.cursorMark != null) {
+				query.setStart(0);
+				query.set(CURSOR_MARK, this.cursorMark);
+			} else {
+				query.setStart(this.nextStart);
+			}
+		}
+		return query.getCopy();
+	}
+	
+	/**
+	 * If configured, request the next page while the current page is consumed 
+	 */
+	private void prefetch() {
+		Executor executor = this.executionFactory.getPrefetchExecutor();
+		if (executor == null) {
+			return;
+		}
+		final SolrQuery query = nextQuery();
+		this.nextPage = new FutureTask<QueryResponse>(new Callable<QueryResponse>() {
+			@Override
+			public QueryResponse call() throws Exception {
+				try {
+					return connection.query(query);
+				} finally {
+					executionContext.dataAvailable();
+				}
+			}
+		});
+		executor.execute(this.nextPage);
 	}
 
 	/*
@@ -98,21 +228,21 @@ public class SolrQueryExecution implements ResultSetExecution {
 			return row;
 		}
 		
-		// is there any solr docs
-		if (this.resultsItr != null && this.resultsItr.hasNext()) {
-			SolrDocument doc = this.resultsItr.next();
-			for (int i = 0; i < this.visitor.getFieldNameList().size(); i++) {
-				String columnName = this.visitor.getFieldNameList().get(i);
-				Object obj = doc.getFieldValue(columnName);
-				row.add(this.executionFactory.convertFromSolrType(obj, this.expectedTypes[i]));
+		while (this.resultsItr != null) {
+			// is there any solr docs
+			if (this.resultsItr.hasNext()) {
+				SolrDocument doc = this.resultsItr.next();
+				for (int i = 0; i < this.visitor.getFieldNameList().size(); i++) {
+					String columnName = this.visitor.getFieldNameList().get(i);
+					Object obj = doc.getFieldValue(columnName);
+					row.add(this.executionFactory.convertFromSolrType(obj, this.expectedTypes[i]));
+				}
+				return row;
 			}
-			this.offset++;
-			
-			// if we are at the end of the current cursor set, then get next ones.
-			if (!this.resultsItr.hasNext() && !this.visitor.isLimitInUse()) {
-				nextBatch();
+			// if we are at the end of the current page, then get the next one.
+			if (!loadNextPage(false)) {
+				break;
 			}
-			return row;
 		}
 		return null;
 	}
@@ -122,23 +252,28 @@ public class SolrQueryExecution implements ResultSetExecution {
 	}
 	
 	public void walkDocuments(SolrDocumentCallback callback) throws TranslatorException {
-		while(this.resultsItr != null && this.resultsItr.hasNext()) {
-			SolrDocument doc = this.resultsItr.next();
-			callback.walk(doc);
-			this.offset++;
-			
-			// if we are at the end of the current cursor set, then get next ones.
-			if (!this.resultsItr.hasNext()) {
-				nextBatch();
+		while(this.resultsItr != null) {
+			while (this.resultsItr.hasNext()) {
+				SolrDocument doc = this.resultsItr.next();
+				callback.walk(doc);
+			}
+			// if we are at the end of the current page, then get the next one.
+			if (!loadNextPage(true)) {
+				break;
 			}
 		}		
 	}
 	
 	@Override
 	public void close() {
+		if (this.nextPage != null) {
+			this.nextPage.cancel(true);
+			this.nextPage = null;
+		}
 	}
 
 	@Override
 	public void cancel() throws TranslatorException {
+		close();
 	}	
 }
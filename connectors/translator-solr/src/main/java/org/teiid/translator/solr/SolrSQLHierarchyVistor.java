@@ -38,7 +38,10 @@ import org.teiid.language.SQLConstants.Reserved;
 import org.teiid.language.SQLConstants.Tokens;
 import org.teiid.language.visitor.HierarchyVisitor;
 import org.teiid.metadata.AbstractMetadataRecord;
+import org.teiid.metadata.Column;
+import org.teiid.metadata.KeyRecord;
 import org.teiid.metadata.RuntimeMetadata;
+import org.teiid.metadata.Table;
 import org.teiid.translator.jdbc.FunctionModifier;
 
 public class SolrSQLHierarchyVistor extends HierarchyVisitor {
@@ -53,6 +56,7 @@ public class SolrSQLHierarchyVistor extends HierarchyVisitor {
 	private SolrExecutionFactory ef;
 	private HashMap<String, String> columnAliasMap = new HashMap<String, String>();
 	private boolean countStarInUse;
+	private Table table;
 
 	public SolrSQLHierarchyVistor(RuntimeMetadata metadata, SolrExecutionFactory ef) {
 		this.metadata = metadata;
@@ -271,6 +275,11 @@ public class SolrSQLHierarchyVistor extends HierarchyVisitor {
 		}
 	}
 	
+	@Override
+	public void visit(NamedTable obj) {
+		this.table = obj.getMetadataObject();
+	}
+	
 	@Override
 	public void visit(OrderBy obj) {
 		visitNodes(obj.getSortSpecifications());
@@ -346,4 +355,19 @@ public class SolrSQLHierarchyVistor extends HierarchyVisitor {
 		return countStarInUse;
 	}
 	
+	/**
+	 * @return the single primary key field of the queried table, or null if there isn't one
+	 */
+	public String getUniqueKeyField() {
+		if (this.table == null) {
+			return null;
+		}
+		KeyRecord pk = this.table.getPrimaryKey();
+		if (pk == null || pk.getColumns().size() != 1) {
+			return null;
+		}
+		Column column = pk.getColumns().get(0);
+		return getRecordName(column);
+	}
+	
 }
@@ -0,0 +1,152 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.translator.solr;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.util.NamedList;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.teiid.cdk.api.TranslationUtility;
+import org.teiid.core.util.ObjectConverterUtil;
+import org.teiid.core.util.UnitTestUtil;
+import org.teiid.language.Command;
+import org.teiid.language.QueryExpression;
+import org.teiid.query.metadata.TransformationMetadata;
+import org.teiid.query.unittest.RealMetadataFactory;
+import org.teiid.translator.DataNotAvailableException;
+import org.teiid.translator.ExecutionContext;
+import org.teiid.translator.ResultSetExecution;
+import org.teiid.translator.TranslatorException;
+
+@SuppressWarnings("nls")
+public class TestSolrQueryExecution {
+	
+    private SolrExecutionFactory translator;
+    private TranslationUtility utility;
+
+    @Before
+    public void setUp() throws Exception {
+    	this.translator = new SolrExecutionFactory();
+    	TransformationMetadata metadata = RealMetadataFactory.fromDDL(ObjectConverterUtil.convertFileToString(UnitTestUtil.getTestDataFile("exampleTBL.ddl")), "example", "solr");
+    	this.utility = new TranslationUtility(metadata);
+    }
+    
+    private static QueryResponse getResponse(long numFound, String nextCursorMark, String... names) {
+    	SolrDocumentList list = new SolrDocumentList();
+    	list.setNumFound(numFound);
+    	for (String name : names) {
+    		SolrDocument doc = new SolrDocument();
+    		doc.addField("name", name);
+    		list.add(doc);
+    	}
+    	QueryResponse response = Mockito.mock(QueryResponse.class);
+    	Mockito.stub(response.getResults()).toReturn(list);
+    	NamedList<Object> values = new NamedList<Object>();
+    	if (nextCursorMark != null) {
+    		values.add(SolrQueryExecution.NEXT_CURSOR_MARK, nextCursorMark);
+    	}
+    	Mockito.stub(response.getResponse()).toReturn(values);
+    	return response;
+    }
+    
+    private List<SolrQuery> helpExecute(String sql, List<List<?>> results, QueryResponse first, QueryResponse... rest) throws TranslatorException {
+    	this.translator.start();
+    	Command cmd = this.utility.parseCommand(sql);
+		ExecutionContext context = Mockito.mock(ExecutionContext.class);
+		Mockito.stub(context.getBatchSize()).toReturn(2);
+		SolrConnection connection = Mockito.mock(SolrConnection.class);
+		Mockito.when(connection.query(Mockito.any(SolrQuery.class))).thenReturn(first, rest);
+		
+		ResultSetExecution execution = this.translator.createResultSetExecution((QueryExpression)cmd, context, this.utility.createRuntimeMetadata(), connection);
+		execution.execute();
+		while (true) {
+			List<?> row = null;
+			try {
+				row = execution.next();
+			} catch (DataNotAvailableException e) {
+				//the prefetch has not completed
+				Thread.yield();
+				continue;
+			}
+			if (row == null) {
+				break;
+			}
+			results.add(row);
+		}
+		execution.close();
+		
+		ArgumentCaptor<SolrQuery> argument = ArgumentCaptor.forClass(SolrQuery.class);
+		Mockito.verify(connection, Mockito.times(rest.length + 1)).query(argument.capture());
+		return argument.getAllValues();
+    }
+    
+    @Test public void testOffsetPaging() throws Exception {
+    	List<List<?>> results = new ArrayList<List<?>>();
+    	List<SolrQuery> queries = helpExecute("select name from example", results, getResponse(3, null, "a", "b"), getResponse(3, null, "c"));
+    	assertEquals("[[a], [b], [c]]", results.toString());
+    	assertEquals(Integer.valueOf(0), queries.get(0).getStart());
+    	assertEquals(Integer.valueOf(2), queries.get(1).getStart());
+    	assertNull(queries.get(1).get(SolrQueryExecution.CURSOR_MARK));
+    }
+    
+    @Test public void testCursorMarkPaging() throws Exception {
+    	this.translator.setUseCursorMarkPaging(true);
+    	List<List<?>> results = new ArrayList<List<?>>();
+    	List<SolrQuery> queries = helpExecute("select name from example", results, getResponse(5, "m1", "a", "b"), getResponse(5, "m2", "c", "d"), getResponse(5, "m2"));
+    	assertEquals("[[a], [b], [c], [d]]", results.toString());
+    	assertEquals("*", queries.get(0).get(SolrQueryExecution.CURSOR_MARK));
+    	assertEquals("m1", queries.get(1).get(SolrQueryExecution.CURSOR_MARK));
+    	assertEquals("m2", queries.get(2).get(SolrQueryExecution.CURSOR_MARK));
+    	//the unique key sort is required by the cursor
+    	assertEquals("name asc", queries.get(0).get("sort"));
+    }
+    
+    @Test public void testCursorMarkPagingWithPrefetch() throws Exception {
+    	this.translator.setUseCursorMarkPaging(true);
+    	this.translator.setPrefetchPages(true);
+    	List<List<?>> results = new ArrayList<List<?>>();
+    	List<SolrQuery> queries = helpExecute("select name from example order by price", results, getResponse(3, "m1", "a", "b"), getResponse(3, "m2", "c"));
+    	assertEquals("[[a], [b], [c]]", results.toString());
+    	assertEquals("m1", queries.get(1).get(SolrQueryExecution.CURSOR_MARK));
+    	assertEquals("price asc,name asc", queries.get(0).get("sort"));
+    	
+    	this.translator.stop();
+    	assertTrue(((ExecutorService)this.translator.getPrefetchExecutor()).isShutdown());
+    }
+    
+    @Test(expected=TranslatorException.class) public void testCursorMarkNotSupported() throws Exception {
+    	this.translator.setUseCursorMarkPaging(true);
+    	helpExecute("select name from example", new ArrayList<List<?>>(), getResponse(3, null, "a", "b"));
+    }
+
+}
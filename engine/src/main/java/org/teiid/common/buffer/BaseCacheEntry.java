@@ -25,6 +25,8 @@ package org.teiid.common.buffer;
 public class BaseCacheEntry {
 
 	private CacheKey key;
+	//the position in the containing eviction queue, maintained by the queue
+	private int queuePosition = -1;
 
 	public BaseCacheEntry(CacheKey key) {
 		this.key = key;
@@ -51,5 +53,13 @@ public class BaseCacheEntry {
 	public CacheKey getKey() {
 		return key;
 	}
+	
+	public int getQueuePosition() {
+		return queuePosition;
+	}
+	
+	public void setQueuePosition(int queuePosition) {
+		this.queuePosition = queuePosition;
+	}
 
 }
\ No newline at end of file
@@ -25,8 +25,8 @@ package org.teiid.common.buffer;
 public class CacheKey implements Comparable<CacheKey> {
 
 	final private Long id;
-	final protected long lastAccess;
-	final protected long orderingValue;
+	protected long lastAccess;
+	protected long orderingValue;
 	
 	public CacheKey(Long id, long lastAccess, long orderingValue) {
 		this.id = id;
@@ -67,6 +67,15 @@ public class CacheKey implements Comparable<CacheKey> {
 		return orderingValue;
 	}
 	
+	/**
+	 * Update the access values in place.  The caller must hold whatever lock 
+	 * guards the ordering of this key, such as the eviction queue stripe lock.
+	 */
+	public void setAccess(long lastAccess, long orderingValue) {
+		this.lastAccess = lastAccess;
+		this.orderingValue = orderingValue;
+	}
+	
 	@Override
 	public int compareTo(CacheKey o) {
 		int result = orderingValue < o.orderingValue ? -1 : (orderingValue == o.orderingValue ? 0 : 1);
@@ -156,6 +156,57 @@ public abstract class FileStore implements Removable {
 	protected abstract int readWrite(long fileOffset, byte[] b, int offSet, int length, boolean write)
 			throws IOException;
 
+	/**
+	 * Read into the remaining space of the buffer
+	 * @return the number of bytes read or -1 if at the end of the store
+	 */
+	public int read(long fileOffset, ByteBuffer bb) throws IOException {
+		checkRemoved();
+		return readWrite(fileOffset, bb, false);
+	}
+	
+	/**
+	 * Read or write the remaining bytes of the buffer and advance its position.
+	 * <br>
+	 * The default implementation stages the bytes through an array, implementations
+	 * capable of transferring directly to/from the buffer should override.
+	 */
+	protected int readWrite(long fileOffset, ByteBuffer bb, boolean write) throws IOException {
+		int count = 0;
+		if (bb.hasArray()) {
+			count = readWrite(fileOffset, bb.array(), bb.arrayOffset() + bb.position(), bb.remaining(), write);
+			if (count > 0) {
+				bb.position(bb.position() + count);
+			}
+			return count;
+		}
+		byte[] b = new byte[bb.remaining()];
+		if (write) {
+			bb.duplicate().get(b);
+			count = readWrite(fileOffset, b, 0, b.length, true);
+			if (count > 0) {
+				bb.position(bb.position() + count);
+			}
+		} else {
+			count = readWrite(fileOffset, b, 0, b.length, false);
+			if (count > 0) {
+				bb.put(b, 0, count);
+			}
+		}
+		return count;
+	}
+	
+	public void readFully(long fileOffset, ByteBuffer bb) throws IOException {
+		int n = 0;
+		while (bb.hasRemaining()) {
+			int count = this.read(fileOffset + n, bb);
+			if (count <= 0) {
+				throw new IOException("not enough bytes available"); //$NON-NLS-1$
+			}
+			n += count;
+		}
+	}
+
 	public void readFully(long fileOffset, byte[] b, int offSet, int length) throws IOException {
 		if (length == 0) {
 			return;
@@ -186,6 +237,18 @@ public abstract class FileStore implements Removable {
     	} while (n < length);
 	}
 
+	public void write(long start, ByteBuffer bb) throws IOException {
+		int n = 0;
+		while (bb.hasRemaining()) {
+			checkRemoved();
+			int count = this.readWrite(start + n, bb, true);
+			if (count <= 0) {
+				throw new IOException("not enough bytes available"); //$NON-NLS-1$
+			}
+			n += count;
+		}
+	}
+
 	public void remove() {
 		if (removed.compareAndSet(false, true)) {
 			this.removeDirect();
@@ -158,6 +158,7 @@ public class STree implements Cloneable {
 			if (page.next == null) {
 				break;
 			}
+			page = page.next;
 		}
 	}
 	
@@ -179,15 +180,133 @@ public class STree implements Cloneable {
 	
 	public void readValuesFrom(ObjectInputStream ois) throws IOException, ClassNotFoundException, TeiidComponentException {
 		int size = ois.readInt();
-		int sizeHint = this.getExpectedHeight(size);
-		batchInsert = true;
-		while (this.getRowCount() < size) {
+		BulkLoader loader = bulkLoader(1f);
+		int read = 0;
+		while (read < size) {
 			List<List<Object>> batch = BatchSerializer.readBatch(ois, leafManager.getTypes());
 			for (List list : batch) {
-				this.insert(list, InsertMode.ORDERED, sizeHint);
+				if (!loader.append(list)) {
+					throw new AssertionError("Out of order value."); //$NON-NLS-1$
+				}
+			}
+			read += batch.size();
+		}
+		loader.finish();
+	}
+	
+	/**
+	 * Create a {@link BulkLoader} to build this empty tree from tuples in key order.
+	 * @param fillFactor the target fraction of each page to fill, 
+	 * use 1 if the tree will not be updated after the load 
+	 */
+	public BulkLoader bulkLoader(float fillFactor) throws TeiidComponentException {
+		if (rowCount.get() != 0 || header.length != 1) {
+			throw new AssertionError("Bulk load requires an empty tree."); //$NON-NLS-1$
+		}
+		return new BulkLoader(fillFactor);
+	}
+	
+	/**
+	 * Builds the tree bottom-up from tuples in key order.
+	 * <br>
+	 * Rather than searching for the insertion point of each tuple, the leaf pages 
+	 * are filled left to right and the first key of each new page is promoted to 
+	 * the level above, so that the load is a single sequential pass.  
+	 * The new levels are not visible to readers until {@link #finish()} is called.
+	 */
+	public class BulkLoader {
+		
+		private int leafLimit;
+		private int keyLimit;
+		private List<SPage> first = new ArrayList<SPage>();
+		private List<SPage> tails = new ArrayList<SPage>();
+		private List<List<List<?>>> tailValues = new ArrayList<List<List<?>>>();
+		private List<List<?>> firstKeys = new ArrayList<List<?>>();
+		private List<?> lastTuple;
+		
+		private BulkLoader(float fillFactor) throws TeiidComponentException {
+			fillFactor = Math.min(1f, fillFactor);
+			this.leafLimit = Math.max(1, (int)(getPageSize(true) * fillFactor));
+			this.keyLimit = Math.max(2, (int)(getPageSize(false) * fillFactor));
+			setBatchInsert(false);
+		}
+		
+		/**
+		 * Append the tuple to the tree.
+		 * @return false if the tuple was not added because its key is 
+		 * not greater than the last appended key.
+		 */
+		public boolean append(List<?> tuple) throws TeiidComponentException {
+			if (tuple.size() != leafManager.getTypes().length) {
+				throw new AssertionError("Invalid tuple."); //$NON-NLS-1$
+			}
+			if (lastTuple != null && comparator.compare(lastTuple, tuple) >= 0) {
+				return false;
+			}
+			if (lobManager != null) {
+				lobManager.updateReferences(tuple, ReferenceMode.CREATE);
+			}
+			rowCount.addAndGet(1);
+			add(0, tuple, null);
+			lastTuple = tuple;
+			return true;
+		}
+		
+		private void add(int level, List<?> value, SPage child) throws TeiidComponentException {
+			if (level == tails.size()) {
+				SPage page = null;
+				if (level == 0) {
+					page = header[0];
+				} else {
+					page = new SPage(STree.this, false);
+				}
+				first.add(page);
+				tails.add(page);
+				tailValues.add(page.getValues());
+				firstKeys.add(null);
+				if (level > 0) {
+					//reference the first page of the level below
+					firstKeys.set(level, firstKeys.get(level - 1));
+					tailValues.get(level).add(firstKeys.get(level));
+					page.children.add(first.get(level - 1));
+				}
+			}
+			SPage page = tails.get(level);
+			List<List<?>> values = tailValues.get(level);
+			if (values.size() >= (level == 0?leafLimit:keyLimit)) {
+				page.setValues(values);
+				SPage nextPage = new SPage(STree.this, level == 0);
+				nextPage.prev = page;
+				page.next = nextPage;
+				page = nextPage;
+				values = page.getValues();
+				tails.set(level, page);
+				tailValues.set(level, values);
+				add(level + 1, level == 0?extractKey(value):value, page);
+			}
+			values.add(value);
+			if (child != null) {
+				page.children.add(child);
+			} else if (firstKeys.get(0) == null) {
+				firstKeys.set(0, extractKey(value));
+			}
+		}
+		
+		/**
+		 * Write the partial pages and make the new levels visible
+		 * @return the row count
+		 */
+		public int finish() throws TeiidComponentException {
+			if (!tails.isEmpty()) {
+				for (int i = 0; i < tails.size(); i++) {
+					tails.get(i).setValues(tailValues.get(i));
+				}
+				header = first.toArray(new SPage[first.size()]);
+				tails.clear();
 			}
+			return rowCount.get();
 		}
-		batchInsert = false;
+		
 	}
 	
 	protected SPage findChildTail(SPage page) {
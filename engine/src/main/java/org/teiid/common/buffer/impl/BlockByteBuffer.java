@@ -23,10 +23,16 @@
 package org.teiid.common.buffer.impl;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Provides buffer slices or blocks off of a central
  * set of buffers.
+ * <br>
+ * The segments are allocated on first use rather than up front so that a large
+ * (possibly tens of GB direct) buffer does not have to be committed and initialized 
+ * at startup.  This also has the effect that the memory will be first touched by a 
+ * thread actually using the segment.
  */
 public class BlockByteBuffer {
 	
@@ -36,10 +42,13 @@ public class BlockByteBuffer {
 		int segmentSize;
 		int blockSize;
 		int blockCount;
+		int fullSegments;
+		int lastSegmentSize;
+		boolean direct;
 	}
 
 	private BlockByteBufferData data;
-	private ByteBuffer[] origBuffers;
+	private AtomicReferenceArray<ByteBuffer> origBuffers;
 	private ByteBuffer[] buffers;
 	
 	/**
@@ -57,21 +66,16 @@ public class BlockByteBuffer {
 		this.data.blockSize = 1 << blockAddressBits;
 		this.data.segmentSize = 1 << this.data.segmentAddressBits;
 		this.data.blockCount = blockCount;
+		this.data.direct = direct;
 		long size = ((long)blockCount)<<blockAddressBits;
-		int fullSegments = (int)size>>segmentAddressBits;
-		int lastSegmentSize = (int) (size&(data.segmentSize-1));
-		int segments = fullSegments;
-		if (lastSegmentSize > 0) {
+		this.data.fullSegments = (int)(size>>segmentAddressBits);
+		this.data.lastSegmentSize = (int) (size&(data.segmentSize-1));
+		int segments = this.data.fullSegments;
+		if (this.data.lastSegmentSize > 0) {
 			segments++;
 		}
-		origBuffers = new ByteBuffer[segments];
+		origBuffers = new AtomicReferenceArray<ByteBuffer>(segments);
 		buffers = new ByteBuffer[segments];
-		for (int i = 0; i < fullSegments; i++) {
-			origBuffers[i] = allocate(data.segmentSize, direct);
-		}
-		if (lastSegmentSize > 0) {
-			origBuffers[fullSegments] = allocate(lastSegmentSize, direct);
-		}
 	}
 	
 	private BlockByteBuffer() {
@@ -95,10 +99,39 @@ public class BlockByteBuffer {
 		BlockByteBuffer dup = new BlockByteBuffer();
 		dup.data = data;
 		dup.origBuffers = origBuffers;
-		dup.buffers = new ByteBuffer[dup.origBuffers.length];
+		dup.buffers = new ByteBuffer[dup.origBuffers.length()];
 		return dup;
 	}
 	
+	/**
+	 * Get the shared segment, allocating it if needed.  Only the initial 
+	 * allocation is synchronized.
+	 */
+	private ByteBuffer getSegment(int segment) {
+		ByteBuffer result = origBuffers.get(segment);
+		if (result != null) {
+			return result;
+		}
+		synchronized (origBuffers) {
+			result = origBuffers.get(segment);
+			if (result == null) {
+				result = allocate(segment < data.fullSegments?data.segmentSize:data.lastSegmentSize, data.direct);
+				origBuffers.set(segment, result);
+			}
+			return result;
+		}
+	}
+	
+	int getAllocatedSegmentCount() {
+		int count = 0;
+		for (int i = 0; i < origBuffers.length(); i++) {
+			if (origBuffers.get(i) != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+	
 	/**
 	 * Return a buffer positioned at the given start byte.
 	 * It is assumed that the caller will handle blocks in
@@ -113,7 +146,7 @@ public class BlockByteBuffer {
 		int segment = block>>(data.segmentAddressBits-data.blockAddressBits);
 		ByteBuffer bb = buffers[segment];
 		if (bb == null) {
-			bb = buffers[segment] = origBuffers[segment].duplicate();
+			bb = buffers[segment] = getSegment(segment).duplicate();
 		} else {
 			bb.rewind();	
 		}
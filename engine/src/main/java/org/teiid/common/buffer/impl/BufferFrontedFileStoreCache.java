@@ -33,7 +33,6 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -119,6 +118,8 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 	static final int DIRECT_POINTERS = 14;
 	static final int EMPTY_ADDRESS = -1;
 	static final int FREED = -2;
+	//marks an entry that is part of the cache group, but has not yet been added
+	private static final PhysicalInfo PLACEHOLDER = new PhysicalInfo(-1l, -1l, EMPTY_ADDRESS, 0);
 	
 	//TODO allow the block size to be configurable. 8k is a reasonable default up to a gig, but we could be more efficient with larger blocks from there.
 	//the rationale for a smaller block size is to reduce internal fragmentation, which is critical when maintaining a relatively small buffer < 256MB
@@ -151,7 +152,7 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 			this.inode = inode;
 			this.gid = gid;
 			this.oid = oid;
-			this.blockSegment = blocksInuse.getNextSegment();
+			this.blockSegment = allocationSegment.get();
 		}
 		
 		@Override
@@ -281,7 +282,7 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 		private ByteBuffer getInodeBlock() {
 			if (inodeBuffer == null) {
 				if (inode == EMPTY_ADDRESS) {
-					this.inode = inodesInuse.getAndSetNextClearBit();
+					this.inode = inodesInuse.getAndSetNextClearBit(blockSegment);
 					if (this.inode == -1) {
 						throw new AssertionError("Out of inodes"); //$NON-NLS-1$
 					}
@@ -373,6 +374,14 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 	private ConcurrentBitSet inodesInuse;
 	private BlockByteBuffer inodeByteBuffer;
 	
+	//allocation segment affinity so that each thread tends to use its own region of the memory buffer
+	private ThreadLocal<Integer> allocationSegment = new ThreadLocal<Integer>() {
+		@Override
+		protected Integer initialValue() {
+			return blocksInuse.getNextSegment();
+		}
+	};
+	
 	//root directory
 	private ConcurrentHashMap<Long, Map<Long, PhysicalInfo>> physicalMapping = new ConcurrentHashMap<Long, Map<Long, PhysicalInfo>>(16, .75f, BufferManagerImpl.CONCURRENCY_LEVEL);
 	private BlockStore[] sizeBasedStores;
@@ -439,7 +448,7 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 								break;
 							}
 							//move the block if possible
-							InputStream is = blockStore.stores[segment].createInputStream(relativeBlockToMove * blockStore.blockSize, blockStore.blockSize);
+							ExtensibleBufferedInputStream is = blockStore.stores[segment].createInputStream(relativeBlockToMove * blockStore.blockSize, blockStore.blockSize);
 							Long gid = null;
 							Long oid = null;
 							try {
@@ -453,7 +462,7 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 							if (map == null) {
 								continue;
 							}
-							PhysicalInfo info = map.get(oid);
+							PhysicalInfo info = getInfo(map, oid);
 							if (info == null) {
 								continue;
 							}
@@ -622,10 +631,10 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 			if (map == null) {
 				return true; //already removed
 			}
-			info = map.get(entry.getId());
+			info = getInfo(map, entry.getId());
 			if (info == null) {
 				synchronized (map) {
-					info = map.get(entry.getId());
+					info = getInfo(map, entry.getId());
 					if (info == null) {
 						newEntry = true;
 						if (!map.containsKey(entry.getId())) {
@@ -721,7 +730,7 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 		if (map == null) {
 			return null;
 		}
-		PhysicalInfo info = map.get(oid);
+		PhysicalInfo info = getInfo(map, oid);
 		if (info == null) {
 			return null;
 		}
@@ -751,7 +760,8 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 		readAttempts.incrementAndGet();
 		InputStream is = null;
 		Lock lock = null;
-		ExtensibleBufferedInputStream eis = null;
+		FileStore fs = null;
+		long blockOffset = 0;
 		int memoryBlocks = 0;
 		try {
 			synchronized (info) {
@@ -774,17 +784,17 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 					}
 					BlockStore blockStore = sizeBasedStores[info.sizeIndex];
 					int segment = info.block/blockStore.blocksInUse.getBitsPerSegment();
-					FileStore fs = blockStore.stores[segment];
-					long blockOffset = (info.block%blockStore.blocksInUse.getBitsPerSegment())*blockStore.blockSize;
-					eis = fs.createInputStream(blockOffset, info.memoryBlockCount<<LOG_BLOCK_SIZE);
-					lock = blockStore.locks[segment].writeLock();
+					fs = blockStore.stores[segment];
+					blockOffset = (info.block%blockStore.blocksInUse.getBitsPerSegment())*blockStore.blockSize;
+					//reads of the same segment may proceed concurrently 
+					lock = blockStore.locks[segment].readLock();
 					memoryBlocks = info.memoryBlockCount;
 				} else {
 					return null;
 				}
 			}
 			if (lock != null) {
-				is = readIntoMemory(info, eis, lock, memoryBlocks);
+				is = readIntoMemory(info, fs, blockOffset, lock, memoryBlocks);
 			}
 			for (int i = 0; i < HEADER_BYTES; i++) {
 				is.read();
@@ -810,7 +820,7 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 	/**
 	 * Transfer into memory to release memory/file locks
 	 */
-	private InputStream readIntoMemory(PhysicalInfo info, ExtensibleBufferedInputStream is,
+	private InputStream readIntoMemory(PhysicalInfo info, FileStore fs, long blockOffset,
 			Lock fileLock, int memoryBlocks) throws InterruptedException,
 			IOException {
 		checkForLowMemory();
@@ -818,6 +828,7 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 		BlockManager manager = null;
 		boolean success = false;
 		boolean locked = false;
+		InputStream is = null;
 		try {
 			manager = getBlockManager(info.gid, info.getId(), EMPTY_ADDRESS);
 			//preallocate the memory area, to ensure we won't exhaust memory while holding
@@ -828,16 +839,11 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 			
 			fileLock.lock();
 			locked = true;
-			ExtensibleBufferedOutputStream os = new BlockOutputStream(manager, -1);
-			//TODO: there is still an extra buffer being created here, we could FileChannels to do better
-			ByteBuffer bb = null;
-			while ((bb = is.getBuffer()) != null) {
-				byte[] array = bb.array();
-				os.write(array, bb.position() + bb.arrayOffset(), bb.remaining());
-				bb.position(bb.position()+bb.remaining());
+			//read directly into the memory blocks
+			for (int i = 0; i < memoryBlocks; i++) {
+				fs.readFully(blockOffset + (i<<LOG_BLOCK_SIZE), manager.getBlock(i));
 			}
 			fileLock.unlock();
-			os.close();
 			locked = false;
 		    synchronized (info) {
 		        info.inode = manager.getInode();
@@ -890,13 +896,22 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 		if (map == null) {
 			return false;
 		}
-		map.put(oid, null);
+		map.put(oid, PLACEHOLDER);
 		return true;
 	}
 	
+	private static PhysicalInfo getInfo(Map<Long, PhysicalInfo> map, Long oid) {
+		PhysicalInfo info = map.get(oid);
+		if (info == PLACEHOLDER) {
+			return null;
+		}
+		return info;
+	}
+	
 	@Override
 	public void createCacheGroup(Long gid) {
-		physicalMapping.put(gid, Collections.synchronizedMap(new HashMap<Long, PhysicalInfo>()));
+		//lookups are lock free, modifications that must be consistent with add are synchronized on the map
+		physicalMapping.put(gid, new ConcurrentHashMap<Long, PhysicalInfo>(16, .75f, 1));
 	}
 	
 	@Override
@@ -906,14 +921,16 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 			return false;
 		}
 		PhysicalInfo info = null;
-		boolean result = false;
 		synchronized (map) {
-			int size = map.size();
 			info = map.remove(id);
-			result = size != map.size();
 		}
-		free(info, false, false);
-		return result;
+		if (info == null) {
+			return false;
+		}
+		if (info != PLACEHOLDER) {
+			free(info, false, false);
+		}
+		return true;
 	}
 
 	@Override
@@ -923,8 +940,10 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 			return Collections.emptySet();
 		}
 		synchronized (map) {
-			for (Map.Entry<Long, PhysicalInfo> entry : map.entrySet()) {
-				free(entry.getValue(), false, false);
+			for (PhysicalInfo info : map.values()) {
+				if (info != PLACEHOLDER) {
+					free(info, false, false);
+				}
 			}
 			return map.keySet();
 		}
@@ -675,7 +675,7 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
     	} else {
     		lock.lock();
     		try {
-    			count = Math.min(count, nominalProcessingMemoryMax - existing);
+    			count = Math.max(0, Math.min(count, nominalProcessingMemoryMax - existing));
     			result = noWaitReserve(count, false, context);
     		} finally {
     			lock.unlock();
@@ -26,6 +26,10 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -35,6 +39,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import org.teiid.common.buffer.FileStore;
 import org.teiid.common.buffer.StorageManager;
 import org.teiid.core.TeiidComponentException;
+import org.teiid.core.util.PropertiesUtils;
 import org.teiid.logging.LogConstants;
 import org.teiid.logging.LogManager;
 import org.teiid.logging.MessageLevel;
@@ -57,6 +62,8 @@ public class FileStorageManager implements StorageManager {
 	
 	private AtomicLong sample = new AtomicLong();
 	
+	private boolean useChannels = PropertiesUtils.getBooleanProperty(System.getProperties(), "org.teiid.useBufferFileChannels", false); //$NON-NLS-1$
+	
 	private class FileInfo {
     	private File file;
         private RandomAccessFile fileData;       // may be null if not open
@@ -76,10 +83,21 @@ public class FileStorageManager implements StorageManager {
         }
 
         public void close() {
-        	fileCache.put(this.file, this.fileData);
+        	if (this.fileData != null) {
+        		fileCache.put(this.file, this.fileData);
+        	}
             this.fileData = null;
         }
         
+        /**
+         * Discard a handle that has been closed out from under us
+         */
+        public void invalidate(RandomAccessFile closed) {
+        	if (this.fileData == closed) {
+        		this.fileData = null;
+        	}
+        }
+        
         public void delete()  {
         	if (fileData == null) {
         		fileData = fileCache.remove(this.file);
@@ -89,6 +107,7 @@ public class FileStorageManager implements StorageManager {
         			fileData.close();
 				} catch (IOException e) {
 				}
+        		fileData = null;
         	}
         	file.delete();
         }
@@ -100,7 +119,9 @@ public class FileStorageManager implements StorageManager {
 	
 	public class DiskStore extends FileStore {
 	    private String name;
-		private FileInfo fileInfo; 
+		private FileInfo fileInfo;
+		private int users;
+		private boolean removed;
 	    
 	    public DiskStore(String name) {
 			this.name = name;
@@ -114,34 +135,110 @@ public class FileStorageManager implements StorageManager {
 	    	return fileInfo.file.length();
 	    }
 	    
+	    /**
+	     * Get the file handle, which will not be returned to the cache
+	     * until all users have called {@link #close()}
+	     */
+	    private synchronized RandomAccessFile open() throws FileNotFoundException {
+	    	RandomAccessFile fileAccess = fileInfo.open();
+	    	users++;
+	    	return fileAccess;
+	    }
+	    
+	    private synchronized void close() {
+	    	if (--users == 0) {
+	    		fileInfo.close();
+	    	}
+	    }
+	    
 	    @Override
-	    protected synchronized int readWrite(long fileOffset, byte[] b, int offSet,
+	    protected int readWrite(long fileOffset, byte[] b, int offSet,
 	    		int length, boolean write) throws IOException {
-	    	if (!write) {
-	    		if (fileInfo == null) {
-	    			return -1;
-	    		}
-				try {
-					RandomAccessFile fileAccess = fileInfo.open();
-			        fileAccess.seek(fileOffset);
-			        return fileAccess.read(b, offSet, length);
-				} finally {
-					fileInfo.close();
+	    	if (useChannels) {
+	    		return readWrite(fileOffset, ByteBuffer.wrap(b, offSet, length), write);
+	    	}
+	    	synchronized (this) {
+		    	if (!write) {
+		    		if (fileInfo == null) {
+		    			return -1;
+		    		}
+		    		RandomAccessFile fileAccess = open();
+					try {
+				        fileAccess.seek(fileOffset);
+				        return fileAccess.read(b, offSet, length);
+					} finally {
+						close();
+					}
+		    	}
+				if (fileInfo == null) {
+					fileInfo = new FileInfo(createFile(name));
+		        }
+				RandomAccessFile fileAccess = open();
+		        try {
+		            long newLength = fileOffset + length;
+		            setLength(fileAccess, newLength, false);
+		            fileAccess.seek(fileOffset);
+		            fileAccess.write(b, offSet, length);
+		        } finally {
+		        	close();
+		        }	    		
+		    	return length;
+	    	}
+	    }
+	    
+	    /**
+	     * When using channels the transfer is performed with positional reads/writes 
+	     * outside of the store lock, so that concurrent readers do not serialize on the file handle.
+	     */
+	    @Override
+	    protected int readWrite(long fileOffset, ByteBuffer bb, boolean write)
+	    		throws IOException {
+	    	if (!useChannels) {
+	    		return super.readWrite(fileOffset, bb, write);
+	    	}
+	    	while (true) {
+		    	RandomAccessFile fileAccess = null;
+		    	synchronized (this) {
+		    		if (removed) {
+		    			throw new IOException("already removed"); //$NON-NLS-1$
+		    		}
+		    		if (fileInfo == null) {
+		    			if (!write) {
+		    				return -1;
+		    			}
+		    			fileInfo = new FileInfo(createFile(name));
+		    		}
+		    		fileAccess = open();
+		    		boolean success = false;
+		    		try {
+		    			if (write) {
+		    				setLength(fileAccess, fileOffset + bb.remaining(), false);
+		    			}
+		    			success = true;
+		    		} finally {
+		    			if (!success) {
+		    				close();
+		    			}
+		    		}
 				}
+		    	try {
+		    		FileChannel channel = fileAccess.getChannel();
+		    		if (!write) {
+		    			return channel.read(bb, fileOffset);
+		    		}
+		    		return channel.write(bb, fileOffset);
+		    	} catch (ClosedChannelException e) {
+		    		//an interrupt of any user closes the channel, so the handle cannot be reused
+		    		synchronized (this) {
+		    			fileInfo.invalidate(fileAccess);
+					}
+		    		if (e instanceof ClosedByInterruptException) {
+		    			throw e;
+		    		}
+		    	} finally {
+		    		close();
+		    	}
 	    	}
-			if (fileInfo == null) {
-				fileInfo = new FileInfo(createFile(name));
-	        }
-	        try {
-	        	RandomAccessFile fileAccess = fileInfo.open();
-	            long newLength = fileOffset + length;
-	            setLength(fileAccess, newLength, false);
-	            fileAccess.seek(fileOffset);
-	            fileAccess.write(b, offSet, length);
-	        } finally {
-	        	fileInfo.close();
-	        }	    		
-	    	return length;
 	    }
 
 		private void setLength(RandomAccessFile fileAccess, long newLength, boolean truncate)
@@ -179,15 +276,17 @@ public class FileStorageManager implements StorageManager {
 	    	if (fileInfo == null) {
 				fileInfo = new FileInfo(createFile(name));
 	        }
+	    	RandomAccessFile fileAccess = open();
 	    	try {
-	    		setLength(fileInfo.open(), length, true);
+	    		setLength(fileAccess, length, true);
 	    	} finally {
-	    		fileInfo.close();
+	    		close();
 	    	}
 	    }
 		
 	    @Override
 		public synchronized void removeDirect() {
+	    	removed = true;
 			usedBufferSpace.addAndGet(-getLength());
 			if (fileInfo != null){
 				fileInfo.delete();
@@ -250,6 +349,19 @@ public class FileStorageManager implements StorageManager {
 		this.maxOpenFiles = maxOpenFiles;
 	}
     
+    /**
+     * Use positional {@link FileChannel} transfers rather than 
+     * synchronized {@link RandomAccessFile} access
+     * @param useChannels
+     */
+    public void setUseChannels(boolean useChannels) {
+		this.useChannels = useChannels;
+	}
+    
+    public boolean isUseChannels() {
+		return useChannels;
+	}
+    
     public void setStorageDirectory(String directory) {
 		this.directory = directory;
 	}
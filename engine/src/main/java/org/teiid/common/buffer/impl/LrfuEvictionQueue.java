@@ -22,10 +22,11 @@
 
 package org.teiid.common.buffer.impl;
 
+import java.util.AbstractCollection;
 import java.util.Collection;
-import java.util.Map;
-import java.util.NavigableMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -34,42 +35,287 @@ import org.teiid.common.buffer.CacheKey;
 
 /**
  * A Concurrent LRFU eviction queue.  Has assumptions that match buffermanager usage.
- * Null values are not allowed.
+ * Null values are not allowed and a value may only be held by a single queue at a time.
+ * <br>
+ * Values are striped by id over binary heaps ordered by {@link CacheKey}.  Each value
+ * tracks its heap position, so that a touch or remove is an in place sift under the stripe 
+ * lock rather than a remove and re-insert.  The first entry is the least of the stripe heads.
  * @param <V>
  */
 public class LrfuEvictionQueue<V extends BaseCacheEntry> {
 	
 	private static final long DEFAULT_HALF_LIFE = 1<<16;
 	private static final long MIN_INTERVAL = 1<<9;
-	//TODO: until Java 7 ConcurrentSkipListMap has a scaling bug in that
-	//the level function limits the effective map size to ~ 2^16
-	//above which it performs comparably under multi-threaded load to a synchronized LinkedHashMap
-	//just with more CPU overhead vs. wait time.
-	protected NavigableMap<CacheKey, V> evictionQueue = new ConcurrentSkipListMap<CacheKey, V>();
+	private static final int MAX_STRIPES = 64;
+	private static final int INITIAL_STRIPE_SIZE = 16;
+	
+	/**
+	 * A binary min heap.  All methods other than {@link #first} must be accessed 
+	 * while holding the stripe lock.
+	 */
+	private static class Stripe {
+		BaseCacheEntry[] heap = new BaseCacheEntry[INITIAL_STRIPE_SIZE];
+		int size;
+		volatile BaseCacheEntry first;
+		
+		boolean contains(BaseCacheEntry value) {
+			int index = value.getQueuePosition();
+			return index >= 0 && index < size && heap[index] == value;
+		}
+		
+		void insert(BaseCacheEntry value) {
+			if (size == heap.length) {
+				BaseCacheEntry[] newHeap = new BaseCacheEntry[size << 1];
+				System.arraycopy(heap, 0, newHeap, 0, size);
+				heap = newHeap;
+			}
+			heap[size] = value;
+			value.setQueuePosition(size);
+			siftUp(size++);
+			first = heap[0];
+		}
+		
+		void removeAt(int index) {
+			BaseCacheEntry value = heap[index];
+			BaseCacheEntry last = heap[--size];
+			heap[size] = null;
+			value.setQueuePosition(-1);
+			if (index != size) {
+				heap[index] = last;
+				last.setQueuePosition(index);
+				update(index);
+			}
+			first = size > 0 ? heap[0] : null;
+		}
+		
+		/**
+		 * Restore the heap order after the key at the index has changed
+		 */
+		void update(int index) {
+			siftUp(siftDown(index));
+			first = heap[0];
+		}
+		
+		void clear() {
+			for (int i = 0; i < size; i++) {
+				heap[i].setQueuePosition(-1);
+			}
+			heap = new BaseCacheEntry[INITIAL_STRIPE_SIZE];
+			size = 0;
+			first = null;
+		}
+		
+		private void siftUp(int index) {
+			BaseCacheEntry value = heap[index];
+			CacheKey key = value.getKey();
+			while (index > 0) {
+				int parent = (index - 1) >>> 1;
+				BaseCacheEntry p = heap[parent];
+				if (key.compareTo(p.getKey()) >= 0) {
+					break;
+				}
+				heap[index] = p;
+				p.setQueuePosition(index);
+				index = parent;
+			}
+			heap[index] = value;
+			value.setQueuePosition(index);
+		}
+		
+		private int siftDown(int index) {
+			BaseCacheEntry value = heap[index];
+			CacheKey key = value.getKey();
+			int half = size >>> 1;
+			while (index < half) {
+				int child = (index << 1) + 1;
+				BaseCacheEntry c = heap[child];
+				int right = child + 1;
+				if (right < size && heap[right].getKey().compareTo(c.getKey()) < 0) {
+					c = heap[child = right];
+				}
+				if (key.compareTo(c.getKey()) <= 0) {
+					break;
+				}
+				heap[index] = c;
+				c.setQueuePosition(index);
+				index = child;
+			}
+			heap[index] = value;
+			value.setQueuePosition(index);
+			return index;
+		}
+	}
+	
+	/**
+	 * A position in a stripe heap, ordered by the key values at the time the position was read
+	 */
+	private static class Cursor implements Comparable<Cursor> {
+		Stripe stripe;
+		int index;
+		BaseCacheEntry value;
+		long orderingValue;
+		long lastAccess;
+		Long id;
+		
+		Cursor(Stripe stripe) {
+			this.stripe = stripe;
+		}
+		
+		/**
+		 * Must be called while holding the stripe lock
+		 */
+		void set(int i) {
+			this.index = i;
+			this.value = stripe.heap[i];
+			CacheKey key = value.getKey();
+			this.orderingValue = key.getOrderingValue();
+			this.lastAccess = key.getLastAccess();
+			this.id = key.getId();
+		}
+		
+		@Override
+		public int compareTo(Cursor o) {
+			int result = orderingValue < o.orderingValue ? -1 : (orderingValue == o.orderingValue ? 0 : 1);
+			if (result == 0) {
+				result = lastAccess < o.lastAccess ? -1 : (lastAccess == o.lastAccess ? 0 : 1);
+				if (result == 0) {
+					return id.compareTo(o.id);
+				}
+			}
+			return result;
+		}
+	}
+	
+	/**
+	 * A weakly consistent view of the queue in eviction order.
+	 * <br>
+	 * The iterator lazily merges the stripe heaps by expanding the children of each 
+	 * returned position, so a scan that stops early only reads the entries it returns 
+	 * and their children.  Concurrent modifications may cause entries to be skipped or repeated.
+	 */
+	private class EvictionQueueView extends AbstractCollection<V> {
+		
+		@Override
+		public Iterator<V> iterator() {
+			final PriorityQueue<Cursor> cursors = new PriorityQueue<Cursor>(stripes.length);
+			for (Stripe stripe : stripes) {
+				synchronized (stripe) {
+					if (stripe.size == 0) {
+						continue;
+					}
+					Cursor cursor = new Cursor(stripe);
+					cursor.set(0);
+					cursors.add(cursor);
+				}
+			}
+			return new Iterator<V>() {
+				@Override
+				public boolean hasNext() {
+					return !cursors.isEmpty();
+				}
+				
+				@Override
+				public V next() {
+					Cursor cursor = cursors.poll();
+					if (cursor == null) {
+						throw new NoSuchElementException();
+					}
+					BaseCacheEntry result = cursor.value;
+					Stripe stripe = cursor.stripe;
+					synchronized (stripe) {
+						int child = (cursor.index << 1) + 1;
+						if (child < stripe.size) {
+							if (child + 1 < stripe.size) {
+								Cursor right = new Cursor(stripe);
+								right.set(child + 1);
+								cursors.add(right);
+							}
+							//reuse the cursor for the left child
+							cursor.set(child);
+							cursors.add(cursor);
+						}
+					}
+					return (V)result;
+				}
+				
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+		
+		@Override
+		public int size() {
+			return getSize();
+		}
+		
+		@Override
+		public void clear() {
+			for (Stripe stripe : stripes) {
+				synchronized (stripe) {
+					size.addAndGet(-stripe.size);
+					stripe.clear();
+				}
+			}
+		}
+	}
+	
+	private Stripe[] stripes;
+	private int stripeMask;
+	private EvictionQueueView view = new EvictionQueueView();
 	protected AtomicLong clock;
 	protected long maxInterval;
 	protected long halfLife;
 	private AtomicInteger size = new AtomicInteger();
 	
 	public LrfuEvictionQueue(AtomicLong clock) {
+		this(clock, Runtime.getRuntime().availableProcessors() << 1);
+	}
+	
+	LrfuEvictionQueue(AtomicLong clock, int concurrency) {
 		this.clock = clock;
 		setHalfLife(DEFAULT_HALF_LIFE);
+		int count = 1;
+		while (count < concurrency && count < MAX_STRIPES) {
+			count <<= 1;
+		}
+		this.stripes = new Stripe[count];
+		for (int i = 0; i < count; i++) {
+			this.stripes[i] = new Stripe();
+		}
+		this.stripeMask = count - 1;
+	}
+	
+	private Stripe getStripe(V value) {
+		long id = value.getId();
+		int hash = (int)(id ^ (id >>> 32));
+		hash ^= (hash >>> 16);
+		return stripes[hash & stripeMask];
 	}
 
 	public boolean remove(V value) {
-		if (evictionQueue.remove(value.getKey()) != null) {
-			size.addAndGet(-1);
-			return true;
+		Stripe stripe = getStripe(value);
+		synchronized (stripe) {
+			if (!stripe.contains(value)) {
+				return false;
+			}
+			stripe.removeAt(value.getQueuePosition());
 		}
-		return false;
+		size.addAndGet(-1);
+		return true;
 	}
 	
 	public boolean add(V value) {
-		if (evictionQueue.put(value.getKey(), value) == null) {
-			size.addAndGet(1);
-			return true;
+		Stripe stripe = getStripe(value);
+		synchronized (stripe) {
+			if (stripe.contains(value)) {
+				return false;
+			}
+			stripe.insert(value);
 		}
-		return false;
+		size.addAndGet(1);
+		return true;
 	}
 	
 	public void touch(V value) {
@@ -77,43 +323,79 @@ public class LrfuEvictionQueue<V extends BaseCacheEntry> {
 		if (tick - MIN_INTERVAL < value.getKey().getLastAccess()) {
 			return;
 		}
-		evictionQueue.remove(value.getKey());
-		recordAccess(value);
-		evictionQueue.put(value.getKey(), value);
+		Stripe stripe = getStripe(value);
+		synchronized (stripe) {
+			updateKey(value.getKey());
+			if (stripe.contains(value)) {
+				stripe.update(value.getQueuePosition());
+				return;
+			}
+			stripe.insert(value);
+		}
+		size.addAndGet(1);
 	}
 		
 	public Collection<V> getEvictionQueue() {
-		return evictionQueue.values();
+		return view;
 	}
 	
 	public V firstEntry(boolean poll) {
-		Map.Entry<CacheKey, V> entry = null;
-		if (poll) {
-			entry = evictionQueue.pollFirstEntry();
-			if (entry != null) {
-				size.addAndGet(-1);
+		while (true) {
+			Stripe min = null;
+			BaseCacheEntry minValue = null;
+			CacheKey minKey = null;
+			for (Stripe stripe : stripes) {
+				BaseCacheEntry value = stripe.first;
+				if (value == null) {
+					continue;
+				}
+				CacheKey key = value.getKey();
+				if (minKey == null || key.compareTo(minKey) < 0) {
+					min = stripe;
+					minValue = value;
+					minKey = key;
+				}
 			}
-		} else {
-			entry = evictionQueue.firstEntry();
-		}
-		if (entry != null) {
-			return entry.getValue();
+			if (minValue == null || !poll) {
+				return (V)minValue;
+			}
+			synchronized (min) {
+				if (min.size == 0 || min.heap[0] != minValue) {
+					continue; //concurrently modified
+				}
+				min.removeAt(0);
+			}
+			size.addAndGet(-1);
+			return (V)minValue;
 		}
-		return null;
 	}
 	
 	/**
      * Callers should be synchronized on value
      */
 	void recordAccess(V value) {
-		CacheKey key = value.getKey();
+		assert !contains(value);
+		updateKey(value.getKey());
+	}
+	
+	private boolean contains(V value) {
+		Stripe stripe = getStripe(value);
+		synchronized (stripe) {
+			return stripe.contains(value);
+		}
+	}
+
+	/**
+	 * Update the key in place.  Must be called while holding the stripe lock 
+	 * or while the value is not in the queue.
+	 */
+	private void updateKey(CacheKey key) {
 		long lastAccess = key.getLastAccess();
 		long currentClock = clock.get();
 		long orderingValue = key.getOrderingValue();
 		orderingValue = computeNextOrderingValue(currentClock, lastAccess,
 				orderingValue);
-		assert !this.evictionQueue.containsKey(value.getKey());
-		value.setKey(new CacheKey(key.getId(), currentClock, orderingValue));
+		key.setAccess(currentClock, orderingValue);
 	}
 	
 	long computeNextOrderingValue(long currentTime,
@@ -147,12 +429,14 @@ public class LrfuEvictionQueue<V extends BaseCacheEntry> {
 		StringBuilder result = new StringBuilder();
 		result.append("Size:").append(getSize()).append(" "); //$NON-NLS-1$ //$NON-NLS-2$
 		int max = 2000;
-		for (CacheKey e : evictionQueue.keySet()) {
+		for (V v : getEvictionQueue()) {
+			CacheKey e = v.getKey();
 			result.append("(").append(e.getOrderingValue()).append(", ") //$NON-NLS-1$ //$NON-NLS-2$
 					.append(e.getLastAccess()).append(", ").append(e.getId()) //$NON-NLS-1$
 					.append(") "); //$NON-NLS-1$
 			if (--max == 0) {
 				result.append("..."); //$NON-NLS-1$
+				break;
 			}
 		}
 		return result.toString();
@@ -23,6 +23,7 @@
 package org.teiid.common.buffer.impl;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -95,6 +96,33 @@ public class SplittableStorageManager implements StorageManager {
 			return length;
 	    }
 
+	    @Override
+	    protected int readWrite(long fileOffset, ByteBuffer bb, boolean write)
+	    		throws IOException {
+	    	FileStore store = null;
+	    	synchronized (this) {
+	    		if (write) {
+	    			ensureLength(fileOffset + bb.remaining());
+	    		} else if (fileOffset > len) {
+	    			throw new IOException("Invalid file position " + fileOffset + " length " + bb.remaining()); //$NON-NLS-1$ //$NON-NLS-2$
+	    		}
+	    		store = storageFiles.get((int)(fileOffset/maxFileSize));
+			}
+	    	long fileBegin = fileOffset%maxFileSize;
+	    	int length = (int)Math.min(bb.remaining(), maxFileSize - fileBegin);
+	    	int limit = bb.limit();
+	    	bb.limit(bb.position() + length);
+	    	try {
+	    		if (!write) {
+	    			return store.read(fileBegin, bb);
+	    		}
+	    		store.write(fileBegin, bb);
+	    		return length;
+	    	} finally {
+	    		bb.limit(limit);
+	    	}
+	    }
+
 		private void ensureLength(long length) throws IOException {
 			if (length <= len) {
 				return;
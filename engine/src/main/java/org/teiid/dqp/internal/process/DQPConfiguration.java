@@ -49,6 +49,8 @@ public class DQPConfiguration{
     private int userRequestSourceConcurrency = DEFAULT_USER_REQUEST_SOURCE_CONCURRENCY;
     private boolean detectingChangeEvents = true;
     private long queryTimeout;
+    private int sourceQueryCacheMaxEntries;
+    private long sourceQueryCacheTtl = SourceQueryCache.DEFAULT_TTL;
     
     private transient AuthorizationValidator authorizationValidator;
 
@@ -164,6 +166,28 @@ public class DQPConfiguration{
 	public long getQueryTimeout() {
 		return queryTimeout;
 	}
+	
+	/**
+	 * The maximum number of source query results shared across requests.  0 disables the {@link SourceQueryCache}.
+	 */
+	public int getSourceQueryCacheMaxEntries() {
+		return sourceQueryCacheMaxEntries;
+	}
+	
+	public void setSourceQueryCacheMaxEntries(int sourceQueryCacheMaxEntries) {
+		this.sourceQueryCacheMaxEntries = sourceQueryCacheMaxEntries;
+	}
+	
+	/**
+	 * The default time to live in milliseconds of shared source query results
+	 */
+	public long getSourceQueryCacheTtl() {
+		return sourceQueryCacheTtl;
+	}
+	
+	public void setSourceQueryCacheTtl(long sourceQueryCacheTtl) {
+		this.sourceQueryCacheTtl = sourceQueryCacheTtl;
+	}
 
 	public TeiidExecutor getTeiidExecutor() {
 		return new ThreadReuseExecutor(DQPConfiguration.PROCESS_PLAN_QUEUE_NAME, getMaxThreads());
@@ -102,6 +102,7 @@ public class DQPCore implements DQP {
     private BufferManager bufferManager;
     private TempTableDataManager dataTierMgr;
     private SessionAwareCache<PreparedPlan> prepPlanCache;
+    private SourceQueryCache sourceQueryCache;
     private SessionAwareCache<CachedResults> rsCache;
     private TransactionService transactionService;
     private EventDistributor eventDistributor;
@@ -607,6 +608,10 @@ public class DQPCore implements DQP {
 			 throw new TeiidRuntimeException(QueryPlugin.Event.TEIID30496, e);
 		}
         
+        if (config.getSourceQueryCacheMaxEntries() > 0) {
+        	this.sourceQueryCache = new SourceQueryCache(this.bufferManager, config.getSourceQueryCacheMaxEntries(), config.getSourceQueryCacheTtl());
+        }
+        
         this.userRequestSourceConcurrency = config.getUserRequestSourceConcurrency();
         if (this.userRequestSourceConcurrency < 1) {
         	this.userRequestSourceConcurrency = Math.min(config.getMaxThreads(), 2*config.getMaxThreads()/this.maxActivePlans);
@@ -857,6 +862,14 @@ public class DQPCore implements DQP {
 		return prepPlanCache;
 	}
 	
+	public SourceQueryCache getSourceQueryCache() {
+		return sourceQueryCache;
+	}
+	
+	void setSourceQueryCache(SourceQueryCache sourceQueryCache) {
+		this.sourceQueryCache = sourceQueryCache;
+	}
+	
 	public String getRuntimeVersion() {
 		return ApplicationInfo.getInstance().getBuildNumber();
 	}
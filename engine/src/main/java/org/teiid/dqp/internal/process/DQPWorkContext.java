@@ -71,7 +71,8 @@ public class DQPWorkContext implements Serializable {
 		EIGHT_2("08.02", (byte)2), //$NON-NLS-1$
 		EIGHT_4("08.04.00.CR3", (byte)2), //$NON-NLS-1$
 		EIGHT_6("08.06.00.Beta3", (byte)3), //$NON-NLS-1$
-		EIGHT_7("08.07.00.Beta2", (byte)3); //$NON-NLS-1$
+		EIGHT_7("08.07.00.Beta2", (byte)3), //$NON-NLS-1$
+		EIGHT_10("08.10.00.Alpha2", (byte)4); //$NON-NLS-1$
 		
 		private String string;
 		private byte clientSerializationVersion;
@@ -1004,6 +1004,14 @@ public class DataTierManagerImpl implements ProcessorDataManager {
 				LogManager.logTrace(LogConstants.CTX_DQP, aqr.getAtomicRequestID(), "command not cachable"); //$NON-NLS-1$
 			}
 		}
+		if (cid == null && !parameterObject.doNotCache && parameterObject.limit <= 0 
+				&& requestMgr != null && requestMgr.getSourceQueryCache() != null 
+				&& !work.isThreadBound() && !aqr.isTransactional()) {
+			TupleSource shared = requestMgr.getSourceQueryCache().getTupleSource(this, context, command, modelName, aqr, work);
+			if (shared != null) {
+				return shared;
+			}
+		}
 		DataTierTupleSource dtts = new DataTierTupleSource(aqr, workItem, work, this, parameterObject.limit);
 		TupleSource result = dtts;
 		TupleBuffer tb = null;
@@ -992,6 +992,7 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
         }
         ResultsMessage result = new ResultsMessage(batch, columnNames, dataTypes);
         result.setClientSerializationVersion(this.dqpWorkContext.getClientVersion().getClientSerializationVersion());
+        result.setCompressResults(this.options != null && this.options.isCompressResults());
         result.setDelayDeserialization(this.requestMsg.isDelaySerialization() && this.originalCommand.returnsResultSet());
         return result;
     }
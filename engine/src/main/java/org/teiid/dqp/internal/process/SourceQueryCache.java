@@ -0,0 +1,760 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.dqp.internal.process;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.teiid.adminapi.impl.CacheStatisticsMetadata;
+import org.teiid.adminapi.impl.ModelMetaData;
+import org.teiid.adminapi.impl.VDBMetaData;
+import org.teiid.client.SourceWarning;
+import org.teiid.common.buffer.BlockedException;
+import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.BufferManager.TupleSourceType;
+import org.teiid.common.buffer.TupleBatch;
+import org.teiid.common.buffer.TupleBuffer;
+import org.teiid.common.buffer.TupleSource;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.TeiidProcessingException;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.core.util.EquivalenceUtil;
+import org.teiid.core.util.HashCodeUtil;
+import org.teiid.dqp.internal.datamgr.ConnectorWork;
+import org.teiid.dqp.internal.process.DQPCore.CompletionListener;
+import org.teiid.dqp.internal.process.TupleSourceCache.CachableVisitor;
+import org.teiid.dqp.message.AtomicRequestMessage;
+import org.teiid.dqp.message.AtomicResultsMessage;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.metadata.FunctionMethod.Determinism;
+import org.teiid.query.QueryPlugin;
+import org.teiid.query.sql.lang.Command;
+import org.teiid.query.sql.lang.QueryCommand;
+import org.teiid.query.sql.navigator.PreOrPostOrderNavigator;
+import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.sql.symbol.Function;
+import org.teiid.query.sql.symbol.GroupSymbol;
+import org.teiid.query.sql.visitor.FunctionCollectorVisitor;
+import org.teiid.query.sql.visitor.GroupCollectorVisitor;
+import org.teiid.query.util.CommandContext;
+import org.teiid.translator.DataNotAvailableException;
+import org.teiid.translator.TranslatorException;
+import org.teiid.vdb.runtime.VDBKey;
+
+/**
+ * An engine wide, size bounded cache of source query results.
+ * <br>
+ * Unlike the result set cache this does not require a {@link org.teiid.translator.CacheDirective}.
+ * Concurrent requests for the same source query are coalesced onto a single load of a shared {@link TupleBuffer}, 
+ * later requests read the completed buffer until it expires.  The load is performed by its own tasks rather than 
+ * by the plan of the first request, so that all readers see rows as soon as the source returns them.  It is
+ * canceled if all of the readers are closed before it completes.
+ * <br>
+ * Entries are scoped to the vdb and user.  The ttl may be overridden per model with the
+ * {@link #TTL_PROPERTY} model property, where a value less than 1 disables caching for that model.
+ */
+public class SourceQueryCache {
+
+	public static final String TTL_PROPERTY = "source-query-cache-ttl"; //$NON-NLS-1$
+	public static final long DEFAULT_TTL = 60000;
+	
+	/**
+	 * How often to check an asynch source that has not indicated a delay.  The dataAvailable notification
+	 * is sent to the work item of the request that started the load, which may no longer be reading.
+	 */
+	static final long DATA_AVAILABLE_POLL_INTERVAL = 100;
+
+	static class Key {
+		private VDBKey vdbKey;
+		private String userName;
+		private String modelName;
+		private String sql;
+		private List<Object> parameters;
+		private int hashCode;
+
+		Key(VDBKey vdbKey, String userName, String modelName, String sql, List<Object> parameters) {
+			this.vdbKey = vdbKey;
+			this.userName = userName;
+			this.modelName = modelName;
+			this.sql = sql;
+			this.parameters = parameters;
+			this.hashCode = HashCodeUtil.hashCode(HashCodeUtil.hashCode(vdbKey.hashCode(), sql), modelName, userName);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key)obj;
+			return hashCode == other.hashCode
+				&& vdbKey.equals(other.vdbKey)
+				&& sql.equals(other.sql)
+				&& modelName.equals(other.modelName)
+				&& EquivalenceUtil.areEqual(userName, other.userName)
+				&& EquivalenceUtil.areEqual(parameters, other.parameters);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public String toString() {
+			return vdbKey + " " + modelName + " " + sql; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	private static class Stats {
+		AtomicInteger requests = new AtomicInteger();
+		AtomicInteger hits = new AtomicInteger();
+	}
+
+	/**
+	 * The shared state of a source query.  Row and completion state is guarded by the entry,
+	 * the reader count and cached flag by the cache.
+	 */
+	static class Entry {
+		final Key key;
+		final TupleBuffer tb;
+		final AccessInfo accessInfo;
+		final long ttl;
+		SourceLoad load;
+		long expiration = Long.MAX_VALUE;
+		boolean done;
+		Throwable failure;
+		List<Exception> warnings = new ArrayList<Exception>(2);
+		Set<RequestWorkItem> waiting = new LinkedHashSet<RequestWorkItem>();
+
+		int readers;
+		boolean cached = true;
+
+		Entry(Key key, TupleBuffer tb, long ttl, AccessInfo accessInfo) {
+			this.key = key;
+			this.tb = tb;
+			this.ttl = ttl;
+			this.accessInfo = accessInfo;
+		}
+
+		/**
+		 * Called by the load with each source batch
+		 */
+		void addBatch(List<?>[] tuples, List<Exception> batchWarnings, boolean last) throws TeiidComponentException {
+			Set<RequestWorkItem> toNotify = null;
+			synchronized (this) {
+				if (failure != null) {
+					return;
+				}
+				for (List<?> tuple : tuples) {
+					tb.addTuple(tuple);
+				}
+				if (batchWarnings != null) {
+					warnings.addAll(batchWarnings);
+				}
+				if (last) {
+					tb.setFinal(true);
+					done = true;
+					expiration = System.currentTimeMillis() + ttl;
+				}
+				toNotify = getWaiting();
+			}
+			notifyWaiting(toNotify);
+		}
+
+		void fail(Throwable t) {
+			Set<RequestWorkItem> toNotify = null;
+			synchronized (this) {
+				if (done || failure != null) {
+					return;
+				}
+				failure = t;
+				toNotify = getWaiting();
+			}
+			notifyWaiting(toNotify);
+		}
+
+		private Set<RequestWorkItem> getWaiting() {
+			if (waiting.isEmpty()) {
+				return null;
+			}
+			Set<RequestWorkItem> result = waiting;
+			waiting = new LinkedHashSet<RequestWorkItem>();
+			return result;
+		}
+
+		private void notifyWaiting(Set<RequestWorkItem> toNotify) {
+			if (toNotify != null) {
+				for (RequestWorkItem item : toNotify) {
+					item.moreWork();
+				}
+			}
+		}
+
+		synchronized boolean isValid(long now) {
+			if (failure != null) {
+				return false;
+			}
+			if (!done) {
+				return true;
+			}
+			return now < expiration && accessInfo.validate(true, 0);
+		}
+
+		synchronized boolean isLoading() {
+			return !done && failure == null;
+		}
+	}
+
+	/**
+	 * Reads the source query into the shared entry independently of the plans of the requests reading it.
+	 * <br>
+	 * Each batch is retrieved by a separate task, so a slow reader does not slow the load and 
+	 * a delayed or asynch source reschedules the next task rather than holding a thread.
+	 */
+	class SourceLoad implements Callable<AtomicResultsMessage>, CompletionListener<AtomicResultsMessage> {
+		private final Entry entry;
+		private final ConnectorWork work;
+		private final AtomicRequestMessage aqr;
+		private final DQPCore dqpCore;
+		private final DQPWorkContext workContext;
+		private boolean executed;
+		
+		//guarded by this
+		private boolean running;
+		private boolean canceled;
+		private boolean closed;
+		private Future<Void> scheduledFuture;
+
+		SourceLoad(Entry entry, ConnectorWork work, AtomicRequestMessage aqr, DQPCore dqpCore, DQPWorkContext workContext) {
+			this.entry = entry;
+			this.work = work;
+			this.aqr = aqr;
+			this.dqpCore = dqpCore;
+			this.workContext = workContext;
+		}
+
+		@Override
+		public AtomicResultsMessage call() throws Exception {
+			if (!executed) {
+				work.execute();
+				executed = true;
+			}
+			return work.more();
+		}
+
+		synchronized void submit() {
+			scheduledFuture = null;
+			if (canceled) {
+				return;
+			}
+			running = true;
+			workContext.runInContext(new Runnable() {
+				@Override
+				public void run() {
+					FutureWork<AtomicResultsMessage> future = new FutureWork<AtomicResultsMessage>(SourceLoad.this, 100);
+					future.addCompletionListener(SourceLoad.this);
+					dqpCore.addWork(future);
+				}
+			});
+		}
+
+		@Override
+		public void onCompletion(FutureWork<AtomicResultsMessage> future) {
+			synchronized (this) {
+				running = false;
+				if (canceled) {
+					closeWork();
+					return;
+				}
+			}
+			AtomicResultsMessage results = null;
+			try {
+				results = future.get();
+			} catch (InterruptedException e) {
+				fail(e);
+				return;
+			} catch (CancellationException e) {
+				fail(e);
+				return;
+			} catch (ExecutionException e) {
+				Throwable t = e.getCause();
+				if (t instanceof DataNotAvailableException) {
+					retry((DataNotAvailableException)t);
+				} else if (t instanceof BlockedException) {
+					retry(new DataNotAvailableException());
+				} else {
+					fail(t);
+				}
+				return;
+			}
+			boolean last = results.getFinalRow() >= 0;
+			try {
+				entry.addBatch(results.getResults(), results.getWarnings(), last);
+			} catch (TeiidComponentException e) {
+				fail(e);
+				return;
+			}
+			if (last) {
+				synchronized (this) {
+					closeWork();
+				}
+			} else {
+				submit();
+			}
+		}
+
+		private void retry(DataNotAvailableException e) {
+			long delay = DATA_AVAILABLE_POLL_INTERVAL;
+			if (e.getWaitUntil() != null) {
+				delay = e.getWaitUntil().getTime() - System.currentTimeMillis();
+			} else if (e.getRetryDelay() >= 0) {
+				delay = e.getRetryDelay();
+			} else if (work.isDataAvailable()) {
+				delay = 0;
+			}
+			if (delay <= 0) {
+				submit();
+				return;
+			}
+			synchronized (this) {
+				if (canceled) {
+					return;
+				}
+				scheduledFuture = dqpCore.scheduleWork(new Runnable() {
+					@Override
+					public void run() {
+						submit();
+					}
+				}, delay);
+			}
+		}
+
+		private void fail(Throwable t) {
+			entry.fail(t);
+			synchronized (this) {
+				closeWork();
+			}
+		}
+
+		/**
+		 * Stop the load as there are no longer any readers
+		 */
+		void cancel() {
+			synchronized (this) {
+				if (canceled || closed) {
+					return;
+				}
+				canceled = true;
+				if (scheduledFuture != null) {
+					scheduledFuture.cancel(false);
+					scheduledFuture = null;
+				}
+				if (!running) {
+					closeWork();
+					return;
+				}
+			}
+			LogManager.logDetail(LogConstants.CTX_DQP, aqr.getAtomicRequestID(), "Canceling the shared source query load as there are no readers for", entry.key); //$NON-NLS-1$
+			work.cancel();
+		}
+
+		private void closeWork() {
+			if (!closed) {
+				closed = true;
+				work.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads the shared entry
+	 */
+	class SharedTupleSource implements TupleSource {
+		private Entry entry;
+		private int rowNumber = 1;
+		private TupleBatch batch;
+		private boolean closed;
+		private boolean warningsAdded;
+
+		private CommandContext context;
+		private String modelName;
+		private String connectorName;
+
+		SharedTupleSource(Entry entry, CommandContext context, String modelName, String connectorName) {
+			this.entry = entry;
+			this.context = context;
+			this.modelName = modelName;
+			this.connectorName = connectorName;
+		}
+
+		@Override
+		public List<?> nextTuple() throws TeiidComponentException,
+				TeiidProcessingException {
+			Throwable failure = null;
+			List<Exception> warnings = null;
+			synchronized (entry) {
+				if (batch == null || rowNumber > batch.getEndRow()) {
+					batch = null;
+					if (rowNumber <= entry.tb.getRowCount()) {
+						batch = entry.tb.getBatch(rowNumber);
+					}
+				}
+				if (batch != null) {
+					return batch.getTuple(rowNumber++);
+				}
+				if (entry.done) {
+					warnings = entry.warnings;
+				} else {
+					failure = entry.failure;
+					if (failure == null) {
+						entry.waiting.add(context.getWorkItem());
+						throw BlockedException.block("Waiting on shared source query", entry.key); //$NON-NLS-1$
+					}
+				}
+			}
+			if (warnings != null) {
+				addWarnings(warnings, false);
+				return null;
+			}
+			if (failure instanceof TranslatorException) {
+				if (context.getWorkItem().requestMsg.supportsPartialResults()) {
+					addWarnings(Arrays.asList((Exception)failure), true);
+					return null;
+				}
+				if (failure.getCause() instanceof TeiidComponentException) {
+					throw (TeiidComponentException)failure.getCause();
+				}
+				if (failure.getCause() instanceof TeiidProcessingException) {
+					throw (TeiidProcessingException)failure.getCause();
+				}
+				throw new TeiidProcessingException(QueryPlugin.Event.TEIID30504, failure, connectorName + ": " + failure.getMessage()); //$NON-NLS-1$
+			}
+			if (failure instanceof TeiidProcessingException) {
+				throw (TeiidProcessingException)failure;
+			}
+			if (failure instanceof TeiidComponentException) {
+				throw (TeiidComponentException)failure;
+			}
+			throw new TeiidProcessingException(QueryPlugin.Event.TEIID31159, failure, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31159, entry.key.sql));
+		}
+
+		private void addWarnings(List<Exception> warnings, boolean partial) {
+			if (warningsAdded) {
+				return;
+			}
+			warningsAdded = true;
+			for (Exception warning : warnings) {
+				context.addWarning(new SourceWarning(modelName, connectorName, warning, partial));
+			}
+		}
+
+		@Override
+		public void closeSource() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			synchronized (entry) {
+				entry.waiting.remove(context.getWorkItem());
+			}
+			release(entry);
+		}
+	}
+
+	private BufferManager bufferManager;
+	private int maxEntries;
+	private long defaultTtl;
+
+	//guarded by this
+	private LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, .75f, true);
+
+	private AtomicInteger requestCount = new AtomicInteger();
+	private AtomicInteger hitCount = new AtomicInteger();
+	private AtomicInteger coalescedCount = new AtomicInteger();
+	private ConcurrentHashMap<String, Stats> modelStats = new ConcurrentHashMap<String, Stats>();
+
+	public SourceQueryCache(BufferManager bufferManager, int maxEntries, long defaultTtl) {
+		this.bufferManager = bufferManager;
+		this.maxEntries = maxEntries;
+		this.defaultTtl = defaultTtl;
+	}
+
+	/**
+	 * Get a {@link TupleSource} for the source command.  If there is no entry, the work will be used to load one.
+	 * @return the tuple source or null if the command cannot use the cache
+	 */
+	TupleSource getTupleSource(DataTierManagerImpl dtm, CommandContext context, Command command, String modelName,
+			AtomicRequestMessage aqr, ConnectorWork work) throws TeiidComponentException, TeiidProcessingException {
+		if (aqr.isSerial()) {
+			//the load must be able to run independently of the request
+			return null;
+		}
+		RequestWorkItem workItem = context.getWorkItem();
+		DQPWorkContext workContext = workItem.getDqpWorkContext();
+		long ttl = getTtl(workContext.getVDB(), modelName);
+		if (ttl < 1) {
+			return null;
+		}
+		Key key = createKey(workContext, command, modelName);
+		if (key == null) {
+			return null;
+		}
+		Stats stats = getStats(workContext, modelName);
+		stats.requests.getAndIncrement();
+		requestCount.getAndIncrement();
+		AccessInfo accessInfo = new AccessInfo();
+		for (GroupSymbol gs : GroupCollectorVisitor.getGroupsIgnoreInlineViews(command, false)) {
+			accessInfo.addAccessedObject(gs.getMetadataID());
+		}
+		Entry entry = null;
+		boolean load = false;
+		synchronized (this) {
+			entry = entries.get(key);
+			if (entry != null && !entry.isValid(System.currentTimeMillis())) {
+				evict(entry);
+				entry = null;
+			}
+			if (entry == null) {
+				TupleBuffer tb = bufferManager.createTupleBuffer(command.getProjectedSymbols(), context.getConnectionId(), TupleSourceType.PROCESSOR);
+				entry = new Entry(key, tb, ttl, accessInfo);
+				entry.load = new SourceLoad(entry, work, aqr, dtm.requestMgr, workContext);
+				entries.put(key, entry);
+				while (entries.size() > maxEntries) {
+					Iterator<Entry> iter = entries.values().iterator();
+					Entry eldest = iter.next();
+					iter.remove();
+					eldest.cached = false;
+					removeIfUnused(eldest);
+				}
+				load = true;
+			}
+			entry.readers++;
+		}
+		if (!load) {
+			stats.hits.getAndIncrement();
+			hitCount.getAndIncrement();
+			if (entry.isLoading()) {
+				coalescedCount.getAndIncrement();
+			}
+			LogManager.logDetail(LogConstants.CTX_DQP, aqr.getAtomicRequestID(), "Using shared source query results for", key); //$NON-NLS-1$
+			work.close();
+		} else {
+			LogManager.logDetail(LogConstants.CTX_DQP, aqr.getAtomicRequestID(), "Loading shared source query results for", key); //$NON-NLS-1$
+			entry.load.submit();
+		}
+		return new SharedTupleSource(entry, context, modelName, aqr.getConnectorName());
+	}
+
+	private Stats getStats(DQPWorkContext workContext, String modelName) {
+		String statsKey = getStatsKey(workContext.getVdbName(), workContext.getVdbVersion(), modelName);
+		Stats stats = modelStats.get(statsKey);
+		if (stats == null) {
+			stats = new Stats();
+			Stats existing = modelStats.putIfAbsent(statsKey, stats);
+			if (existing != null) {
+				stats = existing;
+			}
+		}
+		return stats;
+	}
+
+	private String getStatsKey(String vdbName, int vdbVersion, String modelName) {
+		return vdbName + "." + vdbVersion + "." + modelName; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	long getTtl(VDBMetaData vdb, String modelName) {
+		if (vdb == null) {
+			return defaultTtl;
+		}
+		ModelMetaData model = vdb.getModel(modelName);
+		if (model == null) {
+			return defaultTtl;
+		}
+		String value = model.getPropertyValue(TTL_PROPERTY);
+		if (value == null) {
+			return defaultTtl;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			LogManager.logDetail(LogConstants.CTX_DQP, "Invalid", TTL_PROPERTY, value, "for model", modelName); //$NON-NLS-1$ //$NON-NLS-2$
+			return defaultTtl;
+		}
+	}
+
+	/**
+	 * Create the key for a source query or return null if the results should not be shared.
+	 */
+	static Key createKey(DQPWorkContext workContext, Command command, String modelName) {
+		if (!(command instanceof QueryCommand) || !command.areResultsCachable()) {
+			return null;
+		}
+		for (Expression ex : command.getProjectedSymbols()) {
+			if (DataTypeManager.isLOB(ex.getType())) {
+				return null;
+			}
+		}
+		for (Function function : FunctionCollectorVisitor.getFunctions(command, false, true)) {
+			if (function.getFunctionDescriptor() != null
+					&& function.getFunctionDescriptor().getDeterministic().compareTo(Determinism.USER_DETERMINISTIC) < 0) {
+				return null;
+			}
+		}
+		CachableVisitor cv = new CachableVisitor();
+		PreOrPostOrderNavigator.doVisit(command, cv, PreOrPostOrderNavigator.PRE_ORDER, true);
+		if (!cv.cacheable) {
+			return null;
+		}
+		return new Key(new VDBKey(workContext.getVdbName(), workContext.getVdbVersion()), workContext.getUserName(), modelName, command.toString(), cv.parameters);
+	}
+
+	private void release(Entry entry) {
+		boolean cancel = false;
+		synchronized (this) {
+			entry.readers--;
+			if (entry.readers == 0 && entry.isLoading()) {
+				entry.fail(new TeiidProcessingException(QueryPlugin.Event.TEIID31159, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31159, entry.key.sql)));
+				cancel = true;
+			}
+			synchronized (entry) {
+				if (entry.failure != null && entry.cached) {
+					entries.remove(entry.key);
+					entry.cached = false;
+				}
+			}
+			removeIfUnused(entry);
+		}
+		if (cancel) {
+			entry.load.cancel();
+		}
+	}
+
+	private void evict(Entry entry) {
+		entries.remove(entry.key);
+		entry.cached = false;
+		removeIfUnused(entry);
+	}
+
+	private void removeIfUnused(Entry entry) {
+		if (entry.readers == 0 && !entry.cached) {
+			synchronized (entry) {
+				entry.tb.remove();
+			}
+		}
+	}
+
+	public synchronized void clearAll() {
+		for (Entry entry : entries.values()) {
+			entry.cached = false;
+			removeIfUnused(entry);
+		}
+		entries.clear();
+		requestCount.set(0);
+		hitCount.set(0);
+		coalescedCount.set(0);
+		modelStats.clear();
+	}
+
+	public synchronized void clearForVDB(String vdbName, int version) {
+		VDBKey vdbKey = new VDBKey(vdbName, version);
+		for (Iterator<Entry> iter = entries.values().iterator(); iter.hasNext();) {
+			Entry entry = iter.next();
+			if (entry.key.vdbKey.equals(vdbKey)) {
+				iter.remove();
+				entry.cached = false;
+				removeIfUnused(entry);
+			}
+		}
+	}
+
+	public synchronized int getTotalCacheEntries() {
+		return entries.size();
+	}
+
+	public int getRequestCount() {
+		return requestCount.get();
+	}
+
+	public int getCacheHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * @return the number of hits that attached to a load that was still in progress
+	 */
+	public int getCoalescedCount() {
+		return coalescedCount.get();
+	}
+
+	public CacheStatisticsMetadata getCacheStatistics() {
+		return buildStats("source-query", requestCount.get(), hitCount.get(), getTotalCacheEntries()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Get the statistics for a single model
+	 * @return the statistics or null if the model has not used the cache
+	 */
+	public CacheStatisticsMetadata getCacheStatistics(String vdbName, int vdbVersion, String modelName) {
+		String statsKey = getStatsKey(vdbName, vdbVersion, modelName);
+		Stats stats = modelStats.get(statsKey);
+		if (stats == null) {
+			return null;
+		}
+		int count = 0;
+		synchronized (this) {
+			VDBKey vdbKey = new VDBKey(vdbName, vdbVersion);
+			for (Key key : entries.keySet()) {
+				if (key.vdbKey.equals(vdbKey) && key.modelName.equals(modelName)) {
+					count++;
+				}
+			}
+		}
+		return buildStats(statsKey, stats.requests.get(), stats.hits.get(), count);
+	}
+
+	private CacheStatisticsMetadata buildStats(String name, int requests, int hits, int entryCount) {
+		CacheStatisticsMetadata stats = new CacheStatisticsMetadata();
+		stats.setName(name);
+		stats.setHitRatio(requests == 0?0:((double)hits/requests)*100);
+		stats.setTotalEntries(entryCount);
+		stats.setRequestCount(requests);
+		return stats;
+	}
+
+}
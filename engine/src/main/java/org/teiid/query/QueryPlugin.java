@@ -569,6 +569,9 @@ public class QueryPlugin { // extends Plugin {
     	TEIID31155, 
     	TEIID31156, 
     	TEIID31157, 
-    	TEIID31158
+    	TEIID31158,
+    	TEIID31159,
+    	TEIID31160,
+    	TEIID31161
 	}
 }
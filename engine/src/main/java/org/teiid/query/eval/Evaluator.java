@@ -180,6 +180,7 @@ public class Evaluator {
     
     protected ProcessorDataManager dataMgr;
     protected CommandContext context;
+    private ExpressionCompiler compiler;
     
     public static boolean evaluate(Criteria criteria) throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
     	return new Evaluator(Collections.emptyMap(), null, null).evaluate(criteria, Collections.emptyList());
@@ -199,6 +200,19 @@ public class Evaluator {
 		this.context = context;
 		this.dataMgr = dataMgr;
 	}
+    
+    /**
+     * Set whether expressions and criteria should be compiled on first use
+     * rather than interpreted for each tuple.
+     * @see ExpressionCompiler
+     */
+    public void setCompileExpressions(boolean compile) {
+    	if (!compile) {
+    		this.compiler = null;
+    	} else if (this.compiler == null) {
+    		this.compiler = new ExpressionCompiler(this, elements);
+    	}
+    }
 
 	public boolean evaluate(Criteria criteria, List<?> tuple)
         throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
@@ -208,11 +222,13 @@ public class Evaluator {
 
     public Boolean evaluateTVL(Criteria criteria, List<?> tuple)
         throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
-    	
+    	if (compiler != null) {
+    		return compiler.getCompiled(criteria).evaluateTVL(tuple);
+    	}
 		return internalEvaluateTVL(criteria, tuple);
 	}
 
-	private Boolean internalEvaluateTVL(Criteria criteria, List<?> tuple)
+	Boolean internalEvaluateTVL(Criteria criteria, List<?> tuple)
 			throws ExpressionEvaluationException, BlockedException,
 			TeiidComponentException {
 		if(criteria instanceof CompoundCriteria) {
@@ -609,7 +625,9 @@ public class Evaluator {
     
 	public Object evaluate(Expression expression, List<?> tuple)
 		throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
-	
+		if (compiler != null) {
+			return compiler.getCompiled(expression).evaluate(tuple);
+		}
 	    try {
 			return internalEvaluate(expression, tuple);
 	    } catch (ExpressionEvaluationException e) {
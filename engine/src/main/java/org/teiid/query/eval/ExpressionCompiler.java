@@ -0,0 +1,426 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.query.eval;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.teiid.api.exception.query.ExpressionEvaluationException;
+import org.teiid.common.buffer.BlockedException;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.util.EquivalenceUtil;
+import org.teiid.metadata.FunctionMethod.PushDown;
+import org.teiid.query.QueryPlugin;
+import org.teiid.query.function.FunctionDescriptor;
+import org.teiid.query.function.FunctionLibrary;
+import org.teiid.query.sql.lang.CompareCriteria;
+import org.teiid.query.sql.lang.CompoundCriteria;
+import org.teiid.query.sql.lang.Criteria;
+import org.teiid.query.sql.lang.ExpressionCriteria;
+import org.teiid.query.sql.lang.IsNullCriteria;
+import org.teiid.query.sql.lang.NotCriteria;
+import org.teiid.query.sql.lang.SetCriteria;
+import org.teiid.query.sql.symbol.CaseExpression;
+import org.teiid.query.sql.symbol.Constant;
+import org.teiid.query.sql.symbol.DerivedExpression;
+import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.sql.symbol.ExpressionSymbol;
+import org.teiid.query.sql.symbol.Function;
+import org.teiid.query.sql.symbol.SearchedCaseExpression;
+
+/**
+ * Compiles resolved expressions and criteria into a tree of evaluation objects
+ * specialized to the element map of an {@link Evaluator}.
+ * <br>
+ * Element references are bound to tuple indexes and the type dispatch is performed
+ * once, rather than for every row.  Constructs that are not compiled, such as subqueries,
+ * match criteria and xml/json functions, delegate to the interpreting {@link Evaluator}
+ * so that any expression may be compiled.
+ * <br>
+ * Compiled expressions already have the exception wrapping of {@link Evaluator#evaluate(Expression, List)},
+ * so the compiled criteria rethrow operand exceptions as is.
+ */
+public class ExpressionCompiler {
+
+	public interface CompiledExpression {
+		Object evaluate(List<?> tuple) throws ExpressionEvaluationException, BlockedException, TeiidComponentException;
+	}
+
+	public interface CompiledCriteria {
+		Boolean evaluateTVL(List<?> tuple) throws ExpressionEvaluationException, BlockedException, TeiidComponentException;
+	}
+
+	private Evaluator evaluator;
+	private Map<?, ?> elements;
+	private Map<Expression, CompiledExpression> compiledExpressions = new IdentityHashMap<Expression, CompiledExpression>();
+	private Map<Criteria, CompiledCriteria> compiledCriteria = new IdentityHashMap<Criteria, CompiledCriteria>();
+
+	public ExpressionCompiler(Evaluator evaluator, Map<?, ?> elements) {
+		this.evaluator = evaluator;
+		this.elements = elements;
+	}
+
+	/**
+	 * Get the compiled form of the expression.  The result has the same
+	 * exception handling as {@link Evaluator#evaluate(Expression, List)}
+	 */
+	public CompiledExpression getCompiled(Expression expression) {
+		CompiledExpression result = compiledExpressions.get(expression);
+		if (result == null) {
+			result = compileWrapped(expression);
+			compiledExpressions.put(expression, result);
+		}
+		return result;
+	}
+
+	public CompiledCriteria getCompiled(Criteria criteria) {
+		CompiledCriteria result = compiledCriteria.get(criteria);
+		if (result == null) {
+			result = compile(criteria);
+			compiledCriteria.put(criteria, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Compile with the exception wrapping of {@link Evaluator#evaluate(Expression, List)}
+	 */
+	private CompiledExpression compileWrapped(final Expression expression) {
+		final CompiledExpression compiled = compile(expression);
+		return new CompiledExpression() {
+			@Override
+			public Object evaluate(List<?> tuple)
+					throws ExpressionEvaluationException, BlockedException,
+					TeiidComponentException {
+				try {
+					return compiled.evaluate(tuple);
+				} catch (ExpressionEvaluationException e) {
+					throw new ExpressionEvaluationException(QueryPlugin.Event.TEIID30328, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30328, new Object[] {expression, e.getMessage()}));
+				}
+			}
+		};
+	}
+
+	CompiledExpression compile(final Expression expression) {
+		if (expression instanceof DerivedExpression) {
+			if (elements != null) {
+				Integer index = (Integer) elements.get(expression);
+				if (index != null) {
+					final int i = index.intValue();
+					return new CompiledExpression() {
+						@Override
+						public Object evaluate(List<?> tuple) {
+							return tuple.get(i);
+						}
+					};
+				}
+			}
+			if (expression instanceof ExpressionSymbol) {
+				return compile(((ExpressionSymbol)expression).getExpression());
+			}
+			return interpreted(expression);
+		}
+		if (expression instanceof Constant) {
+			final Object value = ((Constant)expression).getValue();
+			return new CompiledExpression() {
+				@Override
+				public Object evaluate(List<?> tuple) {
+					return value;
+				}
+			};
+		}
+		if (expression instanceof Function) {
+			return compile((Function)expression);
+		}
+		if (expression instanceof CaseExpression) {
+			return compile((CaseExpression)expression);
+		}
+		if (expression instanceof SearchedCaseExpression) {
+			return compile((SearchedCaseExpression)expression);
+		}
+		if (expression instanceof Criteria) {
+			final CompiledCriteria crit = getCompiled((Criteria)expression);
+			return new CompiledExpression() {
+				@Override
+				public Object evaluate(List<?> tuple)
+						throws ExpressionEvaluationException, BlockedException,
+						TeiidComponentException {
+					return Boolean.valueOf(Boolean.TRUE.equals(crit.evaluateTVL(tuple)));
+				}
+			};
+		}
+		return interpreted(expression);
+	}
+
+	private CompiledExpression interpreted(final Expression expression) {
+		return new CompiledExpression() {
+			@Override
+			public Object evaluate(List<?> tuple)
+					throws ExpressionEvaluationException, BlockedException,
+					TeiidComponentException {
+				return evaluator.internalEvaluate(expression, tuple);
+			}
+		};
+	}
+
+	private CompiledExpression compile(final Function function) {
+		final FunctionDescriptor fd = function.getFunctionDescriptor();
+		if (fd == null || fd.getPushdown() == PushDown.MUST_PUSHDOWN || function.getName().equalsIgnoreCase(FunctionLibrary.LOOKUP)) {
+			return interpreted(function);
+		}
+		final CompiledExpression[] args = compile(function.getArgs());
+		final int start = fd.requiresContext()?1:0;
+		return new CompiledExpression() {
+			@Override
+			public Object evaluate(List<?> tuple)
+					throws ExpressionEvaluationException, BlockedException,
+					TeiidComponentException {
+				Object[] values = new Object[args.length + start];
+				if (start == 1) {
+					values[0] = evaluator.context;
+				}
+				for (int i = 0; i < args.length; i++) {
+					values[i + start] = args[i].evaluate(tuple);
+				}
+				return fd.invokeFunction(values, evaluator.context, null);
+			}
+		};
+	}
+
+	private CompiledExpression compile(final CaseExpression expr) {
+		final CompiledExpression value = compile(expr.getExpression());
+		final CompiledExpression[] whens = new CompiledExpression[expr.getWhenCount()];
+		final CompiledExpression[] thens = new CompiledExpression[expr.getWhenCount()];
+		for (int i = 0; i < whens.length; i++) {
+			whens[i] = compile(expr.getWhenExpression(i));
+			thens[i] = compile(expr.getThenExpression(i));
+		}
+		final CompiledExpression elseExpr = expr.getElseExpression() == null?null:compile(expr.getElseExpression());
+		return new CompiledExpression() {
+			@Override
+			public Object evaluate(List<?> tuple)
+					throws ExpressionEvaluationException, BlockedException,
+					TeiidComponentException {
+				Object exprVal = value.evaluate(tuple);
+				for (int i = 0; i < whens.length; i++) {
+					if (EquivalenceUtil.areEqual(exprVal, whens[i].evaluate(tuple))) {
+						return thens[i].evaluate(tuple);
+					}
+				}
+				if (elseExpr != null) {
+					return elseExpr.evaluate(tuple);
+				}
+				return null;
+			}
+		};
+	}
+
+	private CompiledExpression compile(final SearchedCaseExpression expr) {
+		final CompiledCriteria[] whens = new CompiledCriteria[expr.getWhenCount()];
+		final CompiledExpression[] thens = new CompiledExpression[expr.getWhenCount()];
+		for (int i = 0; i < whens.length; i++) {
+			whens[i] = getCompiled(expr.getWhenCriteria(i));
+			thens[i] = compile(expr.getThenExpression(i));
+		}
+		final CompiledExpression elseExpr = expr.getElseExpression() == null?null:compile(expr.getElseExpression());
+		return new CompiledExpression() {
+			@Override
+			public Object evaluate(List<?> tuple)
+					throws ExpressionEvaluationException, BlockedException,
+					TeiidComponentException {
+				for (int i = 0; i < whens.length; i++) {
+					if (Boolean.TRUE.equals(whens[i].evaluateTVL(tuple))) {
+						return thens[i].evaluate(tuple);
+					}
+				}
+				if (elseExpr != null) {
+					return elseExpr.evaluate(tuple);
+				}
+				return null;
+			}
+		};
+	}
+
+	private CompiledExpression[] compile(Expression[] exprs) {
+		CompiledExpression[] result = new CompiledExpression[exprs.length];
+		for (int i = 0; i < exprs.length; i++) {
+			result[i] = compile(exprs[i]);
+		}
+		return result;
+	}
+
+	CompiledCriteria compile(final Criteria criteria) {
+		if (criteria instanceof CompoundCriteria) {
+			return compile((CompoundCriteria)criteria);
+		}
+		if (criteria instanceof NotCriteria) {
+			final CompiledCriteria crit = getCompiled(((NotCriteria)criteria).getCriteria());
+			return new CompiledCriteria() {
+				@Override
+				public Boolean evaluateTVL(List<?> tuple)
+						throws ExpressionEvaluationException, BlockedException,
+						TeiidComponentException {
+					Boolean result = crit.evaluateTVL(tuple);
+					if (result == null) {
+						return null;
+					}
+					return !result.booleanValue();
+				}
+			};
+		}
+		if (criteria instanceof CompareCriteria) {
+			return compile((CompareCriteria)criteria);
+		}
+		if (criteria instanceof IsNullCriteria) {
+			final IsNullCriteria isNull = (IsNullCriteria)criteria;
+			final CompiledExpression expr = getCompiled(isNull.getExpression());
+			return new CompiledCriteria() {
+				@Override
+				public Boolean evaluateTVL(List<?> tuple)
+						throws ExpressionEvaluationException, BlockedException,
+						TeiidComponentException {
+					Object value = expr.evaluate(tuple);
+					return (value == null ^ isNull.isNegated());
+				}
+			};
+		}
+		if (criteria instanceof SetCriteria && ((SetCriteria)criteria).isAllConstants()) {
+			return compile((SetCriteria)criteria);
+		}
+		if (criteria instanceof ExpressionCriteria) {
+			final CompiledExpression expr = getCompiled(((ExpressionCriteria)criteria).getExpression());
+			return new CompiledCriteria() {
+				@Override
+				public Boolean evaluateTVL(List<?> tuple)
+						throws ExpressionEvaluationException, BlockedException,
+						TeiidComponentException {
+					return (Boolean)expr.evaluate(tuple);
+				}
+			};
+		}
+		return new CompiledCriteria() {
+			@Override
+			public Boolean evaluateTVL(List<?> tuple)
+					throws ExpressionEvaluationException, BlockedException,
+					TeiidComponentException {
+				return evaluator.internalEvaluateTVL(criteria, tuple);
+			}
+		};
+	}
+
+	private CompiledCriteria compile(CompoundCriteria criteria) {
+		List<Criteria> subCrits = criteria.getCriteria();
+		final CompiledCriteria[] crits = new CompiledCriteria[subCrits.size()];
+		for (int i = 0; i < crits.length; i++) {
+			crits[i] = getCompiled(subCrits.get(i));
+		}
+		if (criteria.getOperator() == CompoundCriteria.AND) {
+			return new CompiledCriteria() {
+				@Override
+				public Boolean evaluateTVL(List<?> tuple)
+						throws ExpressionEvaluationException, BlockedException,
+						TeiidComponentException {
+					Boolean result = Boolean.TRUE;
+					for (int i = 0; i < crits.length; i++) {
+						Boolean value = crits[i].evaluateTVL(tuple);
+						if (value == null) {
+							result = null;
+						} else if (!value.booleanValue()) {
+							return Boolean.FALSE;
+						}
+					}
+					return result;
+				}
+			};
+		}
+		return new CompiledCriteria() {
+			@Override
+			public Boolean evaluateTVL(List<?> tuple)
+					throws ExpressionEvaluationException, BlockedException,
+					TeiidComponentException {
+				Boolean result = Boolean.FALSE;
+				for (int i = 0; i < crits.length; i++) {
+					Boolean value = crits[i].evaluateTVL(tuple);
+					if (value == null) {
+						result = null;
+					} else if (value.booleanValue()) {
+						return Boolean.TRUE;
+					}
+				}
+				return result;
+			}
+		};
+	}
+
+	private CompiledCriteria compile(final CompareCriteria criteria) {
+		final CompiledExpression left = getCompiled(criteria.getLeftExpression());
+		final CompiledExpression right = getCompiled(criteria.getRightExpression());
+		return new CompiledCriteria() {
+			@Override
+			public Boolean evaluateTVL(List<?> tuple)
+					throws ExpressionEvaluationException, BlockedException,
+					TeiidComponentException {
+				Object leftValue = left.evaluate(tuple);
+				if (leftValue == null) {
+					return null;
+				}
+				Object rightValue = right.evaluate(tuple);
+				if (rightValue == null) {
+					return null;
+				}
+				return Evaluator.compare(criteria, leftValue, rightValue);
+			}
+		};
+	}
+
+	private CompiledCriteria compile(final SetCriteria criteria) {
+		final CompiledExpression expr = getCompiled(criteria.getExpression());
+		final Class<?> type = criteria.getExpression().getType();
+		final boolean negated = criteria.isNegated();
+		final boolean empty = criteria.getValues().isEmpty();
+		final boolean hasNull = criteria.getValues().contains(Constant.NULL_CONSTANT);
+		return new CompiledCriteria() {
+			@Override
+			public Boolean evaluateTVL(List<?> tuple)
+					throws ExpressionEvaluationException, BlockedException,
+					TeiidComponentException {
+				Object leftValue = expr.evaluate(tuple);
+				if (leftValue == null) {
+					if (!empty) {
+						return null;
+					}
+					return negated;
+				}
+				if (!criteria.getValues().contains(new Constant(leftValue, type))) {
+					if (hasNull) {
+						return null;
+					}
+					return negated;
+				}
+				return !negated;
+			}
+		};
+	}
+
+}
@@ -61,11 +61,13 @@ public class FunctionDescriptor implements Serializable, Cloneable {
     private String schema; //TODO: remove me - we need to create a proper schema for udf and system functions
     private boolean hasWrappedArgs;
     private boolean calledWithVarArgArrayParam; //TODO: could store this on the function and pass to invoke
+    private boolean fixedArity;
     
     // This is transient as it would be useless to invoke this method in 
     // a different VM.  This function descriptor can be used to look up 
     // the real VM descriptor for execution.
     private transient Method invocationMethod;
+    private transient Class<?>[] parameterTypes;
     
     private ClassLoader classLoader;
 	
@@ -81,6 +83,28 @@ public class FunctionDescriptor implements Serializable, Cloneable {
         this.requiresContext = requiresContext;
         this.method = method;
         this.classLoader = classloader;
+        if (invocationMethod != null) {
+        	this.parameterTypes = invocationMethod.getParameterTypes();
+        	try {
+        		//bypass the access check on each invocation
+        		invocationMethod.setAccessible(true);
+        	} catch (SecurityException e) {
+        		//just use the checked invocation
+        	}
+        }
+        updateFixedArity();
+	}
+	
+	/**
+	 * A fixed arity function without wrapped arguments or its own class loader 
+	 * may be invoked directly with the values
+	 */
+	private void updateFixedArity() {
+		this.fixedArity = this.method != null && !this.method.isVarArgs() && !this.hasWrappedArgs && this.classLoader == null;
+	}
+	
+	boolean isFixedArity() {
+		return fixedArity;
 	}
 	
 	public Object newInstance() {
@@ -95,6 +119,7 @@ public class FunctionDescriptor implements Serializable, Cloneable {
 	
 	public void setHasWrappedArgs(boolean hasWrappedArgs) {
 		this.hasWrappedArgs = hasWrappedArgs;
+		updateFixedArity();
 	}
 	
 	public String getSchema() {
@@ -211,65 +236,11 @@ public class FunctionDescriptor implements Serializable, Cloneable {
         
         // Invoke the method and return the result
         try {
-        	if (hasWrappedArgs) {
-        		for (int i = 0; i < values.length; i++) {
-        			Object val = values[i];
-        			if (val != null && types[i] == DataTypeManager.DefaultDataClasses.VARBINARY) {
-            			values[i] = ((BinaryType)val).getBytesDirect();
-        			}
-        		}
-        	}
-        	if (method.isVarArgs()) {
-        		if (calledWithVarArgArrayParam) {
-        			ArrayImpl av = (ArrayImpl)values[values.length -1];
-        			if (av != null) {
-        				Object[] vals = av.getValues();
-        				values[values.length - 1] = vals;
-	    				if (hasWrappedArgs && types[types.length - 1] == DataTypeManager.DefaultDataClasses.VARBINARY) {
-	    					vals = Arrays.copyOf(vals, vals.length);
-	        				for (int i = 0; i < vals.length; i++) {
-	        					if (vals[i] != null) {
-	        						vals[i] = ((BinaryType)vals[i]).getBytesDirect();
-	        					}
-	        				}
-	        				values[values.length - 1] = vals;
-	        			}
-	    				Class<?> arrayType = invocationMethod.getParameterTypes()[types.length - 1];
-						if (arrayType.getComponentType() != Object.class
-	    						&& vals.getClass() != arrayType) {
-	    					Object varArgs = Array.newInstance(arrayType.getComponentType(), vals.length);
-	    					for (int i = 0; i < vals.length; i++) {
-			        			Array.set(varArgs, i, vals[i]);
-			        		}
-	        				values[values.length -1] = varArgs;
-	    				}
-        			}
-        		} else {
-	        		int i = invocationMethod.getParameterTypes().length;
-	        		Object[] newValues = Arrays.copyOf(values, i);
-	        		Object varArgs = null;
-	        		if (invocationMethod.getParameterTypes()[i - 1].getComponentType() != Object.class) {
-		        		int varArgCount = values.length - i + 1;
-		        		varArgs = Array.newInstance(invocationMethod.getParameterTypes()[i - 1].getComponentType(), varArgCount);
-		        		for (int j = 0; j < varArgCount; j++) {
-		        			Array.set(varArgs, j, values[i-1+j]);
-		        		}
-	        		} else {
-	        			varArgs = Arrays.copyOfRange(values, i - 1, values.length);
-	        		}
-	        		newValues[i - 1] = varArgs;
-	        		values = newValues;
-        		}
-        	}
         	Object result = null;
-        	ClassLoader originalCL = Thread.currentThread().getContextClassLoader();
-        	try {
-        	    if (this.classLoader != null) {
-        	        Thread.currentThread().setContextClassLoader(this.classLoader);
-        	    }
-        	    result = invocationMethod.invoke(functionTarget, values);
-        	} finally {
-        	    Thread.currentThread().setContextClassLoader(originalCL);
+        	if (fixedArity) {
+        		result = invocationMethod.invoke(functionTarget, values);
+        	} else {
+        		result = invokeAdapted(values, functionTarget);
         	}
             if (context != null && getDeterministic().ordinal() <= Determinism.USER_DETERMINISTIC.ordinal()) {
             	context.setDeterminismLevel(getDeterministic());
@@ -289,6 +260,73 @@ public class FunctionDescriptor implements Serializable, Cloneable {
 		}
 	}
 
+	/**
+	 * Unwrap the argument values and form the varargs array as needed by the invocation method, 
+	 * then invoke it with the function class loader
+	 */
+	private Object invokeAdapted(Object[] values, Object functionTarget) throws IllegalAccessException, InvocationTargetException {
+		if (hasWrappedArgs) {
+			for (int i = 0; i < values.length; i++) {
+				Object val = values[i];
+				if (val != null && types[i] == DataTypeManager.DefaultDataClasses.VARBINARY) {
+					values[i] = ((BinaryType)val).getBytesDirect();
+				}
+			}
+		}
+		if (method.isVarArgs()) {
+			if (calledWithVarArgArrayParam) {
+				ArrayImpl av = (ArrayImpl)values[values.length -1];
+				if (av != null) {
+					Object[] vals = av.getValues();
+					values[values.length - 1] = vals;
+					if (hasWrappedArgs && types[types.length - 1] == DataTypeManager.DefaultDataClasses.VARBINARY) {
+						vals = Arrays.copyOf(vals, vals.length);
+						for (int i = 0; i < vals.length; i++) {
+							if (vals[i] != null) {
+								vals[i] = ((BinaryType)vals[i]).getBytesDirect();
+							}
+						}
+						values[values.length - 1] = vals;
+					}
+					Class<?> arrayType = parameterTypes[types.length - 1];
+					if (arrayType.getComponentType() != Object.class
+							&& vals.getClass() != arrayType) {
+						Object varArgs = Array.newInstance(arrayType.getComponentType(), vals.length);
+						for (int i = 0; i < vals.length; i++) {
+							Array.set(varArgs, i, vals[i]);
+						}
+						values[values.length -1] = varArgs;
+					}
+				}
+			} else {
+				int i = parameterTypes.length;
+				Object[] newValues = Arrays.copyOf(values, i);
+				Object varArgs = null;
+				if (parameterTypes[i - 1].getComponentType() != Object.class) {
+					int varArgCount = values.length - i + 1;
+					varArgs = Array.newInstance(parameterTypes[i - 1].getComponentType(), varArgCount);
+					for (int j = 0; j < varArgCount; j++) {
+						Array.set(varArgs, j, values[i-1+j]);
+					}
+				} else {
+					varArgs = Arrays.copyOfRange(values, i - 1, values.length);
+				}
+				newValues[i - 1] = varArgs;
+				values = newValues;
+			}
+		}
+		if (this.classLoader == null) {
+			return invocationMethod.invoke(functionTarget, values);
+		}
+		ClassLoader originalCL = Thread.currentThread().getContextClassLoader();
+		try {
+			Thread.currentThread().setContextClassLoader(this.classLoader);
+			return invocationMethod.invoke(functionTarget, values);
+		} finally {
+			Thread.currentThread().setContextClassLoader(originalCL);
+		}
+	}
+
 	public static Object importValue(Object result, Class<?> expectedType)
 			throws ArithmeticException, TransformationException {
 		if (!ALLOW_NAN_INFINITY) {
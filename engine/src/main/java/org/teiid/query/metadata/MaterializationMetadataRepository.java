@@ -47,6 +47,9 @@ public class MaterializationMetadataRepository extends MetadataRepository {
 	public static final String MATVIEW_STAGE_TABLE = "{http://www.teiid.org/ext/relational/2012}MATERIALIZED_STAGE_TABLE"; //$NON-NLS-1$
 	public static final String MATVIEW_SHARE_SCOPE = "{http://www.teiid.org/ext/relational/2012}MATVIEW_SHARE_SCOPE"; //$NON-NLS-1$
 	public static final String MATVIEW_ONERROR_ACTION = "{http://www.teiid.org/ext/relational/2012}MATVIEW_ONERROR_ACTION"; //$NON-NLS-1$
+	public static final String MATVIEW_LOAD_PARTITIONS = "{http://www.teiid.org/ext/relational/2012}MATVIEW_LOAD_PARTITIONS"; //$NON-NLS-1$
+	public static final String MATVIEW_PARTITION_COLUMN = "{http://www.teiid.org/ext/relational/2012}MATVIEW_PARTITION_COLUMN"; //$NON-NLS-1$
+	public static final String MATVIEW_INDEX_INCLUDE = "{http://www.teiid.org/ext/relational/2012}MATVIEW_INDEX_INCLUDE"; //$NON-NLS-1$
 	
 	public enum LoadStates {NEEDS_LOADING, LOADING, LOADED, FAILED_LOAD};
 	public enum Scope {NONE, VDB, SCHEMA};
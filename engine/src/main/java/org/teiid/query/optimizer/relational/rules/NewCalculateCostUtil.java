@@ -610,6 +610,47 @@ public class NewCalculateCostUtil {
         setCardinalityEstimate(node, cardinality, true, metadata);
     }
 
+    /**
+     * Determine if hash aggregation should be used for the given group node.  
+     * The number of groups is taken from the ndv estimate of the grouping columns 
+     * and must be small enough to keep the accumulators in memory and small 
+     * enough relative to the input to make avoiding the sort worthwhile.
+     * <br>
+     * As with {@link RuleImplementJoinStrategy#useHashJoin} the sort is still used 
+     * with a collation locale or with grouping values that cannot be hashed.
+     * @param node
+     * @param metadata
+     * @param maxGroups
+     * @throws QueryMetadataException
+     * @throws TeiidComponentException
+     */
+    static boolean useHashGrouping(PlanNode node, QueryMetadataInterface metadata, float maxGroups) 
+    	throws QueryMetadataException, TeiidComponentException {
+    	if (DataTypeManager.COLLATION_LOCALE != null) {
+    		return false;
+    	}
+    	List<Expression> groupCols = (List<Expression>)node.getProperty(NodeConstants.Info.GROUP_COLS);
+    	if (groupCols != null) {
+	    	for (Expression ex : groupCols) {
+	    		Class<?> type = ex.getType();
+	    		//string and bigdecimal values are normalized by the group key
+	    		if (!DataTypeManager.isHashable(type) && type != DataTypeManager.DefaultDataClasses.STRING 
+	    				&& type != DataTypeManager.DefaultDataClasses.BIG_DECIMAL) {
+	    			return false;
+	    		}
+	    	}
+    	}
+    	float childCost = node.getFirstChild().getCardinality();
+    	if (childCost == UNKNOWN_VALUE) {
+    		return false;
+    	}
+    	float ndv = getNDVEstimate(node, metadata, childCost, groupCols, false);
+    	if (ndv == UNKNOWN_VALUE) {
+    		return false;
+    	}
+    	return ndv <= maxGroups && ndv <= childCost / 2;
+    }
+
     static float getStat(Stat stat, Collection<? extends Expression> elems, PlanNode node,
     		float cardinality, QueryMetadataInterface metadata) throws QueryMetadataException, TeiidComponentException {
         float result = 1;
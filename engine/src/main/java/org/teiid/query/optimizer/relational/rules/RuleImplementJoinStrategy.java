@@ -34,6 +34,7 @@ import java.util.Set;
 import org.teiid.api.exception.query.QueryMetadataException;
 import org.teiid.api.exception.query.QueryPlannerException;
 import org.teiid.core.TeiidComponentException;
+import org.teiid.core.types.DataTypeManager;
 import org.teiid.query.analysis.AnalysisRecord;
 import org.teiid.query.metadata.QueryMetadataInterface;
 import org.teiid.query.optimizer.capabilities.CapabilitiesFinder;
@@ -104,6 +105,13 @@ public class RuleImplementJoinStrategy implements OptimizerRule {
             List<Expression> leftExpressions = (List<Expression>) joinNode.getProperty(NodeConstants.Info.LEFT_EXPRESSIONS);
             List<Expression> rightExpressions = (List<Expression>) joinNode.getProperty(NodeConstants.Info.RIGHT_EXPRESSIONS);
             int origExpressionCount = leftExpressions.size();
+            
+            if (useHashJoin(joinNode, leftExpressions, rightExpressions, metadata, capabilitiesFinder, context)) {
+            	insertProjection(joinNode.getFirstChild(), leftExpressions, joinNode);
+            	insertProjection(joinNode.getLastChild(), rightExpressions, joinNode);
+            	joinNode.setProperty(NodeConstants.Info.JOIN_STRATEGY, JoinStrategyType.HASH);
+            	continue;
+            }
 
             //check index information on each side
             //TODO: don't do null order compensation - in fact we should check what the order actually is, but we don't have that metadata
@@ -210,6 +218,63 @@ public class RuleImplementJoinStrategy implements OptimizerRule {
         return plan;
     }
 
+    /**
+     * Determine if a hash join should be used instead of a merge join.  
+     * A hash join is not used if both sides may be sorted by the sources, or
+     * if the join key values cannot be hashed consistently with the engine comparison.
+     */
+    static boolean useHashJoin(PlanNode joinNode, List<Expression> leftExpressions, List<Expression> rightExpressions, 
+    		QueryMetadataInterface metadata, CapabilitiesFinder capFinder, CommandContext context) throws QueryMetadataException, TeiidComponentException {
+    	if (context == null || !context.getOptions().isHashJoin() || DataTypeManager.COLLATION_LOCALE != null 
+    			|| joinNode.getProperty(NodeConstants.Info.DEPENDENT_VALUE_SOURCE) != null) {
+    		return false;
+    	}
+    	JoinType joinType = (JoinType) joinNode.getProperty(NodeConstants.Info.JOIN_TYPE);
+    	if (joinType != JoinType.JOIN_INNER && joinType != JoinType.JOIN_LEFT_OUTER 
+    			&& joinType != JoinType.JOIN_SEMI && joinType != JoinType.JOIN_ANTI_SEMI) {
+    		return false;
+    	}
+    	for (int i = 0; i < leftExpressions.size(); i++) {
+    		Class<?> type = leftExpressions.get(i).getType();
+    		if (type != rightExpressions.get(i).getType()) {
+    			return false;
+    		}
+    		//string and bigdecimal values are normalized by the hash join
+    		if (!DataTypeManager.isHashable(type) && type != DataTypeManager.DefaultDataClasses.STRING 
+    				&& type != DataTypeManager.DefaultDataClasses.BIG_DECIMAL) {
+    			return false;
+    		}
+    	}
+    	return !canPushSort(joinNode.getFirstChild(), leftExpressions, metadata, capFinder) 
+    			|| !canPushSort(joinNode.getLastChild(), rightExpressions, metadata, capFinder);
+    }
+    
+    private static boolean canPushSort(PlanNode childNode, List<Expression> expressions, QueryMetadataInterface metadata, CapabilitiesFinder capFinder) throws QueryMetadataException, TeiidComponentException {
+    	PlanNode sourceNode = FrameUtil.findJoinSourceNode(childNode);
+    	if (sourceNode == null || sourceNode.getType() != NodeConstants.Types.ACCESS) {
+    		return false;
+    	}
+    	Set<Expression> outputSymbols = new LinkedHashSet<Expression>((List<Expression>)childNode.getProperty(NodeConstants.Info.OUTPUT_COLS));
+    	outputSymbols.addAll(expressions);
+    	PlanNode sortNode = createSortNode(new ArrayList<Expression>(new LinkedHashSet<Expression>(expressions)), outputSymbols);
+    	return RuleRaiseAccess.canRaiseOverSort(sourceNode, metadata, capFinder, sortNode, null, false, true);
+    }
+    
+    /**
+     * Ensure that the join expressions are projected from the child node
+     */
+    static void insertProjection(PlanNode childNode, List<Expression> expressions, PlanNode joinNode) {
+        Set<Expression> outputSymbols = new LinkedHashSet<Expression>((List<Expression>)childNode.getProperty(NodeConstants.Info.OUTPUT_COLS));
+        int oldSize = outputSymbols.size();
+        outputSymbols.addAll(expressions);
+        if (outputSymbols.size() > oldSize) {
+            PlanNode projectNode = NodeFactory.getNewNode(NodeConstants.Types.PROJECT);
+            projectNode.setProperty(NodeConstants.Info.PROJECT_COLS, new ArrayList<Expression>(outputSymbols));
+            childNode.addAsParent(projectNode);
+            correctOutputElements(joinNode, outputSymbols, projectNode);
+        }
+    }
+
     /**
      * Insert a sort node under the merge join node.  If necessary, also insert a project
      * node to handle function evaluation.  
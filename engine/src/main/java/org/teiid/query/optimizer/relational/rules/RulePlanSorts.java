@@ -60,6 +60,11 @@ import org.teiid.query.util.CommandContext;
  */
 public class RulePlanSorts implements OptimizerRule {
 	
+	/**
+	 * The maximum number of estimated groups, in processor batches, for hash aggregation
+	 */
+	static final int HASH_GROUP_BATCHES = 64;
+	
 	@Override
 	public PlanNode execute(PlanNode plan, QueryMetadataInterface metadata,
 			CapabilitiesFinder capabilitiesFinder, RuleStack rules,
@@ -165,6 +170,12 @@ public class RulePlanSorts implements OptimizerRule {
 					}
 				}
 			}
+			if (!node.hasBooleanProperty(NodeConstants.Info.IS_DUP_REMOVAL) && !node.hasBooleanProperty(Info.ROLLUP) 
+					&& node.getProperty(Info.SORT_ORDER) == null && context != null && context.getOptions().isHashAggregation()
+					&& NewCalculateCostUtil.useHashGrouping(node, metadata, HASH_GROUP_BATCHES * context.getProcessorBatchSize())) {
+				//the output order is not needed, so the sort can be avoided
+				node.setProperty(Info.HASH_GROUP, true);
+			}
 			//TODO: check the join interesting order
 			parentBlocking = true;
 			break;
@@ -173,6 +184,10 @@ public class RulePlanSorts implements OptimizerRule {
 					|| node.getProperty(NodeConstants.Info.JOIN_STRATEGY) == JoinStrategyType.NESTED_TABLE) {
 				break;
 			}
+			if (node.getProperty(NodeConstants.Info.JOIN_STRATEGY) == JoinStrategyType.HASH) {
+				parentBlocking = true;
+				break;
+			}
 			/*
 			 *  Look under the left and the right sources for a dup removal operation
 			 *  join
@@ -251,6 +251,15 @@ public class AccessNode extends SubqueryAwareRelationalNode {
         } while (!processCommandsIndividually() && hasNextCommand() && this.tupleSources.size() < Math.min(MAX_CONCURRENT, this.getContext().getUserRequestSourceConcurrency()));
 	}
 	
+	/**
+	 * @return true if this node reads a single unshared source command, so that
+	 * it may be processed by a thread other than the request thread
+	 */
+	boolean isIndependent() {
+		return getClass() == AccessNode.class && info == null && subPlans == null 
+				&& !shouldEvaluate && !multiSource && connectorBindingExpression == null;
+	}
+	
 	public boolean isShouldEvaluate() {
 		return shouldEvaluate;
 	}
@@ -179,7 +179,10 @@ public class EnhancedSortMergeJoinStrategy extends MergeJoinStrategy {
     	List<?> lastTuple = null;
     	boolean sortedDistinct = sorted && !state.isExpresssionDistinct();
     	int sizeHint = index.getExpectedHeight(state.getRowCount());
-    	index.setBatchInsert(sorted);
+    	STree.BulkLoader loader = null;
+    	if (sorted) {
+    		loader = index.bulkLoader(1f);
+    	}
     	outer: while (its.hasNext()) {
     		//detect if sorted and distinct
     		List<?> originalTuple = its.nextTuple();
@@ -197,10 +200,21 @@ public class EnhancedSortMergeJoinStrategy extends MergeJoinStrategy {
     		if (!state.isExpresssionDistinct() && sortOption != SortOption.SORT_DISTINCT) {
     			tuple.add(keyLength - 1, rowId++);
     		}
+    		if (loader != null) {
+    			if (loader.append(tuple)) {
+    				continue;
+    			}
+    			//not in index order, fall back to appending
+    			loader.finish();
+    			loader = null;
+    			index.setBatchInsert(true);
+    		}
     		index.insert(tuple, sorted?InsertMode.ORDERED:InsertMode.NEW, sizeHint);
     	}
     	if (!sorted) {
     		index.compact();
+    	} else if (loader != null) {
+    		loader.finish();
     	} else {
     		index.setBatchInsert(false);
     	}
@@ -0,0 +1,215 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.query.processor.relational;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.teiid.common.buffer.BlockedException;
+import org.teiid.common.buffer.TupleBatch;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.TeiidProcessingException;
+import org.teiid.core.TeiidRuntimeException;
+import org.teiid.dqp.internal.process.DQPWorkContext;
+import org.teiid.dqp.internal.process.RequestWorkItem;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.query.util.CommandContext;
+
+/**
+ * Processes a source node with the {@link CommandContext#getExecutor()} and exchanges
+ * its batches with the consuming node through a bounded queue.
+ * <br>
+ * The source is only processed by a single thread at a time.  A task runs until
+ * the source blocks, terminates, or the queue is full.  It is then restarted
+ * by the consumer.  The {@link RequestWorkItem} is notified as batches become available.
+ */
+class ExchangeSource implements Runnable {
+
+	private RelationalNode source;
+	private int maxQueued;
+
+	//guarded by this
+	private ArrayDeque<TupleBatch> queue = new ArrayDeque<TupleBatch>();
+	private boolean running;
+	private boolean restart;
+	private boolean done;
+	private boolean closed;
+	private Throwable exception;
+
+	ExchangeSource(RelationalNode source, int maxQueued) {
+		this.source = source;
+		this.maxQueued = maxQueued;
+	}
+
+	/**
+	 * Get the next batch
+	 * @return the batch or null if none is available
+	 */
+	synchronized TupleBatch poll() throws TeiidComponentException, TeiidProcessingException {
+		TupleBatch batch = queue.poll();
+		if (batch == null && exception != null) {
+			if (exception instanceof TeiidComponentException) {
+				throw (TeiidComponentException)exception;
+			}
+			if (exception instanceof TeiidProcessingException) {
+				throw (TeiidProcessingException)exception;
+			}
+			if (exception instanceof RuntimeException) {
+				throw (RuntimeException)exception;
+			}
+			throw new TeiidComponentException(exception);
+		}
+		return batch;
+	}
+
+	synchronized boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Start processing the source if it is not already running and there
+	 * is room in the queue.
+	 * @return true if a task was started
+	 */
+	boolean start() {
+		synchronized (this) {
+			if (running) {
+				//the source may have been blocked on work that has since completed
+				restart = true;
+				return false;
+			}
+			if (done || closed || exception != null || queue.size() >= maxQueued) {
+				return false;
+			}
+			running = true;
+			restart = false;
+		}
+		try {
+			source.getContext().getExecutor().execute(this);
+		} catch (RejectedExecutionException e) {
+			LogManager.logDetail(LogConstants.CTX_DQP, e, "Could not start exchange task for node", source.getID()); //$NON-NLS-1$
+			synchronized (this) {
+				running = false;
+				notifyAll();
+			}
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public void run() {
+		DQPWorkContext workContext = source.getContext().getDQPWorkContext();
+		if (workContext == null) {
+			process();
+			return;
+		}
+		workContext.runInContext(new Runnable() {
+			@Override
+			public void run() {
+				process();
+			}
+		});
+	}
+
+	private void process() {
+		boolean notify = false;
+		CommandContext.pushThreadLocalContext(source.getContext());
+		try {
+			while (true) {
+				synchronized (this) {
+					if (closed || queue.size() >= maxQueued) {
+						break;
+					}
+				}
+				TupleBatch batch = source.nextBatch();
+				synchronized (this) {
+					queue.add(batch);
+					done = batch.getTerminationFlag();
+					notifyAll();
+				}
+				moreWork();
+				if (batch.getTerminationFlag()) {
+					break;
+				}
+			}
+		} catch (BlockedException e) {
+			//the work item will be notified when the source can make progress
+		} catch (Throwable e) {
+			synchronized (this) {
+				exception = e;
+			}
+			notify = true;
+		} finally {
+			CommandContext.popThreadLocalContext();
+			synchronized (this) {
+				running = false;
+				notify |= restart;
+				restart = false;
+				notifyAll();
+			}
+			if (notify) {
+				moreWork();
+			}
+		}
+	}
+
+	private void moreWork() {
+		RequestWorkItem workItem = source.getContext().getWorkItem();
+		if (workItem != null) {
+			workItem.moreWork();
+		}
+	}
+
+	/**
+	 * Wait for a batch from a running task.  Only used when there is no 
+	 * {@link RequestWorkItem} to notify, such as with engine tests.
+	 */
+	synchronized void waitForBatch() {
+		while (running && queue.isEmpty()) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				throw new TeiidRuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * Stop processing and wait for any running task to complete.
+	 * The source itself is closed by the consuming node.
+	 */
+	synchronized void close() {
+		closed = true;
+		queue.clear();
+		while (running) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				throw new TeiidRuntimeException(e);
+			}
+		}
+	}
+
+}
@@ -28,6 +28,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
@@ -38,6 +39,8 @@ import org.teiid.api.exception.query.FunctionExecutionException;
 import org.teiid.client.plan.PlanNode;
 import org.teiid.common.buffer.BlockedException;
 import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.BufferManager.BufferReserveMode;
+import org.teiid.common.buffer.BufferManager.TupleSourceType;
 import org.teiid.common.buffer.STree;
 import org.teiid.common.buffer.STree.InsertMode;
 import org.teiid.common.buffer.TupleBatch;
@@ -47,6 +50,9 @@ import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.core.types.DataTypeManager;
 import org.teiid.language.SortSpecification.NullOrdering;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.logging.MessageLevel;
 import org.teiid.query.eval.Evaluator;
 import org.teiid.query.function.aggregate.*;
 import org.teiid.query.processor.BatchCollector;
@@ -135,12 +141,26 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
     private int[] accumulatorStateCount;
     private TupleSource groupSortTupleSource;
     private int[] projection;
+    
+    // Hash aggregation
+    private boolean hashAggregation;
+    private HashMap<Object, List<Object>> hashTable;
+    private Iterator<List<Object>> hashOutput;
+    private TupleBuffer[] hashPartitions;
+    private int hashPartition;
+    private int hashSchemaSize;
+    private int reserved;
+    private List<Object> stateValues = new ArrayList<Object>();
 
     private static final int COLLECTION = 1;
     private static final int SORT = 2;
     private static final int GROUP = 3;
     private static final int GROUP_SORT = 4;
     private static final int GROUP_SORT_OUTPUT = 5;
+    private static final int HASH = 6;
+    private static final int HASH_OUTPUT = 7;
+    
+    static final int HASH_PARTITIONS = 16;
 	private int[] indexes;
 	private boolean rollup;
 	private HashMap<Integer, Integer> indexMap;
@@ -160,6 +180,11 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
         lastRow = null;
         currentGroupTuple = null;
         
+        hashTable = null;
+        hashOutput = null;
+        hashPartitions = null;
+        hashPartition = 0;
+        
         if (this.functions != null) {
 	    	for (AggregateFunction[] functions : this.functions) {
 	    		for (AggregateFunction function : functions) {
@@ -180,6 +205,14 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
     public void setOutputMapping(SymbolMap outputMapping) {
 		this.outputMapping = outputMapping;
 	}
+    
+    public void setHashAggregation(boolean hashAggregation) {
+		this.hashAggregation = hashAggregation;
+	}
+    
+    public boolean isHashAggregation() {
+		return hashAggregation;
+	}
 
 	@Override
 	public void initialize(CommandContext context, BufferManager bufferManager,
@@ -370,6 +403,14 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
         	return groupSortOutputPhase();
         }
         
+        if (this.phase == HASH) {
+        	hashPhase();
+        }
+        
+        if (this.phase == HASH_OUTPUT) {
+        	return hashOutputPhase();
+        }
+        
         this.terminateBatches();
         return pullBatch();
     }
@@ -463,6 +504,15 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
 			    		schema.add(es);
 		    		}
 		    		
+		    		if (hashAggregation) {
+		    			//the output order is not needed, so use a hash table rather than a tree
+		    			this.hashSchemaSize = getBufferManager().getSchemaSize(schema);
+		    			this.hashTable = new HashMap<Object, List<Object>>();
+		    			this.groupSortTupleSource = this.getGroupSortTupleSource();
+		    			this.phase = HASH;
+		    			return;
+		    		}
+		    		
 		    		tree = this.getBufferManager().createSTree(schema, this.getConnectionID(), orderBy.size());
 		    		//non-default order needs to update the comparator
 		    		tree.getComparator().setNullOrdering(nullOrdering);
@@ -476,6 +526,9 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
         	
             this.sortUtility = new SortUtility(getGroupSortTupleSource(), removeDuplicates?Mode.DUP_REMOVE_SORT:Mode.SORT, getBufferManager(),
                     getConnectionID(), new ArrayList<Expression>(collectedExpressions.keySet()), sortTypes, nullOrdering, sortIndexes);
+            if (getContext() != null) {
+            	this.sortUtility.setExecutor(getContext().getExecutor());
+            }
             this.phase = SORT;
         }
     }
@@ -551,6 +604,178 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
 		return pullBatch();
 	}
 
+    /**
+     * Process the input into a hash table of partial accumulator values.
+     * If the reservation for the table cannot be extended, the rows for new groups 
+     * are spilled to partitions by the hash of the group key.  Each partition
+     * is then processed after the in memory groups have been output.
+     * @throws TeiidComponentException
+     * @throws TeiidProcessingException
+     */
+	private void hashPhase() throws TeiidComponentException, TeiidProcessingException {
+		List<?> tuple = null;
+		int size = orderBy.size();
+		while ((tuple = groupSortTupleSource.nextTuple()) != null) {
+			Object key = createGroupKey(tuple, size);
+			List<Object> current = hashTable.get(key);
+			boolean update = current != null;
+			if (!update) {
+				if (hashPartitions != null && hashPartition == 0) {
+					getHashPartition(key).addTuple(tuple);
+					continue;
+				}
+				if (hashTable.size() % getBatchSize() == 0 && !reserveHashBatch()) {
+					//start spilling new groups
+					this.hashPartitions = new TupleBuffer[HASH_PARTITIONS];
+					if (LogManager.isMessageToBeRecorded(LogConstants.CTX_DQP, MessageLevel.DETAIL)) {
+						LogManager.logDetail(LogConstants.CTX_DQP, "partitioning hash aggregation after", hashTable.size(), "groups", getID()); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+					getHashPartition(key).addTuple(tuple);
+					continue;
+				}
+				current = new ArrayList<Object>();
+				for (int i = 0; i < size; i++) {
+					current.add(tuple.get(i));
+				}
+			}
+			int index = size;
+			for (int i = 0; i < this.groupSortfunctions.length; i++) {
+				AggregateFunction aggregateFunction = this.groupSortfunctions[i];
+				if (update) {
+					aggregateFunction.setState(current, index);
+				} else {
+					aggregateFunction.reset();
+				}
+				aggregateFunction.addInput(tuple, getContext());
+				if (update) {
+					stateValues.clear();
+					aggregateFunction.getState(stateValues);
+					for (int j = 0; j < stateValues.size(); j++) {
+						current.set(index + j, stateValues.get(j));
+					}
+				} else {
+					aggregateFunction.getState(current);
+				}
+				index+=this.accumulatorStateCount[i];
+			}
+			if (!update) {
+				hashTable.put(key, current);
+			}
+		}
+		this.groupSortTupleSource.closeSource();
+		if (this.hashPartitions != null && this.hashPartition == 0) {
+			for (TupleBuffer tb : this.hashPartitions) {
+				if (tb != null) {
+					tb.close();
+				}
+			}
+		}
+		this.hashOutput = this.hashTable.values().iterator();
+		this.phase = HASH_OUTPUT;
+	}
+	
+	/**
+	 * Reserve space for another batch of groups.  Only the first pass 
+	 * may spill, the partitions must be processed in memory.
+	 * @return true if the reservation was granted
+	 */
+	private boolean reserveHashBatch() {
+		int toReserve = 2 * this.hashSchemaSize; //the map has more overhead than a batch
+		if (this.hashPartition > 0) {
+			this.reserved += getBufferManager().reserveBuffers(toReserve, BufferReserveMode.FORCE);
+			return true;
+		}
+		int granted = getBufferManager().reserveBuffers(toReserve, BufferReserveMode.NO_WAIT);
+		this.reserved += granted;
+		return granted == toReserve;
+	}
+
+	private TupleBuffer getHashPartition(Object key) throws TeiidComponentException {
+		int p = HashJoinStrategy.partition(key, HASH_PARTITIONS);
+		TupleBuffer tb = this.hashPartitions[p];
+		if (tb == null) {
+			tb = getBufferManager().createTupleBuffer(new ArrayList<Expression>(collectedExpressions.keySet()), getConnectionID(), TupleSourceType.PROCESSOR);
+			tb.setForwardOnly(true);
+			this.hashPartitions[p] = tb;
+		}
+		return tb;
+	}
+	
+	/**
+	 * Create a hash key consistent with the grouping comparison.  Unlike a join key 
+	 * null values are retained as they form a group.
+	 */
+	static Object createGroupKey(List<?> tuple, int size) {
+		if (size == 1) {
+			return HashJoinStrategy.normalize(tuple.get(0));
+		}
+		Object[] key = new Object[size];
+		for (int i = 0; i < size; i++) {
+			key[i] = HashJoinStrategy.normalize(tuple.get(i));
+		}
+		return Arrays.asList(key);
+	}
+
+	/**
+	 * Output the hash table, then process the remaining partitions
+	 */
+	private TupleBatch hashOutputPhase() throws FunctionExecutionException, ExpressionEvaluationException, TeiidComponentException, TeiidProcessingException {
+		int size = orderBy.size();
+		List<Object> vals = Arrays.asList(new Object[size + groupSortfunctions.length]);
+		while (true) {
+			while (hashOutput.hasNext()) {
+				List<Object> tuple = hashOutput.next();
+				hashOutput.remove();
+				for (int i = 0; i < size; i++) {
+					vals.set(i, tuple.get(i));
+				}
+				int index = size;
+				for (int i = 0; i < this.groupSortfunctions.length; i++) {
+					AggregateFunction aggregateFunction = this.groupSortfunctions[i];
+					aggregateFunction.setState(tuple, index);
+					index+=this.accumulatorStateCount[i];
+					vals.set(size + i, aggregateFunction.getResult(getContext()));
+				}
+				List<?> result = RelationalNode.projectTuple(projection, vals);
+				addBatchRow(result);
+				if (isBatchFull()) {
+					return pullBatch();
+				}
+			}
+			if (!nextHashPartition()) {
+				break;
+			}
+			hashPhase();
+		}
+		terminateBatches();
+		return pullBatch();
+	}
+
+	private boolean nextHashPartition() {
+		if (this.hashPartitions == null) {
+			return false;
+		}
+		releaseHashReservation();
+		while (++this.hashPartition < this.hashPartitions.length) {
+			TupleBuffer tb = this.hashPartitions[this.hashPartition];
+			if (tb == null) {
+				continue;
+			}
+			this.hashPartitions[this.hashPartition] = null;
+			this.groupSortTupleSource = tb.createIndexedTupleSource(true);
+			this.phase = HASH;
+			return true;
+		}
+		return false;
+	}
+
+	private void releaseHashReservation() {
+		if (this.reserved > 0) {
+			getBufferManager().releaseBuffers(this.reserved);
+			this.reserved = 0;
+		}
+	}
+
     private void sortPhase() throws BlockedException, TeiidComponentException, TeiidProcessingException {
         this.sortBuffer = this.sortUtility.sort();
         this.sortBuffer.setForwardOnly(true);
@@ -674,6 +899,21 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
     		this.tree.remove();
     		this.tree = null;
     	}
+    	if (this.hashPartitions != null) {
+    		for (TupleBuffer tb : this.hashPartitions) {
+    			if (tb != null) {
+    				tb.remove();
+    			}
+    		}
+    		this.hashPartitions = null;
+    	}
+    	if (this.groupSortTupleSource != null && this.hashPartition > 0) {
+    		this.groupSortTupleSource.closeSource();
+    		this.groupSortTupleSource = null;
+    	}
+    	this.hashTable = null;
+    	this.hashOutput = null;
+    	releaseHashReservation();
     }
 
 	protected void getNodeString(StringBuffer str) {
@@ -691,6 +931,7 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
 		clonedNode.outputMapping = outputMapping;
 		clonedNode.orderBy = orderBy;
 		clonedNode.rollup = rollup;
+		clonedNode.hashAggregation = hashAggregation;
 		return clonedNode;
 	}
 
@@ -710,6 +951,9 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
         if (rollup) {
         	props.addProperty(PROP_ROLLUP, Boolean.TRUE.toString());
         }
+        if (hashAggregation) {
+        	props.addProperty(PROP_HASH_AGGREGATION, Boolean.TRUE.toString());
+        }
         return props;
     }
 
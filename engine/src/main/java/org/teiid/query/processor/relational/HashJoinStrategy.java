@@ -0,0 +1,577 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.query.processor.relational;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.BufferManager.BufferReserveMode;
+import org.teiid.common.buffer.BufferManager.TupleSourceType;
+import org.teiid.common.buffer.TupleBuffer;
+import org.teiid.common.buffer.TupleSource;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.TeiidProcessingException;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.logging.MessageLevel;
+import org.teiid.query.function.FunctionMethods;
+import org.teiid.query.processor.relational.SourceState.ImplicitBuffer;
+import org.teiid.query.sql.lang.JoinType;
+
+
+/**
+ * Hybrid hash join for equi-joins.
+ *
+ * Supports Inner, Left Outer, Semi and Anti-Semi Joins with additional non-equi join criteria.
+ * For inner joins the smaller side is used to build the hash table, otherwise the right side is
+ * always the build side.
+ *
+ * If the buffer manager will not reserve enough space for the build side, both sides
+ * are partitioned by the hash of the join key into {@link TupleBuffer}s.  The first partition
+ * is kept in memory, if it fits, and is probed while the probe side is being partitioned, the remaining
+ * partitions are then joined one at a time.  A partition that still exceeds the reservation is
+ * recursively partitioned using a different hash.  If that is not possible, for example when
+ * the partition holds a single key, the build partition is loaded in reservation sized chunks
+ * and the probe partition is re-read for each chunk.
+ *
+ * Output is in probe side order only when the build side fits in memory.
+ */
+public class HashJoinStrategy extends JoinStrategy {
+
+	static final int MAX_PARTITIONS = 64;
+	static final int MAX_LEVEL = 4;
+
+	/**
+	 * A pair of build and probe partitions to be joined after the initial pass
+	 */
+	private static class Partition {
+		TupleBuffer build;
+		TupleBuffer probe;
+		int level;
+		TupleSource buildTuples;
+		int buildRow;
+		BitSet matched;
+		boolean lastChunk;
+
+		Partition(TupleBuffer build, TupleBuffer probe, int level) {
+			this.build = build;
+			this.probe = probe;
+			this.level = level;
+		}
+
+		void remove() {
+			if (this.buildTuples != null) {
+				this.buildTuples.closeSource();
+				this.buildTuples = null;
+			}
+			if (this.build != null) {
+				this.build.remove();
+			}
+			if (this.probe != null) {
+				this.probe.remove();
+			}
+		}
+	}
+
+	private SourceState buildSource;
+	private SourceState probeSource;
+	private boolean buildLeft;
+	private boolean loaded;
+
+	private HashMap<Object, List<List<?>>> table;
+	private TupleBuffer[] buildPartitions;
+	private TupleBuffer[] probePartitions;
+	private int maxPartitionRows;
+	private LinkedList<Partition> pending;
+	private Partition current;
+
+	//probe state
+	private TupleSource probeTuples;
+	private List<?> probeTuple;
+	private int probeRow;
+	private List<List<?>> matches;
+	private int matchIndex;
+	private boolean matched;
+
+	@Override
+	public void initialize(JoinNode joinNode) {
+		super.initialize(joinNode);
+		this.loaded = false;
+		this.pending = null;
+		this.current = null;
+	}
+
+	@Override
+	public void close() {
+		if (joinNode == null) {
+			return;
+		}
+		try {
+			super.close();
+		} finally {
+			this.table = null;
+			this.matches = null;
+			this.probeTuple = null;
+			if (this.probeTuples != null && this.current != null) {
+				this.probeTuples.closeSource();
+			}
+			this.probeTuples = null;
+			removePartitions(this.buildPartitions);
+			removePartitions(this.probePartitions);
+			this.buildPartitions = null;
+			this.probePartitions = null;
+			if (this.current != null) {
+				this.current.remove();
+				this.current = null;
+			}
+			if (this.pending != null) {
+				for (Partition p : this.pending) {
+					p.remove();
+				}
+				this.pending = null;
+			}
+		}
+	}
+
+	private void removePartitions(TupleBuffer[] partitions) {
+		if (partitions == null) {
+			return;
+		}
+		for (TupleBuffer tb : partitions) {
+			if (tb != null) {
+				tb.remove();
+			}
+		}
+	}
+
+	@Override
+	protected void loadRight() throws TeiidComponentException,
+			TeiidProcessingException {
+		if (loaded) {
+			return;
+		}
+		chooseBuildSide();
+		TupleBuffer buffer = this.buildSource.getTupleBuffer();
+		this.probeSource.setImplicitBuffer(ImplicitBuffer.NONE);
+		BufferManager bm = this.joinNode.getBufferManager();
+		int schemaSize = bm.getSchemaSize(this.buildSource.getSource().getOutputElements());
+		int batchSize = Math.max(1, this.buildSource.getSource().getBatchSize());
+		//the hash table has more overhead than a batch, so use a conservative estimate
+		long estimate = 2l * schemaSize * buffer.getRowCount() / batchSize;
+		int toReserve = (int)Math.min(Integer.MAX_VALUE, estimate);
+		int granted = bm.reserveBuffers(toReserve, BufferReserveMode.NO_WAIT);
+		this.reserved += granted;
+		int partitionCount = 1;
+		if (granted < toReserve) {
+			int partitionSize = Math.max(granted, bm.getMaxProcessingSize());
+			partitionCount = (int)Math.min(MAX_PARTITIONS, Math.max(2, (long)toReserve / Math.max(1, partitionSize) + 1));
+			//ensure that a single partition may be held in memory
+			int needed = toReserve / partitionCount - granted;
+			if (needed > 0) {
+				this.reserved += bm.reserveBuffers(needed, BufferReserveMode.FORCE);
+			}
+			//invert the estimate to determine how many rows the reservation will hold
+			this.maxPartitionRows = (int)Math.min(Integer.MAX_VALUE, Math.max(batchSize, (long)this.reserved * batchSize / Math.max(1, 2l * schemaSize)));
+			this.buildPartitions = new TupleBuffer[partitionCount];
+			this.probePartitions = new TupleBuffer[partitionCount];
+			if (LogManager.isMessageToBeRecorded(LogConstants.CTX_DQP, MessageLevel.DETAIL)) {
+				LogManager.logDetail(LogConstants.CTX_DQP, "partitioning hash join into", partitionCount, "partitions", this.joinNode.getID()); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+		this.table = new HashMap<Object, List<List<?>>>();
+		TupleSource ts = buffer.createIndexedTupleSource(!joinNode.isDependent());
+		int[] indexes = this.buildSource.getExpressionIndexes();
+		List<?> tuple = null;
+		int tableRows = 0;
+		while ((tuple = ts.nextTuple()) != null) {
+			Object key = createKey(tuple, indexes);
+			if (key == null) {
+				continue; //a null key cannot match
+			}
+			int p = partitionCount == 1?0:partition(key, partitionCount);
+			if (p == 0 && this.buildPartitions != null && this.buildPartitions[0] == null && tableRows == this.maxPartitionRows) {
+				//the first partition is too large to keep in memory, so it is handled like the others
+				TupleBuffer tb = getPartition(this.buildPartitions, 0, this.buildSource);
+				for (List<List<?>> values : this.table.values()) {
+					for (List<?> value : values) {
+						tb.addTuple(value);
+					}
+				}
+				this.table.clear();
+			}
+			if (p == 0 && (this.buildPartitions == null || this.buildPartitions[0] == null)) {
+				addToTable(key, tuple);
+				tableRows++;
+			} else {
+				getPartition(this.buildPartitions, p, this.buildSource).addTuple(tuple);
+			}
+		}
+		ts.closeSource();
+		closePartitions(this.buildPartitions);
+		loaded = true;
+	}
+
+	private void closePartitions(TupleBuffer[] partitions) throws TeiidComponentException {
+		if (partitions == null) {
+			return;
+		}
+		for (TupleBuffer tb : partitions) {
+			if (tb != null) {
+				tb.close();
+			}
+		}
+	}
+
+	/**
+	 * Determine the build side.  Inner joins will use the smaller side
+	 * using the same incremental approach as the enhanced sort join.
+	 */
+	private void chooseBuildSide() throws TeiidComponentException,
+			TeiidProcessingException {
+		this.buildSource = this.rightSource;
+		this.probeSource = this.leftSource;
+		this.buildLeft = false;
+		if (this.joinNode.getJoinType() != JoinType.JOIN_INNER) {
+			return;
+		}
+		long size = this.joinNode.getBatchSize();
+		while (true) {
+			if (this.rightSource.rowCountLE(size)) {
+				return;
+			}
+			if (this.leftSource.rowCountLE(size)) {
+				this.buildSource = this.leftSource;
+				this.probeSource = this.rightSource;
+				this.buildLeft = true;
+				return;
+			}
+			size *= 2;
+		}
+	}
+
+	private TupleBuffer getPartition(TupleBuffer[] partitions, int p, SourceState state) throws TeiidComponentException {
+		TupleBuffer tb = partitions[p];
+		if (tb == null) {
+			tb = this.joinNode.getBufferManager().createTupleBuffer(state.getSource().getElements(), this.joinNode.getConnectionID(), TupleSourceType.PROCESSOR);
+			tb.setForwardOnly(true);
+			partitions[p] = tb;
+		}
+		return tb;
+	}
+
+	private void addToTable(Object key, List<?> tuple) {
+		List<List<?>> values = this.table.get(key);
+		if (values == null) {
+			values = new ArrayList<List<?>>(2);
+			this.table.put(key, values);
+		}
+		values.add(tuple);
+	}
+
+	@Override
+	protected void process() throws TeiidComponentException,
+			TeiidProcessingException {
+		while (true) {
+			if (this.probeTuples == null) {
+				if (this.pending == null) {
+					this.probeTuples = this.probeSource.getIterator();
+				} else if (!loadPartition()) {
+					return;
+				}
+			}
+			probe();
+			if (this.current != null) {
+				this.probeTuples.closeSource();
+				this.probeTuples = null;
+				if (this.current.lastChunk) {
+					this.current.remove();
+					this.current = null;
+				}
+				continue;
+			}
+			this.probeTuples = null;
+			if (this.buildPartitions == null) {
+				return;
+			}
+			closePartitions(this.probePartitions);
+			this.pending = new LinkedList<Partition>();
+			for (int i = 0; i < this.buildPartitions.length; i++) {
+				if (this.buildPartitions[i] != null || this.probePartitions[i] != null) {
+					this.pending.add(new Partition(this.buildPartitions[i], this.probePartitions[i], 0));
+				}
+			}
+			this.buildPartitions = null;
+			this.probePartitions = null;
+		}
+	}
+
+	/**
+	 * Replace the table with the next build partition, or the next chunk of the current
+	 * build partition, and open the corresponding probe partition
+	 * @return false if there are no more partitions to join
+	 */
+	private boolean loadPartition() throws TeiidComponentException,
+			TeiidProcessingException {
+		this.table.clear();
+		this.probeRow = 0;
+		int[] indexes = this.buildSource.getExpressionIndexes();
+		while (this.current == null) {
+			Partition next = this.pending.poll();
+			if (next == null) {
+				return false;
+			}
+			if (next.probe == null || (next.build == null && !this.joinNode.getJoinType().isOuter())) {
+				next.remove();
+				continue;
+			}
+			if (next.build != null && next.build.getRowCount() > this.maxPartitionRows) {
+				if (next.level < MAX_LEVEL) {
+					split(next);
+					continue;
+				}
+				//a single key or poorly distributed keys, so join in chunks
+				if (LogManager.isMessageToBeRecorded(LogConstants.CTX_DQP, MessageLevel.DETAIL)) {
+					LogManager.logDetail(LogConstants.CTX_DQP, "joining hash partition of", next.build.getRowCount(), "rows in chunks", this.joinNode.getID()); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+				next.probe.setForwardOnly(false);
+				next.matched = new BitSet();
+			}
+			if (next.build != null) {
+				next.buildTuples = next.build.createIndexedTupleSource(true);
+			}
+			this.current = next;
+		}
+		Partition p = this.current;
+		if (p.buildTuples != null) {
+			List<?> tuple = null;
+			int rows = 0;
+			while (rows++ < this.maxPartitionRows && (tuple = p.buildTuples.nextTuple()) != null) {
+				addToTable(createKey(tuple, indexes), tuple);
+				p.buildRow++;
+			}
+		}
+		p.lastChunk = p.build == null || p.buildRow >= p.build.getRowCount();
+		if (p.lastChunk && p.buildTuples != null) {
+			p.buildTuples.closeSource();
+			p.buildTuples = null;
+		}
+		this.probeTuples = p.probe.createIndexedTupleSource(p.lastChunk);
+		return true;
+	}
+
+	/**
+	 * Split both sides of the partition using the hash for the next level.
+	 * The sub-partitions are joined next so that the spilled data does not grow.
+	 */
+	private void split(Partition p) throws TeiidComponentException,
+			TeiidProcessingException {
+		int level = p.level + 1;
+		int count = (int)Math.min(MAX_PARTITIONS, Math.max(2, (long)p.build.getRowCount() / this.maxPartitionRows + 1));
+		if (LogManager.isMessageToBeRecorded(LogConstants.CTX_DQP, MessageLevel.DETAIL)) {
+			LogManager.logDetail(LogConstants.CTX_DQP, "repartitioning hash join partition of", p.build.getRowCount(), "rows into", count, "partitions", this.joinNode.getID()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		TupleBuffer[] build = splitBuffer(p.build, this.buildSource, count, level);
+		TupleBuffer[] probe = splitBuffer(p.probe, this.probeSource, count, level);
+		for (int i = count - 1; i >= 0; i--) {
+			if (build[i] == null && probe[i] == null) {
+				continue;
+			}
+			Partition sub = new Partition(build[i], probe[i], level);
+			if (build[i] != null && build[i].getRowCount() == p.build.getRowCount()) {
+				//further splitting won't help
+				sub.level = MAX_LEVEL;
+			}
+			this.pending.addFirst(sub);
+		}
+		p.build = null;
+		p.probe = null;
+	}
+
+	private TupleBuffer[] splitBuffer(TupleBuffer buffer, SourceState state, int count, int level)
+			throws TeiidComponentException, TeiidProcessingException {
+		TupleBuffer[] result = new TupleBuffer[count];
+		if (buffer == null) {
+			return result;
+		}
+		TupleSource ts = buffer.createIndexedTupleSource(true);
+		int[] indexes = state.getExpressionIndexes();
+		List<?> tuple = null;
+		while ((tuple = ts.nextTuple()) != null) {
+			getPartition(result, partition(createKey(tuple, indexes), count, level), state).addTuple(tuple);
+		}
+		ts.closeSource();
+		buffer.remove();
+		closePartitions(result);
+		return result;
+	}
+
+	/**
+	 * Probe the table with the current probe tuples.  The state is maintained
+	 * such that processing may resume after a blocked or batch available exception.
+	 */
+	private void probe() throws TeiidComponentException,
+			TeiidProcessingException {
+		int[] indexes = this.probeSource.getExpressionIndexes();
+		JoinType joinType = this.joinNode.getJoinType();
+		BitSet previous = this.current == null?null:this.current.matched;
+		boolean lastChunk = this.current == null || this.current.lastChunk;
+		while (true) {
+			if (this.probeTuple == null) {
+				List<?> tuple = this.probeTuples.nextTuple();
+				if (tuple == null) {
+					return;
+				}
+				this.probeRow++;
+				if (previous != null && previous.get(this.probeRow) && (joinType == JoinType.JOIN_SEMI || joinType == JoinType.JOIN_ANTI_SEMI)) {
+					continue; //already determined by a previous chunk
+				}
+				this.matched = false;
+				this.matchIndex = 0;
+				this.matches = null;
+				Object key = createKey(tuple, indexes);
+				if (key != null) {
+					if (this.pending == null && this.buildPartitions != null) {
+						int p = partition(key, this.buildPartitions.length);
+						if (p != 0 || this.buildPartitions[0] != null) {
+							getPartition(this.probePartitions, p, this.probeSource).addTuple(tuple);
+							continue;
+						}
+					}
+					this.matches = this.table.get(key);
+				}
+				this.probeTuple = tuple;
+			}
+			if (this.matches != null) {
+				while (this.matchIndex < this.matches.size()) {
+					List<?> buildTuple = this.matches.get(this.matchIndex);
+					List outputTuple = this.buildLeft?outputTuple(buildTuple, this.probeTuple):outputTuple(this.probeTuple, buildTuple);
+					boolean match = this.joinNode.matchesCriteria(outputTuple);
+					this.matchIndex++;
+					if (!match) {
+						continue;
+					}
+					this.matched = true;
+					if (joinType == JoinType.JOIN_ANTI_SEMI) {
+						break;
+					}
+					if (joinType == JoinType.JOIN_SEMI) {
+						this.matchIndex = this.matches.size(); //only one match is needed for semi join
+					}
+					this.joinNode.addBatchRow(outputTuple);
+				}
+			}
+			List<?> tuple = this.probeTuple;
+			this.probeTuple = null;
+			this.matches = null;
+			if (previous != null) {
+				if (this.matched) {
+					previous.set(this.probeRow);
+				} else if (previous.get(this.probeRow)) {
+					continue;
+				}
+			}
+			if (!this.matched && lastChunk && joinType.isOuter()) {
+				this.joinNode.addBatchRow(outputTuple(tuple, this.rightSource.getOuterVals()));
+			}
+		}
+	}
+
+	/**
+	 * Create a hash key consistent with the engine comparison logic.
+	 * @return null if any of the key values is null
+	 */
+	static Object createKey(List<?> tuple, int[] indexes) {
+		if (indexes.length == 1) {
+			return normalize(tuple.get(indexes[0]));
+		}
+		Object[] key = new Object[indexes.length];
+		for (int i = 0; i < indexes.length; i++) {
+			Object value = normalize(tuple.get(indexes[i]));
+			if (value == null) {
+				return null;
+			}
+			key[i] = value;
+		}
+		return Arrays.asList(key);
+	}
+
+	static Object normalize(Object value) {
+		if (value instanceof String) {
+			if (DataTypeManager.PAD_SPACE) {
+				return FunctionMethods.rightTrim((String)value, ' ', false);
+			}
+		} else if (value instanceof BigDecimal) {
+			//compareTo rather than equals semantics
+			BigDecimal bd = (BigDecimal)value;
+			if (bd.signum() == 0) {
+				return BigDecimal.ZERO;
+			}
+			return bd.stripTrailingZeros();
+		}
+		return value;
+	}
+
+	/**
+	 * Use the high bits of a multiplicative hash so that the partition
+	 * is independent of the hash table bucket
+	 */
+	static int partition(Object key, int partitionCount) {
+		long hash = ((key == null?0:key.hashCode()) * 0x9E3779B9L) & 0xffffffffL;
+		return (int)((hash * partitionCount) >>> 32);
+	}
+
+	/**
+	 * Partition with a hash that is seeded by the level so that the keys of
+	 * a single partition are redistributed when it is split
+	 */
+	static int partition(Object key, int partitionCount, int level) {
+		if (level == 0) {
+			return partition(key, partitionCount);
+		}
+		int h = (key == null?0:key.hashCode()) + level * 0x9E3779B9;
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return (int)(((h & 0xffffffffL) * partitionCount) >>> 32);
+	}
+
+	@Override
+	public HashJoinStrategy clone() {
+		return new HashJoinStrategy();
+	}
+
+	@Override
+	public String toString() {
+		return "HASH JOIN"; //$NON-NLS-1$
+	}
+
+}
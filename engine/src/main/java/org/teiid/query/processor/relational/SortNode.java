@@ -108,7 +108,12 @@ public class SortNode extends RelationalNode {
 	        if (ts == null) {
 	        	this.sortUtility.setWorkingBuffer(working);
 	        }
+	        if (getContext() != null) {
+	        	this.sortUtility.setExecutor(getContext().getExecutor());
+	        }
 		}
+		//the output may be consumed while the final merge is in progress unless the buffer is handed off
+		this.sortUtility.setPipelined(!usingOutput);
 		this.output = this.sortUtility.sort();
 		if (this.outputTs == null) {
 			this.outputTs = this.output.createIndexedTupleSource();
@@ -199,10 +204,10 @@ public class SortNode extends RelationalNode {
     public TupleBuffer getBuffer(int maxRows) throws BlockedException, TeiidComponentException, TeiidProcessingException {
     	this.rowLimit = maxRows;
     	//TODO: push limiting into the sort logic
-    	if (this.output == null) {
+    	usingOutput = true;
+    	if (this.output == null || !this.output.isFinal()) {
     		sortPhase();
     	}
-    	usingOutput = true;
     	TupleBuffer result = this.output;
     	if (this.output.isFinal()) {
     		this.output = null;
@@ -23,11 +23,17 @@
 package org.teiid.query.processor.relational;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.teiid.common.buffer.BlockedException;
 import org.teiid.common.buffer.BufferManager;
@@ -51,9 +57,12 @@ import org.teiid.query.sql.symbol.Expression;
 
 /**
  * Implements several modes of a multi-pass sort.
+ * <br>
+ * Sorted runs may be generated with the help of an {@link Executor} - see {@link #setExecutor(Executor)}.
+ * Runs are merged with a loser tree and the final merge pass may be pipelined into the consumer
+ * - see {@link #setPipelined(boolean)}. 
  * 
  * TODO: could consider using an index for dup_removal and maintaining a separate output buffer
- * TODO: release the tuple buffer in the last merge pass if sublists will fit in processing batch size
  */
 public class SortUtility {
 	
@@ -70,16 +79,28 @@ public class SortUtility {
 	/**
 	 * state holder for the merge algorithm
 	 */
-	private class SortedSublist implements Comparable<SortedSublist> {
+	private static class SortedSublist {
 		List<?> tuple;
 		int index;
 		TupleBufferTupleSource its;
 		int limit = Integer.MAX_VALUE;
+		//in memory run state
+		List<?>[] tuples;
+		int pos;
+		int end;
 		
-		@Override
-		public int compareTo(SortedSublist o) {
-			//reverse the comparison, so that removal of the lowest is a low cost operation
-			return -comparator.compare(this.tuple, o.tuple);
+		void next() throws TeiidComponentException, TeiidProcessingException {
+			tuple = null;
+			if (its == null) {
+				if (pos < end) {
+					tuple = tuples[pos++];
+				}
+				return;
+			}
+			if (limit < its.getCurrentIndex()) {
+				return; //special case for still reading the output tuplebuffer
+			}
+			tuple = its.nextTuple();
 		}
 		
 		@Override
@@ -87,6 +108,82 @@ public class SortUtility {
 			return index + " " + tuple; //$NON-NLS-1$
 		}
 	}
+	
+	/**
+	 * A loser tree over the sublists.  Internal nodes 1 to k-1 hold the loser of 
+	 * the comparison at that node and node 0 holds the overall winner, so that each
+	 * output tuple requires only log(k) comparisons against a single path.
+	 * <br>
+	 * Ties are won by the lower sublist index so that the merge output is deterministic,
+	 * but the sort as a whole is only stable if {@link #setStableSort(boolean)} is used.  
+	 * The non-sort modes skip tuples equal to the last returned tuple.
+	 */
+	private class MergeTree {
+		private SortedSublist[] sublists;
+		private int[] tree;
+		private List<?> last;
+		
+		MergeTree(SortedSublist[] sublists) throws TeiidComponentException, TeiidProcessingException {
+			this.sublists = sublists;
+			this.tree = new int[sublists.length];
+			for (SortedSublist sublist : sublists) {
+				sublist.next();
+			}
+			this.tree[0] = build(1);
+		}
+		
+		private int build(int node) {
+			if (node >= sublists.length) {
+				return node - sublists.length;
+			}
+			int left = build(2*node);
+			int right = build(2*node + 1);
+			if (wins(left, right)) {
+				tree[node] = right;
+				return left;
+			}
+			tree[node] = left;
+			return right;
+		}
+		
+		private boolean wins(int i, int j) {
+			List<?> first = sublists[i].tuple;
+			List<?> second = sublists[j].tuple;
+			if (first == null) {
+				return false;
+			}
+			if (second == null) {
+				return true;
+			}
+			int c = comparator.compare(first, second);
+			return c < 0 || (c == 0 && i < j);
+		}
+		
+		List<?> next() throws TeiidComponentException, TeiidProcessingException {
+			while (true) {
+				int winner = tree[0];
+				SortedSublist sublist = sublists[winner];
+				List<?> result = sublist.tuple;
+				if (result == null) {
+					return null;
+				}
+				sublist.next();
+				for (int node = (winner + sublists.length) >> 1; node > 0; node >>= 1) {
+					if (wins(tree[node], winner)) {
+						int loser = winner;
+						winner = tree[node];
+						tree[node] = loser;
+					}
+				}
+				tree[0] = winner;
+				if (mode != Mode.SORT && last != null && comparator.compare(last, result) == 0) {
+					continue;
+				}
+				last = result;
+				return result;
+			}
+		}
+	}
 
 	//constructor state
     private TupleSource source;
@@ -116,6 +213,23 @@ public class SortUtility {
 	private static boolean STABLE_SORT = PropertiesUtils.getBooleanProperty(System.getProperties(), "org.teiid.requireStableSort", false); //$NON-NLS-1$
 	
 	private boolean stableSort = STABLE_SORT;
+	
+	/**
+	 * The maximum number of threads, including the calling thread, used to sort a run
+	 */
+	private static int PARALLELISM = PropertiesUtils.getIntProperty(System.getProperties(), "org.teiid.sortParallelism", 1); //$NON-NLS-1$
+	private static final int PARALLEL_SORT_MIN_ROWS = 1 << 13;
+	
+	private int parallelism = PARALLELISM;
+	private int parallelSortMinRows = PARALLEL_SORT_MIN_ROWS;
+	private Executor executor;
+	private boolean pipelined;
+	
+	//final merge pass state when pipelined
+	private MergeTree finalMerge;
+	private int finalMergeCount;
+	private TupleBuffer finalMergeOutput;
+	private int finalMergeReserved;
     
     public SortUtility(TupleSource sourceID, List<OrderByItem> items, Mode mode, BufferManager bufferMgr,
                         String groupName, List<? extends Expression> schema) {
@@ -207,6 +321,9 @@ public class SortUtility {
 	            mergePhase();
 	        }
 	        success = true;
+	        if (this.finalMergeOutput != null) {
+	        	return this.finalMergeOutput;
+	        }
 	        return this.activeTupleBuffers.get(0);
     	} catch (BlockedException e) {
     		success = true;
@@ -332,7 +449,8 @@ public class SortUtility {
 			ts.setReverse(!stableSort && workingBuffer.getRowCount() > this.batchSize);
 			processed+=this.workingBuffer.getRowCount();
 			maxRows = Math.max(1, (totalReservedBuffers/schemaSize))*batchSize;
-            if (mode == Mode.SORT) {
+            boolean parallel = this.parallelism > 1 && this.executor != null && maxRows >= 2*parallelSortMinRows;
+            if (mode == Mode.SORT || parallel) {
             	workingTuples = new ArrayList<List<?>>();
             } else {
             	workingTuples = new TreeSet<List<?>>(comparator);
@@ -356,13 +474,13 @@ public class SortUtility {
 		
 		        TupleBuffer sublist = createTupleBuffer();
 		        activeTupleBuffers.add(sublist);
-		        if (this.mode == Mode.SORT) {
-		        	//perform a stable sort
-		    		Collections.sort((List<List<?>>)workingTuples, comparator);
+		        if (workingTuples instanceof List) {
+		        	sortRun((List<List<?>>)workingTuples, sublist);
+		        } else {
+			        for (List<?> list : workingTuples) {
+						sublist.addTuple(list);
+					}
 		        }
-		        for (List<?> list : workingTuples) {
-					sublist.addTuple(list);
-				}
 		        workingTuples.clear();
 		        sublist.saveBatch();
             }
@@ -383,12 +501,106 @@ public class SortUtility {
         }  
         this.phase = MERGE;
     }
+    
+    /**
+     * Perform a stable sort of the tuples into the sublist.  If allowed the tuples 
+     * are split into slices that are sorted concurrently then merged. 
+     */
+    private void sortRun(List<List<?>> workingTuples, TupleBuffer sublist) throws TeiidComponentException, TeiidProcessingException {
+    	List<?>[] tuples = workingTuples.toArray(new List<?>[workingTuples.size()]);
+    	int slices = 1;
+    	if (this.executor != null) {
+    		slices = Math.max(1, Math.min(this.parallelism, tuples.length / parallelSortMinRows));
+    	}
+    	if (slices == 1) {
+    		Arrays.sort(tuples, (ListNestedSortComparator)comparator);
+    		if (mode == Mode.SORT) {
+    			for (List<?> tuple : tuples) {
+					sublist.addTuple(tuple);
+				}
+    			return;
+    		}
+    	} else {
+    		sortSlices(tuples, slices);
+    	}
+    	SortedSublist[] runs = new SortedSublist[slices];
+    	int sliceSize = tuples.length / slices;
+    	for (int i = 0; i < slices; i++) {
+    		SortedSublist run = new SortedSublist();
+    		run.index = i;
+    		run.tuples = tuples;
+    		run.pos = i * sliceSize;
+    		run.end = i == slices - 1 ? tuples.length : run.pos + sliceSize;
+    		runs[i] = run;
+    	}
+    	MergeTree mergeTree = new MergeTree(runs);
+    	List<?> tuple = null;
+    	while ((tuple = mergeTree.next()) != null) {
+    		sublist.addTuple(tuple);
+    	}
+    }
+    
+    /**
+     * Sort the slices using the executor.  Slices are claimed by both the calling thread
+     * and helper tasks, so that we'll only wait on slices that are actively being sorted
+     * and will not deadlock on an exhausted pool.
+     */
+    private void sortSlices(final List<?>[] tuples, final int slices) throws TeiidComponentException {
+    	final int sliceSize = tuples.length / slices;
+    	final AtomicInteger next = new AtomicInteger();
+    	final CountDownLatch done = new CountDownLatch(slices);
+    	final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    	Runnable task = new Runnable() {
+    		@Override
+    		public void run() {
+    			int i = 0;
+    			while ((i = next.getAndIncrement()) < slices) {
+    				try {
+    					if (failure.get() == null) {
+    						Arrays.sort(tuples, i * sliceSize, i == slices - 1 ? tuples.length : (i + 1) * sliceSize, (ListNestedSortComparator)comparator);
+    					}
+    				} catch (Throwable t) {
+    					failure.compareAndSet(null, t);
+    				} finally {
+    					done.countDown();
+    				}
+    			}
+    		}
+    	};
+    	for (int i = 1; i < slices; i++) {
+    		try {
+    			this.executor.execute(task);
+    		} catch (RejectedExecutionException e) {
+    			break;
+    		}
+    	}
+    	task.run();
+    	try {
+			done.await();
+		} catch (InterruptedException e) {
+			throw new TeiidComponentException(e);
+		}
+		Throwable t = failure.get();
+		if (t instanceof RuntimeException) {
+			throw (RuntimeException)t;
+		}
+		if (t instanceof Error) {
+			throw (Error)t;
+		}
+		if (t != null) {
+			throw new TeiidComponentException(t);
+		}
+    }
 
     public void setWorkingBuffer(TupleBuffer workingBuffer) {
 		this.workingBuffer = workingBuffer;
 	}
     
     protected void mergePhase() throws TeiidComponentException, TeiidProcessingException {
+    	if (this.finalMerge != null) {
+    		continueFinalMerge();
+    		return;
+    	}
         long desiredSpace = activeTupleBuffers.size() * (long)schemaSize;
         int toForce = (int)Math.min(desiredSpace, Math.max(2*schemaSize, this.bufferManager.getMaxProcessingSize()));
         int reserved = 0;
@@ -429,9 +641,9 @@ public class SortUtility {
         reserved += bufferManager.reserveBuffers(toForce, BufferReserveMode.FORCE);
         
         try {
+        	//merge in place, rather than appending to the end, so that runs remain in input order
+        	int mergeIndex = 0;
         	while(this.activeTupleBuffers.size() > 1) {    		
-	    		ArrayList<SortedSublist> sublists = new ArrayList<SortedSublist>(activeTupleBuffers.size());
-	            
 	            TupleBuffer merged = createTupleBuffer();
 
 	            desiredSpace = activeTupleBuffers.size() * (long)schemaSize;
@@ -440,34 +652,50 @@ public class SortUtility {
 	            	reserved = (int)desiredSpace;
 	            }
 	            int maxSortIndex = Math.max(2, reserved / schemaSize); //always allow progress
+	            if (mergeIndex + 1 >= activeTupleBuffers.size()) {
+	            	mergeIndex = 0;
+	            }
+	            maxSortIndex = Math.min(maxSortIndex, activeTupleBuffers.size() - mergeIndex);
 	            
             	if (LogManager.isMessageToBeRecorded(org.teiid.logging.LogConstants.CTX_DQP, MessageLevel.TRACE)) {
 	            	LogManager.logTrace(org.teiid.logging.LogConstants.CTX_DQP, "Merging", maxSortIndex, "sublists out of", activeTupleBuffers.size()); //$NON-NLS-1$ //$NON-NLS-2$
 	            }
 	        	// initialize the sublists with the min value
+	            SortedSublist[] sublists = new SortedSublist[maxSortIndex];
 	            for(int i = 0; i<maxSortIndex; i++) { 
-	             	TupleBuffer activeID = activeTupleBuffers.get(i);
+	             	TupleBuffer activeID = activeTupleBuffers.get(mergeIndex + i);
 	             	SortedSublist sortedSublist = new SortedSublist();
 	            	sortedSublist.its = activeID.createIndexedTupleSource();
 	            	sortedSublist.its.setNoBlocking(true);
 	            	sortedSublist.index = i;
-	            	incrementWorkingTuple(sublists, sortedSublist);
+	            	sublists[i] = sortedSublist;
+	            }
+	            MergeTree mergeTree = new MergeTree(sublists);
+	            
+	            if (pipelined && maxSortIndex == activeTupleBuffers.size()) {
+	            	//hand the output to the consumer while it is being merged
+	            	this.finalMerge = mergeTree;
+	            	this.finalMergeCount = maxSortIndex;
+	            	this.finalMergeOutput = merged;
+	            	this.finalMergeReserved = reserved;
+	            	reserved = 0;
+	            	continueFinalMerge();
+	            	return;
 	            }
 	            
 	            // iteratively process the lowest tuple
-	            while (sublists.size() > 0) {
-	            	SortedSublist sortedSublist = sublists.remove(sublists.size() - 1);
-	        		merged.addTuple(sortedSublist.tuple);
-	            	incrementWorkingTuple(sublists, sortedSublist);
+	            List<?> tuple = null;
+	            while ((tuple = mergeTree.next()) != null) {
+	        		merged.addTuple(tuple);
 	            }                
 	
 	            // Remove merged sublists
 	            for(int i=0; i<maxSortIndex; i++) {
-	            	TupleBuffer id = activeTupleBuffers.remove(0);
+	            	TupleBuffer id = activeTupleBuffers.remove(mergeIndex);
             		id.remove();
 	            }
 	            merged.saveBatch();
-	            this.activeTupleBuffers.add(merged);           
+	            this.activeTupleBuffers.add(mergeIndex++, merged);           
     		}
         } finally {
         	this.bufferManager.releaseBuffers(reserved);
@@ -480,34 +708,58 @@ public class SortUtility {
         this.phase = DONE;
         return;
     }
+    
+    /**
+     * Add at least a batch of rows to the pipelined output, or all of the rows if no longer pipelined
+     */
+    private void continueFinalMerge() throws TeiidComponentException, TeiidProcessingException {
+    	boolean success = false;
+    	try {
+    		int target = this.finalMergeOutput.getRowCount() + this.batchSize;
+	    	List<?> tuple = null;
+	    	while ((tuple = this.finalMerge.next()) != null) {
+	    		this.finalMergeOutput.addTuple(tuple);
+	    		if (pipelined && this.finalMergeOutput.getRowCount() >= target) {
+	    			success = true;
+	    			return;
+	    		}
+	    	}
+	    	success = true;
+    	} finally {
+    		if (!success) {
+    			this.finalMergeOutput.remove();
+    			releaseFinalMerge();
+    		}
+    	}
+    	TupleBuffer merged = this.finalMergeOutput;
+    	for(int i=0; i<this.finalMergeCount; i++) {
+        	TupleBuffer id = activeTupleBuffers.remove(0);
+    		id.remove();
+        }
+    	releaseFinalMerge();
+    	Assertion.assertTrue(activeTupleBuffers.isEmpty());
+    	activeTupleBuffers.add(merged);
+    	//earlier batches may have already been consumed, so the output remains forward only
+    	merged.close();
+        this.phase = DONE;
+    }
 
-	private void incrementWorkingTuple(ArrayList<SortedSublist> subLists, SortedSublist sortedSublist) throws TeiidComponentException, TeiidProcessingException {
-		while (true) {
-			sortedSublist.tuple = null;
-			if (sortedSublist.limit < sortedSublist.its.getCurrentIndex()) {
-				return; //special case for still reading the output tuplebuffer
-			}
-			sortedSublist.tuple = sortedSublist.its.nextTuple();
-	        if (sortedSublist.tuple == null) {
-	        	return; // done with this sublist
-	        }
-			int index = Collections.binarySearch(subLists, sortedSublist);
-			if (index < 0) {
-				subLists.add(-index - 1, sortedSublist);
-				return;
-			}
-			if (mode == Mode.SORT) {
-				subLists.add(index, sortedSublist);
-				return;
-			} 
-		}
-	} 
+	private void releaseFinalMerge() {
+		this.bufferManager.releaseBuffers(this.finalMergeReserved);
+		this.finalMergeReserved = 0;
+		this.finalMerge = null;
+		this.finalMergeOutput = null;
+	}
 
     public boolean isDistinct() {
     	return this.comparator.isDistinct();
     }
 
 	public void remove() {
+		if (this.finalMergeOutput != null) {
+			this.finalMergeOutput.remove();
+			releaseFinalMerge();
+		}
 		if (workingBuffer != null && source != null) {
 			workingBuffer.remove();
 			workingBuffer = null;
@@ -530,6 +782,31 @@ public class SortUtility {
 		this.nonBlocking = b;
 	}
 	
+	/**
+	 * Set the executor used to sort portions of each run concurrently.
+	 * Sorting will only be performed concurrently when the parallelism is greater than 1.
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+	
+	void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+	
+	void setParallelSortMinRows(int parallelSortMinRows) {
+		this.parallelSortMinRows = parallelSortMinRows;
+	}
+	
+	/**
+	 * If true, the final merge pass will return a non-final {@link TupleBuffer} from {@link #sort()}
+	 * that is forward only and will be extended by subsequent calls to {@link #sort()}.
+	 * Setting to false will cause the next {@link #sort()} to complete any pending merge.
+	 */
+	public void setPipelined(boolean pipelined) {
+		this.pipelined = pipelined;
+	}
+	
 	public void setStableSort(boolean stableSort) {
 		this.stableSort = stableSort;
 	}
@@ -51,6 +51,9 @@ public abstract class SubqueryAwareRelationalNode extends RelationalNode {
 	protected Evaluator getEvaluator(Map elementMap) {
 		if (this.evaluator == null) {
 			this.evaluator = new SubqueryAwareEvaluator(elementMap, getDataManager(), getContext(), getBufferManager());
+			if (getContext() != null) {
+				this.evaluator.setCompileExpressions(getContext().getOptions().isCompileExpressions());
+			}
 		} else {
 			this.evaluator.initialize(getContext(), getDataManager());
 		}
@@ -22,7 +22,9 @@
 
 package org.teiid.query.processor.relational;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import org.teiid.common.buffer.BlockedException;
 import org.teiid.common.buffer.BufferManager;
@@ -31,19 +33,32 @@ import org.teiid.common.buffer.TupleBatch;
 import org.teiid.common.buffer.impl.BufferManagerImpl;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
+import org.teiid.dqp.service.TransactionContext;
+import org.teiid.dqp.service.TransactionContext.Scope;
+import org.teiid.metadata.FunctionMethod.Determinism;
+import org.teiid.query.function.FunctionDescriptor;
+import org.teiid.query.function.FunctionLibrary;
 import org.teiid.query.processor.ProcessorDataManager;
+import org.teiid.query.sql.LanguageObject;
+import org.teiid.query.sql.symbol.Function;
+import org.teiid.query.sql.visitor.FunctionCollectorVisitor;
+import org.teiid.query.sql.visitor.ValueIteratorProviderCollectorVisitor;
 import org.teiid.query.util.CommandContext;
 
 
 public class UnionAllNode extends RelationalNode {
 
     private static final int SMALL_LIMIT = 10;
+    static final int EXCHANGE_BATCHES = 2;
 	private boolean[] sourceDone;
     private boolean[] sourceOpen;
     
     private int outputRow = 1;
     private int reserved;
     private int schemaSize;
+    
+    private ExchangeSource[] exchanges;
+    private int maxParallelism;
 	
 	public UnionAllNode(int nodeID) {
 		super(nodeID);
@@ -54,6 +69,7 @@ public class UnionAllNode extends RelationalNode {
         
         sourceDone = null;
         sourceOpen = null;
+        exchanges = null;
         outputRow = 1;   
     }    
     
@@ -121,7 +137,121 @@ public class UnionAllNode extends RelationalNode {
     	
         // Open the children
         super.open();
+        
+        createExchanges();
 	}
+    
+    /**
+     * If more than one thread may be used, process the children that are not access 
+     * nodes, which are already asynch, with {@link ExchangeSource}s.
+     * <br>
+     * Only children that are {@link #isIndependent(RelationalNode) independent} are 
+     * used since the per request state, such as shared source commands and the 
+     * determinism level, is not safe to access from multiple threads.
+     */
+    private void createExchanges() {
+    	this.maxParallelism = getContext().getMaxParallelism();
+    	if (maxParallelism <= 1) {
+    		return;
+    	}
+    	TransactionContext tc = getContext().getTransactionContext();
+    	if (tc != null && tc.getTransactionType() != Scope.NONE) {
+    		return;
+    	}
+    	RelationalNode[] children = getChildren();
+    	for (int i = 0; i < getChildCount(); i++) {
+    		if (children[i] instanceof AccessNode || !isIndependent(children[i])) {
+    			continue;
+    		}
+    		if (exchanges == null) {
+    			exchanges = new ExchangeSource[getChildCount()];
+    		}
+    		exchanges[i] = new ExchangeSource(children[i], EXCHANGE_BATCHES);
+    		//account for the additional queued batches
+    		reserved += getBufferManager().reserveBuffers((EXCHANGE_BATCHES - 1) * schemaSize, BufferReserveMode.FORCE);
+    	}
+    }
+    
+    /**
+     * Determine if the subtree can be processed by another thread without touching
+     * the mutable request state - which is limited to unshared access nodes
+     * and the simple nodes above them using only deterministic functions without
+     * subqueries.
+     */
+    boolean isIndependent(RelationalNode node) {
+    	if (node.getClass() == AccessNode.class) {
+    		return ((AccessNode)node).isIndependent();
+    	}
+    	if (node.getClass() == ProjectNode.class) {
+    		if (!isIndependent(((ProjectNode)node).getSelectSymbols())) {
+    			return false;
+    		}
+    	} else if (node.getClass() == SelectNode.class) {
+    		if (!isIndependent(Arrays.asList(((SelectNode)node).getCriteria()))) {
+    			return false;
+    		}
+    	} else if (node.getClass() != LimitNode.class) {
+    		return false;
+    	}
+    	RelationalNode[] children = node.getChildren();
+    	for (int i = 0; i < node.getChildCount(); i++) {
+    		if (!isIndependent(children[i])) {
+    			return false;
+    		}
+    	}
+    	return true;
+    }
+    
+    private static boolean isIndependent(List<? extends LanguageObject> objects) {
+    	if (!ValueIteratorProviderCollectorVisitor.getValueIteratorProviders(objects).isEmpty()) {
+    		return false;
+    	}
+    	for (LanguageObject object : objects) {
+    		for (Function function : FunctionCollectorVisitor.getFunctions(object, true, false)) {
+    			FunctionDescriptor fd = function.getFunctionDescriptor();
+    			if (fd == null 
+    					|| fd.getDeterministic().ordinal() <= Determinism.USER_DETERMINISTIC.ordinal() 
+    					|| FunctionLibrary.LOOKUP.equalsIgnoreCase(function.getName())) {
+    				return false;
+    			}
+    		}
+    	}
+    	return true;
+    }
+    
+    /**
+     * Start the exchanges, the processing thread counts against the max parallelism
+     */
+    private void startExchanges() {
+    	int running = 0;
+    	for (ExchangeSource exchange : exchanges) {
+    		if (exchange != null && exchange.isRunning()) {
+    			running++;
+    		}
+    	}
+    	for (int i = 0; i < exchanges.length; i++) {
+    		ExchangeSource exchange = exchanges[i];
+    		if (exchange == null || sourceDone[i]) {
+    			continue;
+    		}
+    		if (exchange.isRunning()) {
+    			exchange.start(); //flag for restart
+    		} else if (running < maxParallelism - 1 && exchange.start()) {
+    			running++;
+    		}
+    	}
+    }
+    
+    private TupleBatch nextBatch(int i) throws BlockedException, TeiidComponentException, TeiidProcessingException {
+    	if (exchanges == null || exchanges[i] == null) {
+    		return getChildren()[i].nextBatch();
+    	}
+    	TupleBatch batch = exchanges[i].poll();
+    	if (batch == null) {
+    		throw BlockedException.INSTANCE;
+    	}
+    	return batch;
+    }
 
     public TupleBatch nextBatchDirect() 
         throws BlockedException, TeiidComponentException, TeiidProcessingException {
@@ -134,6 +264,9 @@ public class UnionAllNode extends RelationalNode {
         int activeSources = 0;
         TupleBatch batch = null;
         boolean additionalSources = false;
+        if (exchanges != null) {
+        	startExchanges();
+        }
         for(int i=0; i<childCount; i++) {
             if(children[i] != null && ! sourceDone[i]) {
             	if (sourceOpen != null && !sourceOpen[i]) {
@@ -144,7 +277,7 @@ public class UnionAllNode extends RelationalNode {
                 
                 if(batch == null) {
                     try {
-                        batch = children[i].nextBatch();
+                        batch = nextBatch(i);
                         
                         // Got a batch
                         if(batch.getTerminationFlag() == true) {
@@ -186,6 +319,15 @@ public class UnionAllNode extends RelationalNode {
             
         } else if(activeSources > 0) {
             // Didn't get a batch but there are active sources so we are blocked
+        	if (exchanges != null && getContext().getWorkItem() == null) {
+        		//this is for compatibility with engine tests that are below the level of using the work item
+        		for (int i = 0; i < childCount; i++) {
+        			if (exchanges[i] != null && !sourceDone[i] && exchanges[i].isRunning()) {
+        				exchanges[i].waitForBatch();
+        				return nextBatchDirect();
+        			}
+        		}
+        	}
         	throw BlockedException.block(getContext().getRequestId(), "Blocking on union source.", getID()); //$NON-NLS-1$
         } else {
         	boolean openedAny = false;
@@ -220,6 +362,13 @@ public class UnionAllNode extends RelationalNode {
     
     @Override
     public void closeDirect() {
+    	if (exchanges != null) {
+    		for (ExchangeSource exchange : exchanges) {
+    			if (exchange != null) {
+    				exchange.close();
+    			}
+    		}
+    	}
     	if (reserved > 0) {
 	    	getBufferManager().releaseBuffers(reserved);
 	    	reserved = 0;
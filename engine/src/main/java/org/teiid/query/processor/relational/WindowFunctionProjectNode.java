@@ -46,6 +46,7 @@ import org.teiid.common.buffer.TupleSource;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.core.types.DataTypeManager;
+import org.teiid.core.util.Assertion;
 import org.teiid.language.SortSpecification.NullOrdering;
 import org.teiid.query.analysis.AnalysisRecord;
 import org.teiid.query.eval.Evaluator;
@@ -102,6 +103,8 @@ public class WindowFunctionProjectNode extends SubqueryAwareRelationalNode {
 	private STree[] partitionMapping;
 	private STree[] valueMapping;
 	private STree[] rowValueMapping;
+	private STree.BulkLoader valueLoader;
+	private STree.BulkLoader rowValueLoader;
 	private IndexedTupleSource outputTs;
 	
 	public WindowFunctionProjectNode(int nodeId) {
@@ -291,7 +294,7 @@ public class WindowFunctionProjectNode extends SubqueryAwareRelationalNode {
 	 * or
 	 * rowid->partitionid and partitionid->values
 	 * 
-	 * TODO use the size hint for tree balancing
+	 * The value mappings are bulk loaded when their keys are produced in order.
 	 */
 	private void buildResults() throws TeiidComponentException,
 			TeiidProcessingException, FunctionExecutionException,
@@ -338,6 +341,15 @@ public class WindowFunctionProjectNode extends SubqueryAwareRelationalNode {
 			}
 			List<AggregateFunction> aggs = initializeAccumulators(info.functions, specIndex, false);
 			List<AggregateFunction> rowValueAggs = initializeAccumulators(info.rowValuefunctions, specIndex, true);
+			valueLoader = null;
+			rowValueLoader = null;
+			if (valueMapping[specIndex] != null) {
+				valueLoader = valueMapping[specIndex].bulkLoader(1f);
+			}
+			if (rowValueMapping[specIndex] != null && !multiGroup) {
+				//without sorting the row ids are already in order
+				rowValueLoader = rowValueMapping[specIndex].bulkLoader(1f);
+			}
 
 			int groupId = 0;
 			List<?> lastRow = null;
@@ -369,6 +381,14 @@ public class WindowFunctionProjectNode extends SubqueryAwareRelationalNode {
 		    	saveValues(specIndex, aggs, groupId, true, false);
 		    	saveValues(specIndex, rowValueAggs, lastRow.get(lastRow.size() - 1), true, true);
 		    }
+		    if (valueLoader != null) {
+		    	valueLoader.finish();
+		    	valueLoader = null;
+		    }
+		    if (rowValueLoader != null) {
+		    	rowValueLoader.finish();
+		    	rowValueLoader = null;
+		    }
 		}
 	}
 
@@ -388,10 +408,20 @@ public class WindowFunctionProjectNode extends SubqueryAwareRelationalNode {
 				function.reset();
 			}
 		}
-		if (rowValue) {
-			rowValueMapping[specIndex].insert(row, InsertMode.NEW, -1);
+		if (!rowValue) {
+			//the group ids are always assigned in order
+			append(valueLoader, row);
+		} else if (rowValueLoader != null) {
+			append(rowValueLoader, row);
 		} else {
-			valueMapping[specIndex].insert(row, InsertMode.ORDERED, -1);	
+			//the row ids are not in order after sorting by multiple groups
+			rowValueMapping[specIndex].insert(row, InsertMode.NEW, -1);
+		}
+	}
+
+	private static void append(STree.BulkLoader loader, List<Object> row) throws TeiidComponentException {
+		if (!loader.append(row)) {
+			Assertion.failed("Out of order value"); //$NON-NLS-1$
 		}
 	}
 
@@ -0,0 +1,375 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.query.tempdata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.TeiidProcessingException;
+import org.teiid.language.SQLConstants;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.metadata.Column;
+import org.teiid.metadata.KeyRecord;
+import org.teiid.metadata.Schema;
+import org.teiid.metadata.Table;
+import org.teiid.query.metadata.MaterializationMetadataRepository;
+import org.teiid.query.metadata.TransformationMetadata;
+import org.teiid.query.resolver.QueryResolver;
+import org.teiid.query.sql.lang.CacheHint;
+import org.teiid.query.sql.lang.Command;
+import org.teiid.query.sql.lang.CompareCriteria;
+import org.teiid.query.sql.lang.CompoundCriteria;
+import org.teiid.query.sql.lang.Criteria;
+import org.teiid.query.sql.lang.FromClause;
+import org.teiid.query.sql.lang.JoinPredicate;
+import org.teiid.query.sql.lang.JoinType;
+import org.teiid.query.sql.lang.Query;
+import org.teiid.query.sql.lang.SetCriteria;
+import org.teiid.query.sql.symbol.Array;
+import org.teiid.query.sql.symbol.Constant;
+import org.teiid.query.sql.symbol.ElementSymbol;
+import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.sql.symbol.GroupSymbol;
+import org.teiid.query.sql.util.SymbolMap;
+import org.teiid.query.sql.visitor.GroupCollectorVisitor;
+
+/**
+ * Determines the incremental maintenance of materialized views from a change to a source table.
+ * <br>
+ * A view may be maintained if it has a primary key and is defined by a single query that references 
+ * the changed table once in its from clause.  Each key column must be projected from a column of the changed
+ * table, or be equated to one by inner join or where criteria.  This covers select/project/join views keyed 
+ * by the changed table and aggregates grouped by its columns.  The keys of the affected view rows are taken 
+ * from the old and new values and only those rows are recomputed.
+ * <br>
+ * Internal materialized views must be updatable (see the cache hint) and are refreshed with 
+ * SYSADMIN.refreshMatViewRows.  External materialized views must allow management and are refreshed with
+ * SYSADMIN.updateMatView.  Other dependent views are left to their normal load schedule.
+ */
+public class MatViewDeltaAnalyzer {
+	
+	private static final String CACHE_KEY = "matview-delta"; //$NON-NLS-1$
+	
+	/**
+	 * A materialized view that may be incrementally maintained from changes to a table
+	 */
+	private static class ViewDelta {
+		final Table view;
+		final List<Column> keyColumns;
+		
+		ViewDelta(Table view, List<Column> keyColumns) {
+			this.view = view;
+			this.keyColumns = keyColumns;
+		}
+	}
+	
+	/**
+	 * Get the commands that will refresh the materialized view rows affected by a change to the table
+	 * @param metadata
+	 * @param table the changed source table
+	 * @param columnNames the names of the columns in the tuples, or null for all columns in table order
+	 * @param tuples the old and/or new values of the changed row
+	 * @return the refresh commands
+	 */
+	public static List<String> getRefreshCommands(TransformationMetadata metadata, Table table, List<String> columnNames, List<?>... tuples) {
+		List<String> result = new ArrayList<String>(2);
+		List<ViewDelta> deltas = null;
+		try {
+			deltas = getViewDeltas(metadata, table);
+		} catch (TeiidComponentException e) {
+			LogManager.logDetail(LogConstants.CTX_MATVIEWS, e, "Could not determine the incremental refresh for changes to", table.getFullName()); //$NON-NLS-1$
+			return result;
+		}
+		for (ViewDelta delta : deltas) {
+			String command = getRefreshCommand(delta, table, columnNames, tuples);
+			if (command != null) {
+				result.add(command);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Get the views that may be maintained from changes to the table.  The result is held in the 
+	 * metadata cache, so it is computed once per table for a given metadata instance and is 
+	 * discarded when the metadata is reloaded.
+	 */
+	private static List<ViewDelta> getViewDeltas(TransformationMetadata metadata, Table table) throws TeiidComponentException {
+		List<ViewDelta> result = (List<ViewDelta>)metadata.getFromMetadataCache(table, CACHE_KEY);
+		if (result != null) {
+			return result;
+		}
+		result = new ArrayList<ViewDelta>(2);
+		for (Schema schema : metadata.getMetadataStore().getSchemaList()) {
+			for (Table view : schema.getTables().values()) {
+				if (!view.isVirtual() || !view.isMaterialized()) {
+					continue;
+				}
+				try {
+					List<Column> keyColumns = getKeyColumns(metadata, view, table);
+					if (keyColumns != null) {
+						result.add(new ViewDelta(view, keyColumns));
+					}
+				} catch (TeiidProcessingException e) {
+					LogManager.logDetail(LogConstants.CTX_MATVIEWS, e, "Could not determine the incremental refresh of", view.getFullName()); //$NON-NLS-1$
+				} catch (TeiidComponentException e) {
+					LogManager.logDetail(LogConstants.CTX_MATVIEWS, e, "Could not determine the incremental refresh of", view.getFullName()); //$NON-NLS-1$
+				}
+			}
+		}
+		result = Collections.unmodifiableList(result);
+		metadata.addToMetadataCache(table, CACHE_KEY, result);
+		return result;
+	}
+
+	/**
+	 * Map the view key columns to the columns of the changed table, or return null if the view does not reference 
+	 * the table or cannot be incrementally maintained
+	 */
+	private static List<Column> getKeyColumns(TransformationMetadata metadata, Table view, Table table) 
+			throws TeiidComponentException, TeiidProcessingException {
+		GroupSymbol group = new GroupSymbol(view.getFullName());
+		group.setMetadataID(view);
+		Command command = QueryResolver.resolveView(group, metadata.getVirtualPlan(view), SQLConstants.Reserved.SELECT, metadata).getCommand();
+		int references = 0;
+		for (GroupSymbol gs : GroupCollectorVisitor.getGroupsIgnoreInlineViews(command, false)) {
+			if (gs.getMetadataID() == table) {
+				references++;
+			}
+		}
+		if (references == 0) {
+			return null;
+		}
+		List<Column> keyColumns = getKeyColumns(metadata, view, table, command, references);
+		if (keyColumns == null) {
+			LogManager.logDetail(LogConstants.CTX_MATVIEWS, "Changes to", table.getFullName(), "cannot be incrementally applied to", view.getFullName()); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return keyColumns;
+	}
+
+	private static String getRefreshCommand(ViewDelta delta, Table table, List<String> columnNames, List<?>... tuples) {
+		Table view = delta.view;
+		List<Column> keyColumns = delta.keyColumns;
+		List<String> names = columnNames;
+		if (names == null) {
+			names = new ArrayList<String>(table.getColumns().size());
+			for (Column c : table.getColumns()) {
+				names.add(c.getName());
+			}
+		}
+		int[] indexes = new int[keyColumns.size()];
+		for (int i = 0; i < indexes.length; i++) {
+			indexes[i] = indexOf(names, keyColumns.get(i).getName());
+			if (indexes[i] == -1) {
+				LogManager.logDetail(LogConstants.CTX_MATVIEWS, "The change to", table.getFullName(), "does not include the", keyColumns.get(i).getName(), "value needed to refresh", view.getFullName()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				return null;
+			}
+		}
+		Set<List<Object>> keys = new LinkedHashSet<List<Object>>();
+		for (List<?> tuple : tuples) {
+			if (tuple == null) {
+				continue;
+			}
+			Object[] key = new Object[indexes.length];
+			for (int i = 0; i < indexes.length; i++) {
+				key[i] = tuple.get(indexes[i]);
+				if (key[i] == null) {
+					key = null;
+					break;
+				}
+			}
+			if (key != null) {
+				keys.add(Arrays.asList(key));
+			}
+		}
+		if (keys.isEmpty()) {
+			return null;
+		}
+		if (view.getMaterializedTable() == null) {
+			return getInternalRefresh(view, keys);
+		}
+		if (!Boolean.valueOf(view.getProperty(MaterializationMetadataRepository.ALLOW_MATVIEW_MANAGEMENT, false))) {
+			LogManager.logDetail(LogConstants.CTX_MATVIEWS, view.getFullName(), "does not allow management and cannot be incrementally refreshed"); //$NON-NLS-1$
+			return null;
+		}
+		return getExternalRefresh(view, keys);
+	}
+
+	/**
+	 * Map the view key columns to the columns of the changed table, or return null if that is not possible
+	 */
+	private static List<Column> getKeyColumns(TransformationMetadata metadata, Table view, Table table, Command command, int references) 
+			throws TeiidComponentException {
+		if (!(command instanceof Query)) {
+			return null;
+		}
+		Query query = (Query)command;
+		if (query.getFrom() == null || query.getLimit() != null || query.hasAggregates() && query.getGroupBy() == null) {
+			return null;
+		}
+		KeyRecord pk = view.getPrimaryKey();
+		if (pk == null) {
+			return null;
+		}
+		if (view.getMaterializedTable() == null) {
+			CacheHint hint = command.getCacheHint();
+			if (hint == null || !hint.isUpdatable(false)) {
+				return null;
+			}
+		}
+		//the table must only appear once in the from clause and not in a subquery
+		int fromReferences = 0;
+		for (GroupSymbol gs : query.getFrom().getGroups()) {
+			if (gs.getMetadataID() == table) {
+				fromReferences++;
+			}
+		}
+		if (fromReferences != 1 || references != 1) {
+			return null;
+		}
+		List<Criteria> conjuncts = new ArrayList<Criteria>();
+		if (query.getCriteria() != null) {
+			conjuncts.addAll(Criteria.separateCriteriaByAnd(query.getCriteria()));
+		}
+		for (FromClause clause : query.getFrom().getClauses()) {
+			collectJoinCriteria(clause, conjuncts);
+		}
+		List<Expression> projected = query.getProjectedSymbols();
+		List<Column> result = new ArrayList<Column>(pk.getColumns().size());
+		for (Column keyColumn : pk.getColumns()) {
+			Expression ex = SymbolMap.getExpression(projected.get(metadata.getPosition(keyColumn) - 1));
+			Column column = getTableColumn(ex, table);
+			for (int i = 0; column == null && i < conjuncts.size(); i++) {
+				Criteria crit = conjuncts.get(i);
+				if (!(crit instanceof CompareCriteria)) {
+					continue;
+				}
+				CompareCriteria cc = (CompareCriteria)crit;
+				if (cc.getOperator() != CompareCriteria.EQ) {
+					continue;
+				}
+				if (cc.getLeftExpression().equals(ex)) {
+					column = getTableColumn(cc.getRightExpression(), table);
+				} else if (cc.getRightExpression().equals(ex)) {
+					column = getTableColumn(cc.getLeftExpression(), table);
+				}
+			}
+			if (column == null) {
+				return null;
+			}
+			result.add(column);
+		}
+		return result;
+	}
+	
+	/**
+	 * Only inner join criteria holds for every output row
+	 */
+	private static void collectJoinCriteria(FromClause clause, List<Criteria> conjuncts) {
+		if (!(clause instanceof JoinPredicate)) {
+			return;
+		}
+		JoinPredicate jp = (JoinPredicate)clause;
+		if (jp.getJoinType() != JoinType.JOIN_INNER && jp.getJoinType() != JoinType.JOIN_CROSS) {
+			return;
+		}
+		for (Criteria crit : (List<Criteria>)jp.getJoinCriteria()) {
+			conjuncts.addAll(Criteria.separateCriteriaByAnd(crit));
+		}
+		collectJoinCriteria(jp.getLeftClause(), conjuncts);
+		collectJoinCriteria(jp.getRightClause(), conjuncts);
+	}
+
+	private static Column getTableColumn(Expression ex, Table table) {
+		if (!(ex instanceof ElementSymbol)) {
+			return null;
+		}
+		ElementSymbol es = (ElementSymbol)ex;
+		if (es.getGroupSymbol() == null || es.getGroupSymbol().getMetadataID() != table || !(es.getMetadataID() instanceof Column)) {
+			return null;
+		}
+		return (Column)es.getMetadataID();
+	}
+	
+	private static int indexOf(List<String> names, String name) {
+		for (int i = 0; i < names.size(); i++) {
+			if (name.equalsIgnoreCase(names.get(i))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static String getInternalRefresh(Table view, Collection<List<Object>> keys) {
+		StringBuilder sb = new StringBuilder("EXEC SYSADMIN.refreshMatViewRows("); //$NON-NLS-1$
+		sb.append(new Constant(view.getFullName()));
+		for (List<Object> key : keys) {
+			List<Expression> values = new ArrayList<Expression>(key.size());
+			for (Object value : key) {
+				values.add(new Constant(value));
+			}
+			sb.append(", ").append(new Array(Object.class, values)); //$NON-NLS-1$
+		}
+		return sb.append(')').toString();
+	}
+
+	private static String getExternalRefresh(Table view, Collection<List<Object>> keys) {
+		List<Column> pkColumns = view.getPrimaryKey().getColumns();
+		Criteria crit = null;
+		if (pkColumns.size() == 1) {
+			List<Constant> values = new ArrayList<Constant>(keys.size());
+			for (List<Object> key : keys) {
+				values.add(new Constant(key.get(0)));
+			}
+			ElementSymbol es = new ElementSymbol(pkColumns.get(0).getName());
+			if (values.size() == 1) {
+				crit = new CompareCriteria(es, CompareCriteria.EQ, values.get(0));
+			} else {
+				crit = new SetCriteria(es, values);
+			}
+		} else {
+			List<Criteria> disjuncts = new ArrayList<Criteria>(keys.size());
+			for (List<Object> key : keys) {
+				List<Criteria> conjuncts = new ArrayList<Criteria>(key.size());
+				for (int i = 0; i < pkColumns.size(); i++) {
+					conjuncts.add(new CompareCriteria(new ElementSymbol(pkColumns.get(i).getName()), CompareCriteria.EQ, new Constant(key.get(i))));
+				}
+				disjuncts.add(new CompoundCriteria(conjuncts));
+			}
+			if (disjuncts.size() == 1) {
+				crit = disjuncts.get(0);
+			} else {
+				crit = new CompoundCriteria(CompoundCriteria.OR, disjuncts);
+			}
+		}
+		return "EXEC SYSADMIN.updateMatView(" + new Constant(view.getParent().getName()) + ", " + new Constant(view.getName()) + ", " + new Constant(crit.toString()) + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+	
+}
@@ -60,6 +60,7 @@ import org.teiid.query.QueryPlugin;
 import org.teiid.query.eval.Evaluator;
 import org.teiid.query.metadata.TempMetadataID;
 import org.teiid.query.processor.CollectionTupleSource;
+import org.teiid.query.processor.relational.ListNestedSortComparator;
 import org.teiid.query.processor.relational.RelationalNode;
 import org.teiid.query.processor.relational.SortUtility;
 import org.teiid.query.processor.relational.SortUtility.Mode;
@@ -229,6 +230,65 @@ public class TempTable implements Cloneable, SearchableTable {
 
 	}
 
+	/**
+	 * Produces the keys common to all of the key ordered sources
+	 */
+	private static final class IntersectionTupleSource implements TupleSource {
+		
+		private List<TupleSource> sources;
+		private List<?>[] heads;
+		private ListNestedSortComparator comparator;
+		
+		IntersectionTupleSource(List<TupleSource> sources, ListNestedSortComparator comparator) {
+			this.sources = sources;
+			this.heads = new List<?>[sources.size()];
+			this.comparator = comparator;
+		}
+		
+		@Override
+		public List<?> nextTuple() throws TeiidComponentException,
+				TeiidProcessingException {
+			while (true) {
+				List<?> max = null;
+				for (int i = 0; i < heads.length; i++) {
+					if (heads[i] == null) {
+						heads[i] = sources.get(i).nextTuple();
+						if (heads[i] == null) {
+							return null;
+						}
+					}
+					if (max == null || comparator.compare(heads[i], max) > 0) {
+						max = heads[i];
+					}
+				}
+				boolean matched = true;
+				for (int i = 0; i < heads.length; i++) {
+					int compare = 0;
+					while ((compare = comparator.compare(heads[i], max)) < 0) {
+						heads[i] = sources.get(i).nextTuple();
+						if (heads[i] == null) {
+							return null;
+						}
+					}
+					if (compare > 0) {
+						matched = false;
+					}
+				}
+				if (matched) {
+					Arrays.fill(heads, null);
+					return max;
+				}
+			}
+		}
+		
+		@Override
+		public void closeSource() {
+			for (TupleSource ts : sources) {
+				ts.closeSource();
+			}
+		}
+	}
+	
 	private abstract class UpdateProcessor {
 		private TupleSource ts;
 		protected Evaluator eval;
@@ -316,6 +376,16 @@ public class TempTable implements Cloneable, SearchableTable {
 	}
 	private static AtomicLong ID_GENERATOR = new AtomicLong();
 	
+	/**
+	 * Leave room in bulk loaded pages of updatable tables to absorb inserts without splitting
+	 */
+	private static final float UPDATABLE_FILL_FACTOR = .75f;
+	
+	/**
+	 * Only intersect with the keys of another index when its cost is within this multiple of the chosen index
+	 */
+	private static final int MAX_INTERSECTION_COST_RATIO = 2;
+	
 	private Long id = ID_GENERATOR.getAndIncrement();
 	private STree tree;
 	private AtomicInteger rowId;
@@ -332,6 +402,7 @@ public class TempTable implements Cloneable, SearchableTable {
 	private Map<Expression, Integer> columnMap;
 	
 	private int[] notNull;
+	private int[] indexProjection;
 	private Map<Integer, AtomicInteger> sequences;
 	private int uniqueColIndex;
 	
@@ -407,40 +478,96 @@ public class TempTable implements Cloneable, SearchableTable {
 		return activeReaders;
 	}
 	
-	void addIndex(List<ElementSymbol> indexColumns, boolean unique) throws TeiidComponentException, TeiidProcessingException {
+	/**
+	 * Add a secondary index
+	 * @param indexColumns the index key columns
+	 * @param unique
+	 * @param includeColumns additional non-key columns to store with the index so 
+	 * that it may cover more queries, may be null
+	 */
+	void addIndex(List<ElementSymbol> indexColumns, boolean unique, List<ElementSymbol> includeColumns) throws TeiidComponentException, TeiidProcessingException {
 		List<ElementSymbol> keyColumns = columns.subList(0, tree.getKeyLength());
 		if (keyColumns.equals(indexColumns) || (indexTables != null && indexTables.containsKey(indexColumns))) {
 			return;
 		}
-		TempTable indexTable = createIndexTable(indexColumns, unique);
-		//TODO: ordered insert optimization
+		TempTable indexTable = createIndexTable(indexColumns, unique, includeColumns);
 		TupleSource ts = createTupleSource(indexTable.getColumns(), null, null);
-		indexTable.insert(ts, indexTable.getColumns(), false, null);
-		indexTable.getTree().compact();
+		//sort into index order so that the index can be bulk loaded
+		SortUtility sort = new SortUtility(ts, null, Mode.SORT, bm, sessionID, indexTable.getColumns());
+		TupleBuffer sorted = sort.sort();
+		try {
+			indexTable.insertSorted(Arrays.asList(sorted.createIndexedTupleSource(true)), indexTable.getColumns());
+		} finally {
+			sorted.remove();
+		}
 	}
 
 	private TempTable createIndexTable(List<ElementSymbol> indexColumns,
-			boolean unique) {
+			boolean unique, List<ElementSymbol> includeColumns) {
 		List<ElementSymbol> allColumns = new ArrayList<ElementSymbol>(indexColumns);
 		for (ElementSymbol elementSymbol : columns.subList(0, tree.getKeyLength())) {
 			if (allColumns.indexOf(elementSymbol) < 0) {
 				allColumns.add(elementSymbol);
 			}
 		}
-		TempTable indexTable = new TempTable(new TempMetadataID("idx", Collections.EMPTY_LIST), this.bm, allColumns, allColumns.size(), this.sessionID); //$NON-NLS-1$
+		int keyLength = allColumns.size();
+		if (includeColumns != null) {
+			for (ElementSymbol elementSymbol : includeColumns) {
+				if (allColumns.indexOf(elementSymbol) < 0) {
+					allColumns.add(elementSymbol);
+				}
+			}
+		}
+		TempTable indexTable = new TempTable(new TempMetadataID("idx", Collections.EMPTY_LIST), this.bm, allColumns, keyLength, this.sessionID); //$NON-NLS-1$
 		indexTable.setPreferMemory(this.tree.isPreferMemory());
 		indexTable.lock = this.lock;
+		indexTable.indexProjection = RelationalNode.getProjectionIndexes(this.columnMap, allColumns);
 		if (unique) {
 			indexTable.uniqueColIndex = indexColumns.size();
 		}
 		if (indexTables == null) {
 			indexTables = new LinkedHashMap<List<ElementSymbol>, TempTable>();
-			indexTables.put(indexColumns, indexTable);
 		}
+		indexTables.put(indexColumns, indexTable);
 		indexTable.setUpdatable(this.updatable);
 		return indexTable;
 	}
 	
+	private void insertIndexValues(List<?> tuple) throws TeiidComponentException {
+		if (indexTables == null) {
+			return;
+		}
+		for (TempTable index : this.indexTables.values()) {
+			index.tree.insert(RelationalNode.projectTuple(index.indexProjection, tuple), InsertMode.NEW, -1);
+		}
+	}
+	
+	private void removeIndexValues(List<?> tuple) throws TeiidComponentException {
+		if (indexTables == null) {
+			return;
+		}
+		for (TempTable index : this.indexTables.values()) {
+			index.tree.remove(RelationalNode.projectTuple(index.indexProjection, tuple));
+		}
+	}
+	
+	private void updateIndexValues(List<?> oldTuple, List<?> newTuple) throws TeiidComponentException {
+		if (indexTables == null) {
+			return;
+		}
+		for (TempTable index : this.indexTables.values()) {
+			List<?> oldValues = RelationalNode.projectTuple(index.indexProjection, oldTuple);
+			List<?> newValues = RelationalNode.projectTuple(index.indexProjection, newTuple);
+			if (index.tree.getComparator().compare(oldValues, newValues) == 0) {
+				//the key is the same, so just update the included values
+				index.tree.insert(newValues, InsertMode.UPDATE, -1);
+				continue;
+			}
+			index.tree.remove(oldValues);
+			index.tree.insert(newValues, InsertMode.NEW, -1);
+		}
+	}
+	
 	private int reserveBuffers() {
 		return bm.reserveBuffers(leafBatchSize + (tree.getHeight() - 1)*keyBatchSize, BufferReserveMode.FORCE);
 	}
@@ -467,9 +594,14 @@ public class TempTable implements Cloneable, SearchableTable {
 			LogManager.logDetail(LogConstants.CTX_DQP, "Considering indexes on table", this, "for query", projectedCols, condition, orderBy); //$NON-NLS-1$ //$NON-NLS-2$
 			int rowCost = this.tree.getRowCount();
 			long bestCost = estimateCost(orderBy, ii, rowCost);
+			long scanCost = bestCost;
+			List<IndexInfo> restricting = new ArrayList<IndexInfo>(this.indexTables.size());
 			for (TempTable table : this.indexTables.values()) {
 				IndexInfo secondary = new IndexInfo(table, projectedCols, condition, orderBy, false);
 				long cost = estimateCost(orderBy, secondary, rowCost);
+				if (cost < scanCost && (!secondary.valueSet.isEmpty() || secondary.lower != null || secondary.upper != null)) {
+					restricting.add(secondary);
+				}
 				if (cost < bestCost) {
 					ii = secondary;
 					bestCost = cost;
@@ -483,7 +615,7 @@ public class TempTable implements Cloneable, SearchableTable {
 			if (ii.ordering != null) {
 				//use order and join
 				primary.valueTs = ii.table.createTupleSource(pkColumns, 
-						ii.coveredCriteria, orderBy, ii, agg);
+						ii.coveredCriteria, orderBy, ii, false);
 				primary.ordering = null;
 				return createTupleSource(projectedCols, ii.nonCoveredCriteria, null, primary, agg);
 			} 
@@ -492,8 +624,25 @@ public class TempTable implements Cloneable, SearchableTable {
 			for (ElementSymbol elementSymbol : pkColumns) {
 				pkOrderBy.addVariable(elementSymbol);
 			}
+			List<TupleSource> keySources = new ArrayList<TupleSource>(restricting.size());
+			if (restricting.contains(ii)) {
+				//intersect the keys from other indexes restricting different columns
+				for (IndexInfo other : restricting) {
+					//reading the keys of a much broader index costs more than the primary lookups it would save
+					if (other != ii && !other.table.columns.get(0).equals(ii.table.columns.get(0)) 
+							&& estimateCost(orderBy, other, rowCost) <= bestCost * MAX_INTERSECTION_COST_RATIO) {
+						LogManager.logDetail(LogConstants.CTX_DQP, "Intersecting index", other.table, "covering:", other.coveredCriteria); //$NON-NLS-1$ //$NON-NLS-2$
+						keySources.add(other.table.createTupleSource(pkColumns, other.coveredCriteria, pkOrderBy, other, false));
+					}
+				}
+			}
 			primary.valueTs = ii.table.createTupleSource(pkColumns, 
-					ii.coveredCriteria, pkOrderBy, ii, agg);
+					ii.coveredCriteria, pkOrderBy, ii, false);
+			if (!keySources.isEmpty()) {
+				keySources.add(0, primary.valueTs);
+				primary.valueTs = new IntersectionTupleSource(keySources, tree.getComparator());
+				return createTupleSource(projectedCols, condition, orderBy, primary, agg);
+			}
 			return createTupleSource(projectedCols, ii.nonCoveredCriteria, orderBy, primary, agg);
 		}
 		return createTupleSource(projectedCols, condition, orderBy, ii, agg);
@@ -595,6 +744,11 @@ public class TempTable implements Cloneable, SearchableTable {
 	
 	public int truncate(boolean force) {
 		this.tid.getTableData().dataModified(tree.getRowCount());
+		if (this.indexTables != null) {
+			for (TempTable indexTable : this.indexTables.values()) {
+				indexTable.tree.truncate(force);
+			}
+		}
 		return tree.truncate(force);
 	}
 	
@@ -686,6 +840,151 @@ public class TempTable implements Cloneable, SearchableTable {
         return CollectionTupleSource.createUpdateCountTupleSource(updateCount);
     }
 	
+	/**
+	 * Insert the tuples from the sources, which are each expected to be sorted by the primary key.
+	 * The sources are merged so that rows are appended to the tree rather than searched for.
+	 * Rows that are out of order are inserted normally.
+	 * @return the number of rows inserted
+	 */
+	public int insertSorted(List<? extends TupleSource> sources, List<ElementSymbol> variables) throws TeiidComponentException, TeiidProcessingException {
+		return new SortedInsert(sources, variables).process();
+	}
+	
+	/**
+	 * The state of an {@link TempTable#insertSorted(List, List)}, which allows the 
+	 * insert to be resumed if a source throws a {@link BlockedException}.  The sources 
+	 * are read directly, so that the rows do not need to be buffered prior to the insert.
+	 */
+	class SortedInsert {
+		private List<? extends TupleSource> sources;
+		private List<ElementSymbol> variables;
+		private int[] indexes;
+		private List<?>[] heads;
+		private int headsRead;
+		private int consumed = -1;
+		private List<?> last;
+		private STree.BulkLoader loader;
+		private boolean started;
+		private int source;
+		private int initialRowCount;
+		private int updateCount;
+		
+		SortedInsert(List<? extends TupleSource> sources, List<ElementSymbol> variables) {
+			this.sources = sources;
+			this.variables = variables;
+			this.heads = new List<?>[sources.size()];
+		}
+		
+		/**
+		 * @return the number of rows inserted
+		 */
+		int process() throws TeiidComponentException, TeiidProcessingException {
+			if (rowId != null || !variables.containsAll(getColumns())) {
+				if (!started) {
+					started = true;
+					initialRowCount = tree.getRowCount();
+				}
+				//the rows of a blocked insert are already in the tree, so count by the row count
+				for (; source < sources.size(); source++) {
+					insert(sources.get(source), variables, false, null);
+				}
+				return tree.getRowCount() - initialRowCount;
+			}
+			if (!started) {
+				start();
+			}
+			ListNestedSortComparator comparator = tree.getComparator();
+			boolean blocked = false;
+			try {
+				for (; headsRead < heads.length; headsRead++) {
+					heads[headsRead] = nextSortedTuple(sources.get(headsRead), indexes);
+				}
+				while (true) {
+					if (consumed != -1) {
+						heads[consumed] = nextSortedTuple(sources.get(consumed), indexes);
+						consumed = -1;
+					}
+					int min = -1;
+					for (int i = 0; i < heads.length; i++) {
+						if (heads[i] != null && (min == -1 || comparator.compare(heads[i], heads[min]) < 0)) {
+							min = i;
+						}
+					}
+					if (min == -1) {
+						break;
+					}
+					List<?> tuple = heads[min];
+					consumed = min;
+					for (int i = 0; i < notNull.length; i++) {
+						if (tuple.get(notNull[i]) == null) {
+							 throw new TeiidProcessingException(QueryPlugin.Event.TEIID30236, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30236, columns.get(notNull[i])));
+						}
+					}
+					if (loader != null) {
+						if (loader.append(tuple)) {
+							last = tuple;
+							updateCount++;
+							continue;
+						}
+						loader.finish();
+						loader = null;
+						tree.setBatchInsert(true);
+					}
+					if (last == null || comparator.compare(last, tuple) < 0) {
+						insertTuple(tuple, true, true);
+						last = tuple;
+					} else {
+						//the source order may not match ours, e.g. a different collation
+						insertTuple(tuple, false, true);
+					}
+					updateCount++;
+				}
+			} catch (BlockedException e) {
+				blocked = true;
+				throw e;
+			} finally {
+				if (!blocked) {
+					if (loader != null) {
+						loader.finish();
+						loader = null;
+					} else {
+						tree.setBatchInsert(false);
+					}
+				}
+			}
+			tid.setCardinality(tree.getRowCount());
+			tid.getTableData().dataModified(updateCount);
+			return updateCount;
+		}
+
+		private void start() throws TeiidComponentException {
+			started = true;
+			List<ElementSymbol> cols = getColumns();
+			indexes = new int[cols.size()];
+			boolean shouldProject = false;
+			for (int i = 0; i < cols.size(); i++) {
+				indexes[i] = variables.indexOf(cols.get(i));
+				shouldProject |= (indexes[i] != i);
+			}
+			if (!shouldProject && variables.size() == cols.size()) {
+				indexes = null;
+			}
+			if (tree.getRowCount() == 0 && indexTables == null) {
+				loader = tree.bulkLoader(updatable?UPDATABLE_FILL_FACTOR:1f);
+			} else {
+				tree.setBatchInsert(true);
+			}
+		}
+	}
+
+	private List<?> nextSortedTuple(TupleSource ts, int[] indexes) throws TeiidComponentException, TeiidProcessingException {
+		List<?> tuple = ts.nextTuple();
+		if (tuple != null && indexes != null) {
+			tuple = RelationalNode.projectTuple(indexes, tuple);
+		}
+		return tuple;
+	}
+	
 	public TupleSource update(Criteria crit, final SetClauseList update) throws TeiidComponentException, ExpressionEvaluationException, TeiidProcessingException {
 		final boolean primaryKeyChangePossible = canChangePrimaryKey(update);
 		final TupleBrowser browser = createTupleBrower(crit, OrderBy.ASC);
@@ -711,6 +1010,7 @@ public class TempTable implements Cloneable, SearchableTable {
     				changeSet.addTuple(newTuple);
     			} else {
     				browser.update(newTuple);
+    				updateIndexValues(tuple, newTuple);
     			}
 			}
 			
@@ -791,13 +1091,16 @@ public class TempTable implements Cloneable, SearchableTable {
 			}
 			throw new TeiidProcessingException(QueryPlugin.Event.TEIID30238, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30238, this.tid.getID()));
 		}
+		insertIndexValues(list);
 		return true;
 	}
 	
 	private void deleteTuple(List<?> tuple) throws TeiidComponentException {
-		if (tree.remove(tuple) == null) {
+		List<?> result = tree.remove(tuple);
+		if (result == null) {
 			throw new AssertionError("Delete failed"); //$NON-NLS-1$
 		}
+		removeIndexValues(result);
 	}
 	
 	void writeTo(ObjectOutputStream oos) throws TeiidComponentException, IOException {
@@ -814,7 +1117,13 @@ public class TempTable implements Cloneable, SearchableTable {
 					for (ElementSymbol es : entry.getKey()) {
 						oos.writeInt(this.columnMap.get(es));
 					}
-					entry.getValue().writeTo(oos);
+					TempTable index = entry.getValue();
+					List<ElementSymbol> includeColumns = index.columns.subList(index.tree.getKeyLength(), index.columns.size());
+					oos.writeInt(includeColumns.size());
+					for (ElementSymbol es : includeColumns) {
+						oos.writeInt(this.columnMap.get(es));
+					}
+					index.writeTo(oos);
 				}
 			}
 		} finally {
@@ -833,7 +1142,12 @@ public class TempTable implements Cloneable, SearchableTable {
 				int colIndex = ois.readInt();
 				indexColumns.add(this.columns.get(colIndex));
 			}
-			TempTable tt = this.createIndexTable(indexColumns, unique);
+			int numIncluded = ois.readInt();
+			ArrayList<ElementSymbol> includeColumns = new ArrayList<ElementSymbol>(numIncluded);
+			for (int j = 0; j < numIncluded; j++) {
+				includeColumns.add(this.columns.get(ois.readInt()));
+			}
+			TempTable tt = this.createIndexTable(indexColumns, unique, includeColumns);
 			tt.readFrom(ois);
 		}
 	}
@@ -846,21 +1160,15 @@ public class TempTable implements Cloneable, SearchableTable {
 				if (result == null) {
 					return null;
 				}
-				if (indexTables != null) {
-					for (TempTable index : this.indexTables.values()) {
-						tuple = RelationalNode.projectTuple(RelationalNode.getProjectionIndexes(index.getColumnMap(), index.columns), result);
-						index.tree.remove(tuple);
-					}
-				}
+				removeIndexValues(result);
 				tid.getTableData().dataModified(1);
 				return result;
 			} 
 			List<?> result = tree.insert(tuple, InsertMode.UPDATE, -1);
-			if (indexTables != null) {
-				for (TempTable index : this.indexTables.values()) {
-					tuple = RelationalNode.projectTuple(RelationalNode.getProjectionIndexes(index.getColumnMap(), index.columns), tuple);
-					index.tree.insert(tuple, InsertMode.UPDATE, -1);
-				}
+			if (result == null) {
+				insertIndexValues(tuple);
+			} else {
+				updateIndexValues(result, tuple);
 			}
 			tid.getTableData().dataModified(1);
 			return result;
@@ -870,9 +1178,11 @@ public class TempTable implements Cloneable, SearchableTable {
 	}
 	
 	private void updateTuple(List<?> tuple) throws TeiidComponentException {
-		if (tree.insert(tuple, InsertMode.UPDATE, -1) == null) {
+		List<?> result = tree.insert(tuple, InsertMode.UPDATE, -1);
+		if (result == null) {
 			throw new AssertionError("Update failed"); //$NON-NLS-1$
 		}
+		updateIndexValues(result, tuple);
 	}
 	
 	void setPreferMemory(boolean preferMemory) {
@@ -63,9 +63,11 @@ import org.teiid.language.SQLConstants;
 import org.teiid.language.SQLConstants.Reserved;
 import org.teiid.logging.LogConstants;
 import org.teiid.logging.LogManager;
+import org.teiid.metadata.AbstractMetadataRecord;
 import org.teiid.metadata.FunctionMethod.Determinism;
 import org.teiid.query.QueryPlugin;
 import org.teiid.query.eval.Evaluator;
+import org.teiid.query.metadata.MaterializationMetadataRepository;
 import org.teiid.query.metadata.QueryMetadataInterface;
 import org.teiid.query.metadata.TempMetadataAdapter;
 import org.teiid.query.metadata.TempMetadataID;
@@ -270,7 +272,7 @@ public class TempTableDataManager implements ProcessorDataManager {
     		tt.setUpdatable(false);
     		if (att.getIndexColumns() != null && tt.getRowCount() > 2*tt.getTree().getPageSize(true)) {
     			for (List<ElementSymbol> cols : att.getIndexColumns()) {
-    				tt.addIndex(cols, false);
+    				tt.addIndex(cols, false, null);
     			}
     		}
     		return CollectionTupleSource.createUpdateCountTupleSource(0);
@@ -714,19 +716,59 @@ public class TempTableDataManager implements ProcessorDataManager {
 			QueryProcessor qp;
 			boolean closed;
 			boolean errored;
+			QueryProcessor boundsQp;
+			TupleSource boundsTupleSource;
+			List<QueryProcessor> partitionQps;
+			TempTable.SortedInsert sortedInsert;
 		
 			@Override
 			protected TupleSource createTupleSource() throws TeiidComponentException,
 					TeiidProcessingException {
 				int rowCount = -1;
 				try {
-					if (insertTupleSource == null) {
+					if (insertTupleSource == null && sortedInsert == null) {
 						String fullName = metadata.getFullName(group.getMetadataID());
-						String transformation = metadata.getVirtualPlan(group.getMetadataID()).getQuery();
-						qp = context.getQueryProcessorFactory().createQueryProcessor(transformation, fullName, context);
-						insertTupleSource = new BatchCollector.BatchProducerTupleSource(qp);
+						int partitionCount = getLoadPartitions(metadata, group);
+						ElementSymbol partitionColumn = null;
+						if (partitionCount > 1) {
+							partitionColumn = getPartitionColumn(metadata, group, allColumns);
+						}
+						if (partitionColumn != null) {
+							String viewName = new GroupSymbol(metadata.getFullName(getViewId(group))).toString();
+							String columnName = new ElementSymbol(partitionColumn.getShortName()).toString();
+							if (boundsQp == null) {
+								String boundsQuery = "SELECT MIN(" + columnName + "), MAX(" + columnName + ") FROM " + viewName + " OPTION NOCACHE " + viewName; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+								boundsQp = context.getQueryProcessorFactory().createQueryProcessor(boundsQuery, fullName.toUpperCase(), context);
+								boundsTupleSource = new BatchCollector.BatchProducerTupleSource(boundsQp);
+							}
+							List<?> bounds = boundsTupleSource.nextTuple();
+							boundsQp.closeProcessing();
+							List<String> partitionQueries = getPartitionQueries(metadata, group, allColumns, viewName, columnName, bounds, partitionCount);
+							if (partitionQueries != null) {
+								LogManager.logDetail(LogConstants.CTX_MATVIEWS, "Loading", tableName, "with", partitionQueries.size(), "partitions"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+								partitionQps = new ArrayList<QueryProcessor>(partitionQueries.size());
+								List<TupleSource> partitions = new ArrayList<TupleSource>(partitionQueries.size());
+								for (String partitionQuery : partitionQueries) {
+									QueryProcessor partitionQp = context.getQueryProcessorFactory().createQueryProcessor(partitionQuery, fullName.toUpperCase(), context);
+									partitionQps.add(partitionQp);
+									partitions.add(new BatchCollector.BatchProducerTupleSource(partitionQp));
+								}
+								qp = partitionQps.get(0);
+								//the key ordered partitions are merged directly into the table
+								sortedInsert = table.new SortedInsert(partitions, allColumns);
+							}
+						}
+						if (sortedInsert == null) {
+							String transformation = metadata.getVirtualPlan(group.getMetadataID()).getQuery();
+							qp = context.getQueryProcessorFactory().createQueryProcessor(transformation, fullName, context);
+							insertTupleSource = new BatchCollector.BatchProducerTupleSource(qp);
+						}
+					}
+					if (sortedInsert != null) {
+						sortedInsert.process();
+					} else {
+						table.insert(insertTupleSource, allColumns, false, null);
 					}
-					table.insert(insertTupleSource, allColumns, false, null);
 					table.getTree().compact();
 					rowCount = table.getRowCount();
 					Determinism determinism = qp.getContext().getDeterminismLevel();
@@ -734,11 +776,11 @@ public class TempTableDataManager implements ProcessorDataManager {
 					//TODO: could pre-process indexes to remove overlap
 					for (Object index : metadata.getIndexesInGroup(group.getMetadataID())) {
 						List<ElementSymbol> columns = GlobalTableStoreImpl.resolveIndex(metadata, allColumns, index);
-						table.addIndex(columns, false);
+						table.addIndex(columns, false, getIncludeColumns(metadata, index, allColumns));
 					}
 					for (Object key : metadata.getUniqueKeysInGroup(group.getMetadataID())) {
 						List<ElementSymbol> columns = GlobalTableStoreImpl.resolveIndex(metadata, allColumns, key);
-						table.addIndex(columns, true);
+						table.addIndex(columns, true, null);
 					}
 					CacheHint hint = table.getCacheHint();
 					if (hint != null && table.getPkLength() > 0) {
@@ -778,10 +820,153 @@ public class TempTableDataManager implements ProcessorDataManager {
 				if (qp != null) {
 					qp.closeProcessing();
 				}
+				if (boundsQp != null) {
+					boundsQp.closeProcessing();
+				}
+				if (partitionQps != null) {
+					for (QueryProcessor partitionQp : partitionQps) {
+						partitionQp.closeProcessing();
+					}
+				}
 				super.closeSource();
 			}
 		};
 	}
+	
+	/**
+	 * Get the metadata id of the view, rather than of the materialization table that represents it.
+	 */
+	private static Object getViewId(GroupSymbol group) {
+		Object id = group.getMetadataID();
+		if (id instanceof TempMetadataID && ((TempMetadataID)id).getOriginalMetadataID() != null) {
+			return ((TempMetadataID)id).getOriginalMetadataID();
+		}
+		return id;
+	}
+	
+	private static int getLoadPartitions(QueryMetadataInterface metadata, GroupSymbol group) throws TeiidComponentException {
+		String partitions = metadata.getExtensionProperty(getViewId(group), MaterializationMetadataRepository.MATVIEW_LOAD_PARTITIONS, false);
+		if (partitions == null) {
+			return 1;
+		}
+		try {
+			return Integer.parseInt(partitions);
+		} catch (NumberFormatException e) {
+			LogManager.logWarning(LogConstants.CTX_MATVIEWS, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31160, partitions, group));
+			return 1;
+		}
+	}
+	
+	/**
+	 * Get the columns named by the MATVIEW_INDEX_INCLUDE property of the index.
+	 * @return the columns or null if none are included
+	 */
+	private static List<ElementSymbol> getIncludeColumns(QueryMetadataInterface metadata, Object index, List<ElementSymbol> allColumns) throws TeiidComponentException {
+		if (index instanceof TempMetadataID) {
+			index = ((TempMetadataID)index).getOriginalMetadataID();
+		}
+		if (!(index instanceof AbstractMetadataRecord)) {
+			//unique keys of the materialization table do not retain the original key record
+			return null;
+		}
+		String names = metadata.getExtensionProperty(index, MaterializationMetadataRepository.MATVIEW_INDEX_INCLUDE, false);
+		if (names == null) {
+			return null;
+		}
+		List<ElementSymbol> result = new ArrayList<ElementSymbol>();
+		for (String name : StringUtil.split(names, ",")) { //$NON-NLS-1$
+			name = name.trim();
+			ElementSymbol column = null;
+			for (ElementSymbol es : allColumns) {
+				if (es.getShortName().equalsIgnoreCase(name)) {
+					column = es;
+					break;
+				}
+			}
+			if (column == null) {
+				LogManager.logWarning(LogConstants.CTX_MATVIEWS, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31161, name, index));
+				continue;
+			}
+			result.add(column);
+		}
+		return result;
+	}
+
+	/**
+	 * Get the integral column used to split the load, which defaults to the first primary key column.
+	 */
+	private static ElementSymbol getPartitionColumn(QueryMetadataInterface metadata, GroupSymbol group, List<ElementSymbol> allColumns) throws TeiidComponentException {
+		ElementSymbol result = null;
+		String name = metadata.getExtensionProperty(getViewId(group), MaterializationMetadataRepository.MATVIEW_PARTITION_COLUMN, false);
+		if (name != null) {
+			for (ElementSymbol es : allColumns) {
+				if (es.getShortName().equalsIgnoreCase(name)) {
+					result = es;
+					break;
+				}
+			}
+		} else {
+			Object pk = metadata.getPrimaryKey(group.getMetadataID());
+			if (pk != null) {
+				result = GlobalTableStoreImpl.resolveIndex(metadata, allColumns, pk).get(0);
+			}
+		}
+		if (result == null) {
+			return null;
+		}
+		Class<?> type = result.getType();
+		if (type != DataTypeManager.DefaultDataClasses.INTEGER && type != DataTypeManager.DefaultDataClasses.LONG
+				&& type != DataTypeManager.DefaultDataClasses.SHORT && type != DataTypeManager.DefaultDataClasses.BYTE) {
+			LogManager.logDetail(LogConstants.CTX_MATVIEWS, "Not partitioning the load of", group, "since", result, "is not an integral type"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			return null;
+		}
+		return result;
+	}
+
+	/**
+	 * Split the range of the partition column values into queries ordered by the primary key.
+	 * @return the queries or null if the load should not be partitioned
+	 */
+	static List<String> getPartitionQueries(QueryMetadataInterface metadata, GroupSymbol group, List<ElementSymbol> allColumns, String viewName, 
+			String partitionColumn, List<?> bounds, int partitionCount) throws TeiidComponentException {
+		if (bounds == null || bounds.get(0) == null) {
+			return null;
+		}
+		long min = ((Number)bounds.get(0)).longValue();
+		long max = ((Number)bounds.get(1)).longValue();
+		long span = max - min;
+		if (span < 0) {
+			return null; //overflow
+		}
+		long step = span / partitionCount + 1;
+		StringBuilder orderBy = new StringBuilder();
+		Object pk = metadata.getPrimaryKey(group.getMetadataID());
+		if (pk != null) {
+			for (ElementSymbol es : GlobalTableStoreImpl.resolveIndex(metadata, allColumns, pk)) {
+				orderBy.append(orderBy.length() == 0?" ORDER BY ":", ").append(new ElementSymbol(es.getShortName())); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+		List<String> result = new ArrayList<String>(partitionCount);
+		for (long lower = min; lower <= max && lower >= min; lower += step) {
+			StringBuilder query = new StringBuilder("SELECT * FROM ").append(viewName).append(" WHERE "); //$NON-NLS-1$ //$NON-NLS-2$
+			if (lower == min) {
+				query.append('(').append(partitionColumn).append(" IS NULL OR "); //$NON-NLS-1$
+			}
+			query.append(partitionColumn).append(" >= ").append(lower); //$NON-NLS-1$
+			if (max - lower >= step) {
+				query.append(" AND ").append(partitionColumn).append(" < ").append(lower + step); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			if (lower == min) {
+				query.append(')');
+			}
+			query.append(orderBy).append(" OPTION NOCACHE ").append(viewName); //$NON-NLS-1$
+			result.add(query.toString());
+		}
+		if (result.size() < 2) {
+			return null;
+		}
+		return result;
+	}
 
 	public Object lookupCodeValue(CommandContext context, String codeTableName,
 			String returnElementName, String keyElementName, Object keyValue)
@@ -42,6 +42,8 @@ import org.teiid.common.buffer.BufferManager;
 import org.teiid.common.buffer.TupleSource;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidException;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.core.types.TransformationException;
 import org.teiid.core.util.ArgCheck;
 import org.teiid.core.util.ExecutorUtils;
 import org.teiid.core.util.LRUCache;
@@ -85,6 +87,8 @@ import org.teiid.translator.ReusableExecution;
  */
 public class CommandContext implements Cloneable, org.teiid.CommandContext {
 	
+	public static final String TEIID_MAX_PARALLELISM = "teiid.maxParallelism"; //$NON-NLS-1$
+	
 	private static ThreadLocal<LinkedList<CommandContext>> threadLocalContext = new ThreadLocal<LinkedList<CommandContext>>() {
 		@Override
 		protected LinkedList<CommandContext> initialValue() {
@@ -954,7 +958,31 @@ public class CommandContext implements Cloneable, org.teiid.CommandContext {
 	}
 
 	public long addAndGetReservedBuffers(int i) {
-		return globalState.reservedBuffers += i;
+		synchronized (this.globalState) {
+			return globalState.reservedBuffers += i;
+		}
+	}
+	
+	/**
+	 * Get the maximum number of threads that may be used to process
+	 * independent branches of a plan.  The session variable teiid.maxParallelism 
+	 * takes precedence over the system default.
+	 */
+	public int getMaxParallelism() {
+		if (this.vdbState.session != null) {
+			Object value = getSessionVariable(TEIID_MAX_PARALLELISM);
+			if (value != null) {
+				try {
+					value = DataTypeManager.transformValue(value, DataTypeManager.DefaultDataClasses.INTEGER);
+					if (value instanceof Integer) {
+						return Math.max(1, (Integer)value);
+					}
+				} catch (TransformationException e) {
+					//ignore
+				}
+			}
+		}
+		return Math.max(1, getOptions().getMaxParallelism());
 	}
 
 	@Override
@@ -35,6 +35,11 @@ public class Options {
 	public static final String JOIN_PREFETCH_BATCHES = "org.teiid.joinPrefetchBatches"; //$NON-NLS-1$
 	public static final String SANITIZE_MESSAGES = "org.teiid.sanitizeMessages"; //$NON-NLS-1$
 	public static final String REQUIRE_COLLATION = "org.teiid.requireTeiidCollation"; //$NON-NLS-1$
+	public static final String HASH_JOIN = "org.teiid.hashJoin"; //$NON-NLS-1$
+	public static final String HASH_AGGREGATION = "org.teiid.hashAggregation"; //$NON-NLS-1$
+	public static final String MAX_PARALLELISM = "org.teiid.maxParallelism"; //$NON-NLS-1$
+	public static final String COMPRESS_RESULTS = "org.teiid.compressResults"; //$NON-NLS-1$
+	public static final String COMPILE_EXPRESSIONS = "org.teiid.compileExpressions"; //$NON-NLS-1$
 
 	private Properties properties;
 	private boolean subqueryUnnestDefault;
@@ -44,6 +49,11 @@ public class Options {
 	private boolean sanitizeMessages;
 	private float dependentJoinPushdownThreshold = 0;
 	private boolean requireTeiidCollation;
+	private boolean hashJoin;
+	private boolean hashAggregation;
+	private int maxParallelism = 1;
+	private boolean compressResults;
+	private boolean compileExpressions;
 	
 	public Properties getProperties() {
 		return properties;
@@ -145,5 +155,70 @@ public class Options {
 		this.requireTeiidCollation = b;
 		return this;
 	}
+	
+	public boolean isHashJoin() {
+		return hashJoin;
+	}
+	
+	public void setHashJoin(boolean hashJoin) {
+		this.hashJoin = hashJoin;
+	}
+	
+	public Options hashJoin(boolean b) {
+		this.hashJoin = b;
+		return this;
+	}
+	
+	public boolean isHashAggregation() {
+		return hashAggregation;
+	}
+	
+	public void setHashAggregation(boolean hashAggregation) {
+		this.hashAggregation = hashAggregation;
+	}
+	
+	public Options hashAggregation(boolean b) {
+		this.hashAggregation = b;
+		return this;
+	}
+	
+	public int getMaxParallelism() {
+		return maxParallelism;
+	}
+	
+	public void setMaxParallelism(int maxParallelism) {
+		this.maxParallelism = maxParallelism;
+	}
+	
+	public Options maxParallelism(int i) {
+		this.maxParallelism = i;
+		return this;
+	}
+	
+	public boolean isCompressResults() {
+		return compressResults;
+	}
+	
+	public void setCompressResults(boolean compressResults) {
+		this.compressResults = compressResults;
+	}
+	
+	public Options compressResults(boolean b) {
+		this.compressResults = b;
+		return this;
+	}
+
+	public boolean isCompileExpressions() {
+		return compileExpressions;
+	}
+	
+	public void setCompileExpressions(boolean compileExpressions) {
+		this.compileExpressions = compileExpressions;
+	}
+	
+	public Options compileExpressions(boolean b) {
+		this.compileExpressions = b;
+		return this;
+	}
 
 }
@@ -32,6 +32,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.ErrorListener;
@@ -44,6 +45,7 @@ import net.sf.saxon.Configuration;
 import net.sf.saxon.expr.ContextItemExpression;
 import net.sf.saxon.expr.Expression;
 import net.sf.saxon.expr.RootExpression;
+import net.sf.saxon.expr.StaticProperty;
 import net.sf.saxon.expr.parser.PathMap;
 import net.sf.saxon.expr.parser.PathMap.PathMapArc;
 import net.sf.saxon.expr.parser.PathMap.PathMapNode;
@@ -64,6 +66,7 @@ import net.sf.saxon.sxpath.XPathEvaluator;
 import net.sf.saxon.sxpath.XPathExpression;
 import net.sf.saxon.trace.ExpressionPresenter;
 import net.sf.saxon.trans.XPathException;
+import net.sf.saxon.type.BuiltInAtomicType;
 import net.sf.saxon.type.ItemType;
 import net.sf.saxon.type.TypeHierarchy;
 import net.sf.saxon.value.EmptySequence;
@@ -88,6 +91,7 @@ import org.teiid.query.sql.lang.XMLTable.XMLColumn;
 import org.teiid.query.sql.symbol.DerivedColumn;
 import org.teiid.query.sql.symbol.XMLNamespaces;
 import org.teiid.query.sql.symbol.XMLNamespaces.NamespaceItem;
+import org.teiid.query.xquery.saxon.StreamingUtils.StreamingPath;
 import org.teiid.translator.WSConnection.Util;
 
 @SuppressWarnings("serial")
@@ -182,6 +186,8 @@ public class SaxonXQueryExpression {
 	Configuration config = new Configuration();
 	PathMapRoot contextRoot;
 	String streamingPath;
+	XPathExpression streamingFilter;
+	IndependentContext staticContext;
 
     public SaxonXQueryExpression(String xQueryString, XMLNamespaces namespaces, List<DerivedColumn> passing, List<XMLTable.XMLColumn> columns) 
     throws QueryResolverException {
@@ -222,6 +228,7 @@ public class SaxonXQueryExpression {
 		}
         
     	processColumns(columns, ic);	    	
+    	this.staticContext = ic;
     
         try {
 			this.xQuery = context.compileQuery(xQueryString);
@@ -242,6 +249,8 @@ public class SaxonXQueryExpression {
     	clone.contextRoot = contextRoot;
     	clone.namespaceMap = namespaceMap;
     	clone.streamingPath = streamingPath;
+    	clone.streamingFilter = streamingFilter;
+    	clone.staticContext = staticContext;
     	return clone;
     }
     
@@ -250,8 +259,12 @@ public class SaxonXQueryExpression {
     }
     
 	public void useDocumentProjection(List<XMLTable.XMLColumn> columns, AnalysisRecord record) {
+		streamingPath = null;
+		streamingFilter = null;
 		try {
-			streamingPath = StreamingUtils.getStreamingPath(xQueryString, namespaceMap);
+			StreamingPath path = StreamingUtils.getStreamingPath(xQueryString, namespaceMap);
+			streamingFilter = compileStreamingFilter(path);
+			streamingPath = path.path;
 		} catch (IllegalArgumentException e) {
 			if (record.recordAnnotations()) {
 				record.addAnnotation(XQUERY_PLANNING, "Invalid streaming path " + xQueryString + " "+ e.getMessage(), "Document streaming will not be used", Priority.MEDIUM); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
@@ -287,13 +300,8 @@ public class SaxonXQueryExpression {
 				
 		if (!finalNodes.isEmpty()) {  
 			if (columns != null && !columns.isEmpty()) {
-				if (finalNodes.size() != 1) {
-					if (record.recordAnnotations()) {
-						record.addAnnotation(XQUERY_PLANNING, "multiple return items exist " + xQueryString, "Document projection will not be used", Priority.MEDIUM); //$NON-NLS-1$ //$NON-NLS-2$
-					}
-					return;	
-				} 
-				parentRoot = projectColumns(parentRoot, columns, finalNodes.iterator().next(), record);
+				//the columns are relative to each returned item, e.g. with a union of sibling paths
+				parentRoot = projectColumns(parentRoot, columns, finalNodes, record);
 				if (parentRoot == null) {
 					return;
 				}
@@ -323,8 +331,8 @@ public class SaxonXQueryExpression {
 	
     public static final boolean[] isValidAncestorAxis =
     {
-        false,          // ANCESTOR
-        false,          // ANCESTOR_OR_SELF;
+        true,           // ANCESTOR
+        true,           // ANCESTOR_OR_SELF;
         true,           // ATTRIBUTE;
         false,           // CHILD;
         false,           // DESCENDANT;
@@ -339,7 +347,7 @@ public class SaxonXQueryExpression {
         false,          // PRECEDING_OR_ANCESTOR;
     };
 
-	private PathMapRoot projectColumns(PathMapRoot parentRoot, List<XMLTable.XMLColumn> columns, PathMapNode finalNode, AnalysisRecord record) {
+	private PathMapRoot projectColumns(PathMapRoot parentRoot, List<XMLTable.XMLColumn> columns, Set<PathMapNode> finalNodes, AnalysisRecord record) {
 		for (XMLColumn xmlColumn : columns) {
 			if (xmlColumn.isOrdinal()) {
 				continue;
@@ -360,7 +368,9 @@ public class SaxonXQueryExpression {
 			}
     		//special case for handling '.', which the pathmap logic doesn't consider as a root
     		if (internalExpression instanceof ContextItemExpression) {
-    			addReturnedArcs(xmlColumn, finalNode);
+    			for (PathMapNode finalNode : finalNodes) {
+    				addReturnedArcs(xmlColumn, finalNode);
+    			}
     		}
     		if (subContextRoot == null) {
     			continue;
@@ -369,7 +379,9 @@ public class SaxonXQueryExpression {
 	    		if (streamingPath != null && !validateColumnForStreaming(record, xmlColumn, arc)) {
 	    			streamingPath = null;
 	    		}
-				finalNode.createArc(arc.getAxis(), arc.getNodeTest(), arc.getTarget());
+	    		for (PathMapNode finalNode : finalNodes) {
+	    			finalNode.createArc(arc.getAxis(), arc.getNodeTest(), arc.getTarget());
+	    		}
 			}
 	    	HashSet<PathMapNode> subFinalNodes = new HashSet<PathMapNode>();
 			getReturnableNodes(subContextRoot, subFinalNodes);
@@ -397,50 +409,114 @@ public class SaxonXQueryExpression {
 
 	private boolean validateColumnForStreaming(AnalysisRecord record,
 			XMLColumn xmlColumn, PathMapArc arc) {
-		boolean ancestor = false;
+		String restriction = getStreamingRestriction(arc, false);
+		if (restriction != null) {
+			if (record.recordAnnotations()) {
+				record.addAnnotation(XQUERY_PLANNING, "The column path " + restriction + " " + xmlColumn.getPath(), "Document streaming will not be used", Priority.MEDIUM); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			}
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Determine if the arc may be evaluated against a streamed element, which has its 
+	 * subtree and the attributes of its ancestors available.
+	 * @param ancestor true if the arc is from an ancestor of the streamed element
+	 * @return the restriction that applies or null if the arc may be evaluated
+	 */
+	private static String getStreamingRestriction(PathMapArc arc, boolean ancestor) {
 		LinkedList<PathMapArc> arcStack = new LinkedList<PathMapArc>();
 		arcStack.add(arc);
 		while (!arcStack.isEmpty()) {
 			PathMapArc current = arcStack.removeFirst();
 			byte axis = current.getAxis();
 			if (ancestor) {
-				if (current.getTarget().isReturnable()) {
+				if (current.getTarget().isReturnable() || current.getTarget().isAtomized()) {
 					if (axis != AxisInfo.NAMESPACE && axis != AxisInfo.ATTRIBUTE) {
-						if (record.recordAnnotations()) {
-							record.addAnnotation(XQUERY_PLANNING, "The column path contains an invalid reverse axis " + xmlColumn.getPath(), "Document streaming will not be used", Priority.MEDIUM); //$NON-NLS-1$ //$NON-NLS-2$
-						}
-						return false;
+						return "contains an invalid reverse axis"; //$NON-NLS-1$
 					}
 				}
 				if (!isValidAncestorAxis[axis]) {
-					if (record.recordAnnotations()) {
-						record.addAnnotation(XQUERY_PLANNING, "The column path contains an invalid reverse axis " + xmlColumn.getPath(), "Document streaming will not be used", Priority.MEDIUM); //$NON-NLS-1$ //$NON-NLS-2$
-					}
-					return false;
+					return "contains an invalid reverse axis"; //$NON-NLS-1$
 				}
 			} else if (!AxisInfo.isSubtreeAxis[axis]) {
 				if (axis == AxisInfo.PARENT 
 						|| axis == AxisInfo.ANCESTOR
 						|| axis == AxisInfo.ANCESTOR_OR_SELF) {
-					if (current.getTarget().isReturnable()) {
-						if (record.recordAnnotations()) {
-							record.addAnnotation(XQUERY_PLANNING, "The column path contains an invalid reverse axis " + xmlColumn.getPath(), "Document streaming will not be used", Priority.MEDIUM); //$NON-NLS-1$ //$NON-NLS-2$
-						}
-						return false;
+					if (current.getTarget().isReturnable() || current.getTarget().isAtomized()) {
+						return "contains an invalid reverse axis"; //$NON-NLS-1$
 					}
 					ancestor = true; 
 				} else {
-					if (record.recordAnnotations()) {
-						record.addAnnotation(XQUERY_PLANNING, "The column path may not reference an ancestor or subtree " + xmlColumn.getPath(), "Document streaming will not be used", Priority.MEDIUM); //$NON-NLS-1$ //$NON-NLS-2$
-					}
-					return false;
+					return "may not reference an ancestor or subtree"; //$NON-NLS-1$
 				}
 			}
 	    	for (PathMapArc pathMapArc : current.getTarget().getArcs()) {
 	    		arcStack.add(pathMapArc);
 			}
 		}
-		return true;
+		return null;
+	}
+	
+	/**
+	 * Compile the filter to apply to the streamed elements.  The predicates and 
+	 * condition are checked to ensure they only reference the element subtree or the 
+	 * attributes of ancestors and that the predicates are not positional.
+	 * 
+	 * @throws IllegalArgumentException if the filter cannot be used for streaming
+	 */
+	private XPathExpression compileStreamingFilter(StreamingPath path) {
+		if (path.filter == null) {
+			return null;
+		}
+		XPathEvaluator eval = new XPathEvaluator(config);
+		eval.setStaticContext(staticContext);
+		TypeHierarchy th = config.getTypeHierarchy();
+		try {
+			for (String predicate : path.predicates) {
+				validatePredicateForStreaming(eval, th, predicate, false);
+			}
+			for (String predicate : path.ancestorPredicates) {
+				validatePredicateForStreaming(eval, th, predicate, true);
+			}
+			if (path.condition != null) {
+				validateForStreaming(eval.createExpression(path.condition).getInternalExpression(), path.condition, false);
+			}
+			return eval.createExpression(path.filter);
+		} catch (XPathException e) {
+			throw new IllegalArgumentException(e.getMessage());
+		}
+	}
+
+	private void validatePredicateForStreaming(XPathEvaluator eval, TypeHierarchy th, String predicate, boolean ancestor) throws XPathException {
+		Expression expr = eval.createExpression(predicate).getInternalExpression();
+		if ((expr.getDependencies() & (StaticProperty.DEPENDS_ON_POSITION | StaticProperty.DEPENDS_ON_LAST)) != 0
+				|| th.relationship(expr.getItemType(th), BuiltInAtomicType.NUMERIC) != TypeHierarchy.DISJOINT) {
+			throw new IllegalArgumentException("The predicate may be positional " + predicate); //$NON-NLS-1$
+		}
+		validateForStreaming(expr, predicate, ancestor);
+	}
+
+	private void validateForStreaming(Expression expr, String text, boolean ancestor) {
+		PathMap map = new PathMap(expr);
+		for (PathMapRoot root : map.getPathMapRoots()) {
+			if (root.getRootExpression() instanceof RootExpression || root.hasUnknownDependencies()) {
+				throw new IllegalArgumentException("The predicate may not reference the document " + text); //$NON-NLS-1$
+			}
+			if (!(root.getRootExpression() instanceof ContextItemExpression)) {
+				continue;
+			}
+			if (ancestor && (root.isAtomized() || root.isReturnable())) {
+				throw new IllegalArgumentException("The predicate may not reference the ancestor content " + text); //$NON-NLS-1$
+			}
+			for (PathMapArc arc : root.getArcs()) {
+				String restriction = getStreamingRestriction(arc, ancestor);
+				if (restriction != null) {
+					throw new IllegalArgumentException("The predicate " + restriction + " " + text); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+			}
+		}
 	}
 
 	private void addReturnedArcs(XMLColumn xmlColumn, PathMapNode subNode) {
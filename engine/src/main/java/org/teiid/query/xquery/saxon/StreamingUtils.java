@@ -23,7 +23,11 @@
 package org.teiid.query.xquery.saxon;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import net.sf.saxon.Configuration;
 import net.sf.saxon.event.ContentHandlerProxy;
@@ -50,59 +54,260 @@ import org.xml.sax.XMLReader;
 import org.xml.sax.ext.LexicalHandler;
 
 final class StreamingUtils {
+	
+	private static final Pattern FLWOR_PATTERN = Pattern.compile("for\\s+\\$([\\w\\-\\.]+)\\s+in\\s+(.+?)\\s+(?:where\\s+(.+?)\\s+)?return\\s+\\$\\1", Pattern.DOTALL); //$NON-NLS-1$
+	
+	/**
+	 * The streamable form of an XQuery.  The path is a simple forward path 
+	 * usable by the nux {@link nux.xom.xquery.StreamingPathFilter} and the filter is 
+	 * a boolean XPath expression that must hold for each matched element - 
+	 * which allows for predicates, sibling paths and where clauses.
+	 */
+	static final class StreamingPath {
+		String path;
+		String filter;
+		/**
+		 * Predicates that have the matched element as the context
+		 */
+		List<String> predicates = new ArrayList<String>();
+		/**
+		 * Predicates that have an ancestor of the matched element as the context
+		 */
+		List<String> ancestorPredicates = new ArrayList<String>();
+		/**
+		 * The where condition with the variable bound to the matched element
+		 */
+		String condition;
+	}
+	
 	/**
 	 * Pre-parser that adds validation and handles a default name space
+	 * <br>
+	 * Accepted forms are a forward path with optional predicates on each step,  
+	 * a union of such paths with the same depth, or 
+	 * for $x in path [where condition] return $x
 	 * 
-	 * TODO: add support for more general paths including node tests
-	 *   this could be done as a secondary expression applied to the 
-	 *   context item 
-	 * 
-	 * @param locationPath
+	 * @param xquery
 	 * @param prefixMap
 	 * @return
 	 */
-	public static String getStreamingPath(String locationPath, Map<String, String> prefixMap) {
-		if (locationPath.indexOf("//") >= 0) //$NON-NLS-1$
-			throw new IllegalArgumentException("DESCENDANT axis is not supported"); //$NON-NLS-1$
+	public static StreamingPath getStreamingPath(String xquery, Map<String, String> prefixMap) {
+		StreamingPath result = new StreamingPath();
+		String locationPath = xquery.trim();
+		Matcher m = FLWOR_PATTERN.matcher(locationPath);
+		if (m.matches()) {
+			locationPath = m.group(2);
+			if (m.group(3) != null) {
+				result.condition = "for $" + m.group(1) + " in . return (" + m.group(3) + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			}
+		}
 		
-		String path = locationPath.trim();
-		if (path.startsWith("/")) path = path.substring(1); //$NON-NLS-1$
-		if (path.endsWith("/")) path = path.substring(0, path.length() - 1); //$NON-NLS-1$
-		path = path.trim();
-		String[] localNames = path.split("/"); //$NON-NLS-1$
+		List<String> alternatives = split(locationPath, '|');
+		List<List<String>> altNames = new ArrayList<List<String>>(alternatives.size());
+		List<List<String>> altPredicates = new ArrayList<List<String>>(alternatives.size());
+		String[] fixedNames = null;
+		boolean[] mixed = null;
+		for (String alternative : alternatives) {
+			String path = alternative.trim();
+			if (path.startsWith("//")) //$NON-NLS-1$
+				throw new IllegalArgumentException("DESCENDANT axis is not supported"); //$NON-NLS-1$
+			if (path.startsWith("/")) path = path.substring(1); //$NON-NLS-1$
+			if (path.endsWith("/")) path = path.substring(0, path.length() - 1); //$NON-NLS-1$
+			path = path.trim();
+			List<String> steps = split(path, '/');
+			
+			if (steps.size() == 1) {
+				throw new IllegalArgumentException(locationPath + " refers to only the root element"); //$NON-NLS-1$
+			}
+			if (fixedNames == null) {
+				fixedNames = new String[steps.size()];
+				mixed = new boolean[steps.size()];
+			} else if (fixedNames.length != steps.size()) {
+				throw new IllegalArgumentException(locationPath + " has paths of differing lengths"); //$NON-NLS-1$
+			}
+			List<String> names = new ArrayList<String>(steps.size());
+			List<String> predicates = new ArrayList<String>(steps.size());
+					
+			// parse prefix:localName[predicate] steps and resolve prefixes to namespaceURIs
+			for (int i = 0; i < steps.size(); i++) {
+				String step = steps.get(i).trim();
+				if (step.length() == 0) {
+					throw new IllegalArgumentException("DESCENDANT axis is not supported"); //$NON-NLS-1$
+				}
+				String name = step;
+				String stepPredicates = ""; //$NON-NLS-1$
+				int predicateIndex = step.indexOf('[');
+				if (predicateIndex >= 0) {
+					name = step.substring(0, predicateIndex).trim();
+					stepPredicates = step.substring(predicateIndex);
+					List<String> parsed = getPredicates(stepPredicates);
+					if (i == steps.size() - 1) {
+						result.predicates.addAll(parsed);
+					} else {
+						result.ancestorPredicates.addAll(parsed);
+					}
+				}
+				names.add(name);
+				predicates.add(stepPredicates);
+				String fixedName = getFixedName(name, path, prefixMap);
+				if (fixedNames[i] == null) {
+					fixedNames[i] = fixedName;
+				} else if (!fixedNames[i].equals(fixedName)) {
+					String prefix = fixedNames[i].substring(0, fixedNames[i].indexOf(':') + 1);
+					if (!fixedName.startsWith(prefix)) {
+						throw new IllegalArgumentException(locationPath + " has paths with differing name spaces"); //$NON-NLS-1$
+					}
+					fixedNames[i] = prefix + "*"; //$NON-NLS-1$
+					mixed[i] = true;
+				}
+			}
+			altNames.add(names);
+			altPredicates.add(predicates);
+		}
 		
-		if (localNames.length == 1) {
-			throw new IllegalArgumentException(locationPath + " refers to only the root element"); //$NON-NLS-1$
+		StringBuilder fixedPath = new StringBuilder();
+		for (String name : fixedNames) {
+			fixedPath.append('/').append(name);
 		}
-
-		String fixedPath = ""; //$NON-NLS-1$
-				
-		// parse prefix:localName pairs and resolve prefixes to namespaceURIs
-		for (int i = 0; i < localNames.length; i++) {
-			fixedPath += "/"; //$NON-NLS-1$
-			int k = localNames[i].indexOf(':');
-			if (k >= 0 && localNames[i].indexOf(':', k+1) >= 0)
+		result.path = fixedPath.toString();
+		
+		//build the filter for the matched element
+		StringBuilder filter = new StringBuilder();
+		for (int i = 0; i < alternatives.size(); i++) {
+			List<String> names = altNames.get(i);
+			List<String> predicates = altPredicates.get(i);
+			int top = -1;
+			for (int j = 0; j < names.size(); j++) {
+				if (mixed[j] || predicates.get(j).length() > 0) {
+					top = j;
+					break;
+				}
+			}
+			if (top == -1) {
+				//an unconditional alternative
+				filter.setLength(0);
+				break;
+			}
+			String ancestor = null;
+			for (int j = top; j < names.size() - 1; j++) {
+				ancestor = "parent::" + names.get(j) + predicates.get(j) + (ancestor == null?"":"[" + ancestor + "]"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			}
+			if (filter.length() > 0) {
+				filter.append(" or "); //$NON-NLS-1$
+			}
+			filter.append("(self::").append(names.get(names.size() - 1)).append(predicates.get(names.size() - 1)); //$NON-NLS-1$
+			if (ancestor != null) {
+				filter.append('[').append(ancestor).append(']');
+			}
+			filter.append(')');
+		}
+		if (result.condition != null) {
+			if (filter.length() > 0) {
+				filter.insert(0, '(').append(") and "); //$NON-NLS-1$
+			}
+			filter.append('(').append(result.condition).append(')');
+		}
+		if (filter.length() > 0) {
+			result.filter = filter.toString();
+		}
+		return result;
+	}
+
+	private static String getFixedName(String name, String path, Map<String, String> prefixMap) {
+		int k = name.indexOf(':');
+		if (k >= 0 && name.indexOf(':', k+1) >= 0)
+			throw new IllegalArgumentException(
+				"QName must not contain more than one colon: " //$NON-NLS-1$
+				+ "qname='" + name + "', path='" + path + "'"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		String fixedName = null;
+		if (k <= 0) {
+			fixedName = SaxonXQueryExpression.DEFAULT_PREFIX+":"; //$NON-NLS-1$
+		} else {
+			String prefix = name.substring(0, k).trim();
+			if (k >= name.length() - 1)
 				throw new IllegalArgumentException(
-					"QName must not contain more than one colon: " //$NON-NLS-1$
-					+ "qname='" + localNames[i] + "', path='" + path + "'"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-			if (k <= 0) {
-				fixedPath += SaxonXQueryExpression.DEFAULT_PREFIX+":"; //$NON-NLS-1$
-			} else {
-				String prefix = localNames[i].substring(0, k).trim();
-				if (k >= localNames[i].length() - 1)
-					throw new IllegalArgumentException(
-						"Missing localName for prefix: " + "prefix='" //$NON-NLS-1$ //$NON-NLS-2$
-						+ prefix + "', path='" + path + "', prefixes=" + prefixMap); //$NON-NLS-1$ //$NON-NLS-2$
-				fixedPath += prefix + ":"; //$NON-NLS-1$
-			} // end if
-			
-			localNames[i] = localNames[i].substring(k + 1).trim();
-			if (!localNames[i].equals("*") && !Name11Checker.getInstance().isValidNCName(localNames[i])) { //$NON-NLS-1$
-				throw new IllegalArgumentException(localNames[i] + " is not a valid local name."); //$NON-NLS-1$
+					"Missing localName for prefix: " + "prefix='" //$NON-NLS-1$ //$NON-NLS-2$
+					+ prefix + "', path='" + path + "', prefixes=" + prefixMap); //$NON-NLS-1$ //$NON-NLS-2$
+			fixedName = prefix + ":"; //$NON-NLS-1$
+		} // end if
+		
+		String localName = name.substring(k + 1).trim();
+		if (!localName.equals("*") && !Name11Checker.getInstance().isValidNCName(localName)) { //$NON-NLS-1$
+			throw new IllegalArgumentException(localName + " is not a valid local name."); //$NON-NLS-1$
+		}
+		return fixedName + localName;
+	}
+	
+	/**
+	 * Get the predicate expressions from a string of [predicate]...
+	 */
+	private static List<String> getPredicates(String predicates) {
+		List<String> result = new ArrayList<String>(2);
+		int depth = 0;
+		int start = 0;
+		char quote = 0;
+		for (int i = 0; i < predicates.length(); i++) {
+			char c = predicates.charAt(i);
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+				continue;
+			}
+			if (c == '\'' || c == '"') {
+				quote = c;
+			} else if (c == '[') {
+				if (depth++ == 0) {
+					start = i + 1;
+				}
+			} else if (c == ']') {
+				if (--depth == 0) {
+					String predicate = predicates.substring(start, i).trim();
+					if (predicate.length() == 0) {
+						throw new IllegalArgumentException("Empty predicate " + predicates); //$NON-NLS-1$
+					}
+					result.add(predicate);
+				}
+			} else if (depth == 0 && !Character.isWhitespace(c)) {
+				throw new IllegalArgumentException("Unexpected characters after the predicate " + predicates); //$NON-NLS-1$
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Split the path on the given delimiter when it is not nested in a predicate, 
+	 * parenthesis or string literal.
+	 */
+	static List<String> split(String path, char delim) {
+		List<String> result = new ArrayList<String>();
+		int depth = 0;
+		int start = 0;
+		char quote = 0;
+		for (int i = 0; i < path.length(); i++) {
+			char c = path.charAt(i);
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+				continue;
 			}
-			fixedPath += localNames[i];
+			if (c == '\'' || c == '"') {
+				quote = c;
+			} else if (c == '[' || c == '(') {
+				depth++;
+			} else if (c == ']' || c == ')') {
+				depth--;
+			} else if (c == delim && depth == 0) {
+				result.add(path.substring(start, i));
+				start = i + 1;
+			}
+		}
+		if (depth != 0 || quote != 0) {
+			throw new IllegalArgumentException(path + " is not balanced"); //$NON-NLS-1$
 		}
-		return fixedPath;
+		result.add(path.substring(start));
+		return result;
 	}
 
 }
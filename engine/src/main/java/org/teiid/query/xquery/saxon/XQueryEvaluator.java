@@ -42,6 +42,7 @@ import net.sf.saxon.lib.AugmentedSource;
 import net.sf.saxon.om.DocumentInfo;
 import net.sf.saxon.om.NodeInfo;
 import net.sf.saxon.query.DynamicQueryContext;
+import net.sf.saxon.sxpath.XPathExpression;
 import net.sf.saxon.trans.XPathException;
 import net.sf.saxon.value.HexBinaryValue;
 import nu.xom.Builder;
@@ -129,7 +130,10 @@ public class XQueryEvaluator {
 						
 						final StreamingTransform myTransform = new StreamingTransform() {
 							public Nodes transform(Element elem) {
-								processor.processRow(XQueryEvaluator.wrap(elem, xquery.config));
+								NodeInfo row = XQueryEvaluator.wrap(elem, xquery.config);
+								if (xquery.streamingFilter == null || matches(xquery.streamingFilter, row)) {
+									processor.processRow(row);
+								}
 								return NONE;
 							}
 						};
@@ -175,6 +179,17 @@ public class XQueryEvaluator {
 	    }
 	}
 
+	/**
+	 * Check the streaming filter against the matched element 
+	 */
+	static boolean matches(XPathExpression filter, NodeInfo row) {
+		try {
+			return filter.effectiveBooleanValue(filter.createDynamicContext(row));
+		} catch (XPathException e) {
+			throw new TeiidRuntimeException(QueryPlugin.Event.TEIID30152, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30152));
+		}
+	}
+
 	private static Source wrapStax(Source value, Configuration config) throws TeiidProcessingException {
 		if (value instanceof StAXSource) {
 			//saxon doesn't like staxsources
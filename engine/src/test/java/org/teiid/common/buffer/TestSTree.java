@@ -105,6 +105,48 @@ public class TestSTree {
 				
 	}
 	
+	@Test public void testBulkLoad() throws TeiidComponentException, TeiidProcessingException {
+		BufferManagerImpl bm = BufferManagerFactory.createBufferManager();
+		bm.setProcessorBatchSize(4);
+		
+		ElementSymbol e1 = new ElementSymbol("x");
+		e1.setType(Integer.class);
+		ElementSymbol e2 = new ElementSymbol("y");
+		e2.setType(String.class);
+		List<ElementSymbol> elements = Arrays.asList(e1, e2);
+		STree map = bm.createSTree(elements, "1", 1);
+		
+		int size = (1<<16)+(1<<4)+1;
+		
+		STree.BulkLoader loader = map.bulkLoader(.75f);
+		for (int i = 0; i < size; i++) {
+			assertTrue(loader.append(Arrays.asList(i*2, String.valueOf(i))));
+		}
+		assertFalse(loader.append(Arrays.asList(0, "0")));
+		assertEquals(size, loader.finish());
+		assertEquals(size, map.getRowCount());
+		
+		for (int i = 0; i < size; i++) {
+			assertEquals(String.valueOf(i), map.find(Arrays.asList(i*2)).get(1));
+			assertNull(map.find(Arrays.asList(i*2 + 1)));
+		}
+		TupleSource ts = map.getTupleSource(false);
+		for (int i = 0; i < size; i++) {
+			assertEquals(i*2, ts.nextTuple().get(0));
+		}
+		assertNull(ts.nextTuple());
+		
+		//should still be updatable
+		assertNull(map.insert(Arrays.asList(-1, "x"), InsertMode.NEW, -1));
+		assertNull(map.insert(Arrays.asList(3, "x"), InsertMode.NEW, -1));
+		assertNotNull(map.insert(Arrays.asList(4, "2"), InsertMode.NEW, -1));
+		assertEquals(size + 2, map.getRowCount());
+		for (int i = 0; i < size; i++) {
+			assertNotNull(map.remove(Arrays.asList(i*2)));
+		}
+		assertEquals(2, map.getRowCount());
+	}
+	
 	@Test public void testStorageWrites() throws TeiidComponentException {
 		BufferManagerImpl bm = BufferManagerFactory.createBufferManager();
 		bm.setProcessorBatchSize(32);
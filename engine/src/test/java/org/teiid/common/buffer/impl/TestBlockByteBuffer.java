@@ -22,6 +22,8 @@
 
 package org.teiid.common.buffer.impl;
 
+import static org.junit.Assert.*;
+
 import org.junit.Test;
 
 public class TestBlockByteBuffer {
@@ -31,4 +33,27 @@ public class TestBlockByteBuffer {
 		bbb.getByteBuffer(1);
 	}
 	
+	@Test public void testLazySegments() {
+		BlockByteBuffer bbb = new BlockByteBuffer(8, 100, 4, false);
+		assertEquals(0, bbb.getAllocatedSegmentCount());
+		bbb.getByteBuffer(99).putInt(1);
+		assertEquals(1, bbb.getAllocatedSegmentCount());
+		BlockByteBuffer dup = bbb.duplicate();
+		assertEquals(1, dup.getByteBuffer(99).getInt());
+		dup.getByteBuffer(0);
+		assertEquals(2, bbb.getAllocatedSegmentCount());
+	}
+	
+	@Test public void testLargeSizing() {
+		//4GB, which should not be allocated up front
+		BlockByteBuffer bbb = new BlockByteBuffer(30, 1 << 19, 13, true);
+		assertEquals(0, bbb.getAllocatedSegmentCount());
+		try {
+			bbb.getByteBuffer(1 << 19);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+			
+		}
+	}
+	
 }
@@ -28,6 +28,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Random;
 
@@ -143,6 +144,60 @@ public class TestFileStorageManager {
     	fsos.close();
     }
 
+    @Test public void testChannels() throws Exception {
+    	FileStorageManager sm = getStorageManager(2, null);
+    	sm.setUseChannels(true);
+    	FileStore store = sm.createFileStore("0");
+    	assertEquals(-1, store.read(0, ByteBuffer.allocate(1)));
+    	byte[] expectedBytes = writeBytes(store, 2048);
+    	assertEquals(4096, sm.getUsedBufferSpace());
+    	
+    	ByteBuffer bb = ByteBuffer.allocateDirect(2048);
+    	store.readFully(2048, bb);
+    	assertFalse(bb.hasRemaining());
+    	bb.flip();
+    	byte[] bytesRead = new byte[2048];
+    	bb.get(bytesRead);
+    	assertArrayEquals(expectedBytes, bytesRead);
+    	
+    	bb.rewind();
+    	store.write(0, bb);
+    	store.readFully(0, bytesRead, 0, bytesRead.length);
+    	assertArrayEquals(expectedBytes, bytesRead);
+    	
+    	//cycle through more stores than open files
+    	for (int i = 1; i < 4; i++) {
+    		writeBytes(sm.createFileStore(String.valueOf(i)));
+    	}
+    	assertTrue(sm.getOpenFiles() <= 2);
+    	store.readFully(2048, bytesRead, 0, bytesRead.length);
+    	assertArrayEquals(expectedBytes, bytesRead);
+    	
+    	store.remove();
+    	assertEquals(3 * 2048, sm.getUsedBufferSpace());
+    }
+    
+    @Test public void testChannelsSplit() throws Exception {
+    	FileStorageManager sm = getStorageManager(null, null);
+    	sm.setUseChannels(true);
+    	SplittableStorageManager ssm = new SplittableStorageManager(sm);
+    	ssm.setMaxFileSizeDirect(1000);
+    	FileStore store = ssm.createFileStore("0");
+    	ByteBuffer bb = ByteBuffer.allocateDirect(2500);
+    	byte[] bytes = new byte[2500];
+    	r.nextBytes(bytes);
+    	bb.put(bytes);
+    	bb.flip();
+    	store.write(0, bb);
+    	assertEquals(2500, store.getLength());
+    	bb.clear();
+    	store.readFully(0, bb);
+    	bb.flip();
+    	byte[] bytesRead = new byte[2500];
+    	bb.get(bytesRead);
+    	assertArrayEquals(bytes, bytesRead);
+    }
+    
     static Random r = new Random();
     
 	static void writeBytes(FileStore store) throws IOException {
@@ -24,6 +24,9 @@ package org.teiid.common.buffer.impl;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Test;
@@ -42,6 +45,98 @@ public class TestLrfuEvictionQueue {
 		}
 	}
 	
+	@Test public void testOrdering() {
+		AtomicLong clock = new AtomicLong();
+		LrfuEvictionQueue<BaseCacheEntry> q = new LrfuEvictionQueue<BaseCacheEntry>(clock, 4);
+		List<BaseCacheEntry> entries = new ArrayList<BaseCacheEntry>();
+		Random r = new Random(1);
+		for (long i = 0; i < 1000; i++) {
+			BaseCacheEntry entry = new BaseCacheEntry(new CacheKey(i, 0, r.nextInt(100)));
+			entries.add(entry);
+			assertTrue(q.add(entry));
+		}
+		assertFalse(q.add(entries.get(0)));
+		assertEquals(1000, q.getSize());
+		assertEquals(1000, q.getEvictionQueue().size());
+		
+		//touch moves the entry to the end
+		clock.set(1<<20);
+		BaseCacheEntry first = q.firstEntry(false);
+		CacheKey key = first.getKey();
+		q.touch(first);
+		assertNotSame(first, q.firstEntry(false));
+		//the key is updated in place
+		assertSame(key, first.getKey());
+		assertEquals(1<<20, key.getLastAccess());
+		assertEquals(1000, q.getSize());
+		
+		assertTrue(q.remove(entries.get(500)));
+		assertFalse(q.remove(entries.get(500)));
+		
+		CacheKey last = null;
+		int count = 0;
+		for (BaseCacheEntry entry : q.getEvictionQueue()) {
+			if (last != null) {
+				assertTrue(last.compareTo(entry.getKey()) < 0);
+			}
+			last = entry.getKey();
+			count++;
+		}
+		assertEquals(999, count);
+		assertSame(first, q.getEvictionQueue().toArray()[998]);
+		
+		last = null;
+		BaseCacheEntry entry = null;
+		while ((entry = q.firstEntry(true)) != null) {
+			if (last != null) {
+				assertTrue(last.compareTo(entry.getKey()) < 0);
+			}
+			last = entry.getKey();
+			count--;
+		}
+		assertEquals(0, count);
+		assertEquals(0, q.getSize());
+	}
+	
+	@Test public void testConcurrentTouch() throws Exception {
+		final AtomicLong clock = new AtomicLong();
+		final LrfuEvictionQueue<BaseCacheEntry> q = new LrfuEvictionQueue<BaseCacheEntry>(clock, 8);
+		final List<BaseCacheEntry> entries = new ArrayList<BaseCacheEntry>();
+		for (long i = 0; i < 1000; i++) {
+			BaseCacheEntry entry = new BaseCacheEntry(new CacheKey(i, 0, 0));
+			entries.add(entry);
+			q.add(entry);
+		}
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			final int seed = i;
+			threads[i] = new Thread() {
+				public void run() {
+					Random r = new Random(seed);
+					for (int j = 0; j < 20000; j++) {
+						BaseCacheEntry entry = entries.get(r.nextInt(entries.size()));
+						synchronized (entry) {
+							clock.addAndGet(1<<10);
+							q.touch(entry);
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(1000, q.getSize());
+		int count = 0;
+		while (q.firstEntry(true) != null) {
+			count++;
+		}
+		assertEquals(1000, count);
+		q.getEvictionQueue().clear();
+		assertEquals(0, q.getSize());
+	}
+	
 	@Test public void testKeyCompare() {
 		CacheKey key = new CacheKey(-5600000000000000000l, 0l, 0l);
 		CacheKey key1 = new CacheKey(3831662765844904176l, 0l, 0l);
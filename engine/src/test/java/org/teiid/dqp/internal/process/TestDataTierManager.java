@@ -346,6 +346,154 @@ public class TestDataTierManager {
     	assertEquals(0, this.rm.getRsCache().getCachePutCount());
     }
     
+    @Test public void testSourceQueryCache() throws Exception {
+    	QueryMetadataInterface metadata = RealMetadataFactory.exampleBQTCached();
+    	helpSetupDataTierManager();
+    	SourceQueryCache cache = new SourceQueryCache(rm.getBufferManager(), 10, SourceQueryCache.DEFAULT_TTL);
+    	rm.setSourceQueryCache(cache);
+    	//keep the load pending long enough for the second request to attach
+    	connectorManager.setSleep(200);
+    	TupleSource ts = helpRegisterSourceQueryCacheRequest(metadata);
+    	assertTrue(ts instanceof SourceQueryCache.SharedTupleSource);
+    	
+    	//concurrent request should attach to the load
+    	TupleSource ts1 = helpRegisterSourceQueryCacheRequest(metadata);
+    	assertTrue(ts1 instanceof SourceQueryCache.SharedTupleSource);
+    	
+    	assertEquals(10, pullTuples(ts, -1));
+    	assertEquals(10, pullTuples(ts1, -1));
+    	ts.closeSource();
+    	ts1.closeSource();
+    	assertEquals(1, connectorManager.getExecuteCount().get());
+    	
+    	//later request reads the completed results
+    	ts = helpRegisterSourceQueryCacheRequest(metadata);
+    	assertEquals(10, pullTuples(ts, -1));
+    	ts.closeSource();
+    	assertEquals(1, connectorManager.getExecuteCount().get());
+    	//the load and the unused work of each hit are closed
+    	assertEquals(3, connectorManager.getCloseCount().get());
+    	
+    	assertEquals(3, cache.getRequestCount());
+    	assertEquals(2, cache.getCacheHitCount());
+    	assertEquals(1, cache.getCoalescedCount());
+    	assertEquals(1, cache.getTotalCacheEntries());
+    	assertEquals(3, cache.getCacheStatistics("example1", 1, "foo").getRequestCount());
+    }
+
+	private TupleSource helpRegisterSourceQueryCacheRequest(QueryMetadataInterface metadata) throws Exception {
+		Command command = helpSetupRequest("SELECT stringkey from bqt1.smalla", 1, metadata).getCommand();
+    	RegisterRequestParameter rrp = new RegisterRequestParameter();
+    	rrp.connectorBindingId = "x";
+    	return dtm.registerRequest(context, command, "foo", rrp);
+	}
+    
+    @Test public void testSourceQueryCacheIncompleteLoad() throws Exception {
+    	QueryMetadataInterface metadata = RealMetadataFactory.exampleBQTCached();
+    	helpSetupDataTierManager();
+    	SourceQueryCache cache = new SourceQueryCache(rm.getBufferManager(), 10, SourceQueryCache.DEFAULT_TTL);
+    	rm.setSourceQueryCache(cache);
+    	connectorManager.setSleep(200);
+    	TupleSource ts = helpRegisterSourceQueryCacheRequest(metadata);
+    	//closing the only reader cancels the load
+    	ts.closeSource();
+    	assertEquals(0, cache.getTotalCacheEntries());
+    	
+    	connectorManager.setSleep(0);
+    	ts = helpRegisterSourceQueryCacheRequest(metadata);
+    	assertEquals(10, pullTuples(ts, -1));
+    	ts.closeSource();
+    	assertEquals(0, cache.getCacheHitCount());
+    	assertEquals(1, cache.getTotalCacheEntries());
+    }
+    
+    @Test public void testSourceQueryCacheLoadIndependentOfReaders() throws Exception {
+    	QueryMetadataInterface metadata = RealMetadataFactory.exampleBQTCached();
+    	helpSetupDataTierManager();
+    	SourceQueryCache cache = new SourceQueryCache(rm.getBufferManager(), 10, SourceQueryCache.DEFAULT_TTL);
+    	rm.setSourceQueryCache(cache);
+    	connectorManager.setSleep(200);
+    	TupleSource ts = helpRegisterSourceQueryCacheRequest(metadata);
+    	RequestWorkItem loadingItem = workItem;
+    	TupleSource ts1 = helpRegisterSourceQueryCacheRequest(metadata);
+    	
+    	//the first request never reads, but the second still gets all of the rows
+    	assertEquals(10, pullTuples(ts1, -1));
+    	ts1.closeSource();
+    	
+    	//nor does canceling and closing the first request abandon the load
+    	TupleSource ts2 = helpRegisterSourceQueryCacheRequest(metadata);
+    	loadingItem.requestCancel();
+    	ts.closeSource();
+    	assertEquals(10, pullTuples(ts2, -1));
+    	ts2.closeSource();
+    	assertEquals(1, connectorManager.getExecuteCount().get());
+    	assertEquals(1, cache.getTotalCacheEntries());
+    }
+    
+    @Test public void testSourceQueryCacheLoadError() throws Exception {
+    	QueryMetadataInterface metadata = RealMetadataFactory.exampleBQTCached();
+    	helpSetupDataTierManager();
+    	SourceQueryCache cache = new SourceQueryCache(rm.getBufferManager(), 10, SourceQueryCache.DEFAULT_TTL);
+    	rm.setSourceQueryCache(cache);
+    	connectorManager.throwExceptionOnExecute = true;
+    	connectorManager.setSleep(200);
+    	TupleSource ts = helpRegisterSourceQueryCacheRequest(metadata);
+    	CommandContext context1 = context;
+    	TupleSource ts1 = helpRegisterSourceQueryCacheRequest(metadata);
+    	
+    	//both readers see the single failure as a partial results warning
+    	assertEquals(0, pullTuples(ts, -1));
+    	assertEquals(0, pullTuples(ts1, -1));
+    	SourceWarning warning = (SourceWarning) context1.getAndClearWarnings().get(0);
+    	assertTrue(warning.isPartialResultsError());
+    	warning = (SourceWarning) context.getAndClearWarnings().get(0);
+    	assertTrue(warning.isPartialResultsError());
+    	ts.closeSource();
+    	ts1.closeSource();
+    	assertEquals(1, connectorManager.getExecuteCount().get());
+    	assertEquals(0, cache.getTotalCacheEntries());
+    }
+    
+    @Test public void testSourceQueryCacheDataNotAvailable() throws Exception {
+    	QueryMetadataInterface metadata = RealMetadataFactory.exampleBQTCached();
+    	helpSetupDataTierManager();
+    	SourceQueryCache cache = new SourceQueryCache(rm.getBufferManager(), 10, SourceQueryCache.DEFAULT_TTL);
+    	rm.setSourceQueryCache(cache);
+    	connectorManager.dataNotAvailable = 100;
+    	TupleSource ts = helpRegisterSourceQueryCacheRequest(metadata);
+    	assertEquals(10, pullTuples(ts, -1));
+    	ts.closeSource();
+    	assertEquals(1, cache.getTotalCacheEntries());
+    }
+    
+    @Test public void testSourceQueryCacheSelfJoin() throws Exception {
+    	QueryMetadataInterface metadata = RealMetadataFactory.exampleBQTCached();
+    	helpSetupDataTierManager();
+    	SourceQueryCache cache = new SourceQueryCache(rm.getBufferManager(), 10, SourceQueryCache.DEFAULT_TTL);
+    	rm.setSourceQueryCache(cache);
+    	connectorManager.setSleep(200);
+    	Command command = helpSetupRequest("SELECT stringkey from bqt1.smalla", 1, metadata).getCommand();
+    	RegisterRequestParameter rrp = new RegisterRequestParameter();
+    	rrp.connectorBindingId = "x";
+    	TupleSource ts = dtm.registerRequest(context, command, "foo", rrp);
+    	
+    	//the same work item may share its own load as the load does not depend on the plan
+    	rrp = new RegisterRequestParameter();
+    	rrp.connectorBindingId = "x";
+    	TupleSource ts1 = dtm.registerRequest(context, command, "foo", rrp);
+    	assertTrue(ts1 instanceof SourceQueryCache.SharedTupleSource);
+    	
+    	//read the second side first
+    	assertEquals(10, pullTuples(ts1, -1));
+    	assertEquals(10, pullTuples(ts, -1));
+    	ts1.closeSource();
+    	ts.closeSource();
+    	assertEquals(1, connectorManager.getExecuteCount().get());
+    	assertEquals(1, cache.getCoalescedCount());
+    	assertEquals(1, cache.getTotalCacheEntries());
+    }
+    
     @Test public void testCheckForUpdatesWithBatched() throws Exception {
     	helpSetupDataTierManager();
     	QueryMetadataInterface metadata = RealMetadataFactory.exampleBQTCached();
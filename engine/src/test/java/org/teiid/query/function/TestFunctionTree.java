@@ -31,6 +31,7 @@ import java.util.Collection;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.teiid.core.TeiidRuntimeException;
+import org.teiid.core.types.ArrayImpl;
 import org.teiid.core.types.BinaryType;
 import org.teiid.core.types.DataTypeManager;
 import org.teiid.metadata.FunctionMethod;
@@ -76,6 +77,14 @@ public class TestFunctionTree {
     	return new String(bytes);
     }
     
+    public static String join(String a, Integer b) {
+    	return a + b;
+    }
+    
+    public static String join(String a, Integer... b) {
+    	return a + Arrays.toString(b);
+    }
+    
     @Test public void testLoadErrors() {
     	FunctionMethod method = new FunctionMethod(
     			"dummy", null, null, PushDown.CAN_PUSHDOWN, null, "noMethod",  //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ 
@@ -172,10 +181,54 @@ public class TestFunctionTree {
     	FunctionTree sys = RealMetadataFactory.SFM.getSystemFunctions();
     	FunctionLibrary fl = new FunctionLibrary(sys, new FunctionTree("foo", new UDFSource(Arrays.asList(method)), true));
     	FunctionDescriptor fd = fl.findFunction("dummy", new Class<?>[] {DataTypeManager.DefaultDataClasses.VARBINARY});
+    	//wrapped arguments are not invoked directly
+    	assertFalse(fd.isFixedArity());
     	String hello = "hello";
     	assertEquals(hello, fd.invokeFunction(new Object[] {new BinaryType(hello.getBytes())}, null, null));
     }
     
+    @Test public void testFixedArity() throws Exception {
+    	FunctionMethod method = new FunctionMethod(
+    			"dummy", null, null, PushDown.CANNOT_PUSHDOWN, TestFunctionTree.class.getName(), "join",  //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ 
+	 	    	Arrays.asList(new FunctionParameter("a", DataTypeManager.DefaultDataTypes.STRING), new FunctionParameter("b", DataTypeManager.DefaultDataTypes.INTEGER)), //$NON-NLS-1$ //$NON-NLS-2$ 
+	 	    	new FunctionParameter("output", DataTypeManager.DefaultDataTypes.STRING), //$NON-NLS-1$
+	 	    	true, Determinism.DETERMINISTIC);
+    	FunctionTree sys = RealMetadataFactory.SFM.getSystemFunctions();
+    	FunctionLibrary fl = new FunctionLibrary(sys, new FunctionTree("foo", new UDFSource(Arrays.asList(method)), true));
+    	FunctionDescriptor fd = fl.findFunction("dummy", new Class<?>[] {DataTypeManager.DefaultDataClasses.STRING, DataTypeManager.DefaultDataClasses.INTEGER});
+    	assertTrue(fd.isFixedArity());
+    	assertEquals("a1", fd.invokeFunction(new Object[] {"a", 1}, null, null));
+    	assertNull(fd.invokeFunction(new Object[] {"a", null}, null, null));
+    	
+    	FunctionDescriptor concat = fl.findFunction(FunctionLibrary.CONCAT, new Class<?>[] {DataTypeManager.DefaultDataClasses.STRING, DataTypeManager.DefaultDataClasses.STRING});
+    	assertTrue(concat.isFixedArity());
+    	assertEquals("ab", concat.invokeFunction(new Object[] {"a", "b"}, null, null));
+    }
+    
+    @Test public void testVarArgs() throws Exception {
+    	FunctionParameter varArg = new FunctionParameter("b", DataTypeManager.DefaultDataTypes.INTEGER); //$NON-NLS-1$
+    	varArg.setVarArg(true);
+    	FunctionMethod method = new FunctionMethod(
+    			"dummy", null, null, PushDown.CANNOT_PUSHDOWN, TestFunctionTree.class.getName(), "join",  //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ 
+	 	    	Arrays.asList(new FunctionParameter("a", DataTypeManager.DefaultDataTypes.STRING), varArg), //$NON-NLS-1$ 
+	 	    	new FunctionParameter("output", DataTypeManager.DefaultDataTypes.STRING), //$NON-NLS-1$
+	 	    	true, Determinism.DETERMINISTIC);
+    	FunctionTree sys = RealMetadataFactory.SFM.getSystemFunctions();
+    	FunctionLibrary fl = new FunctionLibrary(sys, new FunctionTree("foo", new UDFSource(Arrays.asList(method)), true));
+    	FunctionDescriptor fd = fl.findFunction("dummy", new Class<?>[] {DataTypeManager.DefaultDataClasses.STRING, DataTypeManager.DefaultDataClasses.INTEGER, DataTypeManager.DefaultDataClasses.INTEGER});
+    	assertFalse(fd.isFixedArity());
+    	assertEquals("a[1, 2]", fd.invokeFunction(new Object[] {"a", 1, 2}, null, null));
+    	
+    	fd = fl.findFunction("dummy", new Class<?>[] {DataTypeManager.DefaultDataClasses.STRING});
+    	assertFalse(fd.isFixedArity());
+    	assertEquals("a[]", fd.invokeFunction(new Object[] {"a"}, null, null));
+    	
+    	//passing the varargs as an array
+    	fd = fd.clone();
+    	fd.setCalledWithVarArgArrayParam(true);
+    	assertEquals("a[3, 4]", fd.invokeFunction(new Object[] {"a", new ArrayImpl(3, 4)}, null, null));
+    }
+    
     @Test public void testMultiPartName() throws Exception {
     	FunctionMethod method = new FunctionMethod(
     			"x.y.dummy", null, null, PushDown.CANNOT_PUSHDOWN, TestFunctionTree.class.getName(), "toString",  //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ 
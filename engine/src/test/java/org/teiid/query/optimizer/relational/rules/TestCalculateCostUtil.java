@@ -31,6 +31,7 @@ import org.junit.Test;
 import org.teiid.api.exception.query.QueryMetadataException;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
+import org.teiid.core.types.DataTypeManager;
 import org.teiid.metadata.Column;
 import org.teiid.query.metadata.QueryMetadataInterface;
 import org.teiid.query.metadata.TransformationMetadata;
@@ -44,9 +45,11 @@ import org.teiid.query.parser.QueryParser;
 import org.teiid.query.processor.TestVirtualDepJoin;
 import org.teiid.query.processor.relational.RelationalPlan;
 import org.teiid.query.resolver.QueryResolver;
+import org.teiid.query.resolver.util.ResolverVisitor;
 import org.teiid.query.rewriter.QueryRewriter;
 import org.teiid.query.sql.lang.Criteria;
 import org.teiid.query.sql.lang.JoinType;
+import org.teiid.query.sql.symbol.ElementSymbol;
 import org.teiid.query.unittest.RealMetadataFactory;
 import org.teiid.query.util.CommandContext;
 
@@ -778,4 +781,29 @@ public class TestCalculateCostUtil {
     	helpTestSetOp("INTERSECT ", 375000.0f); //$NON-NLS-1$
     }
 
+    @Test public void testUseHashGroupingNotHashable() throws Exception {
+    	TransformationMetadata metadata = RealMetadataFactory.example1();
+    	RealMetadataFactory.setCardinality("pm1.g1", 10000, metadata);
+    	Column e1 = metadata.getElementID("pm1.g1.e1");
+    	e1.setDistinctValues(10);
+    	ElementSymbol es = new ElementSymbol("pm1.g1.e1");
+    	ResolverVisitor.resolveLanguageObject(es, metadata);
+    	
+    	PlanNode group = NodeFactory.getNewNode(NodeConstants.Types.GROUP);
+    	PlanNode source = NodeFactory.getNewNode(NodeConstants.Types.SOURCE);
+    	source.addGroup(es.getGroupSymbol());
+    	source.setProperty(NodeConstants.Info.OUTPUT_COLS, Arrays.asList(es));
+    	group.addFirstChild(source);
+    	NewCalculateCostUtil.computeCostForTree(source, metadata);
+    	
+    	group.setProperty(NodeConstants.Info.GROUP_COLS, Arrays.asList(es));
+    	assertTrue(NewCalculateCostUtil.useHashGrouping(group, metadata, 1000));
+    	
+    	//the grouping values must be hashable, as with a hash join
+    	ElementSymbol object = es.clone();
+    	object.setType(DataTypeManager.DefaultDataClasses.OBJECT);
+    	group.setProperty(NodeConstants.Info.GROUP_COLS, Arrays.asList(object));
+    	assertFalse(NewCalculateCostUtil.useHashGrouping(group, metadata, 1000));
+    }
+
 }
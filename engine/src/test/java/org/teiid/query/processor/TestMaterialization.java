@@ -28,10 +28,12 @@ import static org.junit.Assert.*;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.Mockito;
 import org.teiid.cache.DefaultCacheFactory;
 import org.teiid.common.buffer.BufferManager;
 import org.teiid.common.buffer.BufferManagerFactory;
@@ -39,6 +41,11 @@ import org.teiid.core.TeiidProcessingException;
 import org.teiid.dqp.internal.process.CachedResults;
 import org.teiid.dqp.internal.process.QueryProcessorFactoryImpl;
 import org.teiid.dqp.internal.process.SessionAwareCache;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.logging.Logger;
+import org.teiid.logging.MessageLevel;
+import org.teiid.metadata.Table;
 import org.teiid.query.metadata.TempMetadataAdapter;
 import org.teiid.query.metadata.TempMetadataID;
 import org.teiid.query.metadata.TransformationMetadata;
@@ -47,6 +54,7 @@ import org.teiid.query.optimizer.capabilities.DefaultCapabilitiesFinder;
 import org.teiid.query.optimizer.relational.RelationalPlanner;
 import org.teiid.query.tempdata.GlobalTableStoreImpl;
 import org.teiid.query.tempdata.GlobalTableStoreImpl.MatTableInfo;
+import org.teiid.query.tempdata.MatViewDeltaAnalyzer;
 import org.teiid.query.tempdata.TempTableDataManager;
 import org.teiid.query.tempdata.TempTableStore;
 import org.teiid.query.tempdata.TempTableStore.TransactionMode;
@@ -176,4 +184,159 @@ public class TestMaterialization {
 		assertEquals("SELECT MatView.VGroup2a.*, ucase(x) FROM MatView.VGroup2a option nocache MatView.VGroup2a", id.getQueryNode().getQuery());
 	}
     
+	@Test public void testIncrementalRefreshCommands() throws Exception {
+		TransformationMetadata tm = RealMetadataFactory.fromDDL("create foreign table orders (id integer primary key, cust_id integer, amount double); "
+				+ "create foreign table customer (id integer primary key, name string); "
+				+ "create view order_view (id integer primary key, cust_id integer, name string) options (materialized true) as /*+ cache(updatable) */ select o.id, o.cust_id, c.name from orders o inner join customer c on o.cust_id = c.id; "
+				+ "create view cust_totals (cust_id integer primary key, total double) options (materialized true) as /*+ cache(updatable) */ select o.cust_id, sum(o.amount) from orders o group by o.cust_id; "
+				+ "create view cust_view (id integer primary key, name string, order_count integer) options (materialized true) as /*+ cache(updatable) */ select c.id, c.name, (select count(*) from orders where cust_id = c.id) from customer c; "
+				+ "create view order_cust (cust_id integer primary key, name string) options (materialized true) as /*+ cache(updatable) */ select distinct c.id, c.name from orders o, customer c where o.cust_id = c.id;", "x", "y");
+		Table orders = tm.getMetadataStore().getSchema("y").getTable("orders");
+		Table customer = tm.getMetadataStore().getSchema("y").getTable("customer");
+		
+		//projected and join equated keys, but not subquery references
+		assertEquals(Arrays.asList("EXEC SYSADMIN.refreshMatViewRows('y.cust_totals', (2,), (3,))",
+				"EXEC SYSADMIN.refreshMatViewRows('y.order_cust', (2,), (3,))",
+				"EXEC SYSADMIN.refreshMatViewRows('y.order_view', (1,))"), 
+				MatViewDeltaAnalyzer.getRefreshCommands(tm, orders, null, Arrays.asList(1, 2, 1.0), Arrays.asList(1, 3, 1.0)));
+		
+		//only the key columns are needed
+		assertEquals(Arrays.asList("EXEC SYSADMIN.refreshMatViewRows('y.cust_totals', (2,))", 
+				"EXEC SYSADMIN.refreshMatViewRows('y.order_cust', (2,))", 
+				"EXEC SYSADMIN.refreshMatViewRows('y.order_view', (1,))"), 
+				MatViewDeltaAnalyzer.getRefreshCommands(tm, orders, Arrays.asList("cust_id", "id"), null, Arrays.asList(2, 1)));
+		
+		//order_view is keyed by the other table
+		assertEquals(Arrays.asList("EXEC SYSADMIN.refreshMatViewRows('y.cust_view', (2,))", 
+				"EXEC SYSADMIN.refreshMatViewRows('y.order_cust', (2,))"), 
+				MatViewDeltaAnalyzer.getRefreshCommands(tm, customer, null, Arrays.asList(2, "a"), Arrays.asList(2, "b")));
+		
+		//the view analysis is cached with the metadata instance
+		tm.getMetadataStore().getSchema("y").getTable("order_view").setPrimaryKey(null);
+		assertEquals(Arrays.asList("EXEC SYSADMIN.refreshMatViewRows('y.order_view', (1,))"), 
+				MatViewDeltaAnalyzer.getRefreshCommands(tm, orders, Arrays.asList("id"), null, Arrays.asList(1)));
+		
+		//and is recomputed for reloaded metadata
+		TransformationMetadata reloaded = RealMetadataFactory.createTransformationMetadata(tm.getMetadataStore(), "x");
+		assertEquals(Collections.emptyList(), 
+				MatViewDeltaAnalyzer.getRefreshCommands(reloaded, orders, Arrays.asList("id"), null, Arrays.asList(1)));
+	}
+	
+	@Test public void testIncrementalRefreshExternal() throws Exception {
+		TransformationMetadata tm = RealMetadataFactory.fromDDL("create foreign table orders (id integer, line integer, amount double, primary key (id, line)); "
+				+ "create foreign table mat_orders (id integer, line integer, amount double, primary key (id, line)); "
+				+ "create view order_view (id integer, line integer, amount double, primary key (id, line)) options (materialized true, materialized_table 'y.mat_orders', \"teiid_rel:ALLOW_MATVIEW_MANAGEMENT\" true) as select id, line, amount from orders; "
+				+ "create view order_view1 (id integer primary key, amount double) options (materialized true, materialized_table 'y.mat_orders') as select id, amount from orders where line = 1;", "x", "y");
+		Table orders = tm.getMetadataStore().getSchema("y").getTable("orders");
+		
+		assertEquals(Arrays.asList("EXEC SYSADMIN.updateMatView('y', 'order_view', '(id = 1) AND (line = 2)')"), 
+				MatViewDeltaAnalyzer.getRefreshCommands(tm, orders, null, null, Arrays.asList(1, 2, 1.0)));
+	}
+    
+	@Test public void testPartitionedLoad() throws Exception {
+		TransformationMetadata tm = RealMetadataFactory.fromDDL("create foreign table t (id integer primary key, name string); "
+				+ "create view v (id integer primary key, name string) options (materialized true, \"teiid_rel:MATVIEW_LOAD_PARTITIONS\" 2) as select id, name from t;", "x", "y");
+		globalStore = new GlobalTableStoreImpl(BufferManagerFactory.getStandaloneBufferManager(), tm.getVdbMetaData(), tm);
+		metadata = new TempMetadataAdapter(tm, tempStore.getMetadataStore());
+		hdm.addData("SELECT y.t.id FROM y.t", new List[] {Arrays.asList(4), Arrays.asList(1), Arrays.asList(3), Arrays.asList(2)});
+		hdm.addData("SELECT y.t.id, y.t.name FROM y.t", new List[] {Arrays.asList(4, "d"), Arrays.asList(1, "a"), Arrays.asList(3, "c"), Arrays.asList(2, "b")});
+		
+		execute("SELECT * from v", Arrays.asList(1, "a"), Arrays.asList(2, "b"), Arrays.asList(3, "c"), Arrays.asList(4, "d"));
+		//the bounds query and two partitions
+		assertEquals(3, hdm.getCommandHistory().size());
+		assertEquals(4, globalStore.getTempTable(RelationalPlanner.MAT_PREFIX + "Y.V").getRowCount());
+	}
+	
+	@Test public void testPartitionedLoadBlocked() throws Exception {
+		TransformationMetadata tm = RealMetadataFactory.fromDDL("create foreign table t (id integer primary key, name string); "
+				+ "create view v (id integer primary key, name string) options (materialized true, \"teiid_rel:MATVIEW_LOAD_PARTITIONS\" 3) as select id, name from t;", "x", "y");
+		globalStore = new GlobalTableStoreImpl(BufferManagerFactory.getStandaloneBufferManager(), tm.getVdbMetaData(), tm);
+		metadata = new TempMetadataAdapter(tm, tempStore.getMetadataStore());
+		List<?>[] ids = new List<?>[100];
+		List<?>[] rows = new List<?>[100];
+		for (int i = 0; i < rows.length; i++) {
+			int id = (i * 37) % 100;
+			ids[i] = Arrays.asList(id);
+			rows[i] = Arrays.asList(id, String.valueOf(id));
+		}
+		hdm.addData("SELECT y.t.id FROM y.t", ids);
+		hdm.addData("SELECT y.t.id, y.t.name FROM y.t", rows);
+		//the partition sources block, so the insert must resume
+		hdm.setBlockOnce(true);
+		
+		execute("SELECT count(*), min(id), max(id) from v", Arrays.asList(100, 0, 99));
+		assertEquals(4, hdm.getCommandHistory().size());
+		assertEquals(100, globalStore.getTempTable(RelationalPlanner.MAT_PREFIX + "Y.V").getRowCount());
+	}
+	
+	@Test public void testSecondaryIndexes() throws Exception {
+		TransformationMetadata tm = RealMetadataFactory.fromDDL("create foreign table t (id integer primary key, a integer, b integer, c string); "
+				+ "create view v (id integer primary key, a integer, b integer, c string, index (a) options (\"teiid_rel:MATVIEW_INDEX_INCLUDE\" 'c'), index (b)) options (materialized true) as /*+ cache(updatable) */ select id, a, b, c from t;", "x", "y");
+		globalStore = new GlobalTableStoreImpl(BufferManagerFactory.getStandaloneBufferManager(), tm.getVdbMetaData(), tm);
+		metadata = new TempMetadataAdapter(tm, tempStore.getMetadataStore());
+		hdm.addData("SELECT y.t.id, y.t.a, y.t.b, y.t.c FROM y.t", new List[] {Arrays.asList(1, 1, 1, "a"), Arrays.asList(2, 1, 2, "b"), Arrays.asList(3, 2, 2, "c"), Arrays.asList(4, 2, 1, "d")});
+		
+		//covered by the included column
+		execute("SELECT c from v where a = 1 order by c", Arrays.asList("a"), Arrays.asList("b"));
+		//intersection of both indexes
+		execute("SELECT id from v where a = 2 and b = 2", Arrays.asList(3));
+		execute("SELECT id, c from v where a = 1 and b = 2", Arrays.asList(2, "b"));
+		
+		//the indexes should be maintained
+		String matTableName = RelationalPlanner.MAT_PREFIX + "Y.V";
+		globalStore.updateMatViewRow(matTableName, Arrays.asList(2, 2, 2, "x"), false);
+		execute("SELECT c from v where a = 2 order by c", Arrays.asList("c"), Arrays.asList("d"), Arrays.asList("x"));
+		execute("SELECT id from v where a = 2 and b = 2 order by id", Arrays.asList(2), Arrays.asList(3));
+		execute("SELECT id from v where a = 1", Arrays.asList(1));
+		globalStore.updateMatViewRow(matTableName, Arrays.asList(3), true);
+		execute("SELECT id from v where a = 2 and b = 2", Arrays.asList(2));
+		globalStore.updateMatViewRow(matTableName, Arrays.asList(5, 1, 2, "e"), false);
+		execute("SELECT id, c from v where a = 1 and b = 2", Arrays.asList(5, "e"));
+	}
+	
+	@Test public void testSecondaryIndexIntersectionBound() throws Exception {
+		TransformationMetadata tm = RealMetadataFactory.fromDDL("create foreign table t (id integer primary key, a integer, b integer, c integer); "
+				+ "create view v (id integer primary key, a integer, b integer, c integer, unique (a), index (b), index (c)) options (materialized true) as /*+ cache(updatable) */ select id, a, b, c from t;", "x", "y");
+		globalStore = new GlobalTableStoreImpl(BufferManagerFactory.getStandaloneBufferManager(), tm.getVdbMetaData(), tm);
+		metadata = new TempMetadataAdapter(tm, tempStore.getMetadataStore());
+		//enough rows that the broad index is cheaper than a scan
+		List<?>[] rows = new List<?>[32];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = Arrays.asList(i, i, 1, i % 8);
+		}
+		hdm.addData("SELECT y.t.id, y.t.a, y.t.b, y.t.c FROM y.t", rows);
+		execute("SELECT id from v where a = 1", Arrays.asList(1));
+		
+		Logger logger = Mockito.mock(Logger.class);
+		Mockito.stub(logger.isEnabled(Mockito.anyString(), Mockito.anyInt())).toReturn(true);
+		LogManager.setLogListener(logger);
+		try {
+			//the selective key lookup should not read the keys of the broad index
+			execute("SELECT id from v where a = 2 and b = 1", Arrays.asList(2));
+			Mockito.verify(logger, Mockito.never()).log(Mockito.eq(MessageLevel.DETAIL), Mockito.eq(LogConstants.CTX_DQP), Mockito.eq("Intersecting index"), Mockito.any(), Mockito.eq("covering:"), Mockito.any()); //$NON-NLS-1$ //$NON-NLS-2$
+			
+			//indexes of similar cost are still intersected
+			execute("SELECT id from v where b = 1 and c = 2", Arrays.asList(2), Arrays.asList(10), Arrays.asList(18), Arrays.asList(26));
+			Mockito.verify(logger).log(Mockito.eq(MessageLevel.DETAIL), Mockito.eq(LogConstants.CTX_DQP), Mockito.eq("Intersecting index"), Mockito.any(), Mockito.eq("covering:"), Mockito.any()); //$NON-NLS-1$ //$NON-NLS-2$
+		} finally {
+			LogManager.setLogListener(null);
+		}
+	}
+	
+	@Test public void testSecondaryIndexCount() throws Exception {
+		TransformationMetadata tm = RealMetadataFactory.fromDDL("create foreign table t (id integer primary key, a integer, b integer); "
+				+ "create view v (id integer primary key, a integer, b integer, index (a), index (b)) options (materialized true) as select id, a, b from t;", "x", "y");
+		globalStore = new GlobalTableStoreImpl(BufferManagerFactory.getStandaloneBufferManager(), tm.getVdbMetaData(), tm);
+		metadata = new TempMetadataAdapter(tm, tempStore.getMetadataStore());
+		List<?>[] rows = new List<?>[1000];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = Arrays.asList(i, i%10, i%7);
+		}
+		hdm.addData("SELECT y.t.id, y.t.a, y.t.b FROM y.t", rows);
+		
+		//the non-covering index supplies the primary keys, the count must be of the matching rows
+		execute("SELECT count(*) from v where a = 3", Arrays.asList(100));
+		execute("SELECT count(*) from v where a = 3 and b = 3", Arrays.asList(15));
+	}
+    
 }
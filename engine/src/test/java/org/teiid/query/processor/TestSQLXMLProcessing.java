@@ -30,6 +30,7 @@ import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.sql.Blob;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -59,10 +60,16 @@ import org.teiid.metadata.Table;
 import org.teiid.query.mapping.relational.QueryNode;
 import org.teiid.query.metadata.TransformationMetadata;
 import org.teiid.query.optimizer.capabilities.DefaultCapabilitiesFinder;
+import org.teiid.query.sql.LanguageVisitor;
+import org.teiid.query.sql.lang.Command;
+import org.teiid.query.sql.lang.XMLTable;
+import org.teiid.query.sql.navigator.DeepPreOrderNavigator;
 import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.sql.symbol.XMLQuery;
 import org.teiid.query.unittest.RealMetadataFactory;
 import org.teiid.query.unittest.TimestampUtil;
 import org.teiid.query.util.CommandContext;
+import org.teiid.query.xquery.saxon.SaxonXQueryExpression;
 
 @SuppressWarnings({"nls", "unchecked"})
 public class TestSQLXMLProcessing {
@@ -684,6 +691,58 @@ public class TestSQLXMLProcessing {
         process(sql, expected);
     }
     
+    @Test public void testXmlTableStreamingPredicates() throws Exception {
+        String sql = "select * from xmltable('/a[@x=''1'']/b[@y > 1]' passing xmlparse(document '<a x=''1''><b y=''1''>foo</b><b y=''2''>bar</b></a>') columns y string path '.', x integer path '../@x') as x"; //$NON-NLS-1$
+        List<?>[] expected = new List<?>[] {
+        		Arrays.asList("bar", 1),
+        };    
+        processStreaming(sql, expected, true);
+    }
+    
+    @Test public void testXmlTableStreamingPositionalPredicate() throws Exception {
+        String sql = "select * from xmltable('/a/b[1]' passing xmlparse(document '<a><b>foo</b><b>bar</b></a>') columns y string path '.') as x"; //$NON-NLS-1$
+        List<?>[] expected = new List<?>[] {
+        		Arrays.asList("foo"),
+        };    
+        processStreaming(sql, expected, false);
+    }
+    
+    @Test public void testXmlTableStreamingSiblingPaths() throws Exception {
+        String sql = "select * from xmltable('/a/b | /a/c' passing xmlparse(document '<a><b>1</b><d>2</d><c>3</c><b>4</b></a>') columns y string path '.', z for ordinality) as x"; //$NON-NLS-1$
+        List<?>[] expected = new List<?>[] {
+        		Arrays.asList("1", 1),
+        		Arrays.asList("3", 2),
+        		Arrays.asList("4", 3),
+        };    
+        processStreaming(sql, expected, true);
+    }
+    
+    @Test public void testXmlTableStreamingFlwor() throws Exception {
+        String sql = "select * from xmltable('for $x in /a/b where $x/@y = 2 return $x' passing xmlparse(document '<a><b y=''1''>foo</b><b y=''2''>bar</b></a>') columns y string path '.') as x"; //$NON-NLS-1$
+        List<?>[] expected = new List<?>[] {
+        		Arrays.asList("bar"),
+        };    
+        processStreaming(sql, expected, true);
+    }
+    
+    @Test public void testXmlQueryStreamingPredicate() throws Exception {
+    	String sql = "select xmlquery('/a/b[@x = 2]' passing xmlparse(document '<a><b x=''1''/><b x=''' || e2 || '''/></a>') null on empty) from pm1.g1 where e1 = 'b'"; //$NON-NLS-1$
+        
+        List<?>[] expected = new List<?>[] {
+        		Arrays.asList("<b x=\"2\"/>")
+        };    
+    
+        processStreaming(sql, expected, true);
+    }
+    
+    @Test public void testXmlTableStreamingAncestorAttributes() throws Exception {
+        String sql = "select * from xmltable('/a/c/b' passing xmlparse(document '<a x=''1''><c y=''2''><b>foo</b></c></a>') columns y string path '.', x integer path 'ancestor::a/@x', z integer path 'ancestor-or-self::c/@y') as x"; //$NON-NLS-1$
+        List<?>[] expected = new List<?>[] {
+        		Arrays.asList("foo", 1, 2),
+        };    
+        processStreaming(sql, expected, true);
+    }
+    
     /**
      * Highlights that the PathMapFilter needs to be selective in calling startContent
      * @throws Exception
@@ -725,6 +784,31 @@ public class TestSQLXMLProcessing {
         return plan;
 	}
 	
+	/**
+	 * Process the query and check whether each xmltable and xmlquery uses document streaming
+	 */
+	private void processStreaming(String sql, List<?>[] expected, boolean streaming) throws Exception {
+        CommandContext cc = createCommandContext();
+        Command command = helpParse(sql);
+		ProcessorPlan plan = helpGetPlan(command, RealMetadataFactory.example1Cached(), new DefaultCapabilitiesFinder(), cc);
+		final List<SaxonXQueryExpression> expressions = new ArrayList<SaxonXQueryExpression>();
+		DeepPreOrderNavigator.doVisit(command, new LanguageVisitor() {
+			@Override
+			public void visit(XMLTable obj) {
+				expressions.add(obj.getXQueryExpression());
+			}
+			@Override
+			public void visit(XMLQuery obj) {
+				expressions.add(obj.getXQueryExpression());
+			}
+		});
+		assertFalse(expressions.isEmpty());
+		for (SaxonXQueryExpression expression : expressions) {
+			assertEquals(streaming, expression.isStreaming());
+		}
+        helpProcess(plan, cc, dataManager, expected);
+	}
+	
 	public static BlobType blobFromFile(final String file) {
 		return new BlobType(new BlobImpl(new InputStreamFactory.FileInputStreamFactory(UnitTestUtil.getTestDataFile(file))));
 	}
@@ -0,0 +1,173 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.query.processor.eval;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.teiid.api.exception.query.ExpressionEvaluationException;
+import org.teiid.query.eval.Evaluator;
+import org.teiid.query.parser.QueryParser;
+import org.teiid.query.resolver.util.ResolverVisitor;
+import org.teiid.query.rewriter.QueryRewriter;
+import org.teiid.query.sql.LanguageObject;
+import org.teiid.query.sql.lang.Criteria;
+import org.teiid.query.sql.symbol.ElementSymbol;
+import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.sql.visitor.ElementCollectorVisitor;
+import org.teiid.query.unittest.RealMetadataFactory;
+import org.teiid.query.util.CommandContext;
+
+/**
+ * Compares the compiled and interpreted evaluation of the same expressions
+ */
+@SuppressWarnings("nls")
+public class TestExpressionCompiler {
+
+	private static final List<?>[] TUPLES = new List<?>[] {
+		Arrays.asList("a", 1, Boolean.TRUE, 1.5),
+		Arrays.asList("b ", 2, Boolean.FALSE, -2.0),
+		Arrays.asList(null, 3, null, 0.0),
+		Arrays.asList("abc", null, Boolean.TRUE, null),
+		Arrays.asList(null, null, null, null),
+	};
+
+	private Map<ElementSymbol, Integer> elements = new HashMap<ElementSymbol, Integer>();
+
+	private <T extends LanguageObject> T resolve(T obj) throws Exception {
+		ResolverVisitor.resolveLanguageObject(obj, RealMetadataFactory.example1Cached());
+		List<ElementSymbol> symbols = new ArrayList<ElementSymbol>(ElementCollectorVisitor.getElements(obj, true));
+		for (ElementSymbol es : symbols) {
+			String name = es.getShortName();
+			elements.put(es, Integer.valueOf(name.substring(1)) - 1);
+		}
+		return obj;
+	}
+
+	private Evaluator[] getEvaluators() {
+		CommandContext cc = new CommandContext();
+		Evaluator compiled = new Evaluator(elements, null, cc);
+		compiled.setCompileExpressions(true);
+		return new Evaluator[] {new Evaluator(elements, null, cc), compiled};
+	}
+
+	private void helpTestExpression(String sql) throws Exception {
+		Expression expr = resolve(QueryParser.getQueryParser().parseExpression(sql));
+		Evaluator[] evaluators = getEvaluators();
+		for (List<?> tuple : TUPLES) {
+			Object expected = null;
+			String expectedException = null;
+			try {
+				expected = evaluators[0].evaluate(expr, tuple);
+			} catch (ExpressionEvaluationException e) {
+				expectedException = e.getMessage();
+			}
+			//evaluate more than once to use the cached compiled form
+			for (int i = 0; i < 2; i++) {
+				try {
+					assertEquals(sql + " " + tuple, expected, evaluators[1].evaluate(expr, tuple));
+					assertNull(expectedException);
+				} catch (ExpressionEvaluationException e) {
+					assertEquals(expectedException, e.getMessage());
+				}
+			}
+		}
+	}
+
+	private void helpTestCriteria(String sql) throws Exception {
+		Criteria crit = resolve(QueryParser.getQueryParser().parseCriteria(sql));
+		//rewrite to produce the forms seen in processing, such as constant set criteria
+		crit = QueryRewriter.rewriteCriteria(crit, null, RealMetadataFactory.example1Cached());
+		Evaluator[] evaluators = getEvaluators();
+		for (List<?> tuple : TUPLES) {
+			Boolean expected = evaluators[0].evaluateTVL(crit, tuple);
+			for (int i = 0; i < 2; i++) {
+				assertEquals(sql + " " + tuple, expected, evaluators[1].evaluateTVL(crit, tuple));
+			}
+		}
+	}
+
+	@Test public void testElementsAndConstants() throws Exception {
+		helpTestExpression("pm1.g1.e1");
+		helpTestExpression("pm1.g1.e2");
+		helpTestExpression("'x'");
+	}
+
+	@Test public void testFunctions() throws Exception {
+		helpTestExpression("concat(pm1.g1.e1, 'x')");
+		helpTestExpression("pm1.g1.e2 + 1");
+		helpTestExpression("ifnull(pm1.g1.e2, 5) * pm1.g1.e4");
+		helpTestExpression("convert(pm1.g1.e2, string)");
+		helpTestExpression("user()");
+	}
+
+	@Test public void testFunctionException() throws Exception {
+		helpTestExpression("10 / (pm1.g1.e2 - 1)");
+	}
+
+	@Test public void testCase() throws Exception {
+		helpTestExpression("case pm1.g1.e2 when 1 then 'one' when 2 then 'two' else pm1.g1.e1 end");
+		helpTestExpression("case when pm1.g1.e3 then pm1.g1.e2 when pm1.g1.e4 > 0 then 0 end");
+	}
+
+	@Test public void testCompareAndLogical() throws Exception {
+		helpTestCriteria("pm1.g1.e2 > 1");
+		helpTestCriteria("pm1.g1.e1 = 'b'");
+		helpTestCriteria("pm1.g1.e2 >= 2 and pm1.g1.e4 < 1");
+		helpTestCriteria("pm1.g1.e2 = 1 or pm1.g1.e3");
+		helpTestCriteria("not (pm1.g1.e2 = 1 or pm1.g1.e3 = false)");
+	}
+
+	@Test public void testIsNullAndSet() throws Exception {
+		helpTestCriteria("pm1.g1.e1 is null");
+		helpTestCriteria("pm1.g1.e2 is not null and pm1.g1.e1 is null");
+		helpTestCriteria("pm1.g1.e2 in (1, 3)");
+		helpTestCriteria("pm1.g1.e2 not in (1, null)");
+		helpTestCriteria("pm1.g1.e2 in (1, pm1.g1.e2 + 1)");
+	}
+
+	@Test public void testCriteriaException() throws Exception {
+		Criteria crit = resolve(QueryParser.getQueryParser().parseCriteria("10 / (pm1.g1.e2 - 1) > 1"));
+		Evaluator compiled = getEvaluators()[1];
+		try {
+			compiled.evaluateTVL(crit, TUPLES[0]);
+			fail();
+		} catch (ExpressionEvaluationException e) {
+			//the operand exception is not wrapped again
+			assertEquals("TEIID30328", e.getCode());
+			assertFalse(e.getCause() instanceof ExpressionEvaluationException && "TEIID30328".equals(((ExpressionEvaluationException)e.getCause()).getCode()));
+		}
+	}
+
+	@Test public void testInterpretedFallback() throws Exception {
+		helpTestCriteria("pm1.g1.e1 like 'a%'");
+		helpTestCriteria("pm1.g1.e1 like 'a%' or pm1.g1.e2 between 2 and 3");
+	}
+
+}
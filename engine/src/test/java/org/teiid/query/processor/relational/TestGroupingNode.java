@@ -28,6 +28,7 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -40,11 +41,17 @@ import org.teiid.common.buffer.impl.BufferManagerImpl;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.core.types.DataTypeManager;
+import org.teiid.metadata.Column;
 import org.teiid.query.function.FunctionDescriptor;
 import org.teiid.query.function.aggregate.AggregateFunction;
+import org.teiid.query.metadata.TransformationMetadata;
+import org.teiid.query.optimizer.capabilities.DefaultCapabilitiesFinder;
+import org.teiid.query.parser.QueryParser;
 import org.teiid.query.processor.FakeDataManager;
 import org.teiid.query.processor.FakeTupleSource;
 import org.teiid.query.processor.ProcessorDataManager;
+import org.teiid.query.processor.ProcessorPlan;
+import org.teiid.query.processor.TestProcessor;
 import org.teiid.query.sql.lang.OrderBy;
 import org.teiid.query.sql.symbol.AggregateSymbol;
 import org.teiid.query.sql.symbol.Constant;
@@ -53,6 +60,7 @@ import org.teiid.query.sql.symbol.Expression;
 import org.teiid.query.sql.symbol.Function;
 import org.teiid.query.unittest.RealMetadataFactory;
 import org.teiid.query.util.CommandContext;
+import org.teiid.query.util.Options;
 
 @SuppressWarnings({"unchecked", "rawtypes", "nls"})
 public class TestGroupingNode {
@@ -420,6 +428,96 @@ public class TestGroupingNode {
         helpProcess(mgr, node, context, expected, null);
     }
 
+    @Test public void testHashAggregation() throws Exception {
+        BufferManager mgr = BufferManagerFactory.getStandaloneBufferManager();
+        helpTestHashAggregation(mgr);
+    }
+    
+    @Test public void testHashAggregationPartitioned() throws Exception {
+    	//with no processing memory available all of the groups are spilled to partitions
+    	BufferManagerImpl mgr = BufferManagerFactory.getTestBufferManager(1, 2);
+    	mgr.setTargetBytesPerRow(100);
+        helpTestHashAggregation(mgr);
+    }
+
+	private void helpTestHashAggregation(BufferManager mgr) throws Exception {
+		GroupingNode node = new GroupingNode(1);
+        List outputElements = new ArrayList();
+        ElementSymbol col1 = new ElementSymbol("col1"); //$NON-NLS-1$
+        col1.setType(Integer.class);
+        ElementSymbol col2 = new ElementSymbol("col2"); //$NON-NLS-1$
+        col2.setType(Integer.class);
+        outputElements.add(col1);
+        outputElements.add(new AggregateSymbol("COUNT", false, null)); //$NON-NLS-1$
+        outputElements.add(new AggregateSymbol("SUM", false, col2)); //$NON-NLS-1$
+        outputElements.add(new AggregateSymbol("MAX", false, col2)); //$NON-NLS-1$
+        node.setElements(outputElements);
+        List groupingElements = new ArrayList();
+        groupingElements.add(col1); 
+        node.setOrderBy(new OrderBy(groupingElements).getOrderByItems());
+        node.setHashAggregation(true);
+        CommandContext context = new CommandContext("pid", "test", null, null, 1);               //$NON-NLS-1$ //$NON-NLS-2$
+        
+        List[] expected = new List[] {
+            Arrays.asList(new Object[] { null, new Integer(2), new Long(3), new Integer(3) }),
+            Arrays.asList(new Object[] { new Integer(0), new Integer(1), new Long(4), new Integer(4) }),
+            Arrays.asList(new Object[] { new Integer(1), new Integer(1), new Long(2), new Integer(2) }),
+            Arrays.asList(new Object[] { new Integer(2), new Integer(4), new Long(5), new Integer(2) }),
+            Arrays.asList(new Object[] { new Integer(3), new Integer(1), new Long(0), new Integer(0) }),
+            Arrays.asList(new Object[] { new Integer(4), new Integer(3), new Long(5), new Integer(3) }),
+            Arrays.asList(new Object[] { new Integer(5), new Integer(1), new Long(3), new Integer(3) }),
+            Arrays.asList(new Object[] { new Integer(6), new Integer(2), new Long(7), new Integer(4) })
+        };
+        
+        FakeTupleSource dataSource = createTupleSource1();
+        RelationalNode dataNode = new FakeRelationalNode(0, dataSource, mgr.getProcessorBatchSize());
+        dataNode.setElements(dataSource.getSchema());            
+        node.addChild(dataNode);    
+        node.initialize(context, mgr, null);
+        node.open();
+        
+        //the output order is not defined
+        List<List<?>> actual = new ArrayList<List<?>>();
+        while(true) {
+            try {
+                TupleBatch batch = node.nextBatch();
+                actual.addAll(batch.getTuples());
+                if(batch.getTerminationFlag()) {
+                    break;
+                }
+            } catch (BlockedException e) {
+                //ignore
+            }
+        }
+        node.close();
+        assertEquals(expected.length, actual.size());
+        assertEquals(new HashSet<List>(Arrays.asList(expected)), new HashSet<List>(actual));
+	}
+	
+    @Test public void testHashAggregationPlanning() throws Exception {
+    	TransformationMetadata metadata = RealMetadataFactory.example1();
+    	RealMetadataFactory.setCardinality("pm1.g1", 10000, metadata);
+    	Column e1 = metadata.getElementID("pm1.g1.e1");
+    	e1.setDistinctValues(10);
+    	CommandContext cc = TestProcessor.createCommandContext();
+    	cc.setOptions(new Options().hashAggregation(true));
+    	assertTrue(getGroupingNode("select e1, count(*), sum(e2) from pm1.g1 group by e1", metadata, cc).isHashAggregation());
+    	//the ordering is needed
+    	assertFalse(getGroupingNode("select e1, count(*), sum(e2) from pm1.g1 group by e1 order by e1", metadata, cc).isHashAggregation());
+    	//too many groups relative to the input
+    	e1.setDistinctValues(8000);
+    	assertFalse(getGroupingNode("select e1, count(*), sum(e2) from pm1.g1 group by e1", metadata, cc).isHashAggregation());
+    }
+
+	private GroupingNode getGroupingNode(String sql, TransformationMetadata metadata, CommandContext cc) throws Exception {
+		ProcessorPlan plan = TestProcessor.helpGetPlan(QueryParser.getQueryParser().parseCommand(sql), metadata, DefaultCapabilitiesFinder.INSTANCE, cc);
+    	RelationalNode node = ((RelationalPlan)plan).getRootNode();
+    	while (!(node instanceof GroupingNode)) {
+    		node = node.getChildren()[0];
+    	}
+		return (GroupingNode)node;
+	}
+
 	private GroupingNode getExampleGroupingNode() {
 		GroupingNode node = new GroupingNode(1);
         List outputElements = new ArrayList();
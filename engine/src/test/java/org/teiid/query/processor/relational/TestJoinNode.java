@@ -26,6 +26,8 @@ import static org.junit.Assert.*;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -42,6 +44,9 @@ import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.core.types.DataTypeManager;
 import org.teiid.query.function.FunctionDescriptor;
+import org.teiid.query.optimizer.TestOptimizer;
+import org.teiid.query.optimizer.capabilities.DefaultCapabilitiesFinder;
+import org.teiid.query.parser.QueryParser;
 import org.teiid.query.processor.FakeDataManager;
 import org.teiid.query.processor.HardcodedDataManager;
 import org.teiid.query.processor.ProcessorPlan;
@@ -57,6 +62,7 @@ import org.teiid.query.sql.symbol.Expression;
 import org.teiid.query.sql.symbol.Function;
 import org.teiid.query.unittest.RealMetadataFactory;
 import org.teiid.query.util.CommandContext;
+import org.teiid.query.util.Options;
 
 @SuppressWarnings({"unchecked", "rawtypes", "nls"})
 public class TestJoinNode {
@@ -1131,4 +1137,252 @@ public class TestJoinNode {
         TestProcessor.helpProcess(plan, context, hdm, rows);
     }
     
+    @Test public void testHashJoin() throws Exception {
+    	helpTestHashJoin(99);
+    }
+    
+    @Test public void testHashJoinMultiBatch() throws Exception {
+    	helpTestHashJoin(1);
+    }
+    
+    private void helpTestHashJoin(int batchSize) throws TeiidComponentException, TeiidProcessingException {
+    	this.joinType = JoinType.JOIN_INNER;
+    	int rows = 100;
+    	List[] data = new List[rows];
+    	for(int i=0; i<rows; i++) { 
+    		data[i] = Arrays.asList((i*17) % 47);
+    	}
+    	this.leftTuples = data;
+    	this.rightTuples = createTuples2();
+    	//the smaller right side is used as the build side, so the output is in left order
+    	expected = new List[] {
+    			Arrays.asList(new Object[] { 4, 4 }),
+    			Arrays.asList(new Object[] { 4, 4 }),
+    			Arrays.asList(new Object[] { 7, 7 }),
+    			Arrays.asList(new Object[] { 7, 7 }),
+    			Arrays.asList(new Object[] { 2, 2 }),
+    			Arrays.asList(new Object[] { 2, 2 }),
+    			Arrays.asList(new Object[] { 6, 6 }),
+    			Arrays.asList(new Object[] { 1, 1 }),  
+    			Arrays.asList(new Object[] { 4, 4 }),
+    			Arrays.asList(new Object[] { 4, 4 }),
+    			Arrays.asList(new Object[] { 7, 7 }),
+    			Arrays.asList(new Object[] { 7, 7 }),
+    			Arrays.asList(new Object[] { 2, 2 }),
+    			Arrays.asList(new Object[] { 2, 2 }),
+    			Arrays.asList(new Object[] { 6, 6 }),
+    			Arrays.asList(new Object[] { 1, 1 }),
+    			Arrays.asList(new Object[] { 4, 4 }),
+    			Arrays.asList(new Object[] { 4, 4 }),
+    	};
+    	helpCreateJoin();               
+    	this.joinStrategy = new HashJoinStrategy();
+    	this.join.setJoinStrategy(joinStrategy);
+    	helpTestJoinDirect(expected, batchSize, 100000);
+    }
+    
+    @Test public void testHashJoinLeftOuter() throws Exception {
+    	this.joinType = JoinType.JOIN_LEFT_OUTER;
+    	int rows = 12;
+    	List[] data = new List[rows];
+    	for(int i=0; i<rows; i++) { 
+    		data[i] = Arrays.asList((i*17) % 45);
+    	}
+    	data[4] = Arrays.asList((Integer)null);
+    	this.leftTuples = data;
+    	this.rightTuples = createTuples2();
+    	expected = new List[] {
+    			Arrays.asList(new Object[] { 0, null }),
+    			Arrays.asList(new Object[] {17, null }),
+    			Arrays.asList(new Object[] {34, null }),
+    			Arrays.asList(new Object[] { 6, 6 }),
+    			Arrays.asList(new Object[] {null, null }),
+    			Arrays.asList(new Object[] {40, null }),
+    			Arrays.asList(new Object[] {12, null }),
+    			Arrays.asList(new Object[] {29, null }),
+    			Arrays.asList(new Object[] { 1, 1 }),  
+    			Arrays.asList(new Object[] {18, null }),
+    			Arrays.asList(new Object[] {35, null }),
+    			Arrays.asList(new Object[] { 7, 7 }),
+    			Arrays.asList(new Object[] { 7, 7 }),
+    	};
+    	helpCreateJoin();
+    	this.joinStrategy = new HashJoinStrategy();
+    	this.join.setJoinStrategy(joinStrategy);
+    	helpTestJoinDirect(expected, 10, 100000);
+    }
+    
+    @Test public void testHashJoinPartitioned() throws Exception {
+    	this.joinType = JoinType.JOIN_LEFT_OUTER;
+    	int rows = 200;
+    	List[] data = new List[rows];
+    	for(int i=0; i<rows; i++) { 
+    		data[i] = Arrays.asList((i*17) % 91);
+    	}
+    	this.leftTuples = data;
+    	this.rightTuples = new List[50];
+    	for (int i = 0; i < this.rightTuples.length; i++) {
+    		this.rightTuples[i] = Arrays.asList(i*2);
+    	}
+    	this.rightTuples[3] = Arrays.asList((Integer)null);
+    	List<List<?>> expectedRows = new ArrayList<List<?>>();
+    	for (List<?> left : data) {
+    		Integer value = (Integer)left.get(0);
+    		if (value % 2 == 0 && value < 100 && value != 6) {
+    			expectedRows.add(Arrays.asList(value, value));
+    		} else {
+    			expectedRows.add(Arrays.asList(value, null));
+    		}
+    	}
+    	helpCreateJoin();
+    	helpTestHashJoinPartitioned(expectedRows);
+    }
+    
+    @Test public void testHashJoinSemi() throws Exception {
+    	this.joinType = JoinType.JOIN_SEMI;
+    	expected = new List[] {
+    			Arrays.asList(new Object[] { 2, 2 }),
+    			Arrays.asList(new Object[] { 4, 4 }),
+    			Arrays.asList(new Object[] { 1, 1 }),
+    			Arrays.asList(new Object[] { 4, 4 }),
+    	};
+    	helpCreateJoin();
+    	this.joinStrategy = new HashJoinStrategy();
+    	this.join.setJoinStrategy(joinStrategy);
+    	helpTestJoinDirect(expected, 10, 100000);
+    }
+    
+    @Test public void testHashJoinAntiSemi() throws Exception {
+    	this.joinType = JoinType.JOIN_ANTI_SEMI;
+    	expected = new List[] {
+    			Arrays.asList(new Object[] { 5, null }),
+    			Arrays.asList(new Object[] { 3, null }),
+    			Arrays.asList(new Object[] { 10, null }),
+    			Arrays.asList(new Object[] { 11, null }),
+    			Arrays.asList(new Object[] { 11, null }),
+    	};
+    	helpCreateJoin();
+    	this.joinStrategy = new HashJoinStrategy();
+    	this.join.setJoinStrategy(joinStrategy);
+    	helpTestJoinDirect(expected, 10, 100000);
+    }
+    
+    @Test public void testHashJoinSemiPartitioned() throws Exception {
+    	helpTestHashJoinPartitionedTypes(JoinType.JOIN_SEMI, false);
+    }
+    
+    @Test public void testHashJoinAntiSemiPartitioned() throws Exception {
+    	helpTestHashJoinPartitionedTypes(JoinType.JOIN_ANTI_SEMI, false);
+    }
+    
+    /**
+     * A single key on the build side cannot be split by repartitioning, so it must be joined in chunks
+     */
+    @Test public void testHashJoinSkewedPartition() throws Exception {
+    	for (JoinType type : new JoinType[] {JoinType.JOIN_INNER, JoinType.JOIN_LEFT_OUTER, JoinType.JOIN_SEMI, JoinType.JOIN_ANTI_SEMI}) {
+    		helpTestHashJoinPartitionedTypes(type, true);
+    	}
+    }
+
+    /**
+     * @param skewed if true most of the build side rows will have the same key 
+     */
+	private void helpTestHashJoinPartitionedTypes(JoinType type, boolean skewed) throws Exception {
+		this.joinType = type;
+		List[] data = new List[200];
+    	for (int i = 0; i < data.length; i++) { 
+    		data[i] = Arrays.asList((i*17) % 91);
+    	}
+    	this.leftTuples = data;
+    	this.rightTuples = new List[skewed?300:50];
+    	for (int i = 0; i < this.rightTuples.length; i++) {
+    		this.rightTuples[i] = Arrays.asList(skewed && i >= 10?34:i*2);
+    	}
+    	List<List<?>> expectedRows = new ArrayList<List<?>>();
+    	for (List<?> left : data) {
+    		Integer value = (Integer)left.get(0);
+    		int matches = 0;
+    		for (List<?> right : this.rightTuples) {
+    			if (value.equals(right.get(0))) {
+    				matches++;
+    				if (type == JoinType.JOIN_INNER || type == JoinType.JOIN_LEFT_OUTER) {
+    					expectedRows.add(Arrays.asList(value, value));
+    				}
+    			}
+    		}
+    		if (matches > 0 && type == JoinType.JOIN_SEMI) {
+    			expectedRows.add(Arrays.asList(value, value));
+    		} else if (matches == 0 && type.isOuter()) {
+    			expectedRows.add(Arrays.asList(value, null));
+    		}
+    	}
+    	helpCreateJoin();
+    	helpTestHashJoinPartitioned(expectedRows);
+	}
+
+	private void helpTestHashJoinPartitioned(List<List<?>> expectedRows)
+			throws TeiidComponentException, TeiidProcessingException {
+		this.joinStrategy = new HashJoinStrategy();
+    	this.join.setJoinStrategy(joinStrategy);
+    	//with no processing memory available both sides are partitioned and the output order is not preserved
+    	BufferManagerImpl mgr = BufferManagerFactory.getTestBufferManager(1, 10);
+    	mgr.setTargetBytesPerRow(100);
+    	CommandContext context = new CommandContext("pid", "test", null, null, 1);               //$NON-NLS-1$ //$NON-NLS-2$
+    	join.addChild(leftNode);
+    	join.addChild(rightNode);
+    	leftNode.initialize(context, mgr, dataMgr);
+    	rightNode.initialize(context, mgr, dataMgr);
+    	join.initialize(context, mgr, dataMgr);
+    	join.open();
+    	List<List<?>> actual = new ArrayList<List<?>>();
+    	while (true) {
+    		try {
+    			TupleBatch batch = join.nextBatch();
+    			actual.addAll(batch.getTuples());
+    			if (batch.getTerminationFlag()) {
+    				break;
+    			}
+    		} catch (BlockedException e) {
+    			// ignore and retry
+    		}
+    	}
+    	join.close();
+    	assertTrue(((HashJoinStrategy)join.getJoinStrategy()).toString().startsWith("HASH"));
+    	assertEquals(expectedRows.size(), actual.size());
+    	Comparator<List<?>> comparator = new Comparator<List<?>>() {
+    		@Override
+    		public int compare(List<?> o1, List<?> o2) {
+    			return o1.toString().compareTo(o2.toString());
+    		}
+    	};
+    	Collections.sort(expectedRows, comparator);
+    	Collections.sort(actual, comparator);
+    	assertEquals(expectedRows, actual);
+    }
+    
+    @Test public void testHashJoinPlanning() throws Exception {
+    	String sql = "select a.e1, b.e2 from pm1.g1 as a, pm2.g2 as b where a.e1 = b.e1"; //$NON-NLS-1$
+    	CommandContext cc = TestProcessor.createCommandContext();
+    	cc.setOptions(new Options().hashJoin(true));
+    	ProcessorPlan plan = TestProcessor.helpGetPlan(QueryParser.getQueryParser().parseCommand(sql), RealMetadataFactory.example1Cached(), DefaultCapabilitiesFinder.INSTANCE, cc);
+    	TestOptimizer.checkNodeTypes(plan, new int[] {1, 0}, new Class[] {HashJoinStrategy.class, MergeJoinStrategy.class});
+    	HardcodedDataManager hdm = new HardcodedDataManager();
+    	List<?>[] rows = new List<?>[50];
+    	for (int i = 0; i < rows.length; i++) {
+    		rows[i] = Arrays.asList(String.valueOf(i));
+    	}
+    	hdm.addData("SELECT pm1.g1.e1 FROM pm1.g1", rows);
+    	rows = new List<?>[200];
+    	for (int i = 0; i < rows.length; i++) {
+    		rows[i] = Arrays.asList(String.valueOf(i), i);
+    	}
+    	hdm.addData("SELECT pm2.g2.e1, pm2.g2.e2 FROM pm2.g2", rows);
+    	//the left side is smaller, so the output will be in right order
+    	List<?>[] expectedRows = new List<?>[50];
+    	for (int i = 0; i < expectedRows.length; i++) {
+    		expectedRows[i] = Arrays.asList(String.valueOf(i), i);
+    	}
+    	TestProcessor.helpProcess(plan, hdm, expectedRows);
+    }
+    
 }
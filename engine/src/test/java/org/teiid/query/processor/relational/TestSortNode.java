@@ -30,6 +30,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 import org.teiid.common.buffer.BlockedException;
@@ -337,4 +339,84 @@ public class TestSortNode {
     	assertNull(ts.nextTuple());
     }
 
+    @Test public void testParallelSort() throws Exception {
+    	ElementSymbol es1 = new ElementSymbol("e1"); //$NON-NLS-1$
+        es1.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        ElementSymbol es2 = new ElementSymbol("e2"); //$NON-NLS-1$
+        es2.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        ListNestedSortComparator<Integer> comparator = new ListNestedSortComparator<Integer>(new int[] {0}, OrderBy.ASC);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+	    	for (Mode mode : Mode.values()) {
+	    		BufferManager bm = BufferManagerFactory.getStandaloneBufferManager();
+	    		TupleBuffer tsid = bm.createTupleBuffer(Arrays.asList(es1, es2), "test", TupleSourceType.PROCESSOR); //$NON-NLS-1$
+	    		List<List<Integer>> expected = new ArrayList<List<Integer>>();
+	    		TreeSet<List<Integer>> distinct = new TreeSet<List<Integer>>(comparator);
+	    		for (int i = 0; i < 1000; i++) {
+	    			List<Integer> tuple = Arrays.asList((i*51) % 97, i);
+	    			tsid.addTuple(tuple);
+	    			expected.add(tuple);
+	    			distinct.add(tuple);
+	    		}
+	    		tsid.close();
+	    		//a stable sort keeps the first occurrence
+	    		Collections.sort(expected, comparator);
+	    		if (mode == Mode.DUP_REMOVE) {
+	    			//DUP_REMOVE_SORT is distinct over the whole row, which is already unique
+	    			expected = new ArrayList<List<Integer>>(distinct);
+	    		}
+		    	SortUtility su = new SortUtility(tsid.createIndexedTupleSource(), Arrays.asList(es1), Arrays.asList(Boolean.TRUE), mode, bm, "test", tsid.getSchema()); //$NON-NLS-1$
+		    	su.setStableSort(true);
+		    	su.setParallelism(4);
+		    	su.setParallelSortMinRows(10);
+		    	su.setExecutor(executor);
+		    	TupleBuffer out = su.sort();
+		    	TupleSource ts = out.createIndexedTupleSource();
+		    	for (List<Integer> tuple : expected) {
+		    		assertEquals(tuple, ts.nextTuple());
+		    	}
+		    	assertNull(ts.nextTuple());
+	    	}
+        } finally {
+        	executor.shutdown();
+        }
+    }
+    
+    @Test public void testPipelinedMerge() throws Exception {
+    	ElementSymbol es1 = new ElementSymbol("e1"); //$NON-NLS-1$
+        es1.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        BufferManagerImpl bm = BufferManagerFactory.getTestBufferManager(10000, BATCH_SIZE);
+        long reserve = bm.getReserveBatchBytes();
+        TupleBuffer tsid = bm.createTupleBuffer(Arrays.asList(es1), "test", TupleSourceType.PROCESSOR); //$NON-NLS-1$
+        int rows = 50 * BATCH_SIZE;
+        for (int i = 0; i < rows; i++) {
+        	tsid.addTuple(Arrays.asList((i*51) % 1999));
+        }
+        tsid.close();
+    	SortUtility su = new SortUtility(tsid.createIndexedTupleSource(), Arrays.asList(es1), Arrays.asList(Boolean.TRUE), Mode.SORT, bm, "test", tsid.getSchema()); //$NON-NLS-1$
+    	su.setPipelined(true);
+    	TupleBuffer out = su.sort();
+    	assertFalse(out.isFinal());
+    	TupleSource ts = out.createIndexedTupleSource();
+    	int count = 0;
+    	Integer last = null;
+    	while (true) {
+    		try {
+    			List<?> tuple = ts.nextTuple();
+    			if (tuple == null) {
+    				break;
+    			}
+    			Integer value = (Integer)tuple.get(0);
+    			assertTrue(last == null || last <= value);
+    			last = value;
+    			count++;
+    		} catch (BlockedException e) {
+    			assertSame(out, su.sort());
+    		}
+    	}
+    	assertTrue(out.isFinal());
+    	assertEquals(rows, count);
+    	assertEquals(reserve, bm.getReserveBatchBytes());
+    }
+
 }
@@ -26,19 +26,32 @@ import static org.junit.Assert.*;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 import org.teiid.common.buffer.BlockedException;
 import org.teiid.common.buffer.BufferManager;
 import org.teiid.common.buffer.BufferManagerFactory;
 import org.teiid.common.buffer.TupleBatch;
+import org.teiid.common.buffer.TupleSource;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.core.types.DataTypeManager;
 import org.teiid.query.processor.FakeDataManager;
+import org.teiid.query.processor.HardcodedDataManager;
+import org.teiid.query.processor.ProcessorPlan;
+import org.teiid.query.processor.RegisterRequestParameter;
+import org.teiid.query.processor.TestProcessor;
+import org.teiid.query.sql.lang.Command;
+import org.teiid.query.unittest.RealMetadataFactory;
 import org.teiid.query.sql.symbol.ElementSymbol;
 import org.teiid.query.util.CommandContext;
+import org.teiid.query.util.Options;
 
 
 /**
@@ -223,6 +236,125 @@ public class TestUnionAllNode {
         };
 
         helpTestUnionConfigs(3, 1, 6, 1, expected);       
-    }    
+    }
+    
+    @Test public void testParallelUnion() throws Exception {
+        ElementSymbol es1 = new ElementSymbol("e1"); //$NON-NLS-1$
+        es1.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        List elements = Arrays.asList(es1);
+        
+        int sources = 6;
+        int rowsPerSource = 20;
+        UnionAllNode union = new UnionAllNode(sources) {
+        	@Override
+        	boolean isIndependent(RelationalNode node) {
+        		//the fake nodes don't use any request state
+        		return true;
+        	}
+        };
+        union.setElements(elements);
+        List<Integer> expected = new ArrayList<Integer>();
+        for(int i=0; i<sources; i++) {
+            List[] tuples = new List[rowsPerSource];
+            for(int r = 0; r<rowsPerSource; r++) {
+                tuples[r] = Arrays.asList(i * rowsPerSource + r);
+                expected.add(i * rowsPerSource + r);
+            }
+            RelationalNode node = null;
+            if (i % 2 == 0) {
+                node = new BlockingFakeRelationalNode(i, tuples, 3);
+            } else {                
+                node = new FakeRelationalNode(i, tuples, 3);
+            }
+            node.setElements(elements);
+            union.addChild(node);
+        }
+        
+        BufferManager mgr = BufferManagerFactory.getStandaloneBufferManager();
+        CommandContext context = new CommandContext("pid", "test", null, null, 1);               //$NON-NLS-1$ //$NON-NLS-2$
+        context.setOptions(new Options().maxParallelism(3));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        context.setExecutor(executor);
+        try {
+            FakeDataManager fdm = new FakeDataManager();
+            for (RelationalNode child : union.getChildren()) {
+            	if (child != null) {
+            		child.initialize(context, mgr, fdm);
+            	}
+            }
+            union.initialize(context, mgr, fdm);
+            union.open();
+            
+            //the output order is not defined
+            List<Integer> actual = new ArrayList<Integer>();
+            while(true) {
+                try {
+                    TupleBatch batch = union.nextBatch();
+                    for (List<?> tuple : batch.getTuples()) {
+                    	actual.add((Integer)tuple.get(0));
+                    }
+                    if(batch.getTerminationFlag()) {
+                        break;
+                    }
+                } catch(BlockedException e) {
+                    // ignore and retry
+                }
+            }
+            union.close();
+            Collections.sort(actual);
+            assertEquals(expected, actual);
+        } finally {
+        	executor.shutdownNow();
+        }
+    }
+
+    @Test public void testParallelUnionSharedCommand() throws Exception {
+        String sql = "select concat(e1, 'a') from pm1.g1 union all select concat(e1, 'b') from pm1.g1 union all select concat(e1, 'c') from pm1.g2"; //$NON-NLS-1$
+        ProcessorPlan plan = TestProcessor.helpGetPlan(sql, RealMetadataFactory.example1Cached());
+        assertTrue(plan.toString().contains("SHARED")); //$NON-NLS-1$
+        
+        final Thread processingThread = Thread.currentThread();
+        final Set<String> exchanged = Collections.synchronizedSet(new HashSet<String>());
+        HardcodedDataManager dataManager = new HardcodedDataManager() {
+        	@Override
+        	public TupleSource registerRequest(CommandContext context,
+        			Command command, String modelName,
+        			RegisterRequestParameter parameterObject)
+        			throws TeiidComponentException {
+        		final String commandString = command.toString();
+        		final TupleSource ts = super.registerRequest(context, command, modelName, parameterObject);
+        		return new TupleSource() {
+        			
+        			@Override
+        			public List<?> nextTuple() throws TeiidComponentException,
+        					TeiidProcessingException {
+        				if (Thread.currentThread() != processingThread) {
+        					exchanged.add(commandString);
+        				}
+        				return ts.nextTuple();
+        			}
+        			
+        			@Override
+        			public void closeSource() {
+        				ts.closeSource();
+        			}
+        		};
+        	}
+        };
+        dataManager.addData("SELECT pm1.g1.e1 FROM pm1.g1", new List<?>[] {Arrays.asList("x")}); //$NON-NLS-1$ //$NON-NLS-2$
+        dataManager.addData("SELECT pm1.g2.e1 FROM pm1.g2", new List<?>[] {Arrays.asList("y")}); //$NON-NLS-1$ //$NON-NLS-2$
+        
+        CommandContext context = TestProcessor.createCommandContext();
+        context.setOptions(new Options().maxParallelism(3));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        context.setExecutor(executor);
+        try {
+        	assertEquals(3, TestProcessor.doProcess(plan, dataManager, null, context));
+        } finally {
+        	executor.shutdownNow();
+        }
+        //only the branch without the shared command is processed by another thread
+        assertEquals(Collections.singleton("SELECT pm1.g2.e1 FROM pm1.g2"), exchanged); //$NON-NLS-1$
+    }
 
 }
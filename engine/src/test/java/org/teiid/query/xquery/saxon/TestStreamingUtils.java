@@ -0,0 +1,116 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.query.xquery.saxon;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.teiid.query.xquery.saxon.StreamingUtils.StreamingPath;
+
+@SuppressWarnings("nls")
+public class TestStreamingUtils {
+	
+	private static final Map<String, String> NO_PREFIXES = Collections.emptyMap();
+
+	@Test public void testSimplePath() {
+		StreamingPath path = StreamingUtils.getStreamingPath("/a/b/c", NO_PREFIXES);
+		assertEquals("/-:a/-:b/-:c", path.path);
+		assertNull(path.filter);
+	}
+	
+	@Test public void testPredicates() {
+		StreamingPath path = StreamingUtils.getStreamingPath("/a[@x='1']/b[@y > 1]", NO_PREFIXES);
+		assertEquals("/-:a/-:b", path.path);
+		assertEquals("(self::b[@y > 1][parent::a[@x='1']])", path.filter);
+		assertEquals(Collections.singletonList("@y > 1"), path.predicates);
+		assertEquals(Collections.singletonList("@x='1'"), path.ancestorPredicates);
+	}
+	
+	@Test public void testUnion() {
+		StreamingPath path = StreamingUtils.getStreamingPath("/a/b | /a/c", NO_PREFIXES);
+		assertEquals("/-:a/-:*", path.path);
+		assertEquals("(self::b) or (self::c)", path.filter);
+	}
+	
+	@Test public void testUnionDifferingAncestors() {
+		StreamingPath path = StreamingUtils.getStreamingPath("/a/b/c | /a/d/c", NO_PREFIXES);
+		assertEquals("/-:a/-:*/-:c", path.path);
+		assertEquals("(self::c[parent::b]) or (self::c[parent::d])", path.filter);
+	}
+	
+	@Test public void testUnionWithPrefix() {
+		Map<String, String> prefixes = new HashMap<String, String>();
+		prefixes.put("x", "http://x");
+		StreamingPath path = StreamingUtils.getStreamingPath("/x:a/x:b | /x:a/x:c", prefixes);
+		assertEquals("/x:a/x:*", path.path);
+		assertEquals("(self::x:b) or (self::x:c)", path.filter);
+	}
+	
+	@Test public void testUnionWithUnconditionalAlternative() {
+		StreamingPath path = StreamingUtils.getStreamingPath("/a/b[@e] | /a/b", NO_PREFIXES);
+		assertEquals("/-:a/-:b", path.path);
+		assertNull(path.filter);
+	}
+	
+	@Test public void testFlwor() {
+		StreamingPath path = StreamingUtils.getStreamingPath("for $x in /a/b where $x/@y = 2 return $x", NO_PREFIXES);
+		assertEquals("/-:a/-:b", path.path);
+		assertEquals("for $x in . return ($x/@y = 2)", path.condition);
+		assertEquals("(for $x in . return ($x/@y = 2))", path.filter);
+	}
+	
+	@Test public void testFlworWithPredicate() {
+		StreamingPath path = StreamingUtils.getStreamingPath("for $x in /a/b[@z] where $x/@y = 2 return $x", NO_PREFIXES);
+		assertEquals("/-:a/-:b", path.path);
+		assertEquals("((self::b[@z])) and (for $x in . return ($x/@y = 2))", path.filter);
+	}
+	
+	@Test public void testFlworWithoutWhere() {
+		StreamingPath path = StreamingUtils.getStreamingPath("for $x in /a/b return $x", NO_PREFIXES);
+		assertEquals("/-:a/-:b", path.path);
+		assertNull(path.filter);
+	}
+	
+	@Test(expected=IllegalArgumentException.class) public void testDescendant() {
+		StreamingUtils.getStreamingPath("//a/b", NO_PREFIXES);
+	}
+	
+	@Test(expected=IllegalArgumentException.class) public void testRootOnly() {
+		StreamingUtils.getStreamingPath("/a", NO_PREFIXES);
+	}
+	
+	@Test(expected=IllegalArgumentException.class) public void testUnionDifferingLengths() {
+		StreamingUtils.getStreamingPath("/a/b | /a/b/c", NO_PREFIXES);
+	}
+	
+	@Test(expected=IllegalArgumentException.class) public void testUnionDifferingNamespaces() {
+		Map<String, String> prefixes = new HashMap<String, String>();
+		prefixes.put("x", "http://x");
+		StreamingUtils.getStreamingPath("/x:a/b | /a/x:b", prefixes);
+	}
+
+}
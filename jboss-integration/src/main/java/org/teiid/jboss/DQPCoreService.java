@@ -118,6 +118,9 @@ public class DQPCoreService extends DQPConfiguration implements Serializable, Se
 		        if (getPreparedPlanCacheInjector().getValue() != null) {
 		        	getPreparedPlanCacheInjector().getValue().clearForVDB(name, version);
 		        }
+		        if (dqpCore.getSourceQueryCache() != null) {
+		        	dqpCore.getSourceQueryCache().clearForVDB(name, version);
+		        }
 			}
 			
 			@Override
@@ -99,6 +99,7 @@ class VDBService extends AbstractVDBDeployer implements Service<RuntimeVDB> {
 	private VDBLifeCycleListener restEasyListener;
 	private VDBResources vdbResources;
 	private ContainerLifeCycleListener shutdownListener;
+	private IdentityHashMap<Translator, ExecutionFactory<Object, Object>> executionFactories;
 	
 	public VDBService(VDBMetaData metadata, VDBResources vdbResources, ContainerLifeCycleListener shutdownListener) {
 		this.vdb = metadata;
@@ -271,6 +272,13 @@ class VDBService extends AbstractVDBDeployer implements Service<RuntimeVDB> {
 		getVDBRepository().removeVDB(this.vdb.getName(), this.vdb.getVersion());
 		getVDBRepository().removeListener(this.vdbListener);
 		getVDBRepository().removeListener(this.restEasyListener);
+		
+		// the translator instances are specific to this deployment
+		if (this.executionFactories != null) {
+			for (ExecutionFactory<Object, Object> ef : this.executionFactories.values()) {
+				ef.stop();
+			}
+		}
 		final ServiceController<?> controller = context.getController().getServiceContainer().getService(TeiidServiceNames.vdbFinishedServiceName(vdb.getName(), vdb.getVersion()));
         if (controller != null) {
             controller.setMode(ServiceController.Mode.REMOVE);
@@ -285,6 +293,7 @@ class VDBService extends AbstractVDBDeployer implements Service<RuntimeVDB> {
 	
 	private void createConnectorManagers(ConnectorManagerRepository cmr, final TranslatorRepository repo, final VDBMetaData deployment) throws StartException {
 		final IdentityHashMap<Translator, ExecutionFactory<Object, Object>> map = new IdentityHashMap<Translator, ExecutionFactory<Object, Object>>();
+		this.executionFactories = map;
 		
 		try {
 			ConnectorManagerRepository.ExecutionFactoryProvider provider = new ConnectorManagerRepository.ExecutionFactoryProvider() {
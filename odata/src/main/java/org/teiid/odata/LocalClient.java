@@ -21,6 +21,10 @@
  */
 package org.teiid.odata;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.sql.*;
 import java.util.*;
@@ -28,6 +32,7 @@ import java.util.*;
 import org.odata4j.core.*;
 import org.odata4j.core.OCollection.Builder;
 import org.odata4j.edm.*;
+import org.odata4j.exceptions.BadRequestException;
 import org.odata4j.exceptions.NotFoundException;
 import org.odata4j.exceptions.ServerErrorException;
 import org.odata4j.producer.*;
@@ -36,6 +41,7 @@ import org.teiid.adminapi.impl.VDBMetaData;
 import org.teiid.common.buffer.impl.BufferManagerImpl;
 import org.teiid.core.TeiidRuntimeException;
 import org.teiid.core.types.*;
+import org.teiid.core.util.Base64;
 import org.teiid.core.util.PropertiesUtils;
 import org.teiid.jdbc.*;
 import org.teiid.logging.LogConstants;
@@ -47,9 +53,21 @@ import org.teiid.odbc.ODBCServerRemoteImpl;
 import org.teiid.query.metadata.TransformationMetadata;
 import org.teiid.query.sql.lang.CacheHint;
 import org.teiid.query.sql.lang.Command;
+import org.teiid.query.sql.lang.CompareCriteria;
+import org.teiid.query.sql.lang.CompoundCriteria;
+import org.teiid.query.sql.lang.Criteria;
+import org.teiid.query.sql.lang.From;
+import org.teiid.query.sql.lang.IsNullCriteria;
 import org.teiid.query.sql.lang.Limit;
+import org.teiid.query.sql.lang.OrderBy;
+import org.teiid.query.sql.lang.OrderByItem;
 import org.teiid.query.sql.lang.Query;
+import org.teiid.query.sql.lang.Select;
+import org.teiid.query.sql.lang.SubqueryFromClause;
+import org.teiid.query.sql.symbol.AggregateSymbol;
 import org.teiid.query.sql.symbol.Constant;
+import org.teiid.query.sql.symbol.ElementSymbol;
+import org.teiid.query.sql.symbol.Expression;
 import org.teiid.translator.CacheDirective;
 import org.teiid.translator.odata.ODataEntitySchemaBuilder;
 import org.teiid.translator.odata.ODataTypeManager;
@@ -58,6 +76,9 @@ import org.teiid.transport.LocalServerConnection;
 public class LocalClient implements Client {
 	private static final String BATCH_SIZE = "batch-size"; //$NON-NLS-1$
 	private static final String SKIPTOKEN_TIME = "skiptoken-cache-time"; //$NON-NLS-1$
+	private static final String SKIPTOKEN_MODE = "skiptoken-mode"; //$NON-NLS-1$
+	private static final String SKIPTOKEN_MODE_KEYSET = "keyset"; //$NON-NLS-1$
+	private static final String KEYSET_TOKEN_PREFIX = "k"; //$NON-NLS-1$
 	static final String INVALID_CHARACTER_REPLACEMENT = "invalid-xml10-character-replacement"; //$NON-NLS-1$
 
 	private volatile VDBMetaData vdb;
@@ -65,6 +86,7 @@ public class LocalClient implements Client {
 	private int vdbVersion;
 	private int batchSize;
 	private long cacheTime;
+	private boolean keysetPaging;
 	private String transportName;
 	private String connectionString;
 	private Properties connectionProperties = new Properties();
@@ -78,6 +100,7 @@ public class LocalClient implements Client {
 		this.vdbVersion = vdbVersion;
 		this.batchSize = PropertiesUtils.getIntProperty(props, BATCH_SIZE, BufferManagerImpl.DEFAULT_PROCESSOR_BATCH_SIZE);
 		this.cacheTime = PropertiesUtils.getLongProperty(props, SKIPTOKEN_TIME, 300000L);
+		this.keysetPaging = SKIPTOKEN_MODE_KEYSET.equalsIgnoreCase(props.getProperty(SKIPTOKEN_MODE));
 		this.transportName = props.getProperty(EmbeddedProfile.TRANSPORT_NAME, "odata"); //$NON-NLS-1$
 		this.invalidCharacterReplacement = props.getProperty(INVALID_CHARACTER_REPLACEMENT);
 		StringBuilder sb = new StringBuilder();
@@ -192,6 +215,12 @@ public class LocalClient implements Client {
 
 	@Override
 	public EntityList executeSQL(Query query, List<SQLParam> parameters, EdmEntitySet entitySet, LinkedHashMap<String, Boolean> projectedColumns, QueryInfo queryInfo) {
+		if (queryInfo != null && this.keysetPaging) {
+			List<OrderByItem> keyOrder = getKeyOrder(query, entitySet);
+			if (keyOrder != null) {
+				return executeKeysetSQL(query, parameters, entitySet, projectedColumns, queryInfo, keyOrder);
+			}
+		}
 		Connection connection = null;
 		try {
 			boolean cache = queryInfo != null && this.batchSize > 0; 
@@ -323,6 +352,224 @@ public class LocalClient implements Client {
 		}
 	}
 
+	/**
+	 * Return the order by items if the query is ordered ascending by exactly the entity key,
+	 * such that the position of a page may be represented by the last key values.
+	 */
+	static List<OrderByItem> getKeyOrder(Query query, EdmEntitySet entitySet) {
+		OrderBy orderBy = query.getOrderBy();
+		if (orderBy == null || query.getLimit() != null) {
+			return null;
+		}
+		List<String> keys = entitySet.getType().getKeys();
+		if (keys.isEmpty() || orderBy.getOrderByItems().size() != keys.size()) {
+			return null;
+		}
+		HashSet<String> remaining = new HashSet<String>(keys);
+		for (OrderByItem item : orderBy.getOrderByItems()) {
+			if (!item.isAscending() || !(item.getSymbol() instanceof ElementSymbol) 
+					|| !remaining.remove(((ElementSymbol)item.getSymbol()).getShortName())) {
+				return null;
+			}
+		}
+		return orderBy.getOrderByItems();
+	}
+	
+	/**
+	 * Executes a page positioned by the key values encoded in the skipToken rather than by
+	 * skipping through a cached result.  The page size plus one rows are requested so that the
+	 * limit may be pushed to the source and the inline count is determined by a separate 
+	 * count query.
+	 */
+	private EntityList executeKeysetSQL(Query query, List<SQLParam> parameters, EdmEntitySet entitySet, LinkedHashMap<String, Boolean> projectedColumns, QueryInfo queryInfo, List<OrderByItem> keyOrder) {
+		int offset = 0;
+		List<Object> keyValues = null;
+		if (queryInfo.skipToken != null) {
+			keyValues = new ArrayList<Object>(keyOrder.size());
+			offset = parseKeysetToken(queryInfo.skipToken, entitySet, keyOrder, keyValues);
+		}
+		boolean getCount = queryInfo.inlineCount == InlineCount.ALLPAGES;
+		Query countQuery = null;
+		if (getCount) {
+			countQuery = buildCountQuery(query);
+		}
+		
+		//determine the number of records to return
+		int top = queryInfo.top != null?queryInfo.top:Integer.MAX_VALUE;
+		int size = Math.max(0, top - offset);
+		if (this.batchSize > 0) {
+			size = Math.min(this.batchSize, size);
+		}
+		boolean more = size < Integer.MAX_VALUE && offset + size < top;
+		int skip = 0;
+		if (keyValues != null) {
+			query.setCriteria(Criteria.combineCriteria(query.getCriteria(), buildKeysetCriteria(keyOrder, keyValues)));
+		} else if (queryInfo.skip != null) {
+			skip = queryInfo.skip;
+		}
+		if (size < Integer.MAX_VALUE) {
+			//read one past the page to determine if there is a next page
+			query.setLimit(new Limit(new Constant(skip), new Constant(more?size + 1:size)));
+		} else if (skip > 0) {
+			query.setLimit(new Limit(new Constant(skip), null));
+		}
+		
+		Connection connection = null;
+		try {
+			String sql = query.toString();
+			LogManager.logDetail(LogConstants.CTX_ODATA, "Teiid-Query:",sql); //$NON-NLS-1$
+			connection = getConnection();
+			final PreparedStatement stmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			if (parameters!= null && !parameters.isEmpty()) {
+				for (int i = 0; i < parameters.size(); i++) {
+					stmt.setObject(i+1, parameters.get(i).value, parameters.get(i).sqlType);
+				}
+			}
+			final ResultSet rs = stmt.executeQuery();
+			
+			if (projectedColumns == null) {
+				projectedColumns = new LinkedHashMap<String, Boolean>();
+				for (int i = 0; i < rs.getMetaData().getColumnCount(); i++) {
+					projectedColumns.put(rs.getMetaData().getColumnLabel(i+1), Boolean.TRUE);
+				}
+			}
+			
+			EntityList result = new EntityList(invalidCharacterReplacement);
+			HashMap<String, EdmProperty> propertyTypes = new HashMap<String, EdmProperty>();
+			for (EdmProperty prop : entitySet.getType().getProperties()) {
+				propertyTypes.put(prop.getName(), prop);
+			}
+			
+			Object[] lastKey = new Object[keyOrder.size()];
+			for (int i = 0; i < size && rs.next(); i++) {
+				result.addEntity(rs, propertyTypes, projectedColumns, entitySet);
+				for (int j = 0; j < lastKey.length; j++) {
+					lastKey[j] = rs.getObject(((ElementSymbol)keyOrder.get(j).getSymbol()).getShortName());
+				}
+			}
+			
+			//set the skipToken if needed
+			if (more && result.size() == size && rs.next()) {
+				result.setSkipToken(buildKeysetToken(offset + size, lastKey));
+			}
+			rs.close();
+			stmt.close();
+			
+			if (getCount) {
+				sql = countQuery.toString();
+				LogManager.logDetail(LogConstants.CTX_ODATA, "Teiid-Query:",sql); //$NON-NLS-1$
+				result.setCount(executeCount(connection, sql, parameters));
+			}
+			return result;
+		} catch (Exception e) {
+			throw new ServerErrorException(e.getMessage(), e);
+		} finally {
+			if (connection != null) {
+				try {
+					connection.close();
+				} catch (SQLException e) {
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Build the count(*) query for the entities matching the given query 
+	 */
+	static Query buildCountQuery(Query query) {
+		Query countQuery = (Query)query.clone();
+		countQuery.setOrderBy(null);
+		countQuery.setLimit(null);
+		if (countQuery.getSelect().isDistinct()) {
+			Query outer = new Query();
+			From from = new From();
+			from.addClause(new SubqueryFromClause("x", countQuery)); //$NON-NLS-1$
+			outer.setFrom(from);
+			countQuery = outer;
+		}
+		countQuery.setSelect(new Select(Arrays.asList(new AggregateSymbol(AggregateSymbol.Type.COUNT.name(), false, null))));
+		return countQuery;
+	}
+
+	/**
+	 * Build the criteria for the rows after the given key values with the default nulls low ordering:
+	 * (k1 > v1) OR (k1 = v1 AND k2 > v2) ...
+	 */
+	static Criteria buildKeysetCriteria(List<OrderByItem> keyOrder, List<Object> keyValues) {
+		List<Criteria> disjuncts = new ArrayList<Criteria>(keyOrder.size());
+		for (int i = 0; i < keyOrder.size(); i++) {
+			List<Criteria> conjuncts = new ArrayList<Criteria>(i + 1);
+			for (int j = 0; j <= i; j++) {
+				Expression key = (Expression)keyOrder.get(j).getSymbol().clone();
+				Object value = keyValues.get(j);
+				if (j < i) {
+					if (value == null) {
+						conjuncts.add(new IsNullCriteria(key));
+					} else {
+						conjuncts.add(new CompareCriteria(key, CompareCriteria.EQ, new Constant(value)));
+					}
+				} else if (value == null) {
+					IsNullCriteria notNull = new IsNullCriteria(key);
+					notNull.setNegated(true);
+					conjuncts.add(notNull);
+				} else {
+					conjuncts.add(new CompareCriteria(key, CompareCriteria.GT, new Constant(value)));
+				}
+			}
+			if (conjuncts.size() == 1) {
+				disjuncts.add(conjuncts.get(0));
+			} else {
+				disjuncts.add(new CompoundCriteria(CompoundCriteria.AND, conjuncts));
+			}
+		}
+		if (disjuncts.size() == 1) {
+			return disjuncts.get(0);
+		}
+		return new CompoundCriteria(CompoundCriteria.OR, disjuncts);
+	}
+	
+	static String buildKeysetToken(int offset, Object[] keyValues) throws IOException, TransformationException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(baos);
+		out.writeInt(offset);
+		for (Object value : keyValues) {
+			out.writeBoolean(value != null);
+			if (value != null) {
+				out.writeUTF((String)DataTypeManager.transformValue(value, DataTypeManager.DefaultDataClasses.STRING));
+			}
+		}
+		out.close();
+		//use url safe characters
+		return KEYSET_TOKEN_PREFIX + Base64.encodeBytes(baos.toByteArray()).replace('+', '-').replace('/', '_').replace('=', '.');
+	}
+	
+	/**
+	 * Read the key values into the given list and return the number of rows previously returned
+	 */
+	static int parseKeysetToken(String token, EdmEntitySet entitySet, List<OrderByItem> keyOrder, List<Object> keyValues) {
+		if (!token.startsWith(KEYSET_TOKEN_PREFIX)) {
+			throw new BadRequestException(ODataPlugin.Util.gs(ODataPlugin.Event.TEIID16017, token));
+		}
+		try {
+			byte[] bytes = Base64.decode(token.substring(KEYSET_TOKEN_PREFIX.length()).replace('-', '+').replace('_', '/').replace('.', '='));
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+			int offset = in.readInt();
+			for (OrderByItem item : keyOrder) {
+				if (!in.readBoolean()) {
+					keyValues.add(null);
+					continue;
+				}
+				String value = in.readUTF();
+				EdmProperty property = entitySet.getType().findProperty(((ElementSymbol)item.getSymbol()).getShortName());
+				Class<?> type = DataTypeManager.getDataTypeClass(ODataTypeManager.teiidType(property.getType().getFullyQualifiedTypeName()));
+				keyValues.add(DataTypeManager.transformValue(value, type));
+			}
+			return offset;
+		} catch (Exception e) {
+			throw new BadRequestException(ODataPlugin.Util.gs(ODataPlugin.Event.TEIID16017, token));
+		}
+	}
+
 	private int skip(boolean cache, final ResultSet rs, int skipSize)
 			throws SQLException {
 		int skipped = 0;
@@ -346,18 +593,7 @@ public class LocalClient implements Client {
 			String sql = query.toString();
 			LogManager.logDetail(LogConstants.CTX_ODATA, "Teiid-Query:",sql); //$NON-NLS-1$
 			connection = getConnection();
-			final PreparedStatementImpl stmt = connection.prepareStatement(sql);
-			if (!parameters.isEmpty()) {
-				for (int i = 0; i < parameters.size(); i++) {
-					stmt.setObject(i+1, parameters.get(i).value, parameters.get(i).sqlType);
-				}
-			}
-			ResultSet rs = stmt.executeQuery();
-			rs.next();
-			int count = rs.getInt(1);
-			rs.close();
-			stmt.close();
-			return Responses.count(count);
+			return Responses.count(executeCount(connection, sql, parameters));
 		} catch (Exception e) {
 			throw new ServerErrorException(e.getMessage(), e);
 		} finally {
@@ -370,6 +606,21 @@ public class LocalClient implements Client {
 		}
 	}
 
+	private static int executeCount(Connection connection, String sql, List<SQLParam> parameters) throws SQLException {
+		final PreparedStatement stmt = connection.prepareStatement(sql);
+		if (parameters != null && !parameters.isEmpty()) {
+			for (int i = 0; i < parameters.size(); i++) {
+				stmt.setObject(i+1, parameters.get(i).value, parameters.get(i).sqlType);
+			}
+		}
+		ResultSet rs = stmt.executeQuery();
+		rs.next();
+		int count = rs.getInt(1);
+		rs.close();
+		stmt.close();
+		return count;
+	}
+
 	@Override
 	public UpdateResponse executeUpdate(Command query, List<SQLParam> parameters) {
 		ConnectionImpl connection = null;
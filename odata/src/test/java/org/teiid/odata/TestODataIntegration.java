@@ -561,6 +561,74 @@ public class TestODataIntegration extends BaseResourceTest {
 		}
 	}
 	
+	@Test public void testKeysetSkipToken() throws Exception {
+		EmbeddedServer es = new EmbeddedServer();
+		es.start(new EmbeddedConfiguration());
+		try {
+			ModelMetaData mmd = new ModelMetaData();
+			mmd.setName("vw");
+			mmd.setSchemaSourceType("ddl");
+			mmd.setModelType(Type.VIRTUAL);
+			mmd.setSchemaText("create view x (a string, b integer, primary key (a, b)) as select 'xyz', 123 union all select 'abc', 789 union all select 'abc', 456;");
+			es.deployVDB("northwind", mmd);
+			
+			TeiidDriver td = es.getDriver();
+			Properties props = new Properties();
+			props.setProperty("batch-size", "1");
+			props.setProperty("skiptoken-mode", "keyset");
+			LocalClient lc = new LocalClient("northwind", 1, props);
+			lc.setDriver(td);
+			MockProvider.CLIENT = lc;
+			
+	        ClientRequest request = new ClientRequest(TestPortProvider.generateURL("/odata/northwind/x?$format=json&$inlinecount=allpages"));
+	        ClientResponse<String> response = request.get(String.class);
+	        assertEquals(200, response.getStatus());
+	        JSONParser parser = new JSONParser();
+	        JSONValueExtractor contentHandler = new JSONValueExtractor("__count");
+			parser.parse(response.getEntity(), contentHandler);
+	        assertEquals("3", contentHandler.value);
+	        assertTrue(response.getEntity().contains("456"));
+	        
+	        //follow the keyset skip tokens
+	        String[] pages = new String[] {"789", "123"};
+	        for (String page : pages) {
+	        	contentHandler.key = "__next";
+	        	contentHandler.value = null;
+	        	parser.parse(response.getEntity(), contentHandler);
+	        	assertNotNull(contentHandler.value);
+	        	request = new ClientRequest((String) contentHandler.value);
+		        response = request.get(String.class);
+		        assertEquals(200, response.getStatus());
+		        assertTrue(response.getEntity().contains(page));
+		        assertTrue(!response.getEntity().contains("456"));
+	        }
+	        contentHandler.value = null;
+	        parser.parse(response.getEntity(), contentHandler);
+	        assertNull(contentHandler.value);
+	        
+	        //top should be respected across pages
+	        request = new ClientRequest(TestPortProvider.generateURL("/odata/northwind/x?$format=json&$top=2&$skip=1"));
+	        response = request.get(String.class);
+	        assertEquals(200, response.getStatus());
+	        assertTrue(response.getEntity().contains("789"));
+	        contentHandler.value = null;
+	        parser.parse(response.getEntity(), contentHandler);
+	        request = new ClientRequest((String) contentHandler.value);
+	        response = request.get(String.class);
+	        assertEquals(200, response.getStatus());
+	        assertTrue(response.getEntity().contains("123"));
+	        contentHandler.value = null;
+	        parser.parse(response.getEntity(), contentHandler);
+	        assertNull(contentHandler.value);
+	        
+	        request = new ClientRequest(TestPortProvider.generateURL("/odata/northwind/x?$format=json&$skiptoken=1"));
+	        response = request.get(String.class);
+	        assertEquals(400, response.getStatus());
+		} finally {
+			es.stop();
+		}
+	}
+	
 	@Test public void testCompositeKeyUpdates() throws Exception {
 		EmbeddedServer es = new EmbeddedServer();
 		HardCodedExecutionFactory hc = new HardCodedExecutionFactory() {
@@ -44,6 +44,12 @@ public interface Client {
 
     void executeSQL(Query query, List<SQLParam> parameters, boolean countQuery, Integer skip, Integer top, QueryResponse respose);
 
+    /**
+     * Execute the query, but leave the results open so that the page may be read incrementally.
+     * The returned cursor must be closed by the caller.
+     */
+    QueryCursor openSQL(Query query, List<SQLParam> parameters, Integer skip, Integer top);
+
     CountResponse executeCount(Query query, List<SQLParam> parameters);
 
     UpdateResponse executeUpdate(Command command, List<SQLParam> parameters);
@@ -68,6 +74,19 @@ interface ProjectedColumn {
     boolean isVisible();
 }
 
+interface QueryCursor {
+    /**
+     * Add the next row of the page to the response
+     * @return false if there are no more rows in the page
+     */
+    boolean next(QueryResponse response) throws SQLException, TeiidException;
+    /**
+     * Set the count and next row of the response after the page has been read
+     */
+    void finish(QueryResponse response) throws SQLException;
+    void close();
+}
+
 interface QueryResponse {
     void addRow(ResultSet rs) throws SQLException, TeiidException;
     long size();
@@ -0,0 +1,164 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.olingo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.edm.EdmEntitySet;
+import org.apache.olingo.server.api.serializer.ODataSerializer;
+import org.apache.olingo.server.api.serializer.ODataSerializerOptions;
+import org.teiid.core.util.ObjectConverterUtil;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+
+/**
+ * Serializes an entity set response as the rows are read from the {@link QueryCursor}.
+ * <br>
+ * Rows are only read when the servlet container has consumed the previous chunk, so 
+ * writes blocked by a slow client stop further processing and the memory held by
+ * the response is bounded by the chunk size rather than the size of the results.
+ * <br>
+ * The envelope is taken from the serialization of an empty entity set, and each 
+ * entity is serialized without metadata, which is the same as the entity form 
+ * within the set for the JSON minimal and no metadata formats.
+ */
+class EntityStream extends InputStream {
+    static final int CHUNK_SIZE = 1 << 13;
+
+    private final QueryCursor cursor;
+    private final EntityList entities;
+    private final EdmEntitySet edmEntitySet;
+    private final ODataSerializer serializer;
+    private final ODataSerializerOptions options;
+    private final String suffix;
+    private String prefix;
+    private boolean first = true;
+    private boolean done;
+
+    private ByteArrayOutputStream chunk = new ByteArrayOutputStream(CHUNK_SIZE);
+    private byte[] copyBuffer = new byte[1 << 10];
+    private byte[] bytes = new byte[0];
+    private int pos;
+    private int length;
+
+    EntityStream(QueryCursor cursor, EntityList entities, EdmEntitySet edmEntitySet,
+            ODataSerializer serializer, String envelope, ODataSerializerOptions options) {
+        this.cursor = cursor;
+        this.entities = entities;
+        this.edmEntitySet = edmEntitySet;
+        this.serializer = serializer;
+        this.options = options;
+        int index = envelope.lastIndexOf("[]"); //$NON-NLS-1$
+        this.prefix = envelope.substring(0, index + 1);
+        this.suffix = envelope.substring(index + 1);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos == length && !fill()) {
+            return -1;
+        }
+        return bytes[pos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (pos == length && !fill()) {
+            return -1;
+        }
+        int result = Math.min(len, length - pos);
+        System.arraycopy(bytes, pos, b, off, result);
+        pos += result;
+        return result;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return length - pos;
+    }
+
+    private boolean fill() throws IOException {
+        if (done) {
+            return false;
+        }
+        chunk.reset();
+        if (prefix != null) {
+            chunk.write(prefix.getBytes("UTF-8")); //$NON-NLS-1$
+            prefix = null;
+        }
+        try {
+            while (chunk.size() < CHUNK_SIZE) {
+                if (!cursor.next(entities)) {
+                    cursor.finish(entities);
+                    chunk.write(suffix.getBytes("UTF-8")); //$NON-NLS-1$
+                    done = true;
+                    cursor.close();
+                    break;
+                }
+                List<Entity> list = entities.getEntities();
+                Entity entity = list.get(0);
+                list.clear();
+                if (!first) {
+                    chunk.write(',');
+                }
+                first = false;
+                InputStream is = serializer.entity(edmEntitySet, entity, options);
+                try {
+                    ObjectConverterUtil.write(chunk, is, copyBuffer, -1, false);
+                } finally {
+                    is.close();
+                }
+            }
+        } catch (IOException e) {
+            failed(e);
+            throw e;
+        } catch (Exception e) {
+            failed(e);
+            throw new IOException(e);
+        }
+        bytes = chunk.toByteArray();
+        pos = 0;
+        length = bytes.length;
+        return length > 0;
+    }
+
+    private void failed(Exception e) {
+        done = true;
+        cursor.close();
+        LogManager.logWarning(LogConstants.CTX_ODATA, e, ODataPlugin.Util.gs(ODataPlugin.Event.TEIID16029));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!done) {
+            done = true;
+            cursor.close();
+        }
+    }
+}
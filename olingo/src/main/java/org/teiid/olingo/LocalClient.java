@@ -35,6 +35,7 @@ import java.util.Properties;
 import org.apache.olingo.commons.core.edm.primitivetype.SingletonPrimitiveType;
 import org.teiid.adminapi.impl.VDBMetaData;
 import org.teiid.common.buffer.impl.BufferManagerImpl;
+import org.teiid.core.TeiidException;
 import org.teiid.core.TeiidRuntimeException;
 import org.teiid.core.util.PropertiesUtils;
 import org.teiid.jdbc.ConnectionImpl;
@@ -54,7 +55,7 @@ import org.teiid.translator.CacheDirective;
 import org.teiid.transport.LocalServerConnection;
 
 public class LocalClient implements Client {
-    private static final String BATCH_SIZE = "batch-size"; //$NON-NLS-1$
+    static final String BATCH_SIZE = "batch-size"; //$NON-NLS-1$
     private static final String SKIPTOKEN_TIME = "skiptoken-cache-time"; //$NON-NLS-1$
     static final String INVALID_CHARACTER_REPLACEMENT = "invalid-xml10-character-replacement"; //$NON-NLS-1$
 
@@ -188,6 +189,28 @@ public class LocalClient implements Client {
     public void executeSQL(Query query, List<SQLParam> parameters,
             boolean countQuery, Integer skipOption, Integer topOption,
             final QueryResponse respose) {
+        LocalCursor cursor = open(query, parameters, countQuery, skipOption, topOption);
+        try {
+            // build the results
+            while (cursor.next(respose)) {
+                //read the page
+            }
+            cursor.finish(respose);
+        } catch (Exception e) {
+            throw new TeiidRuntimeException(e);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public QueryCursor openSQL(Query query, List<SQLParam> parameters,
+            Integer skipOption, Integer topOption) {
+        return open(query, parameters, false, skipOption, topOption);
+    }
+
+    private LocalCursor open(Query query, List<SQLParam> parameters,
+            boolean countQuery, Integer skipOption, Integer topOption) {
         Connection connection = null;
         try {
             boolean cache = this.batchSize > 0;
@@ -215,43 +238,78 @@ public class LocalClient implements Client {
             }
             final ResultSet rs = stmt.executeQuery();
 
-            // skip to the initial position
-            int count = 0;
-            int skipSize = 0;
+            LocalCursor cursor = new LocalCursor(connection, rs, cache, countQuery);
             // skip based upon the skip value
             if (countQuery && skipOption != null) {
-                skipSize = skipOption;
+                cursor.skipSize = skipOption;
             }
             // skip based upon the skipToken
             if (skipOption != null) {
-                skipSize += skipOption;
+                cursor.skipSize += skipOption;
             }
-            if (skipSize > 0) {
-                count += skip(cache, rs, skipSize);
+            if (cursor.skipSize > 0) {
+                cursor.count += skip(cache, rs, cursor.skipSize);
             }
 
             // determine the number of records to return
-            int size = batchSize;
-            int top = Integer.MAX_VALUE;
+            cursor.size = batchSize;
             if (countQuery && topOption != null) {
-                top = topOption;
-                size = top;
+                cursor.top = topOption;
+                cursor.size = cursor.top;
                 if (batchSize > 0) {
-                    size = Math.min(batchSize, size);
+                    cursor.size = Math.min(batchSize, cursor.size);
                 }
-            } else if (size < 1) {
-                size = Integer.MAX_VALUE;
+            } else if (cursor.size < 1) {
+                cursor.size = Integer.MAX_VALUE;
             }
-
-            // build the results
-            for (int i = 0; i < size; i++) {
-                if (!rs.next()) {
-                    break;
+            connection = null;
+            return cursor;
+        } catch (Exception e) {
+            throw new TeiidRuntimeException(e);
+        } finally {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
                 }
-                count++;
-                respose.addRow(rs);
             }
+        }
+    }
+
+    /**
+     * Holds the connection open while the current page is read.
+     */
+    private final class LocalCursor implements QueryCursor {
+        private final Connection connection;
+        private final ResultSet rs;
+        private final boolean cache;
+        private final boolean countQuery;
+        int count;
+        int skipSize;
+        int size;
+        int top = Integer.MAX_VALUE;
+        private int rows;
+
+        LocalCursor(Connection connection, ResultSet rs, boolean cache, boolean countQuery) {
+            this.connection = connection;
+            this.rs = rs;
+            this.cache = cache;
+            this.countQuery = countQuery;
+        }
 
+        @Override
+        public boolean next(QueryResponse response) throws SQLException, TeiidException {
+            if (rows >= size || !rs.next()) {
+                return false;
+            }
+            rows++;
+            count++;
+            response.addRow(rs);
+            return true;
+        }
+
+        @Override
+        public void finish(QueryResponse response) throws SQLException {
             // set the count
             if (countQuery) {
                 if (!cache) {
@@ -263,30 +321,29 @@ public class LocalClient implements Client {
                     count = rs.getRow();
                 }
             }
-            respose.setCount(count);
+            response.setCount(count);
 
             // set the skipToken if needed
-            if (cache && respose.size() == this.batchSize) {
-                long end = skipSize + respose.size();
+            if (cache && rows == batchSize) {
+                long end = skipSize + rows;
                 if (countQuery) {
                     if (end < Math.min(top, count)) {
-                        respose.setNext(end);
+                        response.setNext(end);
                     }
                 } else if (rs.next()) {
-                    respose.setNext(end);
+                    response.setNext(end);
                     // will force the entry to cache or is effectively a no-op
                     // when already cached
                     rs.last();
                 }
             }
-        } catch (Exception e) {
-            throw new TeiidRuntimeException(e);
-        } finally {
-            if (connection != null) {
-                try {
-                    connection.close();
-                } catch (SQLException e) {
-                }
+        }
+
+        @Override
+        public void close() {
+            try {
+                connection.close();
+            } catch (SQLException e) {
             }
         }
     }
@@ -67,6 +67,7 @@ public class ODataPlugin {
         TEIID16025,
         TEIID16026,
         TEIID16027,
-        TEIID16028
+        TEIID16028,
+        TEIID16029
     }
 }
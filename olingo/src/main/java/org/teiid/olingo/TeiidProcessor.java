@@ -22,6 +22,7 @@
 package org.teiid.olingo;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.List;
 import java.util.Locale;
@@ -37,6 +38,7 @@ import org.apache.olingo.commons.api.format.ContentType;
 import org.apache.olingo.commons.api.format.ODataFormat;
 import org.apache.olingo.commons.api.http.HttpHeader;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.commons.core.data.EntitySetImpl;
 import org.apache.olingo.server.api.OData;
 import org.apache.olingo.server.api.ODataApplicationException;
 import org.apache.olingo.server.api.ODataRequest;
@@ -53,6 +55,7 @@ import org.apache.olingo.server.api.uri.UriInfo;
 import org.apache.olingo.server.api.uri.UriInfoResource;
 import org.apache.olingo.server.api.uri.UriResourceProperty;
 import org.teiid.core.TeiidException;
+import org.teiid.core.util.ObjectConverterUtil;
 import org.teiid.query.sql.lang.Query;
 
 public class TeiidProcessor extends DefaultProcessor implements
@@ -90,12 +93,17 @@ public class TeiidProcessor extends DefaultProcessor implements
             EntityList result = new EntityList(client.getProperty(LocalClient.INVALID_CHARACTER_REPLACEMENT),
                     visitor.getEntitySet(), visitor.getProjectedColumns());
 
+            ODataFormat format = ODataFormat.fromContentType(contentType);
+            if (!singleRow && isStreamable(format, uriInfo, visitor)) {
+                streamEntitySet(response, uriInfo, contentType, format, visitor, query, parameters, result);
+                return;
+            }
+
             this.client.executeSQL(query, parameters, visitor.isCountQuery(),visitor.getSkip(), visitor.getTop(), result);
             if (singleRow && result.getEntities().isEmpty()){
                 response.setStatusCode(HttpStatusCode.NO_CONTENT.getStatusCode());
             }
             else {
-                ODataFormat format = ODataFormat.fromContentType(contentType);
                 ODataSerializer serializer = this.odata.createSerializer(format);
                 ODataSerializerOptions options = getContextUrl(visitor.getEntitySet(), uriInfo, format,
                         serializer, singleRow, new ContextURLHelper().buildURL(uriInfo));
@@ -108,6 +116,42 @@ public class TeiidProcessor extends DefaultProcessor implements
         }
     }
 
+    /**
+     * Entity sets in the JSON minimal and no metadata formats are streamed, unless 
+     * the count is requested, since that must precede the entities.
+     * <br>
+     * Only unpaged results, with a batch-size &lt;= 0, are streamed.  A page is already
+     * bounded by the batch size and its next link must follow the entities.
+     */
+    private boolean isStreamable(ODataFormat format, UriInfo uriInfo, ODataSQLBuilder visitor) {
+        if (format != ODataFormat.JSON && format != ODataFormat.JSON_NO_METADATA) {
+            return false;
+        }
+        String batchSize = this.client.getProperty(LocalClient.BATCH_SIZE);
+        if (batchSize == null || Integer.parseInt(batchSize) > 0) {
+            return false;
+        }
+        return !visitor.isCountQuery() && (uriInfo.getCountOption() == null || !uriInfo.getCountOption().getValue());
+    }
+
+    private void streamEntitySet(ODataResponse response, UriInfo uriInfo, ContentType contentType, 
+            ODataFormat format, ODataSQLBuilder visitor, Query query, List<SQLParam> parameters, 
+            EntityList result) throws SerializerException, IOException {
+        ODataSerializer serializer = this.odata.createSerializer(format);
+        ODataSerializerOptions options = getContextUrl(visitor.getEntitySet(), uriInfo, format,
+                serializer, false, new ContextURLHelper().buildURL(uriInfo));
+        EntitySetImpl empty = new EntitySetImpl();
+        String envelope = new String(ObjectConverterUtil.convertToCharArray(serializer.entitySet(visitor.getEntitySet(), empty, options), -1, "UTF-8")); //$NON-NLS-1$
+        ODataSerializerOptions entityOptions = ODataSerializerOptions.with()
+                .expand(uriInfo.getExpandOption()).select(uriInfo.getSelectOption())
+                .build();
+        QueryCursor cursor = this.client.openSQL(query, parameters, visitor.getSkip(), visitor.getTop());
+        response.setContent(new EntityStream(cursor, result, visitor.getEntitySet(), 
+                this.odata.createSerializer(ODataFormat.JSON_NO_METADATA), envelope, entityOptions));
+        response.setStatusCode(HttpStatusCode.OK.getStatusCode());
+        response.setHeader(HttpHeader.CONTENT_TYPE,contentType.toContentTypeString());
+    }
+
     private void handleException(ODataResponse response, ContentType format, Exception e) {
         try {
             ODataSerializer serializer = this.odata.createSerializer(ODataFormat.fromContentType(format));
@@ -0,0 +1,197 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.olingo;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collections;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.edm.EdmEntitySet;
+import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.core.data.EntityImpl;
+import org.apache.olingo.server.api.serializer.ODataSerializer;
+import org.apache.olingo.server.api.serializer.ODataSerializerOptions;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.teiid.core.TeiidException;
+import org.teiid.core.util.ObjectConverterUtil;
+
+@SuppressWarnings("nls")
+public class TestEntityStream {
+
+    private static final String ENVELOPE = "{\"@odata.context\":\"$metadata#G1\",\"value\":[]}";
+    private static final String PADDING = new String(new char[100]).replace('\0', 'x');
+
+    /**
+     * Produces the given number of rows, failing on the row at failAt
+     */
+    private static class FakeCursor implements QueryCursor {
+        int rows;
+        int failAt = -1;
+        int read;
+        boolean finished;
+        int closed;
+
+        FakeCursor(int rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public boolean next(QueryResponse response) throws SQLException, TeiidException {
+            if (read == failAt) {
+                throw new TeiidException("failed");
+            }
+            if (read == rows) {
+                return false;
+            }
+            ((EntityList)response).getEntities().add(new EntityImpl());
+            read++;
+            return true;
+        }
+
+        @Override
+        public void finish(QueryResponse response) throws SQLException {
+            finished = true;
+        }
+
+        @Override
+        public void close() {
+            closed++;
+        }
+    }
+
+    private EdmEntitySet edmEntitySet;
+    private EntityList entities;
+    private ODataSerializer serializer;
+
+    @Before public void setup() throws Exception {
+        edmEntitySet = mock(EdmEntitySet.class);
+        EdmEntityType type = mock(EdmEntityType.class);
+        stub(edmEntitySet.getEntityType()).toReturn(type);
+        stub(type.getPropertyNames()).toReturn(Collections.<String>emptyList());
+        entities = new EntityList(null, edmEntitySet, Collections.<ProjectedColumn>emptyList());
+        serializer = mock(ODataSerializer.class);
+        stub(serializer.entity(any(EdmEntitySet.class), any(Entity.class), any(ODataSerializerOptions.class))).toAnswer(new Answer<ByteArrayInputStream>() {
+            int i;
+            @Override
+            public ByteArrayInputStream answer(InvocationOnMock invocation) throws Throwable {
+                return new ByteArrayInputStream(entity(i++).getBytes("UTF-8"));
+            }
+        });
+    }
+
+    static String entity(int i) {
+        return "{\"e1\":\"" + PADDING + "\",\"e2\":" + i + "}";
+    }
+
+    private EntityStream helpCreateStream(FakeCursor cursor) {
+        return new EntityStream(cursor, entities, edmEntitySet, serializer, ENVELOPE, null);
+    }
+
+    @Test public void testEmpty() throws Exception {
+        FakeCursor cursor = new FakeCursor(0);
+        EntityStream stream = helpCreateStream(cursor);
+        assertEquals(ENVELOPE, ObjectConverterUtil.convertToString(stream));
+        assertTrue(cursor.finished);
+        assertEquals(1, cursor.closed);
+    }
+
+    @Test public void testChunking() throws Exception {
+        int rows = 1000;
+        FakeCursor cursor = new FakeCursor(rows);
+        EntityStream stream = helpCreateStream(cursor);
+
+        //only a single chunk is read at a time
+        byte[] buffer = new byte[1 << 20];
+        int length = stream.read(buffer, 0, buffer.length);
+        assertTrue(length >= EntityStream.CHUNK_SIZE);
+        assertTrue(length < EntityStream.CHUNK_SIZE + entity(rows).length() + 1);
+        assertTrue(cursor.read < rows);
+        assertFalse(cursor.finished);
+        assertEquals(0, stream.available());
+
+        StringBuilder expected = new StringBuilder("{\"@odata.context\":\"$metadata#G1\",\"value\":[");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                expected.append(',');
+            }
+            expected.append(entity(i));
+        }
+        expected.append("]}");
+        String result = new String(buffer, 0, length, "UTF-8") + ObjectConverterUtil.convertToString(stream);
+        assertEquals(expected.toString(), result);
+        assertEquals(rows, cursor.read);
+        assertTrue(cursor.finished);
+        assertEquals(1, cursor.closed);
+
+        stream.close();
+        assertEquals(1, cursor.closed);
+    }
+
+    @Test public void testClose() throws Exception {
+        FakeCursor cursor = new FakeCursor(1000);
+        EntityStream stream = helpCreateStream(cursor);
+        assertEquals('{', stream.read());
+        int read = cursor.read;
+
+        //closing before the end releases the cursor without reading further
+        stream.close();
+        assertEquals(1, cursor.closed);
+        assertFalse(cursor.finished);
+        stream.close();
+        assertEquals(1, cursor.closed);
+        assertEquals(read, cursor.read);
+
+        stream.read(new byte[EntityStream.CHUNK_SIZE], 0, EntityStream.CHUNK_SIZE);
+        assertEquals(read, cursor.read);
+    }
+
+    @Test public void testFailure() throws Exception {
+        FakeCursor cursor = new FakeCursor(1000);
+        cursor.failAt = 500;
+        EntityStream stream = helpCreateStream(cursor);
+        byte[] buffer = new byte[EntityStream.CHUNK_SIZE];
+        try {
+            while (stream.read(buffer, 0, buffer.length) != -1) {
+                //consume
+            }
+            fail("expected the row failure");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof TeiidException);
+        }
+        assertFalse(cursor.finished);
+        assertEquals(1, cursor.closed);
+
+        //the stream is done after a failure
+        assertEquals(-1, stream.read());
+        stream.close();
+        assertEquals(1, cursor.closed);
+    }
+
+}
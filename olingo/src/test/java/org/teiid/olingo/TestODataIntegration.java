@@ -23,8 +23,15 @@ package org.teiid.olingo;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
 
+import org.eclipse.jetty.client.ContentExchange;
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.HttpExchange;
 import org.eclipse.jetty.io.Buffer;
@@ -44,6 +51,7 @@ import org.teiid.deployers.VirtualDatabaseException;
 import org.teiid.dqp.internal.datamgr.ConnectorManagerRepository.ConnectorManagerException;
 import org.teiid.json.simple.ContentHandler;
 import org.teiid.json.simple.ParseException;
+import org.teiid.logging.LogConstants;
 import org.teiid.runtime.EmbeddedConfiguration;
 import org.teiid.runtime.EmbeddedServer;
 import org.teiid.translator.TranslatorException;
@@ -136,6 +144,15 @@ public class TestODataIntegration {
         handler.addFilterWithMapping(new FilterHolder(new ODataFilter() {
         	@Override
         	public Client buildClient(String vdbName, int version, Properties props) {
+        		if ("many".equalsIgnoreCase(vdbName)) {
+        			//return the full result without skiptoken paging
+        			Properties copy = new Properties();
+        			if (props != null) {
+        				copy.putAll(props);
+        			}
+        			copy.setProperty("batch-size", "0");
+        			props = copy;
+        		}
         		LocalClient c=  new LocalClient(vdbName, version, props);
         		c.setDriver(teiid.getDriver());
         		return c;
@@ -155,6 +172,7 @@ public class TestODataIntegration {
 
 	private static void deployVDB() throws IOException, ConnectorManagerException, VirtualDatabaseException, TranslatorException {
 		teiid.deployVDB(new FileInputStream(UnitTestUtil.getTestDataFile("loopy-vdb.xml")));
+		teiid.deployVDB(new FileInputStream(UnitTestUtil.getTestDataFile("loopy-many-vdb.xml")));
 	}
 
 	@Test
@@ -286,6 +304,110 @@ public class TestODataIntegration {
         request.waitForDone();
     }
 
+
+    private static ContentExchange get(String url, String accept) throws Exception {
+        HttpClient http = new HttpClient();
+        http.start();
+        try {
+            ContentExchange request = new ContentExchange(true);
+            request.setURL("http://localhost:"+port+url);
+            request.setMethod("GET");
+            if (accept != null) {
+                request.setRequestHeader("Accept", accept);
+            }
+            http.send(request);
+            request.waitForDone();
+            return request;
+        } finally {
+            http.stop();
+        }
+    }
+
+    /**
+     * Requesting the count forces the buffered serialization, which should otherwise 
+     * match the streamed response
+     */
+    private static String helpTestStreamed(String url, String accept) throws Exception {
+        ContentExchange streamed = get(url, accept);
+        Assert.assertEquals(200, streamed.getResponseStatus());
+        ContentExchange buffered = get(url + (url.indexOf('?') < 0?"?":"&") + "$count=true", accept);
+        Assert.assertEquals(200, buffered.getResponseStatus());
+        Assert.assertEquals(buffered.getResponseContent().replaceFirst("\"@odata.count\":\\d+,", ""), streamed.getResponseContent());
+        return streamed.getResponseContent();
+    }
+
+    @Test
+    public void testStreamedEntitySet() throws Exception {
+        String result = helpTestStreamed("/odata4/many/vm1/G1", null);
+        Assert.assertTrue(result.startsWith("{\"@odata.context\":\"$metadata#G1\",\"value\":[{\"e1\":"));
+        Assert.assertTrue(result.length() > 4*EntityStream.CHUNK_SIZE);
+        Assert.assertTrue(result.contains("\"e2\":9999,"));
+    }
+
+    @Test
+    public void testStreamedEntitySetSelect() throws Exception {
+        String result = helpTestStreamed("/odata4/many/vm1/G1?$select=e2", null);
+        Assert.assertTrue(result.startsWith("{\"@odata.context\":\"$metadata#G1(e2)\",\"value\":[{\"e2\":0},{\"e2\":1},"));
+        Assert.assertFalse(result.contains("\"e1\""));
+    }
+
+    @Test
+    public void testStreamedEntitySetNoMetadata() throws Exception {
+        ContentExchange request = get("/odata4/loopy/vm1/G1", "application/json;odata.metadata=none");
+        Assert.assertEquals(200, request.getResponseStatus());
+        Assert.assertEquals("{\"value\":[{\"e1\":\"ABCDEFGHIJ\",\"e2\":0,\"e3\":0.0}]}", request.getResponseContent());
+
+        String result = helpTestStreamed("/odata4/many/vm1/G1?$select=e1,e3", "application/json;odata.metadata=none");
+        Assert.assertTrue(result.startsWith("{\"value\":[{\"e1\":"));
+        Assert.assertFalse(result.contains("@odata.context"));
+    }
+
+    @Test
+    public void testExpandNotStreamed() throws Exception {
+        ContentExchange request = get("/odata4/loopy/vm1/G2?$expand=FK0", null);
+        Assert.assertFalse(request.getResponseContent() != null && request.getResponseContent().contains("\"value\":["));
+    }
+
+    @Test
+    public void testStreamedEntitySetError() throws Exception {
+        final List<LogRecord> records = Collections.synchronizedList(new ArrayList<LogRecord>());
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+            @Override
+            public void flush() {
+            }
+            @Override
+            public void close() throws SecurityException {
+            }
+        };
+        Logger logger = Logger.getLogger(LogConstants.CTX_ODATA);
+        logger.addHandler(handler);
+        try {
+            //the conversion fails at row 8000, after the response has been committed
+            ContentExchange request = get("/odata4/many/vm1/G2", null);
+            Assert.assertEquals(200, request.getResponseStatus());
+            String result = request.getResponseContent();
+            Assert.assertTrue(result.startsWith("{\"@odata.context\":\"$metadata#G2\",\"value\":[{\"e1\":"));
+            Assert.assertTrue(result.length() > EntityStream.CHUNK_SIZE);
+            Assert.assertFalse(result.endsWith("]}"));
+            Assert.assertFalse(result.contains("\"e2\":8000,"));
+            boolean logged = false;
+            for (LogRecord record : records) {
+                if (String.valueOf(record.getMessage()).contains(ODataPlugin.Event.TEIID16029.name())) {
+                    logged = true;
+                }
+            }
+            Assert.assertTrue(logged);
+        } finally {
+            logger.removeHandler(handler);
+        }
+        
+        //the server is still usable
+        Assert.assertEquals(200, get("/odata4/loopy/vm1/G1", null).getResponseStatus());
+    }
     
     @Ignore
     @Test
@@ -46,6 +46,7 @@ import org.teiid.query.metadata.TransformationMetadata;
 import org.teiid.query.optimizer.relational.RelationalPlanner;
 import org.teiid.query.processor.DdlPlan;
 import org.teiid.query.tempdata.GlobalTableStore;
+import org.teiid.runtime.MaterializationManager;
 import org.teiid.runtime.RuntimePlugin;
 
 public abstract class EventDistributorImpl implements EventDistributor {
@@ -105,6 +106,22 @@ public abstract class EventDistributorImpl implements EventDistributor {
 		updateModified(true, vdbName, vdbVersion, schema, tableNames);
 	}
 	
+	@Override
+	public void dataModification(String vdbName, int vdbVersion, String schema, String tableName, 
+			Object[] oldValues, Object[] newValues, String[] columnNames) {
+		updateModified(true, vdbName, vdbVersion, schema, tableName);
+		VDBMetaData vdb = getVdbRepository().getLiveVDB(vdbName, vdbVersion);
+		if (vdb == null) {
+			return;
+		}
+		MaterializationManager manager = vdb.getAttachment(MaterializationManager.class);
+		Table table = getTable(vdbName, vdbVersion, schema, tableName);
+		if (manager == null || table == null) {
+			return;
+		}
+		manager.dataModification(vdb, table, oldValues, newValues, columnNames);
+	}
+	
 	private void updateModified(boolean data, String vdbName, int vdbVersion, String schema,
 			String... objectNames) {
 		Schema s = getSchema(vdbName, vdbVersion, schema);
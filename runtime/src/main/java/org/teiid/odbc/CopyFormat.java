@@ -0,0 +1,364 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.odbc;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.teiid.runtime.RuntimePlugin;
+
+/**
+ * The options and row encoding of the COPY text and csv formats.
+ * Both the 9.0 option list "WITH (FORMAT csv, HEADER)" and the older
+ * "WITH CSV HEADER" forms are accepted.
+ */
+public class CopyFormat {
+	
+	private static Pattern optionPattern = Pattern.compile("'((?:[^']|'')*)'|([\\w\\\\]+)"); //$NON-NLS-1$
+
+	private boolean csv;
+	private boolean header;
+	private char delimiter = '\t';
+	private String nullString = "\\N"; //$NON-NLS-1$
+	private char quote = '"';
+	private char escape = '"';
+	
+	public static CopyFormat parse(String options) throws SQLException {
+		CopyFormat format = new CopyFormat();
+		if (options == null) {
+			return format;
+		}
+		Character delimiter = null;
+		String nullString = null;
+		Character quote = null;
+		Character escape = null;
+		Matcher m = optionPattern.matcher(options);
+		String keyword = null;
+		while (m.find()) {
+			if (keyword == null) {
+				if (m.group(2) == null) {
+					throw invalidOption(options);
+				}
+				String word = m.group(2).toUpperCase();
+				if (word.equals("WITH") || word.equals("AS")) { //$NON-NLS-1$ //$NON-NLS-2$
+					continue;
+				}
+				if (word.equals("CSV")) { //$NON-NLS-1$
+					format.csv = true;
+				} else if (word.equals("HEADER")) { //$NON-NLS-1$
+					format.header = true;
+				} else if (word.equals("FORMAT") || word.equals("DELIMITER") || word.equals("NULL") || word.equals("QUOTE") || word.equals("ESCAPE")) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+					keyword = word;
+				} else if (format.header && (word.equals("TRUE") || word.equals("ON") || word.equals("1"))) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					//optional header value
+				} else if (format.header && (word.equals("FALSE") || word.equals("OFF") || word.equals("0"))) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					format.header = false;
+				} else {
+					throw invalidOption(options);
+				}
+				continue;
+			}
+			String value = m.group(1);
+			if (value != null) {
+				value = value.replace("''", "'"); //$NON-NLS-1$ //$NON-NLS-2$
+			} else {
+				value = m.group(2);
+				if (value.equalsIgnoreCase("AS")) { //$NON-NLS-1$
+					continue;
+				}
+			}
+			if (keyword.equals("FORMAT")) { //$NON-NLS-1$
+				if (value.equalsIgnoreCase("csv")) { //$NON-NLS-1$
+					format.csv = true;
+				} else if (!value.equalsIgnoreCase("text")) { //$NON-NLS-1$
+					throw invalidOption(options);
+				}
+			} else if (keyword.equals("NULL")) { //$NON-NLS-1$
+				nullString = value;
+			} else {
+				if (value.length() != 1 || m.group(1) == null) {
+					throw invalidOption(options);
+				}
+				if (keyword.equals("DELIMITER")) { //$NON-NLS-1$
+					delimiter = value.charAt(0);
+				} else if (keyword.equals("QUOTE")) { //$NON-NLS-1$
+					quote = value.charAt(0);
+				} else {
+					escape = value.charAt(0);
+				}
+			}
+			keyword = null;
+		}
+		if (keyword != null || (!format.csv && (format.header || quote != null || escape != null))) {
+			throw invalidOption(options);
+		}
+		if (format.csv) {
+			format.delimiter = ',';
+			format.nullString = ""; //$NON-NLS-1$
+		}
+		if (delimiter != null) {
+			format.delimiter = delimiter;
+		}
+		if (nullString != null) {
+			format.nullString = nullString;
+		}
+		if (quote != null) {
+			format.quote = quote;
+			format.escape = quote;
+		}
+		if (escape != null) {
+			format.escape = escape;
+		}
+		if (format.delimiter == '\r' || format.delimiter == '\n' || (format.csv && format.delimiter == format.quote) || (!format.csv && format.delimiter == '\\')) {
+			throw invalidOption(options);
+		}
+		return format;
+	}
+
+	private static SQLException invalidOption(String options) {
+		return new SQLException(RuntimePlugin.Util.gs(RuntimePlugin.Event.TEIID40126, options));
+	}
+	
+	public boolean isCsv() {
+		return csv;
+	}
+	
+	public boolean isHeader() {
+		return header;
+	}
+	
+	/**
+	 * Write the value with the format escaping.  The caller is responsible for
+	 * the delimiters and line endings. 
+	 */
+	public void writeValue(Writer out, String value) throws IOException {
+		if (value == null) {
+			out.write(this.nullString);
+			return;
+		}
+		if (this.csv) {
+			boolean quoted = value.length() == 0 || value.equals(this.nullString) || value.equals("\\."); //$NON-NLS-1$
+			for (int i = 0; !quoted && i < value.length(); i++) {
+				char c = value.charAt(i);
+				quoted = c == this.delimiter || c == this.quote || c == this.escape || c == '\r' || c == '\n';
+			}
+			if (!quoted) {
+				out.write(value);
+				return;
+			}
+			out.write(this.quote);
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == this.quote || c == this.escape) {
+					out.write(this.escape);
+				}
+				out.write(c);
+			}
+			out.write(this.quote);
+			return;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '\b':
+				out.write("\\b"); //$NON-NLS-1$
+				break;
+			case '\f':
+				out.write("\\f"); //$NON-NLS-1$
+				break;
+			case '\n':
+				out.write("\\n"); //$NON-NLS-1$
+				break;
+			case '\r':
+				out.write("\\r"); //$NON-NLS-1$
+				break;
+			case '\t':
+				out.write("\\t"); //$NON-NLS-1$
+				break;
+			case 11:
+				out.write("\\v"); //$NON-NLS-1$
+				break;
+			default:
+				if (c == '\\' || c == this.delimiter) {
+					out.write('\\');
+				}
+				out.write(c);
+			}
+		}
+	}
+	
+	public void writeDelimiter(Writer out) throws IOException {
+		out.write(this.delimiter);
+	}
+	
+	/**
+	 * Read the next row starting at the given position
+	 * @return the position after the row terminator or -1 if the row is not complete
+	 */
+	public int readRow(CharSequence chars, int start, List<String> values) {
+		if (this.csv) {
+			return readCsvRow(chars, start, values);
+		}
+		int end = -1;
+		for (int i = start; i < chars.length(); i++) {
+			if (chars.charAt(i) == '\n') {
+				end = i;
+				break;
+			}
+		}
+		if (end == -1) {
+			return -1;
+		}
+		int lineEnd = end;
+		if (lineEnd > start && chars.charAt(lineEnd - 1) == '\r') {
+			lineEnd--;
+		}
+		int fieldStart = start;
+		for (int i = start; i <= lineEnd; i++) {
+			if (i == lineEnd || chars.charAt(i) == this.delimiter) {
+				values.add(readTextValue(chars, fieldStart, i));
+				fieldStart = i + 1;
+			} else if (chars.charAt(i) == '\\' && i + 1 < lineEnd) {
+				i++;
+			}
+		}
+		return end + 1;
+	}
+
+	private String readTextValue(CharSequence chars, int start, int end) {
+		String raw = chars.subSequence(start, end).toString();
+		if (raw.equals(this.nullString)) {
+			return null;
+		}
+		int index = raw.indexOf('\\');
+		if (index == -1) {
+			return raw;
+		}
+		StringBuilder result = new StringBuilder(raw.length());
+		result.append(raw, 0, index);
+		for (int i = index; i < raw.length(); i++) {
+			char c = raw.charAt(i);
+			if (c != '\\' || i + 1 == raw.length()) {
+				result.append(c);
+				continue;
+			}
+			c = raw.charAt(++i);
+			switch (c) {
+			case 'b':
+				result.append('\b');
+				break;
+			case 'f':
+				result.append('\f');
+				break;
+			case 'n':
+				result.append('\n');
+				break;
+			case 'r':
+				result.append('\r');
+				break;
+			case 't':
+				result.append('\t');
+				break;
+			case 'v':
+				result.append((char)11);
+				break;
+			case 'x':
+				int hexEnd = i + 1;
+				while (hexEnd < raw.length() && hexEnd < i + 3 && Character.digit(raw.charAt(hexEnd), 16) != -1) {
+					hexEnd++;
+				}
+				if (hexEnd == i + 1) {
+					result.append(c);
+				} else {
+					result.append((char)Integer.parseInt(raw.substring(i + 1, hexEnd), 16));
+					i = hexEnd - 1;
+				}
+				break;
+			default:
+				if (c >= '0' && c <= '7') {
+					int octalEnd = i + 1;
+					while (octalEnd < raw.length() && octalEnd < i + 3 && raw.charAt(octalEnd) >= '0' && raw.charAt(octalEnd) <= '7') {
+						octalEnd++;
+					}
+					result.append((char)Integer.parseInt(raw.substring(i, octalEnd), 8));
+					i = octalEnd - 1;
+				} else {
+					result.append(c);
+				}
+			}
+		}
+		return result.toString();
+	}
+	
+	private int readCsvRow(CharSequence chars, int start, List<String> values) {
+		StringBuilder value = new StringBuilder();
+		boolean quoted = false;
+		boolean inQuotes = false;
+		for (int i = start; i < chars.length(); i++) {
+			char c = chars.charAt(i);
+			if (inQuotes) {
+				if (c == this.escape || c == this.quote) {
+					if (i + 1 == chars.length()) {
+						return -1;
+					}
+					char next = chars.charAt(i + 1);
+					if (c == this.escape && (next == this.quote || next == this.escape)) {
+						value.append(next);
+						i++;
+						continue;
+					}
+					if (c == this.quote) {
+						inQuotes = false;
+						continue;
+					}
+				}
+				value.append(c);
+			} else if (c == this.quote) {
+				inQuotes = true;
+				quoted = true;
+			} else if (c == this.delimiter || c == '\n') {
+				if (c == '\n' && value.length() > 0 && value.charAt(value.length() - 1) == '\r') {
+					value.setLength(value.length() - 1);
+				}
+				String result = value.toString();
+				if (!quoted && result.equals(this.nullString)) {
+					result = null;
+				}
+				values.add(result);
+				if (c == '\n') {
+					return i + 1;
+				}
+				value.setLength(0);
+				quoted = false;
+			} else {
+				value.append(c);
+			}
+		}
+		return -1;
+	}
+	
+}
@@ -67,11 +67,11 @@ public interface ODBCClientRemote {
 
 	//	RowDescription (B)
 	//	NoData (B)
-	void sendResultSetDescription(List<PgColInfo> cols);
+	void sendResultSetDescription(List<PgColInfo> cols, int[] resultColumnFormat);
 	
 	//	DataRow (B)
 	//	CommandComplete (B)
-	void sendResults(String sql, ResultSetImpl rs, List<PgColInfo> cols, ResultsFuture<Integer> result, int rowCount, boolean describeRows);
+	void sendResults(String sql, ResultSetImpl rs, List<PgColInfo> cols, ResultsFuture<Integer> result, int rowCount, boolean describeRows, int[] resultColumnFormat);
 	
 	void sendCommandComplete(String sql, Integer count);	
 
@@ -94,6 +94,15 @@ public interface ODBCClientRemote {
 	
 	void sendSslResponse();
 	
+	//	CopyInResponse (B)
+	void sendCopyInResponse(int columnCount);
+	
+	//	CopyOutResponse (B)
+	//	CopyData (B)
+	//	CopyDone (B)
+	//	CommandComplete (B)
+	void sendCopyOut(ResultSetImpl rs, List<PgColInfo> cols, CopyFormat format, ResultsFuture<Integer> result);
+	
 	// unimplemented backend messages
 	
 	//	AuthenticationKerberosV5 (B)
@@ -103,11 +112,6 @@ public interface ODBCClientRemote {
 	
 	//	CloseComplete (B)
 
-	//	CopyData (F & B)
-	//	CopyDone (F & B)
-	//	CopyInResponse (B)
-	//	CopyOutResponse (B)
-	
 	//	NoticeResponse (B)
 	//	NotificationResponse (B)
 	
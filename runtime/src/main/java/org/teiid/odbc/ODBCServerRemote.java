@@ -62,10 +62,14 @@ public interface ODBCServerRemote {
 	
 	void sslRequest();
 	
-	//  unimplemented frontend messages
 	//	CopyData (F & B)
+	void copyData(byte[] data);
+	
 	//	CopyDone (F & B)
+	void copyDone();
+	
 	//	CopyFail (F)
+	void copyFail(String msg);
 }
 
 
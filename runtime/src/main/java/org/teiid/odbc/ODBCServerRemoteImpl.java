@@ -26,11 +26,13 @@ import static org.teiid.odbc.PGUtil.*;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.nio.charset.Charset;
 import java.sql.ParameterMetaData;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -51,6 +53,7 @@ import org.teiid.client.security.LogonException;
 import org.teiid.client.security.LogonResult;
 import org.teiid.client.util.ResultsFuture;
 import org.teiid.core.util.ApplicationInfo;
+import org.teiid.core.util.PropertiesUtils;
 import org.teiid.core.util.StringUtil;
 import org.teiid.deployers.PgCatalogMetadataStore;
 import org.teiid.dqp.service.SessionService;
@@ -69,6 +72,7 @@ import org.teiid.runtime.RuntimePlugin;
 import org.teiid.transport.LocalServerConnection;
 import org.teiid.transport.LogonImpl;
 import org.teiid.transport.ODBCClientInstance;
+import org.teiid.transport.PGCharsetConverter;
 import org.teiid.transport.PgBackendProtocol;
 import org.teiid.transport.PgFrontendProtocol.NullTerminatedStringDataInputStream;
 
@@ -165,6 +169,9 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 	private static Pattern releasePattern = Pattern.compile("RELEASE (\\w+\\d?_*)", Pattern.DOTALL|Pattern.CASE_INSENSITIVE); //$NON-NLS-1$
 	private static Pattern savepointPattern = Pattern.compile("SAVEPOINT (\\w+\\d?_*)", Pattern.DOTALL|Pattern.CASE_INSENSITIVE); //$NON-NLS-1$
 	private static Pattern rollbackPattern = Pattern.compile("ROLLBACK\\s*(to)*\\s*(\\w+\\d+_*)*", Pattern.DOTALL|Pattern.CASE_INSENSITIVE); //$NON-NLS-1$
+	private static Pattern copyPattern = Pattern.compile("COPY\\s+(?:\\((.*)\\)|((?:\"[^\"]*\"|[^\\s(\"])+)(?:\\s*\\(([^)]*)\\))?)\\s+(?:(FROM\\s+STDIN)|TO\\s+STDOUT)(?:\\s+(.*))?", Pattern.DOTALL|Pattern.CASE_INSENSITIVE); //$NON-NLS-1$
+	
+	private static final int COPY_BATCH_SIZE = PropertiesUtils.getIntProperty(System.getProperties(), "org.teiid.ODBCCopyBatchSize", 2048); //$NON-NLS-1$
 	
 	private TeiidDriver driver;
 	private ODBCClientRemote client;
@@ -174,6 +181,8 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 	private boolean errorOccurred;
 	
 	private volatile ResultsFuture<Boolean> executionFuture;
+	private CopyIn copyIn;
+	private int copyBatchSize = COPY_BATCH_SIZE;
 	
 	// TODO: this is unbounded map; need to define some boundaries as to how many stmts each session can have
 	private Map<String, Prepared> preparedMap = Collections.synchronizedMap(new HashMap<String, Prepared>());
@@ -187,6 +196,13 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 		this.logon = logon;
 	}
 	
+	/**
+	 * Set the number of rows executed in each COPY FROM batch
+	 */
+	void setCopyBatchSize(int copyBatchSize) {
+		this.copyBatchSize = copyBatchSize;
+	}
+	
 	@Override
 	public void initialize(Properties props) {
 		this.props = props;		
@@ -359,7 +375,7 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 		if (rows < 1) {
 			throw new SQLException(RuntimePlugin.Util.gs(RuntimePlugin.Event.TEIID40112, cursorName, rows));
 		}
-		this.client.sendResults("FETCH", cursor.rs, cursor.prepared.columnMetadata, completion, rows, true); //$NON-NLS-1$
+		this.client.sendResults("FETCH", cursor.rs, cursor.prepared.columnMetadata, completion, rows, true, null); //$NON-NLS-1$
 	}
 	
 	private void cursorMove(String prepareName, final int rows, final ResultsFuture<Integer> completion) throws SQLException {
@@ -443,7 +459,7 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
     			try {
 	                if (future.get()) {
                 		List<PgColInfo> cols = getPgColInfo(stmt.getResultSet().getMetaData());
-                        client.sendResults(sql, stmt.getResultSet(), cols, completion, -1, true);
+                        client.sendResults(sql, stmt.getResultSet(), cols, completion, -1, true, null);
 	                } else {
 	                	client.sendUpdateCount(sql, stmt.getUpdateCount());
 	                	setEncoding();
@@ -458,6 +474,132 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 		});    	
     }	
 	
+	private void copy(String sql, Matcher m, ResultsFuture<Integer> completion) throws SQLException {
+		String query = m.group(1);
+		String table = m.group(2);
+		String columns = m.group(3);
+		CopyFormat format = CopyFormat.parse(m.group(5));
+		if (m.group(4) == null) {
+			if (query == null) {
+				query = "SELECT " + (columns != null?columns:"*") + " FROM " + table; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			}
+			copyOut(fixSQL(query), format, completion);
+			return;
+		}
+		if (query != null) {
+			throw new SQLException(RuntimePlugin.Util.gs(RuntimePlugin.Event.TEIID40126, sql));
+		}
+		int columnCount = 0;
+		if (columns == null) {
+			PreparedStatementImpl stmt = this.connection.prepareStatement("SELECT * FROM " + table); //$NON-NLS-1$
+			try {
+				columnCount = stmt.getMetaData().getColumnCount();
+			} finally {
+				stmt.close();
+			}
+		} else {
+			columnCount = columns.split(",").length; //$NON-NLS-1$
+		}
+		StringBuilder insert = new StringBuilder("INSERT INTO ").append(table); //$NON-NLS-1$
+		if (columns != null) {
+			insert.append(" (").append(columns).append(")"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		insert.append(" VALUES ("); //$NON-NLS-1$
+		for (int i = 0; i < columnCount; i++) {
+			if (i > 0) {
+				insert.append(", "); //$NON-NLS-1$
+			}
+			insert.append("?"); //$NON-NLS-1$
+		}
+		insert.append(")"); //$NON-NLS-1$
+		PreparedStatementImpl stmt = this.connection.prepareStatement(insert.toString());
+		Charset charset = null;
+		String encoding = getEncoding();
+		if (encoding != null) {
+			charset = PGCharsetConverter.getCharset(encoding);
+		}
+		if (charset == null) {
+			charset = Charset.forName("UTF-8"); //$NON-NLS-1$
+		}
+		this.copyIn = new CopyIn(stmt, format, columnCount, charset, completion);
+		this.client.sendCopyInResponse(columnCount);
+		//the copy messages must not be queued while awaiting data
+		doneExecuting();
+	}
+	
+	private void copyOut(final String sql, final CopyFormat format, final ResultsFuture<Integer> completion) throws SQLException {
+    	final StatementImpl stmt = connection.createStatement();
+        executionFuture = stmt.submitExecute(sql, null);
+        completion.addCompletionListener(new ResultsFuture.CompletionListener<Integer>() {
+        	public void onCompletion(ResultsFuture<Integer> future) {
+        		try {
+					stmt.close();
+				} catch (SQLException e) {
+					LogManager.logDetail(LogConstants.CTX_ODBC, e, "Error closing statement"); //$NON-NLS-1$
+				}
+        	}
+        });
+        executionFuture.addCompletionListener(new ResultsFuture.CompletionListener<Boolean>() {
+    		@Override
+    		public void onCompletion(ResultsFuture<Boolean> future) {
+    			executionFuture = null;
+    			try {
+	                if (future.get()) {
+                		List<PgColInfo> cols = getPgColInfo(stmt.getResultSet().getMetaData());
+                        client.sendCopyOut(stmt.getResultSet(), cols, format, completion);
+	                } else {
+	                	completion.getResultsReceiver().exceptionOccurred(new SQLException(RuntimePlugin.Util.gs(RuntimePlugin.Event.TEIID40126, sql)));
+	                }
+    			} catch (Throwable e) {
+    				if (!completion.isDone()) {
+    					completion.getResultsReceiver().exceptionOccurred(e);
+    				}
+    			}
+    		}
+		});    	
+	}
+	
+	@Override
+	public void copyData(byte[] data) {
+		CopyIn c = this.copyIn;
+		if (c == null) {
+			return; //discarded after a failure
+		}
+		try {
+			c.data(data);
+		} catch (SQLException e) {
+			copyFailed(e);
+		}
+	}
+	
+	@Override
+	public void copyDone() {
+		CopyIn c = this.copyIn;
+		if (c == null) {
+			return;
+		}
+		try {
+			c.finish();
+		} catch (SQLException e) {
+			copyFailed(e);
+		}
+	}
+	
+	@Override
+	public void copyFail(String msg) {
+		copyFailed(new SQLException(RuntimePlugin.Util.gs(RuntimePlugin.Event.TEIID40128, msg)));
+	}
+	
+	private void copyFailed(Throwable t) {
+		CopyIn c = this.copyIn;
+		if (c == null) {
+			return;
+		}
+		this.copyIn = null;
+		c.close();
+		c.completion.getResultsReceiver().exceptionOccurred(t);
+	}
+
 	@Override
 	public void prepare(String prepareName, String sql, int[] paramType) {
 		if (prepareName == null || prepareName.length() == 0) {
@@ -619,7 +761,7 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 
 	private void sendCursorResults(final Portal cursor, final int fetchSize) {
 		ResultsFuture<Integer> result = new ResultsFuture<Integer>();
-		this.client.sendResults(null, cursor.rs, cursor.prepared.columnMetadata, result, fetchSize, false);
+		this.client.sendResults(null, cursor.rs, cursor.prepared.columnMetadata, result, fetchSize, false, cursor.resultColumnFormat);
 		result.addCompletionListener(new ResultsFuture.CompletionListener<Integer>() {
 			public void onCompletion(ResultsFuture<Integer> future) {
 				try {
@@ -787,7 +929,8 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 		
 		// followed by a RowDescription message describing the rows that will be returned when the statement  
 		// is eventually executed (or a NoData message if the statement will not return rows).
-		this.client.sendResultSetDescription(query.columnMetadata);
+		// the format codes are not yet known, so text is described
+		this.client.sendResultSetDescription(query.columnMetadata, null);
 	}
 	
 	private void errorOccurred(String error) {
@@ -816,7 +959,7 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 			errorOccurred(RuntimePlugin.Util.gs(RuntimePlugin.Event.TEIID40078, bindName));
 		}
 		else {
-			this.client.sendResultSetDescription(query.prepared.columnMetadata);
+			this.client.sendResultSetDescription(query.prepared.columnMetadata, query.resultColumnFormat);
 		}
 	}
 
@@ -901,6 +1044,10 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 
 	@Override
 	public void terminate() {
+		if (this.copyIn != null) {
+			this.copyIn.close();
+			this.copyIn = null;
+		}
 		for (Portal p: this.portalMap.values()) {
 			closePortal(p);
 		}
@@ -1027,6 +1174,9 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 		    				client.sendCommandComplete("DEALLOCATE", null); //$NON-NLS-1$
 		    				results.getResultsReceiver().receiveResults(1);
 		    			}
+		    			else if ((m = copyPattern.matcher(sql)).matches()) {
+		    				copy(sql, m, results);
+		    			}
 		    			else {
 		    				sqlExecute(sql, results);
 		    			}
@@ -1088,6 +1238,232 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 		return result;
 	}  
     
+    /**
+     * Parses the CopyData rows and executes them in prepared batches of 
+     * {@link #copyBatchSize} rows.  A single batch is executed as the current 
+     * command.  If more than one batch is needed under autoCommit, then the 
+     * batches are executed in a local transaction so that the copy is all or nothing.
+     * <br>
+     * Batches and the final commit are submitted without blocking.  While one is pending 
+     * the server is marked as executing so that further copy messages are queued, and
+     * processing resumes from the completion listener.
+     */
+    private final class CopyIn {
+    	private final PreparedStatementImpl stmt;
+    	private final CopyFormat format;
+    	private final int columnCount;
+    	private final Charset charset;
+    	private final ResultsFuture<Integer> completion;
+    	private final StringBuilder pending = new StringBuilder();
+    	private final List<String> values = new ArrayList<String>();
+    	private byte[] partial;
+    	private boolean skipHeader;
+    	private boolean ended;
+    	private boolean done;
+    	private boolean localTransaction;
+    	private volatile boolean batchExecuting;
+    	private int rows;
+    	private int batchRows;
+    	
+    	public CopyIn(PreparedStatementImpl stmt, CopyFormat format, int columnCount, Charset charset, ResultsFuture<Integer> completion) {
+    		this.stmt = stmt;
+    		this.format = format;
+    		this.columnCount = columnCount;
+    		this.charset = charset;
+    		this.completion = completion;
+    		this.skipHeader = format.isHeader();
+		}
+    	
+    	void data(byte[] data) throws SQLException {
+    		if (ended) {
+    			return;
+    		}
+    		//only decode complete lines, so that multi-byte characters are not split
+    		int last = data.length - 1;
+    		while (last >= 0 && data[last] != '\n') {
+    			last--;
+    		}
+    		if (last < 0) {
+    			partial = append(partial, data, data.length);
+    			return;
+    		}
+    		if (partial != null) {
+    			pending.append(new String(append(partial, data, last + 1), charset));
+    			partial = null;
+    		} else {
+    			pending.append(new String(data, 0, last + 1, charset));
+    		}
+    		if (last + 1 < data.length) {
+    			partial = Arrays.copyOfRange(data, last + 1, data.length);
+    		}
+    		resume();
+    	}
+
+		private byte[] append(byte[] bytes, byte[] data, int length) {
+			if (bytes == null) {
+				return Arrays.copyOf(data, length);
+			}
+			byte[] result = Arrays.copyOf(bytes, bytes.length + length);
+			System.arraycopy(data, 0, result, bytes.length, length);
+			return result;
+		}
+		
+		void finish() throws SQLException {
+    		if (partial != null) {
+    			pending.append(new String(partial, charset));
+    			partial = null;
+    		}
+    		if (!ended && pending.length() > 0 && pending.charAt(pending.length() - 1) != '\n') {
+    			pending.append('\n');
+    		}
+    		done = true;
+    		resume();
+    	}
+		
+		/**
+		 * Process the pending rows until more data is needed, a batch is submitted, or the copy is complete
+		 */
+		private void resume() throws SQLException {
+			if (processRows()) {
+				return;
+			}
+			if (!done) {
+				return;
+			}
+			if (!ended && pending.length() > 0) {
+				throw new SQLException(RuntimePlugin.Util.gs(RuntimePlugin.Event.TEIID40129));
+			}
+			if (batchRows > 0) {
+				submitBatch();
+				return;
+			}
+			complete();
+		}
+    	
+		/**
+		 * @return true if a batch was submitted
+		 */
+    	private boolean processRows() throws SQLException {
+    		int pos = 0;
+    		while (!ended) {
+    			if (pending.length() - pos >= 3 && pending.charAt(pos) == '\\' && pending.charAt(pos + 1) == '.' 
+    					&& (pending.charAt(pos + 2) == '\n' || pending.charAt(pos + 2) == '\r')) {
+    				ended = true;
+    				break;
+    			}
+    			values.clear();
+    			int next = format.readRow(pending, pos, values);
+    			if (next < 0) {
+    				break;
+    			}
+    			pos = next;
+    			if (skipHeader) {
+    				skipHeader = false;
+    				continue;
+    			}
+    			rows++;
+    			if (values.size() != columnCount) {
+    				throw new SQLException(RuntimePlugin.Util.gs(RuntimePlugin.Event.TEIID40127, rows, values.size(), columnCount));
+    			}
+    			for (int i = 0; i < columnCount; i++) {
+    				stmt.setObject(i + 1, values.get(i));
+    			}
+    			stmt.addBatch();
+    			if (++batchRows >= copyBatchSize) {
+    				if (!localTransaction && connection.getAutoCommit()) {
+    					connection.setAutoCommit(false);
+    					localTransaction = true;
+    				}
+    				pending.delete(0, pos);
+    				submitBatch();
+    				return true;
+    			}
+    		}
+    		if (ended) {
+    			pending.setLength(0);
+    		} else {
+    			pending.delete(0, pos);
+    		}
+    		return false;
+    	}
+    	
+    	private void submitBatch() throws SQLException {
+    		synchronized (ODBCServerRemoteImpl.this) {
+    			executing = true;
+    		}
+    		batchRows = 0;
+    		batchExecuting = true;
+    		stmt.submitExecuteBatch().addCompletionListener(new ResultsFuture.CompletionListener<Boolean>() {
+    			@Override
+    			public void onCompletion(ResultsFuture<Boolean> future) {
+    				batchExecuting = false;
+    				try {
+    					future.get();
+    					resume();
+    				} catch (Throwable e) {
+    					doneExecuting();
+    					copyFailed(e);
+    					return;
+    				}
+    				if (!batchExecuting && copyIn == CopyIn.this) {
+    					//allow the queued copy messages to be processed
+    					doneExecuting();
+    				}
+    			}
+			});
+    	}
+    	
+    	@SuppressWarnings({ "unchecked", "rawtypes" })
+		private void complete() throws SQLException {
+    		synchronized (ODBCServerRemoteImpl.this) {
+    			executing = true;
+    		}
+    		copyIn = null;
+    		if (!localTransaction) {
+    			completed();
+    			return;
+    		}
+    		localTransaction = false;
+    		ResultsFuture<?> commit = connection.submitSetAutoCommitTrue(true);
+    		commit.addCompletionListener(new ResultsFuture.CompletionListener() {
+    			@Override
+    			public void onCompletion(ResultsFuture future) {
+    				try {
+    					future.get();
+    				} catch (Throwable e) {
+    					close();
+    					doneExecuting();
+    					completion.getResultsReceiver().exceptionOccurred(e);
+    					return;
+    				}
+    				completed();
+    			}
+			});
+    	}
+    	
+    	private void completed() {
+    		close();
+    		client.sendCommandComplete("COPY", rows); //$NON-NLS-1$
+    		completion.getResultsReceiver().receiveResults(rows);
+    	}
+    	
+    	void close() {
+    		if (localTransaction) {
+    			localTransaction = false;
+    			try {
+    				connection.submitSetAutoCommitTrue(false);
+    			} catch (SQLException e) {
+    				LogManager.logDetail(LogConstants.CTX_ODBC, e, "Error rolling back copy"); //$NON-NLS-1$
+    			}
+    		}
+    		try {
+				stmt.close();
+			} catch (SQLException e) {
+				LogManager.logDetail(LogConstants.CTX_ODBC, e, "Error closing statement"); //$NON-NLS-1$
+			}
+    	}
+    }
+
 	/**
      * Represents a PostgreSQL Prepared object.  The actual plan preparation is performed lazily.
      */
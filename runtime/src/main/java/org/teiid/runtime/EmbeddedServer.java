@@ -47,6 +47,7 @@ import java.util.Properties;
 import java.util.Timer;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -274,6 +275,7 @@ public class EmbeddedServer extends AbstractVDBDeployer implements EventDistribu
 	};
 	protected boolean throwMetadataErrors = true;
 	private ConcurrentHashMap<String, ExecutionFactory<?, ?>> translators = new ConcurrentHashMap<String, ExecutionFactory<?, ?>>();
+	private List<ExecutionFactory<?, ?>> startedTranslators = new CopyOnWriteArrayList<ExecutionFactory<?, ?>>();
 	private ConcurrentHashMap<String, ConnectionFactoryProvider<?>> connectionFactoryProviders = new ConcurrentHashMap<String, ConnectionFactoryProvider<?>>();
 	protected SessionServiceImpl sessionService = new SessionServiceImpl();
 	protected ObjectReplicator replicator;
@@ -468,6 +470,9 @@ public class EmbeddedServer extends AbstractVDBDeployer implements EventDistribu
 				}
 				rs.clearForVDB(name, 1);
 				ppc.clearForVDB(name, 1);
+				if (dqp.getSourceQueryCache() != null) {
+					dqp.getSourceQueryCache().clearForVDB(name, version);
+				}
 				try {
 					for (SessionMetadata session : sessionService.getSessionsLoggedInToVDB(name, version)) {
 						try {
@@ -580,6 +585,7 @@ public class EmbeddedServer extends AbstractVDBDeployer implements EventDistribu
 		try {
 			ExecutionFactory<?, ?> instance = clazz.newInstance();
 			instance.start();
+			startedTranslators.add(instance);
 			addTranslator(name, instance);
 		} catch (InstantiationException e) {
 			throw new TeiidRuntimeException(e);
@@ -810,6 +816,11 @@ public class EmbeddedServer extends AbstractVDBDeployer implements EventDistribu
 		if (this.bufferService != null) {
 			this.bufferService.stop();
 		}
+		//only the translators started by the server, others are managed by the caller
+		for (ExecutionFactory<?, ?> ef : startedTranslators) {
+			ef.stop();
+		}
+		startedTranslators.clear();
 		bufferService = null;
 		dqp = null;
 		running = false;
@@ -23,8 +23,11 @@ package org.teiid.runtime;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -44,6 +47,7 @@ import org.teiid.metadata.Schema;
 import org.teiid.metadata.Table;
 import org.teiid.query.metadata.MaterializationMetadataRepository;
 import org.teiid.query.metadata.TransformationMetadata;
+import org.teiid.query.tempdata.MatViewDeltaAnalyzer;
 import org.teiid.vdb.runtime.VDBKey;
 
 public abstract class MaterializationManager implements VDBLifeCycleListener {
@@ -54,6 +58,9 @@ public abstract class MaterializationManager implements VDBLifeCycleListener {
 	
 	private Map<VDBKey, List<TimerTask>> scheduledTasks = Collections.synchronizedMap(new HashMap<VDBKey,List<TimerTask>>());
 	private ContainerLifeCycleListener shutdownListener;
+	//incremental refreshes are run serially in the order received, duplicates that are still pending are ignored
+	private Map<List<Object>, VDBMetaData> pendingRefreshes = new LinkedHashMap<List<Object>, VDBMetaData>();
+	private boolean refreshing;
 	
 	public MaterializationManager (ContainerLifeCycleListener shutdownListener) {
 		this.shutdownListener = shutdownListener;
@@ -69,9 +76,18 @@ public abstract class MaterializationManager implements VDBLifeCycleListener {
 			return;
 		}
 		final VDBMetaData vdb = cvdb.getVDB();
+		VDBKey key = new VDBKey(vdb.getName(), vdb.getVersion());
+		
+		synchronized (pendingRefreshes) {
+			for (Iterator<List<Object>> iter = pendingRefreshes.keySet().iterator(); iter.hasNext();) {
+				if (iter.next().get(0).equals(key)) {
+					iter.remove();
+				}
+			}
+		}
 		
         // cancel any matview load pending tasks
-		List<TimerTask> tasks = scheduledTasks.remove(new VDBKey(vdb.getName(), vdb.getVersion()));
+		List<TimerTask> tasks = scheduledTasks.remove(key);
 		if (tasks != null && !tasks.isEmpty()) {
 	        for (TimerTask tt:tasks) {
 	        	tt.cancel();
@@ -108,6 +124,7 @@ public abstract class MaterializationManager implements VDBLifeCycleListener {
 
 		// execute start triggers
 		final VDBMetaData vdb = cvdb.getVDB();
+		vdb.addAttchment(MaterializationManager.class, this);
 			doMaterializationActions(vdb, new MaterializationAction() {
 				@Override
 				public void process(Table table) {
@@ -160,6 +177,66 @@ public abstract class MaterializationManager implements VDBLifeCycleListener {
 		}
 	}
 	
+	/**
+	 * Refresh the materialized view rows affected by a change to the given table.
+	 * The refreshes are performed asynchronously. 
+	 * @see MatViewDeltaAnalyzer
+	 */
+	public void dataModification(VDBMetaData vdb, Table table, Object[] oldValues, Object[] newValues, String[] columnNames) {
+		TransformationMetadata metadata = vdb.getAttachment(TransformationMetadata.class);
+		if (metadata == null) {
+			return;
+		}
+		List<String> commands = MatViewDeltaAnalyzer.getRefreshCommands(metadata, table, 
+				columnNames == null?null:Arrays.asList(columnNames), 
+				oldValues == null?null:Arrays.asList(oldValues), 
+				newValues == null?null:Arrays.asList(newValues));
+		if (commands.isEmpty()) {
+			return;
+		}
+		VDBKey key = new VDBKey(vdb.getName(), vdb.getVersion());
+		synchronized (pendingRefreshes) {
+			for (String command : commands) {
+				pendingRefreshes.put(Arrays.<Object>asList(key, command), vdb);
+			}
+			if (refreshing) {
+				return;
+			}
+			refreshing = true;
+		}
+		getExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				processRefreshes();
+			}
+		});
+	}
+	
+	private void processRefreshes() {
+		while (true) {
+			VDBMetaData vdb = null;
+			String command = null;
+			synchronized (pendingRefreshes) {
+				Iterator<Map.Entry<List<Object>, VDBMetaData>> iter = pendingRefreshes.entrySet().iterator();
+				if (!iter.hasNext()) {
+					refreshing = false;
+					return;
+				}
+				Map.Entry<List<Object>, VDBMetaData> entry = iter.next();
+				vdb = entry.getValue();
+				command = (String)entry.getKey().get(1);
+				iter.remove();
+			}
+			try {
+				executeQuery(vdb, command);
+			} catch (SQLException e) {
+				LogManager.logWarning(LogConstants.CTX_MATVIEWS, e, e.getMessage());
+			} catch (RuntimeException e) {
+				LogManager.logWarning(LogConstants.CTX_MATVIEWS, e, e.getMessage());
+			}
+		}
+	}
+	
 	public void scheduleJob(VDBMetaData vdb, Table table, long ttl, long delay) {
 		TimerTask task = new JobSchedular(vdb, table, ttl, delay);
 		queueTask(vdb, task, delay);
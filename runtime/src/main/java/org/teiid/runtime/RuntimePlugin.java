@@ -137,5 +137,9 @@ public class RuntimePlugin {
     	TEIID40123, 
     	TEIID40124, 
     	TEIID40125, 
+    	TEIID40126, //invalid copy options
+    	TEIID40127,
+    	TEIID40128,
+    	TEIID40129,
     }
 }
@@ -26,9 +26,11 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StreamCorruptedException;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.math.BigDecimal;
 import java.nio.charset.Charset;
 import java.security.GeneralSecurityException;
 import java.sql.Array;
@@ -37,6 +39,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Properties;
+import java.util.TimeZone;
 
 import javax.net.ssl.SSLEngine;
 
@@ -53,6 +56,8 @@ import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.handler.ssl.SslHandler;
 import org.teiid.client.util.ResultsFuture;
 import org.teiid.core.types.ArrayImpl;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.core.types.TransformationException;
 import org.teiid.core.util.ObjectConverterUtil;
 import org.teiid.core.util.ReflectionHelper;
 import org.teiid.core.util.SqlUtil;
@@ -63,9 +68,11 @@ import org.teiid.logging.LogConstants;
 import org.teiid.logging.LogManager;
 import org.teiid.logging.MessageLevel;
 import org.teiid.net.socket.ServiceInvocationStruct;
+import org.teiid.odbc.CopyFormat;
 import org.teiid.odbc.ODBCClientRemote;
 import org.teiid.odbc.PGUtil.PgColInfo;
 import org.teiid.runtime.RuntimePlugin;
+import org.teiid.transport.pg.PGBinaryEncoding;
 import org.teiid.transport.pg.PGbytea;
 /**
  * Represents the messages going from Server --> PG ODBC Client  
@@ -98,16 +105,19 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 		private final List<PgColInfo> cols;
 		private final ResultSetImpl rs;
 		private final ResultsFuture<Integer> result;
+		private final boolean[] binary;
+		private CopyFormat copyFormat;
 		private int rows2Send;
 		private int rowsSent = 0;
 		private int rowsInBuffer = 0;
 		String sql;
 
-		private ResultsWorkItem(List<PgColInfo> cols, ResultSetImpl rs, ResultsFuture<Integer> result, int rows2Send) {
+		private ResultsWorkItem(List<PgColInfo> cols, ResultSetImpl rs, ResultsFuture<Integer> result, int rows2Send, boolean[] binary) {
 			this.cols = cols;
 			this.rs = rs;
 			this.result = result;
 			this.rows2Send = rows2Send;
+			this.binary = binary;
 			initBuffer(maxBufferSize / 8);
 		}
 
@@ -145,11 +155,19 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 			boolean processNext = true;
 			try {
     			if (future.get()) {
-    				sendDataRow(rs, cols);
-    				rowsSent++;
-    				rowsInBuffer++;
-    				boolean done = rowsSent == rows2Send;
-    				flushResults(done);
+    				boolean done = false;
+    				//send the rest of the current batch without waiting on the next future
+    				do {
+	    				if (copyFormat != null) {
+	    					sendCopyData(rs, cols, copyFormat);
+	    				} else {
+	    					sendDataRow(rs, cols, binary);
+	    				}
+	    				rowsSent++;
+	    				rowsInBuffer++;
+	    				done = rowsSent == rows2Send;
+	    				flushResults(done);
+    				} while (!done && rs.available() > 0 && rs.next());
     				processNext = !done;
     				if (done) {
     					if (sql != null) {
@@ -159,6 +177,10 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
     				}
     			} else {
     				sendContents();
+    				if (copyFormat != null) {
+    					startMessage('c');
+    					sendMessage();
+    				}
     				if (sql != null) {
 		    			sendCommandComplete(sql, rowsSent);
 		    		}
@@ -349,25 +371,73 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 	}
 
 	@Override
-	public void sendResultSetDescription(List<PgColInfo> cols) {
-		sendRowDescription(cols);
+	public void sendResultSetDescription(List<PgColInfo> cols, int[] resultColumnFormat) {
+		sendRowDescription(cols, getBinaryColumns(cols, resultColumnFormat));
 	}
 	
 	@Override
 	public void sendResults(String sql, ResultSetImpl rs, List<PgColInfo> cols,
-			ResultsFuture<Integer> result, int rowCount, boolean describeRows) {
+			ResultsFuture<Integer> result, int rowCount, boolean describeRows, int[] resultColumnFormat) {
 		if (nextFuture != null) {
 			sendErrorResponse(new IllegalStateException("Pending results have not been sent")); //$NON-NLS-1$
 		}
-    	
+		boolean[] binary = getBinaryColumns(cols, resultColumnFormat);
     	if (describeRows) {
-    		sendRowDescription(cols);
+    		sendRowDescription(cols, binary);
     	}
-    	ResultsWorkItem r = new ResultsWorkItem(cols, rs, result, rowCount);
+    	ResultsWorkItem r = new ResultsWorkItem(cols, rs, result, rowCount, binary);
     	r.sql = sql;
     	r.run();    
 	}
 
+	@Override
+	public void sendCopyInResponse(int columnCount) {
+		sendCopyResponse('G', columnCount);
+	}
+	
+	@Override
+	public void sendCopyOut(ResultSetImpl rs, List<PgColInfo> cols,
+			CopyFormat format, ResultsFuture<Integer> result) {
+		if (nextFuture != null) {
+			sendErrorResponse(new IllegalStateException("Pending results have not been sent")); //$NON-NLS-1$
+		}
+		sendCopyResponse('H', cols.size());
+		if (format.isHeader()) {
+			try {
+				startMessage('d', 64);
+				for (int i = 0; i < cols.size(); i++) {
+					if (i > 0) {
+						format.writeDelimiter(writer);
+					}
+					format.writeValue(writer, cols.get(i).name);
+				}
+				writer.write('\n');
+				writer.flush();
+				sendMessage();
+			} catch (IOException e) {
+				result.getResultsReceiver().exceptionOccurred(e);
+				return;
+			}
+		}
+		ResultsWorkItem r = new ResultsWorkItem(cols, rs, result, -1, null);
+		r.sql = "COPY"; //$NON-NLS-1$
+		r.copyFormat = format;
+		r.run();
+	}
+	
+	/**
+	 * Send a CopyInResponse or CopyOutResponse for the text formats 
+	 */
+	private void sendCopyResponse(char type, int columnCount) {
+		startMessage(type);
+		write(0);
+		writeShort(columnCount);
+		for (int i = 0; i < columnCount; i++) {
+			writeShort(0);
+		}
+		sendMessage();
+	}
+
 	@Override
 	public void sendUpdateCount(String sql, int updateCount) {
 		sendCommandComplete(sql, updateCount);
@@ -435,24 +505,225 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 		sendMessage();
 	}
 
-	private void sendDataRow(ResultSet rs, List<PgColInfo> cols) throws SQLException, IOException {
+	/**
+	 * Determine the columns that will be sent in the binary format.  Types without 
+	 * a binary encoding are always sent as text.
+	 * @return the binary flags or null if all columns are text 
+	 */
+	private boolean[] getBinaryColumns(List<PgColInfo> cols, int[] resultColumnFormat) {
+		if (cols == null || resultColumnFormat == null || resultColumnFormat.length == 0) {
+			return null;
+		}
+		boolean[] result = null;
+		for (int i = 0; i < cols.size(); i++) {
+			int format = 0;
+			if (resultColumnFormat.length == 1) {
+				format = resultColumnFormat[0];
+			} else if (i < resultColumnFormat.length) {
+				format = resultColumnFormat[i];
+			}
+			if (format != 1) {
+				continue;
+			}
+			switch (cols.get(i).type) {
+				case PG_TYPE_BOOL:
+				case PG_TYPE_BPCHAR:
+			    case PG_TYPE_DATE:
+			    case PG_TYPE_FLOAT4:
+			    case PG_TYPE_FLOAT8:
+			    case PG_TYPE_INT2:
+			    case PG_TYPE_INT4:
+			    case PG_TYPE_INT8:
+			    case PG_TYPE_NUMERIC:
+			    case PG_TYPE_TIME:
+			    case PG_TYPE_TIMESTAMP_NO_TMZONE:
+			    case PG_TYPE_VARCHAR:
+			    case PG_TYPE_TEXT:
+			    case PG_TYPE_BYTEA:
+			    	if (result == null) {
+			    		result = new boolean[cols.size()];
+			    	}
+			    	result[i] = true;
+			    	break;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Encode the current row directly from the row values.  Values that
+	 * need conversion by the result set, such as lobs and date/times, are 
+	 * still obtained through the result set getters.  
+	 */
+	private void sendDataRow(ResultSetImpl rs, List<PgColInfo> cols, boolean[] binary) throws SQLException, IOException {
+		List<?> row = rs.getCurrentRecord();
 		startMessage('D', -1);
 		int lengthIndex = this.dataOut.writerIndex() - 4;
 		writeShort(cols.size());
 		for (int i = 0; i < cols.size(); i++) {
+			Object value = row.get(i);
+			if (value == null) {
+				writeInt(-1);
+				continue;
+			}
+			PgColInfo col = cols.get(i);
+			if (binary != null && binary[i] && writeBinaryContent(rs, col, i+1, value)) {
+				continue;
+			}
 			int dataBytesIndex = this.dataOut.writerIndex();
 			writeInt(-1);
-			getContent(rs, cols.get(i), i+1);
-			writer.flush();
-			if (!rs.wasNull()) {
-				int bytes = this.dataOut.writerIndex() - dataBytesIndex - 4;
-				this.dataOut.setInt(dataBytesIndex, bytes);
+			if (!writeTextContent(col, value)) {
+				getContent(rs, col, i+1, writer);
+				writer.flush();
+			}
+			int bytes = this.dataOut.writerIndex() - dataBytesIndex - 4;
+			this.dataOut.setInt(dataBytesIndex, bytes);
+		}
+		this.dataOut.setInt(lengthIndex, this.dataOut.writerIndex() - lengthIndex);
+	}
+	
+	/**
+	 * Write a CopyData message holding a single row.  The rows are buffered 
+	 * in the same way as DataRow messages.
+	 */
+	private void sendCopyData(ResultSetImpl rs, List<PgColInfo> cols, CopyFormat format) throws SQLException, IOException {
+		List<?> row = rs.getCurrentRecord();
+		startMessage('d', -1);
+		int lengthIndex = this.dataOut.writerIndex() - 4;
+		for (int i = 0; i < cols.size(); i++) {
+			if (i > 0) {
+				format.writeDelimiter(writer);
 			}
+			Object value = row.get(i);
+			String text = null;
+			if (value != null) {
+				PgColInfo col = cols.get(i);
+				text = getSimpleText(col, value);
+				if (text == null) {
+					StringWriter sw = new StringWriter();
+					getContent(rs, col, i+1, sw);
+					text = sw.toString();
+				}
+			}
+			format.writeValue(writer, text);
 		}
+		writer.write('\n');
+		writer.flush();
 		this.dataOut.setInt(lengthIndex, this.dataOut.writerIndex() - lengthIndex);
 	}
 	
-	private void getContent(ResultSet rs, PgColInfo col, int column) throws SQLException, TeiidSQLException, IOException {
+	/**
+	 * Write the text form of simple values without going through the result set
+	 * @return true if the value was written
+	 */
+	private boolean writeTextContent(PgColInfo col, Object value) throws SQLException {
+		String string = getSimpleText(col, value);
+		if (string == null) {
+			return false;
+		}
+		write(string.getBytes(this.encoding));
+		return true;
+	}
+	
+	/**
+	 * Get the text form of simple values without going through the result set
+	 * @return the text or null if the result set must be used
+	 */
+	private String getSimpleText(PgColInfo col, Object value) throws SQLException {
+		switch (col.type) {
+			case PG_TYPE_BOOL:
+			case PG_TYPE_BPCHAR:
+		    case PG_TYPE_FLOAT4:
+		    case PG_TYPE_FLOAT8:
+		    case PG_TYPE_INT2:
+		    case PG_TYPE_INT4:
+		    case PG_TYPE_INT8:
+		    case PG_TYPE_NUMERIC:
+		    case PG_TYPE_VARCHAR:
+		    	if (value instanceof String) {
+		    		return (String)value;
+		    	} 
+		    	if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+		    		try {
+						return (String)DataTypeManager.transformValue(value, DataTypeManager.DefaultDataClasses.STRING);
+					} catch (TransformationException e) {
+						throw TeiidSQLException.create(e);
+					}
+		    	}
+		}
+		return null;
+	}
+	
+	/**
+	 * Write the length and binary form of the value
+	 * @return false if the value should be written as text, which is the same as binary for character types
+	 */
+	private boolean writeBinaryContent(ResultSetImpl rs, PgColInfo col, int column, Object value) throws SQLException, IOException {
+		switch (col.type) {
+			case PG_TYPE_BOOL:
+				writeInt(1);
+				write(((Boolean)value).booleanValue()?1:0);
+				return true;
+			case PG_TYPE_INT2:
+				writeInt(2);
+				writeShort(((Number)value).shortValue());
+				return true;
+			case PG_TYPE_INT4:
+				writeInt(4);
+				writeInt(((Number)value).intValue());
+				return true;
+			case PG_TYPE_INT8:
+				writeInt(8);
+				writeLong(((Number)value).longValue());
+				return true;
+			case PG_TYPE_FLOAT4:
+				writeInt(4);
+				writeInt(Float.floatToIntBits(((Number)value).floatValue()));
+				return true;
+			case PG_TYPE_FLOAT8:
+				writeInt(8);
+				writeLong(Double.doubleToLongBits(((Number)value).doubleValue()));
+				return true;
+			case PG_TYPE_NUMERIC:
+				BigDecimal bd = null;
+				if (value instanceof BigDecimal) {
+					bd = (BigDecimal)value;
+				} else {
+					bd = new BigDecimal(value.toString());
+				}
+				short[] numeric = PGBinaryEncoding.toNumeric(bd);
+				writeInt(numeric.length * 2);
+				for (short digit : numeric) {
+					writeShort(digit);
+				}
+				return true;
+			case PG_TYPE_DATE:
+				writeInt(4);
+				writeInt(PGBinaryEncoding.toDays(rs.getDate(column), TimeZone.getDefault()));
+				return true;
+			case PG_TYPE_TIME:
+				writeInt(8);
+				writeLong(Double.doubleToLongBits(PGBinaryEncoding.toSeconds(rs.getTime(column), TimeZone.getDefault())));
+				return true;
+			case PG_TYPE_TIMESTAMP_NO_TMZONE:
+				writeInt(8);
+				writeLong(Double.doubleToLongBits(PGBinaryEncoding.toSeconds(rs.getTimestamp(column), TimeZone.getDefault())));
+				return true;
+			case PG_TYPE_BYTEA:
+		    	Blob blob = rs.getBlob(column);
+	    		try {
+		    		byte[] bytes = ObjectConverterUtil.convertToByteArray(blob.getBinaryStream(), this.maxLobSize);
+		    		writeInt(bytes.length);
+		    		write(bytes);
+	    		} catch(OutOfMemoryError e) {
+	    			throw new StreamCorruptedException("data too big: " + e.getMessage()); //$NON-NLS-1$ 
+	    		}
+		    	return true;
+		}
+		return false;
+	}
+	
+	private void getContent(ResultSet rs, PgColInfo col, int column, Writer out) throws SQLException, TeiidSQLException, IOException {
 		switch (col.type) {
 			case PG_TYPE_BOOL:
 			case PG_TYPE_BPCHAR:
@@ -468,7 +739,7 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 		    case PG_TYPE_VARCHAR:
 		    	String value = rs.getString(column);
 		    	if (value != null) {
-			    	writer.write(value);
+			    	out.write(value);
 		    	}
 		    	break;
 		    
@@ -476,7 +747,7 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 		    	Reader r = rs.getCharacterStream(column);
 		    	if (r != null) {
 		    		try {
-		    			ObjectConverterUtil.write(writer, r, this.maxLobSize, false);
+		    			ObjectConverterUtil.write(out, r, this.maxLobSize, false);
 		    		} finally {
 		    			r.close();
 		    		}
@@ -488,7 +759,7 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 		    	if (blob != null) {
 		    		try {
 			    		String blobString = PGbytea.toPGString(ObjectConverterUtil.convertToByteArray(blob.getBinaryStream(), this.maxLobSize));
-			    		writer.write(blobString);
+			    		out.write(blobString);
 		    		} catch(OutOfMemoryError e) {
 		    			throw new StreamCorruptedException("data too big: " + e.getMessage()); //$NON-NLS-1$ 
 		    		}
@@ -501,13 +772,13 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 		    	{
 		    	Array obj = rs.getArray(column);
 		    	if (obj != null) {
-		    		writer.append("{");
+		    		out.append("{");
 			    	boolean first = true;
 			    	Object array = obj.getArray();
 					int length = java.lang.reflect.Array.getLength(array);
 			    	for (int i = 0; i < length; i++) {
 			    		if (!first) {
-			    			writer.append(",");
+			    			out.append(",");
 			    		}
 			    		else {
 			    			first = false;
@@ -515,14 +786,14 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 			    		Object o = java.lang.reflect.Array.get(array, i);
 			    		if (o != null) {
 				    		if (col.type == PG_TYPE_TEXTARRAY) {
-				    			escapeQuote(writer, o.toString());
+				    			escapeQuote(out, o.toString());
 				    		}
 				    		else {
-				    			writer.append(o.toString());
+				    			out.append(o.toString());
 				    		}
 			    		}
 			    	}
-			    	writer.append("}");
+			    	out.append("}");
 		    	}
 		    	}
 		    	break;
@@ -534,13 +805,13 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 			    	boolean first = true;
 			    	for (Object o:obj.getValues()) {
 			    		if (!first) {
-			    			writer.append(" ");
+			    			out.append(" ");
 			    		}
 			    		else {
 			    			first = false;
 			    		}
 			    		if (o != null) {
-			    			writer.append(o.toString());
+			    			out.append(o.toString());
 			    		}
 			    	}
 		    	}	
@@ -615,7 +886,7 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 		sendMessage();
 	}
 	
-	private void sendRowDescription(List<PgColInfo> cols) {
+	private void sendRowDescription(List<PgColInfo> cols, boolean[] binary) {
 		if (cols == null) {
 			//send NoData
 			startMessage('n');
@@ -624,7 +895,8 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 		}
 		startMessage('T');
 		writeShort(cols.size());
-		for (PgColInfo info : cols) {
+		for (int i = 0; i < cols.size(); i++) {
+			PgColInfo info = cols.get(i);
 			writeString(info.name);
 			// rel ID
 			writeInt(info.reloid);
@@ -636,8 +908,8 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 			writeShort(getTypeSize(info.type, info.precision));
 			// pg_attribute.atttypmod
 			writeInt(info.mod);
-			// text
-			writeShort(0);
+			// text or binary
+			writeShort(binary != null && binary[i]?1:0);
 		}
 		sendMessage();
 	}
@@ -773,6 +1045,10 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 	private void writeShort(int i) {
 		dataOut.writeShort(i);
 	}
+	
+	private void writeLong(long l) {
+		dataOut.writeLong(l);
+	}
 
 	private void write(byte[] data) {
 		dataOut.writeBytes(data);
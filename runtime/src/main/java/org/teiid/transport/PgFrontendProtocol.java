@@ -165,6 +165,12 @@ public class PgFrontendProtocol extends FrameDecoder {
         	return buildFlush();
         case 'F':
         	return buildFunctionCall(data);        	               	
+        case 'd':
+        	return buildCopyData(data);
+        case 'c':
+        	return buildCopyDone();
+        case 'f':
+        	return buildCopyFail(data);
         default:
         	return buildError();
         }
@@ -175,6 +181,21 @@ public class PgFrontendProtocol extends FrameDecoder {
 		return message;
 	}
 
+	private Object buildCopyData(NullTerminatedStringDataInputStream data) {
+		this.odbcProxy.copyData(data.getRawData());
+		return message;
+	}
+
+	private Object buildCopyDone() {
+		this.odbcProxy.copyDone();
+		return message;
+	}
+
+	private Object buildCopyFail(NullTerminatedStringDataInputStream data) throws IOException {
+		this.odbcProxy.copyFail(data.readString());
+		return message;
+	}
+
 	private Object buildFlush() {
 		this.odbcProxy.flush();
 		return message;
@@ -429,6 +450,10 @@ public class PgFrontendProtocol extends FrameDecoder {
 	    public byte[] readServiceToken() {
 	    	return this.rawData;
 	    }
+	    
+	    public byte[] getRawData() {
+	    	return this.rawData;
+	    }
 	}
 	
 	private static void trace(Object... msg) {
@@ -0,0 +1,136 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.transport.pg;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.TimeZone;
+
+/**
+ * Conversions to the PostgreSQL binary (format code 1) representations of values.
+ * <br>
+ * Date/time values use the floating point representation, since the server 
+ * reports integer_datetimes as off.
+ */
+public class PGBinaryEncoding {
+	
+	/**
+	 * 2000-01-01 00:00:00 GMT
+	 */
+	static final long PG_EPOCH_MILLIS = 946684800000L;
+	static final long MILLIS_PER_DAY = 86400000L;
+	
+	private static final short NUMERIC_POS = 0x0000;
+	private static final short NUMERIC_NEG = 0x4000;
+	private static final int NBASE_DIGITS = 4;
+
+	/**
+	 * Get the numeric representation as the ndigits, weight, sign, and dscale 
+	 * header followed by the base 10000 digits.
+	 */
+	public static short[] toNumeric(BigDecimal value) {
+		short sign = value.signum() < 0 ? NUMERIC_NEG : NUMERIC_POS;
+		if (value.scale() < 0) {
+			value = value.setScale(0);
+		}
+		int scale = value.scale();
+		BigInteger unscaled = value.unscaledValue().abs();
+		//align the fractional digits to a whole base 10000 digit
+		int fractionalGroups = (scale + NBASE_DIGITS - 1) / NBASE_DIGITS;
+		int padding = fractionalGroups * NBASE_DIGITS - scale;
+		if (padding > 0) {
+			unscaled = unscaled.multiply(BigInteger.TEN.pow(padding));
+		}
+		String digits = unscaled.toString();
+		int groups = (digits.length() + NBASE_DIGITS - 1) / NBASE_DIGITS;
+		int offset = groups * NBASE_DIGITS - digits.length(); 
+		short[] values = new short[groups];
+		for (int i = 0; i < groups; i++) {
+			int start = Math.max(0, i * NBASE_DIGITS - offset);
+			int end = (i + 1) * NBASE_DIGITS - offset;
+			values[i] = Short.parseShort(digits.substring(start, end));
+		}
+		int weight = groups - fractionalGroups - 1;
+		int first = 0;
+		while (first < groups && values[first] == 0) {
+			first++;
+			weight--;
+		}
+		int last = groups;
+		while (last > first && values[last - 1] == 0) {
+			last--;
+		}
+		if (first == last) {
+			return new short[] {0, 0, NUMERIC_POS, (short)scale};
+		}
+		short[] result = new short[4 + last - first];
+		result[0] = (short)(last - first);
+		result[1] = (short)weight;
+		result[2] = sign;
+		result[3] = (short)scale;
+		System.arraycopy(values, first, result, 4, last - first);
+		return result;
+	}
+	
+	/**
+	 * Get the local seconds since 2000-01-01 for a timestamp without time zone
+	 */
+	public static double toSeconds(java.sql.Timestamp value, TimeZone tz) {
+		long millis = localMillis(value, tz) - PG_EPOCH_MILLIS;
+		//millisecond precision is already included in the nanos
+		long seconds = millis / 1000;
+		if (millis % 1000 < 0) {
+			seconds--;
+		}
+		return seconds + value.getNanos() / 1000000000d;
+	}
+	
+	/**
+	 * Get the local seconds since midnight for a time without time zone
+	 */
+	public static double toSeconds(java.sql.Time value, TimeZone tz) {
+		long millis = localMillis(value, tz) % MILLIS_PER_DAY;
+		if (millis < 0) {
+			millis += MILLIS_PER_DAY;
+		}
+		return millis / 1000d;
+	}
+	
+	/**
+	 * Get the local days since 2000-01-01 for a date
+	 */
+	public static int toDays(java.sql.Date value, TimeZone tz) {
+		long millis = localMillis(value, tz) - PG_EPOCH_MILLIS;
+		long days = millis / MILLIS_PER_DAY;
+		if (millis % MILLIS_PER_DAY < 0) {
+			days--;
+		}
+		return (int)days;
+	}
+
+	private static long localMillis(java.util.Date value, TimeZone tz) {
+		long millis = value.getTime();
+		return millis + tz.getOffset(millis);
+	}
+	
+}
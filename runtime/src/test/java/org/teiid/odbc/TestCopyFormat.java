@@ -0,0 +1,88 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.odbc;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class TestCopyFormat {
+	
+	private void helpTestRoundTrip(CopyFormat format, String expected, String... values) throws Exception {
+		StringWriter sw = new StringWriter();
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				format.writeDelimiter(sw);
+			}
+			format.writeValue(sw, values[i]);
+		}
+		sw.write('\n');
+		assertEquals(expected, sw.toString());
+		List<String> result = new ArrayList<String>();
+		assertEquals(expected.length(), format.readRow(expected, 0, result));
+		assertEquals(Arrays.asList(values), result);
+	}
+
+	@Test public void testText() throws Exception {
+		helpTestRoundTrip(CopyFormat.parse(null), "a\t\\N\tb\\tc\tx\\\\y\tn\\nl\t\t\\\\N\n", "a", null, "b\tc", "x\\y", "n\nl", "", "\\N");
+	}
+	
+	@Test public void testTextEscapes() throws Exception {
+		List<String> result = new ArrayList<String>();
+		CopyFormat.parse(null).readRow("1\t\\x41\\101\\q\r\n", 0, result);
+		assertEquals(Arrays.asList("1", "AAq"), result);
+	}
+	
+	@Test public void testCsv() throws Exception {
+		CopyFormat format = CopyFormat.parse("WITH (FORMAT csv, HEADER true)");
+		assertTrue(format.isHeader());
+		helpTestRoundTrip(format, "a,,\"b,c\",\"q\"\"uote\",\"n\nl\",\"\"\n", "a", null, "b,c", "q\"uote", "n\nl", "");
+	}
+	
+	@Test public void testCsvLegacyOptions() throws Exception {
+		CopyFormat format = CopyFormat.parse("WITH CSV HEADER DELIMITER AS '|' NULL AS 'NULL'");
+		assertTrue(format.isCsv());
+		helpTestRoundTrip(format, "\"a|b\"|NULL|\"NULL\"\n", "a|b", null, "NULL");
+	}
+	
+	@Test public void testCsvIncompleteRow() throws Exception {
+		List<String> result = new ArrayList<String>();
+		assertEquals(-1, CopyFormat.parse("CSV").readRow("1,\"a\nb", 0, result));
+	}
+	
+	@Test(expected=SQLException.class) public void testBinaryNotSupported() throws Exception {
+		CopyFormat.parse("WITH (FORMAT binary)");
+	}
+	
+	@Test(expected=SQLException.class) public void testTextHeader() throws Exception {
+		CopyFormat.parse("HEADER");
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.transport.pg;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class TestPGBinaryEncoding {
+	
+	private static final TimeZone UTC = TimeZone.getTimeZone("GMT");
+	private static final TimeZone CST = TimeZone.getTimeZone("GMT-06:00");
+	private static final long EPOCH = PGBinaryEncoding.PG_EPOCH_MILLIS;
+	private static final long DAY = PGBinaryEncoding.MILLIS_PER_DAY;
+	
+	private void helpTestNumeric(String value, int... expected) {
+		short[] actual = PGBinaryEncoding.toNumeric(new BigDecimal(value));
+		short[] shorts = new short[expected.length];
+		for (int i = 0; i < expected.length; i++) {
+			shorts[i] = (short)expected[i];
+		}
+		assertArrayEquals(shorts, actual);
+	}
+	
+	@Test public void testNumericZero() {
+		helpTestNumeric("0", 0, 0, 0, 0);
+		helpTestNumeric("0.00", 0, 0, 0, 2);
+		helpTestNumeric("-0.000", 0, 0, 0, 3);
+	}
+	
+	@Test public void testNumericNegative() {
+		helpTestNumeric("-12345.678", 3, 1, 0x4000, 3, 1, 2345, 6780);
+		helpTestNumeric("-1", 1, 0, 0x4000, 0, 1);
+	}
+	
+	@Test public void testNumericFraction() {
+		helpTestNumeric("0.5", 1, -1, 0, 1, 5000);
+		helpTestNumeric("1.0001", 2, 0, 0, 4, 1, 1);
+	}
+	
+	@Test public void testNumericScaleGreaterThanGroup() {
+		helpTestNumeric("0.000012345", 2, -2, 0, 9, 1234, 5000);
+		helpTestNumeric("12.3456789", 3, 0, 0, 7, 12, 3456, 7890);
+	}
+	
+	@Test public void testNumericTrailingZeroGroups() {
+		helpTestNumeric("100000000", 1, 2, 0, 0, 1);
+		helpTestNumeric("10000.00000000", 1, 1, 0, 8, 1);
+	}
+	
+	@Test public void testNumericNegativeScale() {
+		helpTestNumeric("1E+5", 1, 1, 0, 0, 10);
+		helpTestNumeric("-12E+8", 1, 2, 0x4000, 0, 12);
+	}
+	
+	@Test public void testDays() {
+		assertEquals(0, PGBinaryEncoding.toDays(new Date(EPOCH), UTC));
+		assertEquals(1, PGBinaryEncoding.toDays(new Date(EPOCH + DAY + 1), UTC));
+		//local midnight in a zone behind GMT
+		assertEquals(0, PGBinaryEncoding.toDays(new Date(EPOCH + 6*3600000), CST));
+	}
+	
+	@Test public void testDaysBefore2000() {
+		assertEquals(-1, PGBinaryEncoding.toDays(new Date(EPOCH - DAY), UTC));
+		assertEquals(-1, PGBinaryEncoding.toDays(new Date(EPOCH - 1), UTC));
+		assertEquals(-10957, PGBinaryEncoding.toDays(new Date(0), UTC));
+		assertEquals(-1, PGBinaryEncoding.toDays(new Date(EPOCH - DAY + 6*3600000), CST));
+	}
+	
+	@Test public void testTimestampSeconds() {
+		assertEquals(0, PGBinaryEncoding.toSeconds(new Timestamp(EPOCH), UTC), 0);
+		Timestamp ts = new Timestamp(EPOCH + 1000);
+		ts.setNanos(123456789);
+		assertEquals(1.123456789, PGBinaryEncoding.toSeconds(ts, UTC), 1e-9);
+		assertEquals(0, PGBinaryEncoding.toSeconds(new Timestamp(EPOCH + 6*3600000), CST), 0);
+	}
+	
+	@Test public void testTimestampSecondsBefore2000() {
+		assertEquals(-1.5, PGBinaryEncoding.toSeconds(new Timestamp(EPOCH - 1500), UTC), 0);
+		Timestamp ts = new Timestamp(EPOCH - 1000);
+		ts.setNanos(1000);
+		assertEquals(-1 + 1e-6, PGBinaryEncoding.toSeconds(ts, UTC), 1e-12);
+		assertEquals(-946684800, PGBinaryEncoding.toSeconds(new Timestamp(0), UTC), 0);
+	}
+	
+	@Test public void testTimeSeconds() {
+		assertEquals(3723.5, PGBinaryEncoding.toSeconds(new Time(3723500), UTC), 0);
+		//23:30 on 1969-12-31
+		assertEquals(84600, PGBinaryEncoding.toSeconds(new Time(-1800000), UTC), 0);
+		assertEquals(18*3600, PGBinaryEncoding.toSeconds(new Time(0), CST), 0);
+	}
+
+}
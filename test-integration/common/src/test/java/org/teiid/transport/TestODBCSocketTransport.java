@@ -25,6 +25,8 @@ package org.teiid.transport;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
@@ -38,6 +40,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.util.Properties;
 
 import javax.net.ssl.SSLContext;
@@ -51,6 +54,10 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.postgresql.Driver;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+import org.postgresql.core.ProtocolConnection;
 import org.postgresql.core.v3.ExtendedQueryExectutorImpl;
 import org.teiid.adminapi.Model.Type;
 import org.teiid.adminapi.impl.ModelMetaData;
@@ -199,8 +206,11 @@ public static class AnonSSLSocketFactory extends SSLSocketFactory {
 	}
 
 	private void connect(String database) throws SQLException {
+		connect(database, new Properties());
+	}
+
+	private void connect(String database, Properties p) throws SQLException {
 		Driver d = new Driver();
-		Properties p = new Properties();
 		p.setProperty("user", "testuser");
 		p.setProperty("password", "testpassword");
 		conn = d.connect("jdbc:postgresql://"+odbcServer.addr.getHostName()+":" +odbcServer.odbcTransport.getPort()+"/"+database, p);
@@ -610,4 +620,92 @@ public static class AnonSSLSocketFactory extends SSLSocketFactory {
 		conn.setAutoCommit(true);
 	}
 
+	/**
+	 * Uses a server prepared statement from the first execution, so that the driver
+	 * will request binary results for the types that it supports
+	 */
+	@Test public void testBinaryTransfer() throws Exception {
+		conn.close();
+		Properties p = new Properties();
+		p.setProperty("prepareThreshold", "1");
+		connect("parts", p);
+		PreparedStatement s = conn.prepareStatement("select cast(? as integer), cast(2 as long), cast(3 as short), cast(1.5 as double), cast(2.5 as float), cast('-12345.678' as bigdecimal), cast('2011-01-01 12:30:45.123' as timestamp), cast('2011-01-02' as date), true, 'abc'");
+		for (int i = 0; i < 3; i++) {
+			s.setInt(1, i);
+			ResultSet rs = s.executeQuery();
+			assertTrue(rs.next());
+			assertEquals(i, rs.getInt(1));
+			assertEquals(2, rs.getLong(2));
+			assertEquals(3, rs.getShort(3));
+			assertEquals(1.5, rs.getDouble(4), 0);
+			assertEquals(2.5, rs.getFloat(5), 0);
+			assertEquals("-12345.678", rs.getBigDecimal(6).toString());
+			assertEquals(Timestamp.valueOf("2011-01-01 12:30:45.123"), rs.getTimestamp(7));
+			assertEquals(java.sql.Date.valueOf("2011-01-02"), rs.getDate(8));
+			assertTrue(rs.getBoolean(9));
+			assertEquals("abc", rs.getString(10));
+			assertFalse(rs.next());
+		}
+	}
+
+	@Test public void testCopy() throws Exception {
+		Statement stmt = conn.createStatement();
+		assertFalse(stmt.execute("create local temporary table x (y string, z integer)"));
+		CopyManager cm = ((PGConnection)conn).getCopyAPI();
+		assertEquals(3, cm.copyIn("COPY x FROM STDIN WITH (FORMAT csv)", new StringReader("a,1\n\"b,\"\"c\",2\n,\n")));
+		StringWriter sw = new StringWriter();
+		assertEquals(3, cm.copyOut("COPY (select * from x order by z nulls last) TO STDOUT", sw));
+		assertEquals("a\t1\nb,\"c\t2\n\\N\t\\N\n", sw.toString());
+		sw = new StringWriter();
+		assertEquals(3, cm.copyOut("COPY x (z, y) TO STDOUT WITH CSV HEADER", sw));
+		assertTrue(sw.toString().startsWith("z,y\n"));
+		assertTrue(sw.toString().contains("2,\"b,\"\"c\"\n"));
+	}
+	
+	@Test public void testCopyMultipleBatches() throws Exception {
+		Statement stmt = conn.createStatement();
+		assertFalse(stmt.execute("create local temporary table x (y string, z integer)"));
+		CopyManager cm = ((PGConnection)conn).getCopyAPI();
+		assertEquals(5000, cm.copyIn("COPY x FROM STDIN", new StringReader(copyRows(5000, -1))));
+		ResultSet rs = stmt.executeQuery("select count(*), sum(z) from x");
+		rs.next();
+		assertEquals(5000, rs.getInt(1));
+		assertEquals(5000*4999/2, rs.getInt(2));
+	}
+	
+	@Test public void testCopyBadRowInLaterBatch() throws Exception {
+		Statement stmt = conn.createStatement();
+		assertFalse(stmt.execute("create local temporary table x (y string, z integer)"));
+		CopyManager cm = ((PGConnection)conn).getCopyAPI();
+		try {
+			cm.copyIn("COPY x FROM STDIN", new StringReader(copyRows(5000, 4500)));
+			fail();
+		} catch (SQLException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("TEIID40127"));
+		}
+		//the local transaction for the earlier batches should be ended
+		assertEquals(ProtocolConnection.TRANSACTION_IDLE, ((BaseConnection)conn).getTransactionState());
+		assertFalse(stmt.execute("create local temporary table x1 (y string, z integer)"));
+		assertEquals(3000, cm.copyIn("COPY x1 FROM STDIN", new StringReader(copyRows(3000, -1))));
+	}
+	
+	private static String copyRows(int count, int badRow) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			sb.append('v').append(i).append('\t').append(i);
+			if (i == badRow) {
+				sb.append('\t').append(i);
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+	
+	@Test(expected=SQLException.class) public void testCopyWrongColumnCount() throws Exception {
+		Statement stmt = conn.createStatement();
+		assertFalse(stmt.execute("create local temporary table x (y string, z integer)"));
+		CopyManager cm = ((PGConnection)conn).getCopyAPI();
+		cm.copyIn("COPY x FROM STDIN", new StringReader("a\t1\tb\n"));
+	}
+
 }
@@ -0,0 +1,112 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.teiid.client.BatchSerializer;
+import org.teiid.core.types.DataTypeManager;
+
+/**
+ * Measures {@link BatchSerializer} writes and write/read round trips of a 
+ * mixed type batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@SuppressWarnings("nls")
+public class BatchSerializerBenchmark {
+	
+	private static final String[] TYPES = new String[] {
+		DataTypeManager.DefaultDataTypes.INTEGER, 
+		DataTypeManager.DefaultDataTypes.STRING, 
+		DataTypeManager.DefaultDataTypes.BIG_DECIMAL, 
+		DataTypeManager.DefaultDataTypes.TIMESTAMP, 
+		DataTypeManager.DefaultDataTypes.BOOLEAN};
+	
+	@Param({"256", "2048"})
+	int rows;
+	
+	private List<List<?>> batch;
+	private byte[] serialized;
+	
+	@Setup
+	public void setup() throws IOException {
+		batch = new ArrayList<List<?>>(rows);
+		long time = 1420070400000l;
+		for (int i = 0; i < rows; i++) {
+			batch.add(Arrays.asList(i, "value" + i, BigDecimal.valueOf(i, 2), new Timestamp(time + i * 1000l), i % 3 == 0 ? null : Boolean.valueOf(i % 2 == 0)));
+		}
+		serialized = write();
+	}
+	
+	private byte[] write() throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(serialized != null ? serialized.length : 1 << 16);
+		ObjectOutputStream oos = new ObjectOutputStream(baos);
+		BatchSerializer.writeBatch(oos, TYPES, batch);
+		oos.close();
+		return baos.toByteArray();
+	}
+	
+	@Benchmark
+	public byte[] writeBatch() throws IOException {
+		return write();
+	}
+	
+	@Benchmark
+	public List<List<Object>> readBatch() throws IOException, ClassNotFoundException {
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialized));
+		return BatchSerializer.readBatch(ois, TYPES);
+	}
+	
+	@Benchmark
+	public List<List<Object>> roundTrip() throws IOException, ClassNotFoundException {
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(write()));
+		return BatchSerializer.readBatch(ois, TYPES);
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.BufferManager.BufferReserveMode;
+import org.teiid.common.buffer.BufferManagerFactory;
+import org.teiid.common.buffer.impl.BufferManagerImpl;
+
+/**
+ * Measures {@link BufferManagerImpl} buffer reservation and release from 
+ * several threads against a shared buffer manager.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Threads(4)
+@Fork(1)
+public class BufferManagerBenchmark {
+	
+	/**
+	 * The number of bytes reserved by each operation
+	 */
+	@Param({"16384", "1048576"})
+	int reserve;
+	
+	private BufferManagerImpl bm;
+	
+	@Setup
+	public void setup() {
+		bm = BufferManagerFactory.getTestBufferManager(1 << 26, BufferManager.DEFAULT_PROCESSOR_BATCH_SIZE);
+	}
+	
+	@Benchmark
+	public int reserveReleaseNoWait() {
+		int reserved = bm.reserveBuffers(reserve, BufferReserveMode.NO_WAIT);
+		bm.releaseBuffers(reserved);
+		return reserved;
+	}
+	
+	@Benchmark
+	public int reserveReleaseForce() {
+		int reserved = bm.reserveBuffers(reserve, BufferReserveMode.FORCE);
+		bm.releaseBuffers(reserved);
+		return reserved;
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.jmh;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.teiid.core.TeiidException;
+import org.teiid.query.eval.Evaluator;
+import org.teiid.query.metadata.QueryMetadataInterface;
+import org.teiid.query.parser.QueryParser;
+import org.teiid.query.resolver.util.ResolverVisitor;
+import org.teiid.query.rewriter.QueryRewriter;
+import org.teiid.query.sql.lang.Criteria;
+import org.teiid.query.sql.symbol.ElementSymbol;
+import org.teiid.query.sql.visitor.ElementCollectorVisitor;
+import org.teiid.query.unittest.RealMetadataFactory;
+import org.teiid.query.util.CommandContext;
+
+/**
+ * Measures row-at-a-time criteria evaluation with the interpreted 
+ * and the compiled {@link Evaluator}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@SuppressWarnings("nls")
+public class EvaluatorBenchmark {
+	
+	private static final int ROWS = 1024;
+	
+	@Param({"pm1.g1.e2 > 10 and pm1.g1.e1 = 'a'", 
+		"pm1.g1.e2 in (1, 3, 5, 7) or pm1.g1.e3 is null", 
+		"ifnull(pm1.g1.e2, 0) * pm1.g1.e4 > 100 and concat(pm1.g1.e1, 'x') <> 'ax'"})
+	String criteria;
+	
+	@Param({"false", "true"})
+	boolean compiled;
+	
+	private Criteria crit;
+	private Evaluator evaluator;
+	private List<?>[] tuples;
+	
+	@Setup
+	public void setup() throws TeiidException {
+		QueryMetadataInterface metadata = RealMetadataFactory.example1Cached();
+		crit = QueryParser.getQueryParser().parseCriteria(criteria);
+		ResolverVisitor.resolveLanguageObject(crit, metadata);
+		crit = QueryRewriter.rewriteCriteria(crit, null, metadata);
+		Map<ElementSymbol, Integer> elements = new HashMap<ElementSymbol, Integer>();
+		for (ElementSymbol es : new ArrayList<ElementSymbol>(ElementCollectorVisitor.getElements(crit, true))) {
+			//pm1.g1.eN is at position N - 1
+			elements.put(es, Integer.valueOf(es.getShortName().substring(1)) - 1);
+		}
+		evaluator = new Evaluator(elements, null, new CommandContext());
+		evaluator.setCompileExpressions(compiled);
+		tuples = new List<?>[ROWS];
+		String[] strings = new String[] {"a", "b", null, "abc"};
+		for (int i = 0; i < ROWS; i++) {
+			tuples[i] = Arrays.asList(strings[i % strings.length], i % 7 == 0 ? null : i % 50, i % 5 == 0 ? null : Boolean.valueOf(i % 2 == 0), i * 1.5);
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public int evaluate() throws TeiidException {
+		int count = 0;
+		for (int i = 0; i < ROWS; i++) {
+			if (evaluator.evaluate(crit, tuples[i])) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+}
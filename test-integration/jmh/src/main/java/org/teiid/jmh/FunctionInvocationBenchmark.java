@@ -0,0 +1,91 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.teiid.core.TeiidException;
+import org.teiid.query.function.FunctionDescriptor;
+import org.teiid.query.function.FunctionLibrary;
+import org.teiid.query.unittest.RealMetadataFactory;
+import org.teiid.query.util.CommandContext;
+import org.teiid.translator.SourceSystemFunctions;
+
+/**
+ * Measures {@link FunctionDescriptor#invokeFunction(Object[], CommandContext, Object)} 
+ * for system functions with and without a context argument.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@SuppressWarnings("nls")
+public class FunctionInvocationBenchmark {
+	
+	private FunctionDescriptor plus;
+	private FunctionDescriptor concat;
+	private FunctionDescriptor user;
+	private CommandContext context;
+	private Object[] intArgs = new Object[] {1, 2};
+	private Object[] stringArgs = new Object[] {"a", "b"};
+	private Object[] contextArgs;
+	
+	@Setup
+	public void setup() {
+		FunctionLibrary library = RealMetadataFactory.SFM.getSystemFunctionLibrary();
+		plus = library.findFunction(SourceSystemFunctions.ADD_OP, new Class<?>[] {Integer.class, Integer.class});
+		concat = library.findFunction(FunctionLibrary.CONCAT, new Class<?>[] {String.class, String.class});
+		user = library.findFunction(FunctionLibrary.USER, new Class<?>[0]);
+		context = new CommandContext();
+		//context functions expect the context as the first value, as set by the Evaluator
+		contextArgs = new Object[] {context};
+	}
+	
+	@Benchmark
+	public Object invokePlus() throws TeiidException {
+		return plus.invokeFunction(intArgs, context, null);
+	}
+	
+	@Benchmark
+	public Object invokeConcat() throws TeiidException {
+		return concat.invokeFunction(stringArgs, context, null);
+	}
+	
+	@Benchmark
+	public Object invokeWithContext() throws TeiidException {
+		return user.invokeFunction(contextArgs, context, null);
+	}
+
+}
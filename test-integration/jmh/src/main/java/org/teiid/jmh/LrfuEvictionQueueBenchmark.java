@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.teiid.common.buffer.BaseCacheEntry;
+import org.teiid.common.buffer.CacheKey;
+import org.teiid.common.buffer.impl.LrfuEvictionQueue;
+
+/**
+ * Measures concurrent {@link LrfuEvictionQueue#touch(BaseCacheEntry)} calls, which
+ * dominate the queue traffic during processing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Threads(4)
+@Fork(1)
+public class LrfuEvictionQueueBenchmark {
+	
+	@State(Scope.Thread)
+	public static class ThreadState {
+		Random random = new Random();
+	}
+	
+	@Param({"10000", "1000000"})
+	int entries;
+	
+	private AtomicLong clock = new AtomicLong();
+	private LrfuEvictionQueue<BaseCacheEntry> queue;
+	private BaseCacheEntry[] values;
+	
+	@Setup
+	public void setup() {
+		queue = new LrfuEvictionQueue<BaseCacheEntry>(clock);
+		values = new BaseCacheEntry[entries];
+		for (int i = 0; i < entries; i++) {
+			values[i] = new BaseCacheEntry(new CacheKey(Long.valueOf(i), 0, 0));
+			queue.add(values[i]);
+		}
+	}
+	
+	@Benchmark
+	public void touch(ThreadState state) {
+		//advance the clock far enough that the touch is not ignored as too recent
+		clock.addAndGet(1 << 10);
+		queue.touch(values[state.random.nextInt(entries)]);
+	}
+	
+	@Benchmark
+	public BaseCacheEntry touchAndPoll(ThreadState state) {
+		clock.addAndGet(1 << 10);
+		queue.touch(values[state.random.nextInt(entries)]);
+		BaseCacheEntry entry = queue.firstEntry(true);
+		if (entry != null) {
+			queue.add(entry);
+		}
+		return entry;
+	}
+
+}
@@ -0,0 +1,94 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.teiid.core.TeiidException;
+import org.teiid.query.metadata.QueryMetadataInterface;
+import org.teiid.query.parser.QueryParser;
+import org.teiid.query.resolver.QueryResolver;
+import org.teiid.query.rewriter.QueryRewriter;
+import org.teiid.query.sql.lang.Command;
+import org.teiid.query.unittest.RealMetadataFactory;
+import org.teiid.query.util.CommandContext;
+
+/**
+ * Measures the parse, resolve and rewrite steps that precede planning.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@SuppressWarnings("nls")
+public class QueryPipelineBenchmark {
+	
+	@Param({"SELECT e1, e2 FROM pm1.g1 WHERE e2 > 5 AND e1 LIKE 'a%' ORDER BY e1", 
+		"SELECT g1.e1, max(g2.e2) FROM pm1.g1 AS g1, pm1.g2 AS g2 WHERE g1.e1 = g2.e1 AND g1.e3 = true GROUP BY g1.e1 HAVING count(*) > 1", 
+		"SELECT e1 FROM pm1.g1 WHERE e2 IN (SELECT e2 FROM pm1.g2 WHERE e3 = false) UNION ALL SELECT e1 FROM vm1.g1"})
+	String sql;
+	
+	private QueryParser parser;
+	private QueryMetadataInterface metadata;
+	private CommandContext context;
+	
+	@Setup
+	public void setup() {
+		parser = QueryParser.getQueryParser();
+		metadata = RealMetadataFactory.example1Cached();
+		context = new CommandContext();
+	}
+	
+	@Benchmark
+	public Command parse() throws TeiidException {
+		return parser.parseCommand(sql);
+	}
+	
+	@Benchmark
+	public Command parseResolve() throws TeiidException {
+		Command command = parser.parseCommand(sql);
+		QueryResolver.resolveCommand(command, metadata);
+		return command;
+	}
+	
+	@Benchmark
+	public Command parseResolveRewrite() throws TeiidException {
+		Command command = parser.parseCommand(sql);
+		QueryResolver.resolveCommand(command, metadata);
+		return QueryRewriter.rewrite(command, metadata, context);
+	}
+
+}
@@ -0,0 +1,137 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.jmh;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.teiid.common.buffer.BufferManagerFactory;
+import org.teiid.common.buffer.STree;
+import org.teiid.common.buffer.STree.InsertMode;
+import org.teiid.common.buffer.impl.BufferManagerImpl;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.query.sql.symbol.ElementSymbol;
+
+/**
+ * Measures {@link STree} inserts, in key order and in random order, and point lookups.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@SuppressWarnings("nls")
+public class STreeBenchmark {
+	
+	@Param({"10000", "100000"})
+	int rows;
+	
+	private BufferManagerImpl bm;
+	private List<ElementSymbol> elements;
+	private int[] randomKeys;
+	private STree tree;
+	private int next;
+	
+	@Setup
+	public void setup() throws TeiidComponentException {
+		bm = BufferManagerFactory.createBufferManager();
+		ElementSymbol e1 = new ElementSymbol("x");
+		e1.setType(Integer.class);
+		ElementSymbol e2 = new ElementSymbol("y");
+		e2.setType(String.class);
+		elements = Arrays.asList(e1, e2);
+		randomKeys = new int[rows];
+		for (int i = 0; i < rows; i++) {
+			randomKeys[i] = i;
+		}
+		Random r = new Random(1);
+		for (int i = rows - 1; i > 0; i--) {
+			int j = r.nextInt(i + 1);
+			int temp = randomKeys[i];
+			randomKeys[i] = randomKeys[j];
+			randomKeys[j] = temp;
+		}
+		tree = bm.createSTree(elements, "bench", 1);
+		for (int i = 0; i < rows; i++) {
+			tree.insert(Arrays.asList(i, String.valueOf(i)), InsertMode.ORDERED, rows);
+		}
+	}
+	
+	@TearDown
+	public void tearDown() {
+		tree.remove();
+	}
+	
+	@Benchmark
+	public int insertOrdered() throws TeiidComponentException {
+		STree map = bm.createSTree(elements, "bench", 1);
+		try {
+			for (int i = 0; i < rows; i++) {
+				map.insert(Arrays.asList(i, String.valueOf(i)), InsertMode.ORDERED, rows);
+			}
+			return map.getRowCount();
+		} finally {
+			map.remove();
+		}
+	}
+	
+	@Benchmark
+	public int insertRandom() throws TeiidComponentException {
+		STree map = bm.createSTree(elements, "bench", 1);
+		try {
+			for (int i = 0; i < rows; i++) {
+				int key = randomKeys[i];
+				map.insert(Arrays.asList(key, String.valueOf(key)), InsertMode.NEW, rows);
+			}
+			return map.getRowCount();
+		} finally {
+			map.remove();
+		}
+	}
+	
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public List<?> find() throws TeiidComponentException {
+		if (next == rows) {
+			next = 0;
+		}
+		int key = randomKeys[next++];
+		return tree.find(Arrays.asList(key));
+	}
+
+}
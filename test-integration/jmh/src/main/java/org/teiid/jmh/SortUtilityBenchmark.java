@@ -0,0 +1,113 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.jmh;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.BufferManager.TupleSourceType;
+import org.teiid.common.buffer.BufferManagerFactory;
+import org.teiid.common.buffer.TupleBuffer;
+import org.teiid.common.buffer.impl.BufferManagerImpl;
+import org.teiid.core.TeiidException;
+import org.teiid.query.processor.relational.SortUtility;
+import org.teiid.query.processor.relational.SortUtility.Mode;
+import org.teiid.query.sql.symbol.ElementSymbol;
+
+/**
+ * Measures {@link SortUtility} sorting.  The processing memory setting controls 
+ * whether the sort completes in memory or requires merging several sorted runs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@SuppressWarnings("nls")
+public class SortUtilityBenchmark {
+	
+	@Param({"100000"})
+	int rows;
+	
+	/**
+	 * The processing bytes available, small values force a multi-pass merge
+	 */
+	@Param({"1048576", "67108864"})
+	long bytesAvailable;
+	
+	@Param({"SORT", "DUP_REMOVE"})
+	String mode;
+	
+	private BufferManagerImpl bm;
+	private List<ElementSymbol> elements;
+	private TupleBuffer source;
+	
+	@Setup
+	public void setup() throws TeiidException {
+		bm = BufferManagerFactory.getTestBufferManager(bytesAvailable, BufferManager.DEFAULT_PROCESSOR_BATCH_SIZE);
+		ElementSymbol e1 = new ElementSymbol("x");
+		e1.setType(Integer.class);
+		ElementSymbol e2 = new ElementSymbol("y");
+		e2.setType(String.class);
+		elements = Arrays.asList(e1, e2);
+		source = bm.createTupleBuffer(elements, "bench", TupleSourceType.PROCESSOR);
+		Random r = new Random(1);
+		for (int i = 0; i < rows; i++) {
+			int val = r.nextInt(rows);
+			source.addTuple(Arrays.asList(val, String.valueOf(val)));
+		}
+		source.close();
+	}
+	
+	@TearDown
+	public void tearDown() {
+		source.remove();
+	}
+	
+	@Benchmark
+	public int sort() throws TeiidException {
+		SortUtility su = new SortUtility(source.createIndexedTupleSource(), elements, Arrays.asList(Boolean.TRUE, Boolean.TRUE), Mode.valueOf(mode), bm, "bench", elements);
+		TupleBuffer result = su.sort();
+		try {
+			return result.getRowCount();
+		} finally {
+			result.remove();
+		}
+	}
+
+}